@@ -13,4 +13,11 @@ public interface ThingsContainer {
     Map<String, Object> getBeans(Class<? extends Annotation> annotationType);
 
     <T> T getBean(Class<T> requiredType);
+
+    /**
+     * 容器的类加载器，注册时从中加载容器自带的消息体编解码器
+     */
+    default ClassLoader getClassLoader() {
+        return getClass().getClassLoader();
+    }
 }
@@ -1,14 +1,39 @@
 package cn.huangdayu.things.api.instances;
 
 import cn.huangdayu.things.common.dsl.DslInfo;
+import cn.huangdayu.things.common.wrapper.ThingsInstance;
+
+import java.util.Set;
 
 /**
  * @author huangdayu
  */
 public interface ThingsInstancesDslManager {
 
+    /**
+     * 更新实例的 DSL，支持完整 DSL 和增量 DSL
+     * 增量 DSL 的领域为 null 时沿用已持有的领域，物模型只包含变化的部分，
+     * 不在 {@link DslInfo#getThingsVersions()} 中的物模型被移除
+     *
+     * @param dslInfo
+     */
     void addAllDsl(DslInfo dslInfo);
 
+    /**
+     * 移除不在指定实例集合中的 DSL
+     *
+     * @param thingsInstances
+     */
+    void retainAllDsl(Set<ThingsInstance> thingsInstances);
+
+    /**
+     * 获取已持有的实例 DSL，用于条件同步时带上版本
+     *
+     * @param thingsInstance
+     * @return 没有持有时返回 null
+     */
+    DslInfo getDsl(ThingsInstance thingsInstance);
+
     DslInfo getDsl();
 
 
@@ -0,0 +1,23 @@
+package cn.huangdayu.things.api.message;
+
+import cn.huangdayu.things.common.wrapper.ThingsRequest;
+import cn.huangdayu.things.common.wrapper.ThingsResponse;
+
+import java.util.List;
+
+/**
+ * 支持批量处理的处理器，批量输出时同一批可处理的消息一次性交给处理器，
+ * 没有实现该接口的处理器仍逐条处理
+ *
+ * @author huangdayu
+ */
+public interface ThingsBatchHandling extends ThingsHandling {
+
+    /**
+     * 批量处理消息，请求和响应按下标一一对应
+     *
+     * @param thingsRequests
+     * @param thingsResponses
+     */
+    void doHandle(List<ThingsRequest> thingsRequests, List<ThingsResponse> thingsResponses);
+}
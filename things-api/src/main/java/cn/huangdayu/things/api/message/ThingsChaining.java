@@ -3,6 +3,8 @@ package cn.huangdayu.things.api.message;
 import cn.huangdayu.things.common.wrapper.ThingsRequest;
 import cn.huangdayu.things.common.wrapper.ThingsResponse;
 
+import java.util.List;
+
 /**
  * @author huangdayu
  */
@@ -11,4 +13,9 @@ public interface ThingsChaining {
     void input(ThingsRequest thingsRequest, ThingsResponse thingsResponse);
 
     void output(ThingsRequest thingsRequest, ThingsResponse thingsResponse);
+
+    /**
+     * 批量输出，请求和响应按下标一一对应；单条消息处理失败不影响同批的其他消息
+     */
+    void output(List<ThingsRequest> thingsRequests, List<ThingsResponse> thingsResponses);
 }
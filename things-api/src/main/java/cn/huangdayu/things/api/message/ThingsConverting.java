@@ -10,6 +10,17 @@ public interface ThingsConverting {
 
     JsonThingsMessage input(byte[] bytes);
 
+    /**
+     * 带上发送方的输入，分段消息按发送方和消息id重组，不同发送方的分段不会合并
+     *
+     * @param sender 发送方标识，如设备标识或连接地址
+     * @param bytes
+     * @return
+     */
+    default JsonThingsMessage input(String sender, byte[] bytes) {
+        return input(bytes);
+    }
+
 
     byte[] output(JsonThingsMessage jtm);
 
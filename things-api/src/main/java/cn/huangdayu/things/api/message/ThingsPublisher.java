@@ -4,6 +4,9 @@ import cn.huangdayu.things.common.message.JsonThingsMessage;
 import cn.huangdayu.things.common.message.ThingsEventMessage;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
 /**
@@ -23,6 +26,18 @@ public interface ThingsPublisher {
      */
     void publishEvent(JsonThingsMessage jtm);
 
+    /**
+     * 批量发布事件，处理链按批执行，不等待响应
+     * @param tems
+     */
+    void publishEvents(Collection<ThingsEventMessage> tems);
+
+    /**
+     * 批量发布事件消息，不等待响应
+     * @param jtms
+     */
+    void publishEvents(List<JsonThingsMessage> jtms);
+
     /**
      * 同步发送消息
      * @param jtm
@@ -37,6 +52,13 @@ public interface ThingsPublisher {
      */
     void asyncSendMessage(JsonThingsMessage jtm, Consumer<JsonThingsMessage> consumer);
 
+    /**
+     * 批量发送消息
+     * @param jtms
+     * @return 按顺序对应每条消息的响应，发送失败的消息异常完成
+     */
+    List<CompletableFuture<JsonThingsMessage>> sendMessages(List<JsonThingsMessage> jtms);
+
     /**
      * 响应式发送消息
      * @param jtm
@@ -4,6 +4,8 @@ import cn.huangdayu.things.common.enums.ThingsSofaBusType;
 import cn.huangdayu.things.common.wrapper.ThingsRequest;
 import cn.huangdayu.things.common.wrapper.ThingsResponse;
 
+import java.util.List;
+
 /**
  * @author huangdayu
  */
@@ -19,6 +21,17 @@ public interface ThingsSofaBus {
 
     boolean output(String topic, ThingsRequest thingsRequest, ThingsResponse thingsResponse);
 
+    /**
+     * 批量发送到同一个主题，支持批量的总线应合并为一次发送，默认逐条发送
+     */
+    default boolean output(String topic, List<ThingsRequest> thingsRequests, List<ThingsResponse> thingsResponses) {
+        boolean output = true;
+        for (int i = 0; i < thingsRequests.size(); i++) {
+            output &= output(topic, thingsRequests.get(i), thingsResponses.get(i));
+        }
+        return output;
+    }
+
     boolean subscribe(String topic);
 
     boolean unsubscribe(String topic);
@@ -5,6 +5,7 @@ import cn.huangdayu.things.common.annotation.*;
 import cn.huangdayu.things.common.message.AbstractThingsMessage;
 import cn.huangdayu.things.common.message.BaseThingsMessage;
 import cn.huangdayu.things.common.message.JsonThingsMessage;
+import cn.huangdayu.things.common.message.ThingsPayloadCodecs;
 import cn.huangdayu.things.common.utils.ThingsUtils;
 import cn.hutool.core.util.StrUtil;
 import com.alibaba.fastjson2.JSON;
@@ -50,14 +51,14 @@ public class ThingsClientsProxy {
             if (type.equals(JsonThingsMessage.class)) {
                 return jtm;
             }
-            return Mono.just(jtm.block().getPayload().toJavaObject(type));
+            return jtm.map(response -> ThingsPayloadCodecs.decode(response.getPayload(), type));
         }
 
         if (method.getReturnType().isAssignableFrom(Flux.class)) {
             if (type.equals(JsonThingsMessage.class)) {
                 return jtm.flux();
             }
-            return Flux.just(jtm.block().getPayload().toJavaObject(type));
+            return jtm.map(response -> ThingsPayloadCodecs.decode(response.getPayload(), type)).flux();
         }
         return jtm.block().toJson().toJavaObject(type);
     }
@@ -77,7 +78,7 @@ public class ThingsClientsProxy {
         } else if (returnType.isAssignableFrom(String.class)) {
             return response.getPayload().toJSONString();
         }
-        return response.getPayload().toJavaObject(returnType);
+        return ThingsPayloadCodecs.decode(response.getPayload(), returnType);
     }
 
 
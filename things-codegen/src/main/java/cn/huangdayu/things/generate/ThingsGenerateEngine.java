@@ -3,6 +3,8 @@ package cn.huangdayu.things.generate;
 
 import cn.huangdayu.things.common.dsl.ThingsInfo;
 
+import java.util.Map;
+
 /**
  * 物模型代码模板生成引擎
  *
@@ -11,6 +13,13 @@ import cn.huangdayu.things.common.dsl.ThingsInfo;
 public interface ThingsGenerateEngine {
 
 
-    void generate(ThingsInfo thingsInfo);
+    /**
+     * 根据物模型 DSL 生成属性实体、事件、客户端接口以及消息体编解码器
+     *
+     * @param thingsInfo  物模型
+     * @param basePackage 生成代码的基础包名，每个产品一个子包
+     * @return 相对路径 vs 文件内容，包括 Java 源码和编解码器的 META-INF/services 注册文件
+     */
+    Map<String, String> generate(ThingsInfo thingsInfo, String basePackage);
 
 }
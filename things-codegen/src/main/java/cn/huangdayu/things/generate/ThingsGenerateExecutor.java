@@ -1,15 +1,622 @@
 package cn.huangdayu.things.generate;
 
 import cn.huangdayu.things.common.annotation.ThingsBean;
-import cn.huangdayu.things.common.dsl.ThingsInfo;
+import cn.huangdayu.things.common.dsl.*;
+import cn.huangdayu.things.common.exception.ThingsException;
+import cn.huangdayu.things.common.message.ThingsPayloadCodec;
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+
+import javax.lang.model.SourceVersion;
+import java.util.*;
+import java.util.function.Function;
+
+import static cn.huangdayu.things.common.constants.ThingsConstants.ErrorCodes.BAD_REQUEST;
+import static cn.huangdayu.things.generate.ThingsSourceBuilder.literal;
 
 /**
+ * 根据物模型 DSL 生成代码，每个产品一个包：属性实体、事件、服务输出、客户端接口，
+ * 以及属性实体、事件和服务输出的 {@link ThingsPayloadCodec}，编解码直接读写字段，不经过反射和 TypeReference
+ * <p>
+ * 编码结果与 {@code JSON.toJSON(value, WriteNulls)} 一致：空字段以 null 输出，事件包含设备标识
+ * <p>
+ * DSL 中结构体的子属性以 parent.child 的标识平铺，生成时还原为内部类
+ *
  * @author huangdayu
  */
 @ThingsBean
 public class ThingsGenerateExecutor implements ThingsGenerateEngine {
+
+    private static final String CODEC_SERVICES = "META-INF/services/" + ThingsPayloadCodec.class.getName();
+
+    private static final String ANNOTATION_PACKAGE = "cn.huangdayu.things.common.annotation.";
+
+    /**
+     * DSL 数据类型 vs Java 类型，JSONObject/JSONArray 按同名方法读取
+     */
+    private static final Map<String, String> SCALAR_TYPES = Map.of("int", "Integer", "long", "Long", "float", "Float",
+            "double", "Double", "bool", "Boolean", "text", "String", "date", "Date");
+
     @Override
-    public void generate(ThingsInfo thingsInfo) {
+    public Map<String, String> generate(ThingsInfo thingsInfo, String basePackage) {
+        ThingsProfileInfo product = thingsInfo.getProfile() != null ? thingsInfo.getProfile().getProduct() : null;
+        if (product == null || StrUtil.isBlank(product.getCode())) {
+            throw new ThingsException(BAD_REQUEST, "Things DSL not has product code.");
+        }
+        String packageName = basePackage + "." + packageName(product.getCode());
+        String prefix = typeName(product.getCode(), "Product");
+        Map<String, String> files = new LinkedHashMap<>();
+        List<String> codecs = new ArrayList<>();
+
+        if (CollUtil.isNotEmpty(thingsInfo.getProperties())) {
+            Source source = new Source(packageName, prefix + "Properties");
+            source.imports.add(ANNOTATION_PACKAGE + "ThingsPropertyEntity");
+            String annotation = "@ThingsPropertyEntity(productCode = " + literal(product.getCode())
+                    + attribute("name", product.getName()) + attribute("desc", product.getDescription()) + ")";
+            entity(files, codecs, source, List.of(annotation), null, tree(thingsInfo.getProperties()), true);
+        }
+
+        for (ThingsEventInfo event : sorted(thingsInfo.getEvents(), ThingsEventInfo::getIdentifier)) {
+            Source source = new Source(packageName, prefix + typeName(event.getIdentifier(), "Event") + "Event");
+            source.imports.add(ANNOTATION_PACKAGE + "ThingsEventEntity");
+            source.imports.add("cn.huangdayu.things.common.message.ThingsEventMessage");
+            String annotation = "@ThingsEventEntity(productCode = " + literal(product.getCode()) + ", identifier = " + literal(event.getIdentifier())
+                    + attribute("type", event.getType()) + attribute("name", event.getName()) + attribute("desc", event.getDesc()) + ")";
+            entity(files, codecs, source, List.of(annotation), "ThingsEventMessage", tree(event.getOutputData()), false);
+        }
+
+        List<ThingsServiceInfo> services = sorted(thingsInfo.getServices(), ThingsServiceInfo::getIdentifier);
+        Map<ThingsServiceInfo, String> outputs = new HashMap<>();
+        for (ThingsServiceInfo service : services) {
+            if (CollUtil.isNotEmpty(service.getOutputData())) {
+                Source source = new Source(packageName, prefix + typeName(service.getIdentifier(), "Service") + "Output");
+                entity(files, codecs, source, List.of(), null, tree(service.getOutputData()), false);
+                outputs.put(service, source.className);
+            }
+        }
+        if (!services.isEmpty()) {
+            client(files, new Source(packageName, prefix + "Client"), product, services, outputs);
+        }
+
+        if (!codecs.isEmpty()) {
+            files.put(CODEC_SERVICES, String.join("\n", codecs) + "\n");
+        }
+        return files;
+    }
+
+    /**
+     * 生成实体类及其编解码器
+     */
+    private void entity(Map<String, String> files, List<String> codecs, Source source, List<String> annotations,
+                        String implementsType, Node root, boolean property) {
+        ThingsSourceBuilder body = new ThingsSourceBuilder();
+        bean(source, body, source.className, root, annotations, "public class", implementsType, property, "");
+        boolean deviceCode = withDeviceCode(implementsType, fields(null, root, source.className, ""));
+        files.put(source.path(source.className), source.render(body, null));
+
+        Source codecSource = new Source(source.packageName, source.className + "Codec");
+        codecSource.imports.add(ThingsPayloadCodec.class.getName());
+        codecSource.imports.add("com.alibaba.fastjson2.JSONObject");
+        ThingsSourceBuilder codec = new ThingsSourceBuilder();
+        codec.open("public final class " + codecSource.className + " implements ThingsPayloadCodec<" + source.className + ">");
+        codec.blank();
+        codec.line("@Override");
+        codec.open("public Class<" + source.className + "> type()");
+        codec.line("return " + source.className + ".class;");
+        codec.close();
+        codec.blank();
+        codec.line("@Override");
+        codec.open("public JSONObject encode(" + source.className + " value)");
+        codec.line("return encode" + source.className + "(value);");
+        codec.close();
+        codec.blank();
+        codec.line("@Override");
+        codec.open("public " + source.className + " decode(JSONObject payload)");
+        codec.line("return decode" + source.className + "(payload);");
+        codec.close();
+        codecMethods(codecSource, codec, source.className, root, deviceCode);
+        codec.close();
+        files.put(codecSource.path(codecSource.className), codecSource.render(codec, "{@link " + source.className + "} 消息体编解码器"));
+        codecs.add(codecSource.packageName + "." + codecSource.className);
+    }
+
+    /**
+     * 生成字段、访问方法和内部类型，事件额外持有不参与编解码的设备标识
+     */
+    private void bean(Source source, ThingsSourceBuilder body, String className, Node node, List<String> annotations,
+                      String declaration, String implementsType, boolean property, String nestedPrefix) {
+        List<Field> fields = fields(source, node, className, nestedPrefix);
+        boolean event = withDeviceCode(implementsType, fields);
+        annotations.forEach(body::line);
+        body.open(declaration + " " + className + (implementsType != null ? " implements " + implementsType : ""));
+        if (event) {
+            body.blank();
+            body.line("private String deviceCode;");
+        }
+        for (Field field : fields) {
+            body.blank();
+            javadoc(body, field.node.param);
+            String annotation = paramAnnotation(source, field, property, false);
+            if (annotation != null) {
+                body.line(annotation);
+            }
+            body.line("private " + field.javaType + " " + field.name + ";");
+        }
+        if (event) {
+            body.blank();
+            body.line("@Override");
+            accessors(body, "String", "deviceCode");
+        }
+        for (Field field : fields) {
+            body.blank();
+            accessors(body, field.javaType, field.name);
+        }
+        nestedTypes(source, body, fields, property);
+        body.close();
+    }
+
+    /**
+     * 事件实现 ThingsEventMessage，DSL 中没有设备标识字段时额外生成
+     */
+    private static boolean withDeviceCode(String implementsType, List<Field> fields) {
+        return implementsType != null && fields.stream().noneMatch(field -> field.name.equals("deviceCode"));
+    }
+
+    private void nestedTypes(Source source, ThingsSourceBuilder body, List<Field> fields, boolean property) {
+        for (Field field : fields) {
+            if (field.nestedType == null) {
+                continue;
+            }
+            body.blank();
+            if (field.kind == Kind.ENUM) {
+                enumType(body, field.nestedType, field.node.param.getDataType().getEnumNames());
+            } else {
+                bean(source, body, field.nestedType, field.node, List.of(), "public static class", null, property, "");
+            }
+        }
+    }
+
+    private void accessors(ThingsSourceBuilder body, String javaType, String name) {
+        body.open("public " + javaType + " get" + StrUtil.upperFirst(name) + "()");
+        body.line("return " + name + ";");
+        body.close();
+        body.blank();
+        body.open("public void set" + StrUtil.upperFirst(name) + "(" + javaType + " " + name + ")");
+        body.line("this." + name + " = " + name + ";");
+        body.close();
+    }
+
+    /**
+     * 枚举保留 DSL 中的原始值；编码与属性上报、DSL 描述一致使用枚举名称，解码同时接受枚举名称和原始值
+     */
+    private void enumType(ThingsSourceBuilder body, String className, String enumNames) {
+        body.open("public enum " + className);
+        List<String> values = StrUtil.splitTrim(StrUtil.nullToEmpty(enumNames), ',');
+        Set<String> constants = new HashSet<>();
+        for (int i = 0; i < values.size(); i++) {
+            String constant = constantName(values.get(i));
+            while (!constants.add(constant)) {
+                constant = constant + "_";
+            }
+            body.line(constant + "(" + literal(values.get(i)) + ")" + (i < values.size() - 1 ? "," : ";"));
+        }
+        if (values.isEmpty()) {
+            body.line(";");
+        }
+        body.blank();
+        body.line("private final String value;");
+        body.blank();
+        body.open(className + "(String value)");
+        body.line("this.value = value;");
+        body.close();
+        body.blank();
+        body.open("public String getValue()");
+        body.line("return value;");
+        body.close();
+        body.blank();
+        body.open("public static " + className + " of(String value)");
+        body.open("for (" + className + " item : values())");
+        body.open("if (item.name().equals(value) || item.value.equals(value))");
+        body.line("return item;");
+        body.close();
+        body.close();
+        body.line("return null;");
+        body.close();
+        body.close();
+    }
+
+    /**
+     * 生成类型及其内部结构体的编解码方法，方法名使用类型的限定名
+     *
+     * @param deviceCode 是否编解码事件的设备标识
+     */
+    private void codecMethods(Source codecSource, ThingsSourceBuilder codec, String qualifiedType, Node node, boolean deviceCode) {
+        String suffix = qualifiedType.replace(".", "");
+        List<Field> fields = fields(null, node, qualifiedType.substring(qualifiedType.lastIndexOf('.') + 1), "");
+        codec.blank();
+        codec.open("static JSONObject encode" + suffix + "(" + qualifiedType + " value)");
+        codec.line("JSONObject json = new JSONObject();");
+        if (deviceCode) {
+            codec.line("json.put(\"deviceCode\", value.getDeviceCode());");
+        }
+        for (Field field : fields) {
+            encodeField(codecSource, codec, qualifiedType, field);
+        }
+        codec.line("return json;");
+        codec.close();
+        codec.blank();
+        codec.open("static " + qualifiedType + " decode" + suffix + "(JSONObject json)");
+        codec.line(qualifiedType + " value = new " + qualifiedType + "();");
+        if (deviceCode) {
+            codec.line("value.setDeviceCode(json.getString(\"deviceCode\"));");
+        }
+        for (Field field : fields) {
+            decodeField(codecSource, codec, qualifiedType, field);
+        }
+        codec.line("return value;");
+        codec.close();
+        for (Field field : fields) {
+            if (field.nestedType != null && field.kind != Kind.ENUM) {
+                codecMethods(codecSource, codec, qualifiedType + "." + field.nestedType, field.node, false);
+            }
+        }
+    }
+
+    private void encodeField(Source codecSource, ThingsSourceBuilder codec, String qualifiedType, Field field) {
+        String getter = "value.get" + StrUtil.upperFirst(field.name) + "()";
+        String key = literal(field.identifier);
+        if (field.kind == Kind.SCALAR || field.kind == Kind.OBJECT) {
+            codec.line("json.put(" + key + ", " + getter + ");");
+            return;
+        }
+        codec.open("if (" + getter + " != null)");
+        switch (field.kind) {
+            case ENUM -> codec.line("json.put(" + key + ", " + getter + ".name());");
+            case STRUCT -> codec.line("json.put(" + key + ", encode" + (qualifiedType + "." + field.nestedType).replace(".", "") + "(" + getter + "));");
+            case ARRAY -> {
+                codecSource.imports.add("com.alibaba.fastjson2.JSONArray");
+                if (field.elementKind == Kind.STRUCT) {
+                    String elementType = qualifiedType + "." + field.nestedType;
+                    String array = field.name + "Array";
+                    codec.line("JSONArray " + array + " = new JSONArray(" + getter + ".size());");
+                    codec.open("for (" + elementType + " item : " + getter + ")");
+                    codec.line(array + ".add(item == null ? null : encode" + elementType.replace(".", "") + "(item));");
+                    codec.close();
+                    codec.line("json.put(" + key + ", " + array + ");");
+                } else {
+                    codec.line("json.put(" + key + ", new JSONArray(" + getter + "));");
+                }
+            }
+            default -> throw new IllegalStateException("Unexpected field kind : " + field.kind);
+        }
+        codec.orElse();
+        codec.line("json.put(" + key + ", null);");
+        codec.close();
+    }
+
+    private void decodeField(Source codecSource, ThingsSourceBuilder codec, String qualifiedType, Field field) {
+        String setter = "value.set" + StrUtil.upperFirst(field.name);
+        String key = literal(field.identifier);
+        switch (field.kind) {
+            case SCALAR -> codec.line(setter + "(json.get" + field.elementType + "(" + key + "));");
+            case ENUM -> {
+                String local = field.name + "Value";
+                codec.line("String " + local + " = json.getString(" + key + ");");
+                codec.open("if (" + local + " != null)");
+                codec.line(setter + "(" + qualifiedType + "." + field.nestedType + ".of(" + local + "));");
+                codec.close();
+            }
+            case STRUCT -> {
+                String local = field.name + "Json";
+                codec.line("JSONObject " + local + " = json.getJSONObject(" + key + ");");
+                codec.open("if (" + local + " != null)");
+                codec.line(setter + "(decode" + (qualifiedType + "." + field.nestedType).replace(".", "") + "(" + local + "));");
+                codec.close();
+            }
+            case ARRAY -> {
+                codecSource.imports.add("com.alibaba.fastjson2.JSONArray");
+                codecSource.imports.add("java.util.ArrayList");
+                codecSource.imports.add("java.util.List");
+                String array = field.name + "Array";
+                String list = field.name + "List";
+                String elementType = field.elementKind == Kind.STRUCT ? qualifiedType + "." + field.nestedType
+                        : field.elementKind == Kind.SCALAR ? field.elementType : "Object";
+                if ("Date".equals(elementType)) {
+                    codecSource.imports.add("java.util.Date");
+                }
+                codec.line("JSONArray " + array + " = json.getJSONArray(" + key + ");");
+                codec.open("if (" + array + " != null)");
+                codec.line("List<" + elementType + "> " + list + " = new ArrayList<>(" + array + ".size());");
+                codec.open("for (int i = 0; i < " + array + ".size(); i++)");
+                if (field.elementKind == Kind.STRUCT) {
+                    codec.line("JSONObject item = " + array + ".getJSONObject(i);");
+                    codec.line(list + ".add(item == null ? null : decode" + elementType.replace(".", "") + "(item));");
+                } else if (field.elementKind == Kind.SCALAR) {
+                    codec.line(list + ".add(" + array + ".get" + field.elementType + "(i));");
+                } else {
+                    codec.line(list + ".add(" + array + ".get(i));");
+                }
+                codec.close();
+                codec.line(setter + "(" + list + ");");
+                codec.close();
+            }
+            default -> codec.line(setter + "(json.get(" + key + "));");
+        }
+    }
+
+    /**
+     * 生成客户端接口，服务输入参数作为方法参数，输出为生成的服务输出实体
+     */
+    private void client(Map<String, String> files, Source source, ThingsProfileInfo product,
+                        List<ThingsServiceInfo> services, Map<ThingsServiceInfo, String> outputs) {
+        source.imports.add(ANNOTATION_PACKAGE + "ThingsClient");
+        source.imports.add(ANNOTATION_PACKAGE + "ThingsService");
+        ThingsSourceBuilder body = new ThingsSourceBuilder();
+        body.line("@ThingsClient(productCode = " + literal(product.getCode()) + attribute("name", product.getName()) + attribute("desc", product.getDescription()) + ")");
+        body.open("public interface " + source.className);
+        List<Field> inputTypes = new ArrayList<>();
+        for (ThingsServiceInfo service : services) {
+            String serviceType = typeName(service.getIdentifier(), "Service");
+            List<Field> inputs = fields(source, tree(service.getInputData()), source.className, serviceType);
+            List<String> parameters = new ArrayList<>();
+            for (Field input : inputs) {
+                parameters.add(paramAnnotation(source, input, false, true) + " " + input.javaType + " " + input.name);
+            }
+            inputTypes.addAll(inputs);
+            body.blank();
+            if (StrUtil.isNotBlank(service.getName()) || StrUtil.isNotBlank(service.getDesc())) {
+                body.line("/**");
+                body.line(" * " + StrUtil.blankToDefault(service.getName(), service.getIdentifier()));
+                if (StrUtil.isNotBlank(service.getDesc())) {
+                    body.line(" * <p>");
+                    body.line(" * " + service.getDesc());
+                }
+                body.line(" */");
+            }
+            body.line("@ThingsService(identifier = " + literal(service.getIdentifier()) + attribute("name", service.getName())
+                    + attribute("desc", service.getDesc()) + ("sync".equals(service.getCallType()) ? ", async = false" : "") + ")");
+            String returnType = outputs.getOrDefault(service, "void");
+            body.line(returnType + " " + fieldName(service.getIdentifier()) + "(" + String.join(", ", parameters) + ");");
+        }
+        nestedTypes(source, body, inputTypes, false);
+        body.close();
+        files.put(source.path(source.className), source.render(body, null));
+    }
+
+    /**
+     * 解析字段类型，结构体和枚举使用内部类型，内部类型名与外部类名相同时加后缀
+     *
+     * @param source       需要记录导入的源文件，只解析类型时为 null
+     * @param nestedPrefix 内部类型名前缀，用于区分同一个接口中不同服务的参数类型
+     */
+    private List<Field> fields(Source source, Node node, String ownerType, String nestedPrefix) {
+        List<Field> fields = new ArrayList<>();
+        for (Node child : node.children.values()) {
+            String type = child.type();
+            String name = fieldName(child.identifier);
+            String nested = nestedPrefix + typeName(child.identifier, "Type");
+            if (nested.equals(ownerType)) {
+                nested = nested + "Type";
+            }
+            if (SCALAR_TYPES.containsKey(type)) {
+                String javaType = SCALAR_TYPES.get(type);
+                importDate(source, javaType);
+                fields.add(new Field(child, child.identifier, name, javaType, Kind.SCALAR, Kind.SCALAR, javaType, null));
+            } else if ("enum".equals(type)) {
+                fields.add(new Field(child, child.identifier, name, nested, Kind.ENUM, null, null, nested));
+            } else if ("struct".equals(type)) {
+                fields.add(new Field(child, child.identifier, name, nested, Kind.STRUCT, null, null, nested));
+            } else if ("array".equals(type)) {
+                if (source != null) {
+                    source.imports.add("java.util.List");
+                }
+                String arrayType = child.param != null && child.param.getDataType() != null ? StrUtil.nullToEmpty(child.param.getDataType().getArrayType()) : "";
+                if ("struct".equals(arrayType) || !child.children.isEmpty()) {
+                    fields.add(new Field(child, child.identifier, name, "List<" + nested + ">", Kind.ARRAY, Kind.STRUCT, null, nested));
+                } else if (SCALAR_TYPES.containsKey(arrayType)) {
+                    String elementType = SCALAR_TYPES.get(arrayType);
+                    importDate(source, elementType);
+                    fields.add(new Field(child, child.identifier, name, "List<" + elementType + ">", Kind.ARRAY, Kind.SCALAR, elementType, null));
+                } else {
+                    fields.add(new Field(child, child.identifier, name, "List<Object>", Kind.ARRAY, Kind.OBJECT, null, null));
+                }
+            } else {
+                fields.add(new Field(child, child.identifier, name, "Object", Kind.OBJECT, null, null, null));
+            }
+        }
+        return fields;
+    }
+
+    private void importDate(Source source, String javaType) {
+        if (source != null && "Date".equals(javaType)) {
+            source.imports.add("java.util.Date");
+        }
+    }
+
+    private String paramAnnotation(Source source, Field field, boolean property, boolean withIdentifier) {
+        List<String> attributes = new ArrayList<>();
+        if (withIdentifier || !field.identifier.equals(field.name)) {
+            attributes.add("identifier = " + literal(field.identifier));
+        }
+        ThingsParamInfo param = field.node.param;
+        if (param != null) {
+            addAttribute(attributes, "name", param.getName());
+            addAttribute(attributes, "desc", param.getDescription());
+            if (property && StrUtil.isNotBlank(param.getAccessMode()) && !"rw".equals(param.getAccessMode())) {
+                addAttribute(attributes, "accessMode", param.getAccessMode());
+            }
+            ThingsDataType dataType = param.getDataType();
+            if (dataType != null) {
+                if (!dataType.isRequired()) {
+                    attributes.add("required = false");
+                }
+                ThingsSpecs specs = dataType.getSpecs();
+                if (specs != null) {
+                    addAttribute(attributes, "min", specs.getMin());
+                    addAttribute(attributes, "max", specs.getMax());
+                    addAttribute(attributes, "step", specs.getStep());
+                    addAttribute(attributes, "unit", specs.getUnit());
+                    addAttribute(attributes, "unitName", specs.getUnitName());
+                    addAttribute(attributes, "size", specs.getSize());
+                }
+            }
+        }
+        if (attributes.isEmpty()) {
+            return null;
+        }
+        source.imports.add(ANNOTATION_PACKAGE + "ThingsParam");
+        return "@ThingsParam(" + String.join(", ", attributes) + ")";
+    }
+
+    private void javadoc(ThingsSourceBuilder body, ThingsParamInfo param) {
+        if (param != null && StrUtil.isNotBlank(param.getName())) {
+            body.line("/**");
+            body.line(" * " + param.getName());
+            body.line(" */");
+        }
+    }
+
+    private static void addAttribute(List<String> attributes, String name, String value) {
+        if (StrUtil.isNotBlank(value)) {
+            attributes.add(name + " = " + literal(value));
+        }
+    }
+
+    private static String attribute(String name, String value) {
+        return StrUtil.isNotBlank(value) ? ", " + name + " = " + literal(value) : "";
+    }
+
+    private static <T> List<T> sorted(Collection<T> values, Function<T, String> key) {
+        if (CollUtil.isEmpty(values)) {
+            return List.of();
+        }
+        List<T> list = new ArrayList<>(values);
+        list.sort(Comparator.comparing(key, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return list;
+    }
+
+    /**
+     * 把平铺的 parent.child 标识还原为树，按标识排序保证生成结果稳定
+     */
+    private static Node tree(Collection<ThingsParamInfo> params) {
+        Node root = new Node("", null);
+        if (params == null) {
+            return root;
+        }
+        for (ThingsParamInfo param : params) {
+            if (param == null || StrUtil.isBlank(param.getIdentifier())) {
+                continue;
+            }
+            Node node = root;
+            for (String identifier : StrUtil.splitTrim(param.getIdentifier(), '.')) {
+                node = node.children.computeIfAbsent(identifier, k -> new Node(k, null));
+            }
+            node.param = param;
+        }
+        return root;
+    }
+
+    static String typeName(String identifier, String digitPrefix) {
+        StringBuilder name = new StringBuilder();
+        for (String word : identifier.split("[^A-Za-z0-9]+")) {
+            if (!word.isEmpty()) {
+                name.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+            }
+        }
+        if (name.isEmpty() || Character.isDigit(name.charAt(0))) {
+            name.insert(0, digitPrefix);
+        }
+        return name.toString();
+    }
+
+    static String fieldName(String identifier) {
+        String name = StrUtil.lowerFirst(typeName(identifier, "_"));
+        return SourceVersion.isKeyword(name) ? name + "_" : name;
+    }
+
+    static String packageName(String code) {
+        String name = code.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "_");
+        if (name.isEmpty() || Character.isDigit(name.charAt(0))) {
+            name = "p" + name;
+        }
+        return SourceVersion.isKeyword(name) ? name + "_" : name;
+    }
+
+    private static String constantName(String value) {
+        String name = value.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toUpperCase(Locale.ROOT).replaceAll("[^A-Z0-9]+", "_");
+        name = StrUtil.strip(name, "_");
+        if (name.isEmpty() || Character.isDigit(name.charAt(0))) {
+            name = "V_" + name;
+        }
+        return name;
+    }
+
+    private enum Kind {
+        SCALAR, OBJECT, ENUM, STRUCT, ARRAY
+    }
+
+    /**
+     * @param elementType 标量或标量数组元素的 Java 类型
+     * @param nestedType  结构体、枚举或结构体数组元素的内部类型名
+     */
+    private record Field(Node node, String identifier, String name, String javaType, Kind kind,
+                         Kind elementKind, String elementType, String nestedType) {
+    }
+
+    private static final class Node {
+        private final String identifier;
+        private ThingsParamInfo param;
+        private final Map<String, Node> children = new TreeMap<>();
+
+        private Node(String identifier, ThingsParamInfo param) {
+            this.identifier = identifier;
+            this.param = param;
+        }
+
+        private String type() {
+            String type = param != null && param.getDataType() != null ? param.getDataType().getType() : null;
+            if (StrUtil.isNotBlank(type)) {
+                return type.toLowerCase(Locale.ROOT);
+            }
+            return children.isEmpty() ? "text" : "struct";
+        }
+    }
+
+    /**
+     * 一个生成的源文件，生成类体时收集导入
+     */
+    private static final class Source {
+        private final String packageName;
+        private final String className;
+        private final Set<String> imports = new TreeSet<>();
+
+        private Source(String packageName, String className) {
+            this.packageName = packageName;
+            this.className = className;
+        }
+
+        private String path(String className) {
+            return packageName.replace('.', '/') + "/" + className + ".java";
+        }
 
+        private String render(ThingsSourceBuilder body, String description) {
+            ThingsSourceBuilder source = new ThingsSourceBuilder();
+            source.line("package " + packageName + ";");
+            source.blank();
+            for (String name : imports) {
+                source.line("import " + name + ";");
+            }
+            if (!imports.isEmpty()) {
+                source.blank();
+            }
+            source.line("/**");
+            if (description != null) {
+                source.line(" * " + description);
+                source.line(" * <p>");
+            }
+            source.line(" * 由物模型 DSL 生成，请勿修改");
+            source.line(" */");
+            return source + body.toString();
+        }
     }
 }
@@ -0,0 +1,94 @@
+package cn.huangdayu.things.generate;
+
+import cn.huangdayu.things.common.dsl.ThingsInfo;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * 构建时代码生成入口，由 generateThings 任务调用
+ * <p>
+ * 读取目录下所有物模型 DSL（单个物模型、物模型数组或者包含 thingsDsl 的 DSL 信息），
+ * Java 源码写入源码目录，其他文件写入资源目录；内容没有变化的文件不重写，不再生成的文件会被删除
+ * <p>
+ * 参数：DSL 目录、Java 源码输出目录、资源输出目录、基础包名
+ *
+ * @author huangdayu
+ */
+public final class ThingsGenerator {
+
+    private ThingsGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            throw new IllegalArgumentException("Usage: ThingsGenerator <dslDir> <javaOutput> <resourcesOutput> <basePackage>");
+        }
+        Path dslDir = Path.of(args[0]);
+        Path javaOutput = Path.of(args[1]);
+        Path resourcesOutput = Path.of(args[2]);
+        ThingsGenerateEngine engine = new ThingsGenerateExecutor();
+
+        Map<String, String> files = new TreeMap<>();
+        for (ThingsInfo thingsInfo : read(dslDir)) {
+            engine.generate(thingsInfo, args[3]).forEach((path, content) ->
+                    files.merge(path, content, (exists, added) -> path.startsWith("META-INF/services/") ? exists + added : added));
+        }
+
+        Set<Path> written = new HashSet<>();
+        for (Map.Entry<String, String> entry : files.entrySet()) {
+            Path target = (entry.getKey().endsWith(".java") ? javaOutput : resourcesOutput).resolve(entry.getKey());
+            written.add(target.toAbsolutePath().normalize());
+            byte[] content = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            if (Files.exists(target) && Arrays.equals(Files.readAllBytes(target), content)) {
+                continue;
+            }
+            Files.createDirectories(target.getParent());
+            Files.write(target, content);
+        }
+        clean(javaOutput, written);
+        clean(resourcesOutput, written);
+    }
+
+    private static List<ThingsInfo> read(Path dslDir) throws IOException {
+        List<ThingsInfo> thingsInfos = new ArrayList<>();
+        if (!Files.isDirectory(dslDir)) {
+            return thingsInfos;
+        }
+        List<Path> dslFiles;
+        try (Stream<Path> paths = Files.walk(dslDir)) {
+            dslFiles = paths.filter(path -> path.toString().endsWith(".json")).sorted().toList();
+        }
+        for (Path dslFile : dslFiles) {
+            Object json = JSON.parse(Files.readString(dslFile, StandardCharsets.UTF_8));
+            if (json instanceof JSONArray array) {
+                thingsInfos.addAll(array.toJavaList(ThingsInfo.class));
+            } else if (json instanceof JSONObject object && object.containsKey("thingsDsl")) {
+                thingsInfos.addAll(object.getJSONArray("thingsDsl").toJavaList(ThingsInfo.class));
+            } else if (json instanceof JSONObject object) {
+                thingsInfos.add(object.toJavaObject(ThingsInfo.class));
+            }
+        }
+        return thingsInfos;
+    }
+
+    private static void clean(Path output, Set<Path> written) throws IOException {
+        if (!Files.isDirectory(output)) {
+            return;
+        }
+        List<Path> stale;
+        try (Stream<Path> paths = Files.walk(output)) {
+            stale = paths.filter(Files::isRegularFile).filter(path -> !written.contains(path.toAbsolutePath().normalize())).toList();
+        }
+        for (Path path : stale) {
+            Files.delete(path);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package cn.huangdayu.things.generate;
+
+import cn.huangdayu.things.common.annotation.*;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+import static cn.huangdayu.things.common.constants.ThingsConstants.THINGS_ANNOTATION_INDEX;
+
+/**
+ * 编译期生成注解索引，启动注册时直接使用索引中的方法，不再反射扫描每个方法的注解
+ * <p>
+ * 索引每行一条，字段以制表符分隔：
+ * <pre>
+ * C  类名  方法数  方法签名哈希
+ * M  类名  声明方法的类名  方法名  参数类型（逗号分隔）
+ * </pre>
+ * 方法数和方法签名哈希按类及其父类（不含 java.* 中的类）声明的方法计算，签名为 {@code 方法名(参数类型,...)}，
+ * 按字典序排序后以换行连接取 {@link String#hashCode()}；运行时按同样的规则校验，类在编译后被修改时回退到反射扫描
+ * <p>
+ * 使用方式：annotationProcessor project(':things-codegen')
+ *
+ * @author huangdayu
+ */
+@SupportedAnnotationTypes({
+        "cn.huangdayu.things.common.annotation.Things",
+        "cn.huangdayu.things.common.annotation.ThingsListener"})
+public class ThingsIndexProcessor extends AbstractProcessor {
+
+    private static final Set<String> FUNCTION_ANNOTATIONS = Set.of(ThingsService.class.getName(),
+            ThingsEventListener.class.getName(), ThingsPropertyListener.class.getName());
+
+    private final Set<String> entries = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            write();
+            return false;
+        }
+        for (TypeElement annotation : annotations) {
+            for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(annotation))) {
+                entries.add(String.join("\t", "C", binaryName(type), signature(type)));
+                indexMethods(type);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 类及其父类声明的方法数和方法签名哈希，运行时用来判断索引是否与类一致
+     */
+    private String signature(TypeElement type) {
+        List<String> signatures = new ArrayList<>();
+        for (TypeElement current = type; current != null && !current.getQualifiedName().toString().startsWith("java."); current = superclass(current)) {
+            for (ExecutableElement method : ElementFilter.methodsIn(current.getEnclosedElements())) {
+                signatures.add(method.getSimpleName() + "(" + parameterTypes(method) + ")");
+            }
+        }
+        Collections.sort(signatures);
+        return signatures.size() + "\t" + Integer.toHexString(String.join("\n", signatures).hashCode());
+    }
+
+    private TypeElement superclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        return superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+    }
+
+    private String parameterTypes(ExecutableElement method) {
+        StringJoiner parameters = new StringJoiner(",");
+        for (VariableElement parameter : method.getParameters()) {
+            parameters.add(processingEnv.getTypeUtils().erasure(parameter.asType()).toString());
+        }
+        return parameters.toString();
+    }
+
+    /**
+     * 包括继承的方法，记录声明方法的类，运行时在该类上查找
+     */
+    private void indexMethods(TypeElement type) {
+        String typeName = binaryName(type);
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            if (isFunction(method)) {
+                entries.add(String.join("\t", "M", typeName, binaryName((TypeElement) method.getEnclosingElement()),
+                        method.getSimpleName(), parameterTypes(method)));
+            }
+        }
+    }
+
+    /**
+     * 直接标注或通过组合注解标注
+     */
+    private boolean isFunction(ExecutableElement method) {
+        for (AnnotationMirror mirror : method.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+            if (FUNCTION_ANNOTATIONS.contains(annotationType.getQualifiedName().toString())) {
+                return true;
+            }
+            for (AnnotationMirror meta : annotationType.getAnnotationMirrors()) {
+                TypeElement metaType = (TypeElement) meta.getAnnotationType().asElement();
+                if (FUNCTION_ANNOTATIONS.contains(metaType.getQualifiedName().toString())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private String binaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private void write() {
+        if (entries.isEmpty()) {
+            return;
+        }
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", THINGS_ANNOTATION_INDEX);
+            try (Writer writer = file.openWriter()) {
+                for (String entry : entries) {
+                    writer.write(entry);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Things annotation index write failed : " + e.getMessage());
+        }
+    }
+}
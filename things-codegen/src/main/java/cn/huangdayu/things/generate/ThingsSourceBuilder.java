@@ -0,0 +1,73 @@
+package cn.huangdayu.things.generate;
+
+/**
+ * 按缩进拼接 Java 源码
+ *
+ * @author huangdayu
+ */
+final class ThingsSourceBuilder {
+
+    private static final String INDENT = "    ";
+
+    private final StringBuilder source = new StringBuilder();
+    private int level;
+
+    ThingsSourceBuilder line(String line) {
+        if (!line.isEmpty()) {
+            source.append(INDENT.repeat(level)).append(line);
+        }
+        source.append('\n');
+        return this;
+    }
+
+    ThingsSourceBuilder blank() {
+        return line("");
+    }
+
+    /**
+     * 输出代码块开始，之后的行增加一级缩进
+     */
+    ThingsSourceBuilder open(String line) {
+        line(line + " {");
+        level++;
+        return this;
+    }
+
+    ThingsSourceBuilder close() {
+        level--;
+        return line("}");
+    }
+
+    /**
+     * 结束 if 代码块并开始 else 代码块
+     */
+    ThingsSourceBuilder orElse() {
+        level--;
+        line("} else {");
+        level++;
+        return this;
+    }
+
+    /**
+     * 生成 Java 字符串字面量
+     */
+    static String literal(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> literal.append("\\\"");
+                case '\\' -> literal.append("\\\\");
+                case '\n' -> literal.append("\\n");
+                case '\r' -> literal.append("\\r");
+                case '\t' -> literal.append("\\t");
+                default -> literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    @Override
+    public String toString() {
+        return source.toString();
+    }
+}
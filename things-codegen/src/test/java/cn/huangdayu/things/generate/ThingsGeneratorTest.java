@@ -0,0 +1,157 @@
+package cn.huangdayu.things.generate;
+
+import cn.huangdayu.things.common.message.ThingsEventMessage;
+import cn.huangdayu.things.common.message.ThingsPayloadCodec;
+import cn.huangdayu.things.common.message.ThingsPayloadCodecs;
+import cn.huangdayu.things.engine.wrapper.ThingsProperty;
+import cn.huangdayu.things.engine.wrapper.ThingsPropertyAccessor;
+import cn.huangdayu.things.engine.wrapper.ThingsPropertyStore;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.alibaba.fastjson2.JSONWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * 代码生成测试，生成结果与 golden 目录下的文件逐个比较
+ * <p>
+ * 生成逻辑有意修改时，用新的生成结果替换 golden 目录下的文件
+ *
+ * @author huangdayu
+ */
+public class ThingsGeneratorTest {
+
+    private static final String BASE_PACKAGE = "cn.huangdayu.things.generated";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Path resource(String name) throws Exception {
+        return Path.of(Objects.requireNonNull(ThingsGeneratorTest.class.getResource(name)).toURI());
+    }
+
+    private static Map<String, String> read(Path dir) throws Exception {
+        Map<String, String> files = new TreeMap<>();
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.filter(Files::isRegularFile).toList()) {
+                files.put(dir.relativize(path).toString().replace('\\', '/'), Files.readString(path));
+            }
+        }
+        return files;
+    }
+
+    private Path generate() throws Exception {
+        Path output = folder.newFolder("output").toPath();
+        ThingsGenerator.main(new String[]{resource("/things").toString(), output.resolve("java").toString(),
+                output.resolve("resources").toString(), BASE_PACKAGE});
+        return output;
+    }
+
+    @Test
+    public void generatedSourcesMatchGoldenFiles() throws Exception {
+        Path output = generate();
+        Path golden = resource("/golden");
+        for (String dir : List.of("java", "resources")) {
+            Map<String, String> expected = read(golden.resolve(dir));
+            Map<String, String> actual = read(output.resolve(dir));
+            assertEquals(expected.keySet(), actual.keySet());
+            for (Map.Entry<String, String> entry : expected.entrySet()) {
+                assertEquals(entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+            }
+        }
+    }
+
+    /**
+     * 编译生成的源码，连同生成的资源文件一起放到编译输出目录
+     */
+    private Path compile() throws Exception {
+        Path output = generate();
+        Path classes = folder.newFolder("classes").toPath();
+        List<String> arguments = new ArrayList<>(List.of("-proc:none", "-classpath", System.getProperty("java.class.path"),
+                "-d", classes.toString()));
+        try (Stream<Path> paths = Files.walk(output.resolve("java"))) {
+            paths.filter(path -> path.toString().endsWith(".java")).forEach(path -> arguments.add(path.toString()));
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertEquals(0, compiler.run(null, null, null, arguments.toArray(new String[0])));
+        Path resources = output.resolve("resources");
+        try (Stream<Path> paths = Files.walk(resources)) {
+            for (Path path : paths.filter(Files::isRegularFile).toList()) {
+                Path target = classes.resolve(resources.relativize(path).toString());
+                Files.createDirectories(target.getParent());
+                Files.copy(path, target);
+            }
+        }
+        return classes;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void generatedEventCodecMatchesWriteNulls() throws Exception {
+        Path classes = compile();
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{classes.toUri().toURL()}, getClass().getClassLoader())) {
+            Class<?> eventClass = classLoader.loadClass(BASE_PACKAGE + ".lamp.LampOverheatEvent");
+            ThingsPayloadCodec<Object> codec = (ThingsPayloadCodec<Object>) classLoader
+                    .loadClass(BASE_PACKAGE + ".lamp.LampOverheatEventCodec").getConstructor().newInstance();
+            Object event = eventClass.getConstructor().newInstance();
+            eventClass.getMethod("setDeviceCode", String.class).invoke(event, "d1");
+            // 空字段与设备标识都和之前的 JSON.toJSON(event, WriteNulls) 一致
+            JSONObject encoded = codec.encode(event);
+            assertEquals(JSON.toJSON(event, JSONWriter.Feature.WriteNulls), encoded);
+            assertTrue(encoded.containsKey("temperature"));
+            assertEquals("d1", ((ThingsEventMessage) codec.decode(encoded)).getDeviceCode());
+        }
+    }
+
+    @Test
+    public void containerCodecsAreRegisteredAndUnregistered() throws Exception {
+        Path classes = compile();
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{classes.toUri().toURL()}, getClass().getClassLoader())) {
+            Class<?> propertiesClass = classLoader.loadClass(BASE_PACKAGE + ".lamp.LampProperties");
+            assertNull(ThingsPayloadCodecs.getCodec(propertiesClass));
+            ThingsPayloadCodecs.register("lamp", classLoader);
+            try {
+                assertNotNull(ThingsPayloadCodecs.getCodec(propertiesClass));
+                assertSame(classLoader, ThingsPayloadCodecs.getCodec(propertiesClass).getClass().getClassLoader());
+            } finally {
+                ThingsPayloadCodecs.unregister("lamp");
+            }
+            assertNull(ThingsPayloadCodecs.getCodec(propertiesClass));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void enumPropertyRoundTripsThroughStoreAndCodec() throws Exception {
+        Path classes = compile();
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{classes.toUri().toURL()}, getClass().getClassLoader())) {
+            Class<?> propertiesClass = classLoader.loadClass(BASE_PACKAGE + ".lamp.LampProperties");
+            ThingsPayloadCodec<Object> codec = (ThingsPayloadCodec<Object>) classLoader
+                    .loadClass(BASE_PACKAGE + ".lamp.LampPropertiesCodec").getConstructor().newInstance();
+            ThingsPropertyAccessor accessor = new ThingsPropertyAccessor(propertiesClass);
+            ThingsPropertyStore store = new ThingsPropertyStore(
+                    new ThingsProperty(null, null, propertiesClass.getConstructor().newInstance()), accessor);
+            // 设备按 DSL 原始值设置
+            Object decoded = codec.decode(JSONObject.of("mode", "night"));
+            Object night = accessor.get(decoded, "mode");
+            assertNotNull(night);
+            store.set("d1", "mode", night);
+            // 属性上报与编解码器使用同一种表示，上报的值再次设置不会清空属性
+            JSONObject reported = store.toJson("d1");
+            assertEquals(codec.encode(decoded).get("mode"), reported.get("mode"));
+            assertSame(night, accessor.get(codec.decode(reported), "mode"));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package cn.huangdayu.things.generate;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static cn.huangdayu.things.common.constants.ThingsConstants.THINGS_ANNOTATION_INDEX;
+import static org.junit.Assert.*;
+
+/**
+ * 注解索引生成测试
+ *
+ * @author huangdayu
+ */
+public class ThingsIndexProcessorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void indexesThingsTypesAndFunctions() throws Exception {
+        Path sources = folder.newFolder("src").toPath();
+        Path classes = folder.newFolder("classes").toPath();
+        Path source = sources.resolve("DemoService.java");
+        Files.writeString(source, """
+                package demo;
+
+                import cn.huangdayu.things.common.annotation.Things;
+                import cn.huangdayu.things.common.annotation.ThingsService;
+
+                @Things(productCode = "p1")
+                public class DemoService {
+
+                    @ThingsService(identifier = "switch")
+                    public String switchOn(String mode, int[] levels) {
+                        return mode;
+                    }
+
+                    public void helper() {
+                    }
+                }
+                """, StandardCharsets.UTF_8);
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        int result = compiler.run(null, null, null, "-proc:only", "-processor", ThingsIndexProcessor.class.getName(),
+                "-classpath", System.getProperty("java.class.path"), "-d", classes.toString(), source.toString());
+        assertEquals(0, result);
+        File index = classes.resolve(THINGS_ANNOTATION_INDEX).toFile();
+        assertTrue(index.isFile());
+        List<String> lines = Files.readAllLines(index.toPath(), StandardCharsets.UTF_8);
+        String hash = Integer.toHexString(String.join("\n", "helper()", "switchOn(java.lang.String,int[])").hashCode());
+        assertEquals(List.of("C\tdemo.DemoService\t2\t" + hash,
+                "M\tdemo.DemoService\tdemo.DemoService\tswitchOn\tjava.lang.String,int[]"), lines);
+    }
+}
@@ -0,0 +1,17 @@
+package cn.huangdayu.things.generated.lamp;
+
+/**
+ * 由物模型 DSL 生成，请勿修改
+ */
+public class LampBlinkOutput {
+
+    private String result;
+
+    public String getResult() {
+        return result;
+    }
+
+    public void setResult(String result) {
+        this.result = result;
+    }
+}
@@ -0,0 +1,39 @@
+package cn.huangdayu.things.generated.lamp;
+
+import cn.huangdayu.things.common.message.ThingsPayloadCodec;
+import com.alibaba.fastjson2.JSONObject;
+
+/**
+ * {@link LampBlinkOutput} 消息体编解码器
+ * <p>
+ * 由物模型 DSL 生成，请勿修改
+ */
+public final class LampBlinkOutputCodec implements ThingsPayloadCodec<LampBlinkOutput> {
+
+    @Override
+    public Class<LampBlinkOutput> type() {
+        return LampBlinkOutput.class;
+    }
+
+    @Override
+    public JSONObject encode(LampBlinkOutput value) {
+        return encodeLampBlinkOutput(value);
+    }
+
+    @Override
+    public LampBlinkOutput decode(JSONObject payload) {
+        return decodeLampBlinkOutput(payload);
+    }
+
+    static JSONObject encodeLampBlinkOutput(LampBlinkOutput value) {
+        JSONObject json = new JSONObject();
+        json.put("result", value.getResult());
+        return json;
+    }
+
+    static LampBlinkOutput decodeLampBlinkOutput(JSONObject json) {
+        LampBlinkOutput value = new LampBlinkOutput();
+        value.setResult(json.getString("result"));
+        return value;
+    }
+}
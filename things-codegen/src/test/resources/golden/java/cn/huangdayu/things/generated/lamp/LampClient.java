@@ -0,0 +1,18 @@
+package cn.huangdayu.things.generated.lamp;
+
+import cn.huangdayu.things.common.annotation.ThingsClient;
+import cn.huangdayu.things.common.annotation.ThingsParam;
+import cn.huangdayu.things.common.annotation.ThingsService;
+
+/**
+ * 由物模型 DSL 生成，请勿修改
+ */
+@ThingsClient(productCode = "lamp", name = "智能灯")
+public interface LampClient {
+
+    /**
+     * 闪烁
+     */
+    @ThingsService(identifier = "blink", name = "闪烁", async = false)
+    LampBlinkOutput blink(@ThingsParam(identifier = "times", name = "次数") Integer times);
+}
@@ -0,0 +1,37 @@
+package cn.huangdayu.things.generated.lamp;
+
+import cn.huangdayu.things.common.annotation.ThingsEventEntity;
+import cn.huangdayu.things.common.annotation.ThingsParam;
+import cn.huangdayu.things.common.message.ThingsEventMessage;
+
+/**
+ * 由物模型 DSL 生成，请勿修改
+ */
+@ThingsEventEntity(productCode = "lamp", identifier = "overheat", type = "alarm", name = "过热")
+public class LampOverheatEvent implements ThingsEventMessage {
+
+    private String deviceCode;
+
+    /**
+     * 温度
+     */
+    @ThingsParam(name = "温度")
+    private Double temperature;
+
+    @Override
+    public String getDeviceCode() {
+        return deviceCode;
+    }
+
+    public void setDeviceCode(String deviceCode) {
+        this.deviceCode = deviceCode;
+    }
+
+    public Double getTemperature() {
+        return temperature;
+    }
+
+    public void setTemperature(Double temperature) {
+        this.temperature = temperature;
+    }
+}
@@ -0,0 +1,41 @@
+package cn.huangdayu.things.generated.lamp;
+
+import cn.huangdayu.things.common.message.ThingsPayloadCodec;
+import com.alibaba.fastjson2.JSONObject;
+
+/**
+ * {@link LampOverheatEvent} 消息体编解码器
+ * <p>
+ * 由物模型 DSL 生成，请勿修改
+ */
+public final class LampOverheatEventCodec implements ThingsPayloadCodec<LampOverheatEvent> {
+
+    @Override
+    public Class<LampOverheatEvent> type() {
+        return LampOverheatEvent.class;
+    }
+
+    @Override
+    public JSONObject encode(LampOverheatEvent value) {
+        return encodeLampOverheatEvent(value);
+    }
+
+    @Override
+    public LampOverheatEvent decode(JSONObject payload) {
+        return decodeLampOverheatEvent(payload);
+    }
+
+    static JSONObject encodeLampOverheatEvent(LampOverheatEvent value) {
+        JSONObject json = new JSONObject();
+        json.put("deviceCode", value.getDeviceCode());
+        json.put("temperature", value.getTemperature());
+        return json;
+    }
+
+    static LampOverheatEvent decodeLampOverheatEvent(JSONObject json) {
+        LampOverheatEvent value = new LampOverheatEvent();
+        value.setDeviceCode(json.getString("deviceCode"));
+        value.setTemperature(json.getDouble("temperature"));
+        return value;
+    }
+}
@@ -0,0 +1,77 @@
+package cn.huangdayu.things.generated.lamp;
+
+import cn.huangdayu.things.common.annotation.ThingsParam;
+import cn.huangdayu.things.common.annotation.ThingsPropertyEntity;
+
+/**
+ * 由物模型 DSL 生成，请勿修改
+ */
+@ThingsPropertyEntity(productCode = "lamp", name = "智能灯")
+public class LampProperties {
+
+    /**
+     * 亮度
+     */
+    @ThingsParam(name = "亮度", min = "0", max = "100", unit = "%")
+    private Integer brightness;
+
+    /**
+     * 模式
+     */
+    @ThingsParam(name = "模式")
+    private Mode mode;
+
+    /**
+     * 开关
+     */
+    @ThingsParam(name = "开关")
+    private Boolean power;
+
+    public Integer getBrightness() {
+        return brightness;
+    }
+
+    public void setBrightness(Integer brightness) {
+        this.brightness = brightness;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public Boolean getPower() {
+        return power;
+    }
+
+    public void setPower(Boolean power) {
+        this.power = power;
+    }
+
+    public enum Mode {
+        AUTO("auto"),
+        NIGHT("night");
+
+        private final String value;
+
+        Mode(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public static Mode of(String value) {
+            for (Mode item : values()) {
+                if (item.name().equals(value) || item.value.equals(value)) {
+                    return item;
+                }
+            }
+            return null;
+        }
+    }
+}
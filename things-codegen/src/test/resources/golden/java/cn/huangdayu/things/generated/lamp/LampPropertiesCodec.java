@@ -0,0 +1,50 @@
+package cn.huangdayu.things.generated.lamp;
+
+import cn.huangdayu.things.common.message.ThingsPayloadCodec;
+import com.alibaba.fastjson2.JSONObject;
+
+/**
+ * {@link LampProperties} 消息体编解码器
+ * <p>
+ * 由物模型 DSL 生成，请勿修改
+ */
+public final class LampPropertiesCodec implements ThingsPayloadCodec<LampProperties> {
+
+    @Override
+    public Class<LampProperties> type() {
+        return LampProperties.class;
+    }
+
+    @Override
+    public JSONObject encode(LampProperties value) {
+        return encodeLampProperties(value);
+    }
+
+    @Override
+    public LampProperties decode(JSONObject payload) {
+        return decodeLampProperties(payload);
+    }
+
+    static JSONObject encodeLampProperties(LampProperties value) {
+        JSONObject json = new JSONObject();
+        json.put("brightness", value.getBrightness());
+        if (value.getMode() != null) {
+            json.put("mode", value.getMode().name());
+        } else {
+            json.put("mode", null);
+        }
+        json.put("power", value.getPower());
+        return json;
+    }
+
+    static LampProperties decodeLampProperties(JSONObject json) {
+        LampProperties value = new LampProperties();
+        value.setBrightness(json.getInteger("brightness"));
+        String modeValue = json.getString("mode");
+        if (modeValue != null) {
+            value.setMode(LampProperties.Mode.of(modeValue));
+        }
+        value.setPower(json.getBoolean("power"));
+        return value;
+    }
+}
@@ -51,4 +51,11 @@ public @interface ThingsEventListener {
      */
     String desc() default "";
 
+    /**
+     * 是否按设备顺序执行，同一设备（productCode#deviceCode）的事件按到达顺序逐个处理，不同设备并行
+     *
+     * @return
+     */
+    boolean ordered() default false;
+
 }
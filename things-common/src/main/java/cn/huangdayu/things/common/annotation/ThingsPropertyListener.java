@@ -40,4 +40,12 @@ public @interface ThingsPropertyListener {
      * @return
      */
     String desc() default "";
+
+    /**
+     * 是否按设备顺序执行，同一设备（productCode#deviceCode）的属性按到达顺序逐个处理，不同设备并行
+     *
+     * @return
+     */
+    boolean ordered() default false;
+
 }
@@ -4,42 +4,35 @@ import cn.huangdayu.things.common.message.JsonThingsMessage;
 import cn.huangdayu.things.common.wrapper.ThingsAsync;
 import cn.huangdayu.things.common.wrapper.ThingsRequest;
 import cn.huangdayu.things.common.wrapper.ThingsResponse;
-import cn.hutool.cache.Cache;
-import cn.hutool.cache.CacheUtil;
 import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
 
 /**
  * @author huangdayu
  */
+@Slf4j
 public class ThingsAsyncManager {
 
-    private static final Cache<String, ThingsAsync> THINGS_ASYNC_CACHE = CacheUtil.newTimedCache(20 * 1000);
-
-
-    static {
-        THINGS_ASYNC_CACHE.setListener((key, thingsAsync) -> {
-            if (!thingsAsync.isCompleted()) {
-                asAsyncResponse(thingsAsync, thingsAsync.getThingsRequest().getJtm().timeout());
-            }
-        });
-    }
+    /**
+     * 100 毫秒一个刻度，512 个槽，一圈约 51 秒，更长的超时在后续轮次到期
+     */
+    private static final ThingsPendingTable THINGS_PENDING_TABLE = new ThingsPendingTable(100, 512, ThingsAsyncManager::asAsyncTimeout);
 
     public static boolean asAsyncRequest(ThingsRequest request, ThingsResponse response) {
         if (response.getConsumer() == null && response.getFuture() == null) {
             return false;
         }
-        if (THINGS_ASYNC_CACHE.containsKey(request.getJtm().getId())) {
-            return true;
-        }
-        ThingsAsync thingsAsync = new ThingsAsync(request.getJtm().getId(), request.getJtm().getTimeout(), false, request, response);
-        THINGS_ASYNC_CACHE.put(thingsAsync.getAsyncId(), thingsAsync, thingsAsync.getTimeout());
+        JsonThingsMessage jtm = request.getJtm();
+        THINGS_PENDING_TABLE.register(new ThingsAsync(jtm.getId(), jtm.getTimeout(), false, request, response));
         return true;
     }
 
     public static boolean asAsyncResponse(ThingsRequest request, ThingsResponse response) {
         JsonThingsMessage jtm = request.getJtm();
         if (jtm != null && StrUtil.isNotBlank(jtm.getBaseMetadata().getErrorCode())) {
-            ThingsAsync thingsAsync = THINGS_ASYNC_CACHE.get(jtm.getId());
+            ThingsAsync thingsAsync = THINGS_PENDING_TABLE.complete(jtm.getId());
             if (thingsAsync != null) {
                 asAsyncResponse(thingsAsync, jtm);
                 return true;
@@ -48,6 +41,23 @@ public class ThingsAsyncManager {
         return false;
     }
 
+    /**
+     * 等待响应的异步请求数
+     */
+    public static int pendingSize() {
+        return THINGS_PENDING_TABLE.size();
+    }
+
+    private static void asAsyncTimeout(List<ThingsAsync> thingsAsyncs) {
+        for (ThingsAsync thingsAsync : thingsAsyncs) {
+            try {
+                asAsyncResponse(thingsAsync, thingsAsync.getThingsRequest().getJtm().timeout());
+            } catch (Exception e) {
+                log.error("Things async {} timeout callback exception", thingsAsync.getAsyncId(), e);
+            }
+        }
+    }
+
     private static void asAsyncResponse(ThingsAsync thingsAsync, JsonThingsMessage jtm) {
         ThingsResponse thingsResponse = thingsAsync.getThingsResponse();
         thingsResponse.setJtm(jtm);
@@ -0,0 +1,122 @@
+package cn.huangdayu.things.common.async;
+
+import cn.huangdayu.things.common.exception.ThingsException;
+import cn.huangdayu.things.common.message.JsonThingsMessage;
+import cn.huangdayu.things.common.message.ThingsMethod;
+import cn.hutool.core.util.StrUtil;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import static cn.huangdayu.things.common.constants.ThingsConstants.ErrorCodes.GATEWAY_TIMEOUT;
+
+/**
+ * 消息截止时间，处理入站消息时绑定到当前线程，期间发出的请求继承剩余的时间预算，
+ * 截止时间写入元数据随消息跨节点传递
+ * <p>
+ * 只有发送方在元数据中写入了截止时间的消息才会过期，没有截止时间的消息不受影响；
+ * 过期后只丢弃已经没有意义的消息：等待响应的服务请求和 QoS 0 的消息；响应消息和 QoS 1/2 的事件仍然处理
+ *
+ * @author huangdayu
+ */
+public final class ThingsDeadline {
+
+    public static final long NONE = Long.MAX_VALUE;
+
+    private static final ThreadLocal<Long> CURRENT = new ThreadLocal<>();
+    private static final LongAdder DROPPED = new LongAdder();
+
+    private ThingsDeadline() {
+    }
+
+    /**
+     * 绑定当前线程的截止时间
+     *
+     * @return 之前绑定的截止时间，用于 {@link #restore(Long)}
+     */
+    public static Long bind(long deadline) {
+        Long previous = CURRENT.get();
+        CURRENT.set(deadline);
+        return previous;
+    }
+
+    public static void restore(Long previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * 当前线程的截止时间，没有绑定时返回 {@link #NONE}
+     */
+    public static long current() {
+        Long deadline = CURRENT.get();
+        return deadline == null ? NONE : deadline;
+    }
+
+    /**
+     * 过期后是否可以丢弃
+     */
+    public static boolean droppable(JsonThingsMessage jtm) {
+        if (!jtm.expired() || StrUtil.isNotBlank(jtm.getBaseMetadata().getErrorCode())) {
+            return false;
+        }
+        ThingsMethod thingsMethod = jtm.getThingsMethod();
+        return jtm.getQos() == 0 || (thingsMethod != null && thingsMethod.isServiceRequest());
+    }
+
+    /**
+     * 判断并记录丢弃的过期消息
+     *
+     * @return 是否丢弃
+     */
+    public static boolean drop(JsonThingsMessage jtm) {
+        if (droppable(jtm)) {
+            DROPPED.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 丢弃的过期消息数
+     */
+    public static long droppedCount() {
+        return DROPPED.sum();
+    }
+
+    /**
+     * 发出的请求继承当前线程的剩余预算，超时时间取两者中较小的，截止时间写入元数据
+     * <p>
+     * 直接修改传入消息的超时时间和元数据，消息即将发出，调用方不应再把同一个消息用于其他请求
+     *
+     * @throws ThingsException 预算已经用完
+     */
+    public static JsonThingsMessage propagate(JsonThingsMessage jtm) {
+        return propagate(jtm, current());
+    }
+
+    /**
+     * 按指定的继承截止时间传递，用于在调用线程上取得截止时间、之后在其他线程发出的请求
+     *
+     * @param inherited 继承的截止时间，没有时为 {@link #NONE}
+     * @throws ThingsException 预算已经用完
+     */
+    public static JsonThingsMessage propagate(JsonThingsMessage jtm, long inherited) {
+        long deadline = Math.min(inherited, jtm.deadline());
+        if (deadline == NONE) {
+            return jtm;
+        }
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            DROPPED.increment();
+            throw new ThingsException(jtm, GATEWAY_TIMEOUT, "Things deadline exceeded.");
+        }
+        if (remaining < jtm.getTimeout()) {
+            jtm.setTimeout(remaining);
+        }
+        jtm.setBaseMetadata(baseThingsMetadata -> baseThingsMetadata.setDeadline(deadline));
+        return jtm;
+    }
+}
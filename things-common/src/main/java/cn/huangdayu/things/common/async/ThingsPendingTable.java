@@ -0,0 +1,187 @@
+package cn.huangdayu.things.common.async;
+
+import cn.huangdayu.things.common.factory.ThreadPoolFactory;
+import cn.huangdayu.things.common.wrapper.ThingsAsync;
+import cn.hutool.core.collection.ListUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static cn.huangdayu.things.common.enums.ThingsExecutorType.TIMEOUT;
+
+/**
+ * 异步请求等待表，按消息 id 登记，超时由时间轮驱动
+ * <p>
+ * 登记、完成、超时都是 O(1)：每个槽按 id 保存到期条目，完成时同时从等待表和所在槽中移除；
+ * 登记不加锁，只放进等待表和登记收件箱，由时间轮线程在处理刻度前取出放进对应的槽，
+ * 到期刻度已经处理过的登记直接超时，不会等时间轮转一圈；每个刻度到期的请求分批交给超时通道回调
+ *
+ * @author huangdayu
+ */
+@Slf4j
+final class ThingsPendingTable {
+
+    private static final int BATCH_SIZE = 256;
+
+    private final long tickNanos;
+    private final int mask;
+    private final Map<String, Deadline>[] wheel;
+    private final Map<String, Deadline> pending = new ConcurrentHashMap<>();
+    /**
+     * 还没有放进时间轮的登记，只由时间轮线程取出
+     */
+    private final Queue<Deadline> inbox = new ConcurrentLinkedQueue<>();
+    private final Consumer<List<ThingsAsync>> expiredConsumer;
+    private final long startTime = System.nanoTime();
+
+    /**
+     * 下一个待处理的刻度，只在时间轮线程读写
+     */
+    private long tick;
+    private volatile ScheduledFuture<?> ticker;
+
+    /**
+     * @param tickMillis      刻度时长
+     * @param wheelSize       时间轮槽数，向上取整为 2 的幂
+     * @param expiredConsumer 超时回调，每次回调一批请求
+     */
+    @SuppressWarnings("unchecked")
+    ThingsPendingTable(long tickMillis, int wheelSize, Consumer<List<ThingsAsync>> expiredConsumer) {
+        int size = Integer.highestOneBit(Math.max(2, wheelSize) - 1) << 1;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.mask = size - 1;
+        this.wheel = new Map[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ConcurrentHashMap<>();
+        }
+        this.expiredConsumer = expiredConsumer;
+    }
+
+    /**
+     * 登记请求，同一个 id 已经在等待时不重复登记
+     */
+    boolean register(ThingsAsync thingsAsync) {
+        String asyncId = thingsAsync.getAsyncId();
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(thingsAsync.getTimeout() == null ? 0 : thingsAsync.getTimeout());
+        long expectTick = (System.nanoTime() - startTime + timeoutNanos + tickNanos - 1) / tickNanos;
+        Deadline deadline = new Deadline(thingsAsync, expectTick);
+        if (pending.putIfAbsent(asyncId, deadline) != null) {
+            return false;
+        }
+        inbox.offer(deadline);
+        if (ticker == null) {
+            start();
+        }
+        return true;
+    }
+
+    ThingsAsync get(String asyncId) {
+        Deadline deadline = pending.get(asyncId);
+        return deadline == null ? null : deadline.thingsAsync;
+    }
+
+    /**
+     * 完成请求，返回 null 表示请求不存在或已超时
+     */
+    ThingsAsync complete(String asyncId) {
+        Deadline deadline = pending.remove(asyncId);
+        if (deadline == null) {
+            return null;
+        }
+        wheel[slot(deadline.tick)].remove(asyncId, deadline);
+        return deadline.thingsAsync;
+    }
+
+    int size() {
+        return pending.size();
+    }
+
+    private synchronized void start() {
+        if (ticker == null) {
+            long tickMillis = TimeUnit.NANOSECONDS.toMillis(tickNanos);
+            ticker = ThreadPoolFactory.getScheduler().scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 处理到当前时间为止的所有刻度，调度延迟时一次补齐
+     */
+    private void tick() {
+        try {
+            long target = (System.nanoTime() - startTime) / tickNanos;
+            List<ThingsAsync> expired = new ArrayList<>();
+            drainInbox(expired);
+            for (long current = tick; current <= target; current++) {
+                expire(wheel[slot(current)], current, expired);
+                tick = current + 1;
+            }
+            for (List<ThingsAsync> batch : ListUtil.partition(expired, BATCH_SIZE)) {
+                ThreadPoolFactory.getExecutor(TIMEOUT).execute(() -> expiredConsumer.accept(batch));
+            }
+        } catch (Exception e) {
+            log.error("Things pending table tick exception", e);
+        }
+    }
+
+    /**
+     * 把新登记的请求放进到期刻度所在的槽；已完成的跳过，到期刻度已经处理过的直接超时
+     */
+    private void drainInbox(List<ThingsAsync> expired) {
+        Deadline deadline;
+        while ((deadline = inbox.poll()) != null) {
+            String asyncId = deadline.thingsAsync.getAsyncId();
+            if (pending.get(asyncId) != deadline) {
+                continue;
+            }
+            if (deadline.tick < tick) {
+                if (pending.remove(asyncId, deadline)) {
+                    expired.add(deadline.thingsAsync);
+                }
+                continue;
+            }
+            wheel[slot(deadline.tick)].put(asyncId, deadline);
+            // 放进槽之前已经完成的请求，complete 没有从槽中移除，这里补上
+            if (pending.get(asyncId) != deadline) {
+                wheel[slot(deadline.tick)].remove(asyncId, deadline);
+            }
+        }
+    }
+
+    /**
+     * 槽中只剩未完成的请求，未到期的留给之后的轮次；与完成竞争时以从等待表中移除成功的一方为准
+     */
+    private void expire(Map<String, Deadline> bucket, long current, List<ThingsAsync> expired) {
+        Iterator<Deadline> iterator = bucket.values().iterator();
+        while (iterator.hasNext()) {
+            Deadline deadline = iterator.next();
+            if (deadline.tick <= current) {
+                iterator.remove();
+                if (pending.remove(deadline.thingsAsync.getAsyncId(), deadline)) {
+                    expired.add(deadline.thingsAsync);
+                }
+            }
+        }
+    }
+
+    private int slot(long tick) {
+        return (int) (tick & mask);
+    }
+
+    /**
+     * 到期条目，按引用比较，避免 ThingsAsync 的值相等误删同 id 的新登记
+     */
+    private static final class Deadline {
+        private final ThingsAsync thingsAsync;
+        private final long tick;
+
+        private Deadline(ThingsAsync thingsAsync, long tick) {
+            this.thingsAsync = thingsAsync;
+            this.tick = tick;
+        }
+    }
+}
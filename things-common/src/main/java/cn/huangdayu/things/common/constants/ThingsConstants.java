@@ -15,6 +15,11 @@ public final class ThingsConstants {
      */
     public static final String THINGS_SEPARATOR = "#";
 
+    /**
+     * 编译期生成的注解索引文件
+     */
+    public static final String THINGS_ANNOTATION_INDEX = "META-INF/things/annotation.index";
+
     /**
      * 物联网设备事件标识
      *
@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.io.Serializable;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
@@ -20,6 +21,21 @@ public class DslInfo implements Serializable {
     private ThingsInstance instance;
     private Set<DomainInfo> domainDsl;
     private Set<ThingsInfo> thingsDsl;
+    /**
+     * DSL 版本，实例、领域和所有物模型的内容摘要
+     */
+    private String version;
+    /**
+     * productCode vs ThingsInfo#version，包括所有提供的物模型，
+     * 增量 DSL 的 thingsDsl 只包含变化的物模型，不在这里的物模型已被移除
+     */
+    private Map<String, String> thingsVersions;
+
+    public DslInfo(ThingsInstance instance, Set<DomainInfo> domainDsl, Set<ThingsInfo> thingsDsl) {
+        this.instance = instance;
+        this.domainDsl = domainDsl;
+        this.thingsDsl = thingsDsl;
+    }
 
 
     @Override
@@ -12,6 +12,10 @@ public class ThingsInfo implements Serializable {
     private Set<ThingsServiceInfo> services;
     private Set<ThingsParamInfo> properties;
     private Set<ThingsEventInfo> events;
+    /**
+     * 内容摘要，物模型内容不变时版本不变
+     */
+    private String version;
 
     @Override
     public boolean equals(Object o) {
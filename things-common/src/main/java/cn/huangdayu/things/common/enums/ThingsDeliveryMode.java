@@ -0,0 +1,26 @@
+package cn.huangdayu.things.common.enums;
+
+/**
+ * 引擎事件的投递方式
+ *
+ * @author huangdayu
+ */
+public enum ThingsDeliveryMode {
+
+    /**
+     * 在通知线程中同步执行
+     */
+    SYNC,
+
+    /**
+     * 异步执行，同一个订阅按通知顺序逐个执行
+     */
+    ASYNC_ORDERED,
+
+    /**
+     * 异步执行，不保证顺序
+     */
+    ASYNC_UNORDERED,
+    ;
+
+}
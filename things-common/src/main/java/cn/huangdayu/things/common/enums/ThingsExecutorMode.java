@@ -0,0 +1,21 @@
+package cn.huangdayu.things.common.enums;
+
+/**
+ * 执行通道的线程模式
+ *
+ * @author huangdayu
+ */
+public enum ThingsExecutorMode {
+
+    /**
+     * 每个任务一个虚拟线程，最大并发数由 maxSize 限制
+     */
+    VIRTUAL,
+
+    /**
+     * 有界的平台线程池
+     */
+    PLATFORM,
+    ;
+
+}
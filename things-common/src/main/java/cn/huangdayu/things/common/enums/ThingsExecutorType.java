@@ -0,0 +1,41 @@
+package cn.huangdayu.things.common.enums;
+
+/**
+ * 执行通道，不同类型的任务使用独立的线程池，互不阻塞
+ *
+ * @author huangdayu
+ */
+public enum ThingsExecutorType {
+
+    /**
+     * 事件监听和属性监听
+     */
+    LISTENER,
+
+    /**
+     * 响应式服务调用，避免在调用方线程（如 Netty 事件循环）上执行服务方法
+     */
+    INVOKER,
+
+    /**
+     * 引擎内部事件通知
+     */
+    OBSERVER,
+
+    /**
+     * 对外发送消息
+     */
+    OUTBOUND,
+
+    /**
+     * 异步请求超时回调
+     */
+    TIMEOUT,
+
+    /**
+     * 定时任务
+     */
+    SCHEDULED,
+    ;
+
+}
@@ -0,0 +1,24 @@
+package cn.huangdayu.things.common.enums;
+
+/**
+ * 物模型消息方法动作，对应 thing.${methodType}.${identifier}.${methodAction} 的最后一段
+ *
+ * @author huangdayu
+ */
+public enum ThingsMethodAction {
+    REQUEST,
+    RESPONSE,
+    POST,
+    SET,
+    GET,
+    UNKNOWN;
+
+    public static ThingsMethodAction getMethodAction(String methodAction) {
+        for (ThingsMethodAction action : ThingsMethodAction.values()) {
+            if (action.name().equalsIgnoreCase(methodAction)) {
+                return action;
+            }
+        }
+        return UNKNOWN;
+    }
+}
@@ -0,0 +1,31 @@
+package cn.huangdayu.things.common.enums;
+
+/**
+ * 执行通道队列已满时的拒绝策略
+ *
+ * @author huangdayu
+ */
+public enum ThingsRejectPolicy {
+
+    /**
+     * 抛出 {@link java.util.concurrent.RejectedExecutionException}
+     */
+    ABORT,
+
+    /**
+     * 由提交任务的线程执行，形成背压
+     */
+    CALLER_RUNS,
+
+    /**
+     * 丢弃新任务
+     */
+    DISCARD,
+
+    /**
+     * 丢弃队列中最早的任务
+     */
+    DISCARD_OLDEST,
+    ;
+
+}
@@ -0,0 +1,135 @@
+package cn.huangdayu.things.common.factory;
+
+import cn.huangdayu.things.common.enums.ThingsRejectPolicy;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * 按键串行的执行器，同一个键的任务按提交顺序逐个执行，不同键的任务并行执行
+ * <p>
+ * 每个有任务的键对应一个队列，队列为空时立即移除，不占用线程；
+ * 一个键连续执行 {@link #MAX_BATCH} 个任务后重新提交到执行通道，避免热点键长期占用线程，通道已满时在当前线程继续执行
+ * <p>
+ * 提交队列使用 {@link ThingsLaneExecutor#offer(Runnable)}，被拒绝时由本类按通道的拒绝策略处理：
+ * 由调用方执行时在调用线程上执行队列，其他策略丢弃该键所有待执行的任务（包括其他线程在调度期间追加的任务，
+ * 这些任务不会再被调度），ABORT 时抛出异常
+ *
+ * @author huangdayu
+ */
+@Slf4j
+public final class ThingsKeyedExecutor<K> {
+
+    private static final int MAX_BATCH = 64;
+
+    private final Supplier<? extends ThingsLaneExecutor> executor;
+    private final Map<K, SerialQueue> queues = new ConcurrentHashMap<>();
+
+    /**
+     * @param executor 实际执行任务的执行通道，使用 Supplier 以便执行通道重新配置后生效
+     */
+    public ThingsKeyedExecutor(Supplier<? extends ThingsLaneExecutor> executor) {
+        this.executor = executor;
+    }
+
+    public void execute(K key, Runnable task) {
+        boolean[] schedule = new boolean[1];
+        // 入队与出队都在 compute 中完成，与队列的移除互斥
+        SerialQueue queue = queues.compute(key, (k, q) -> {
+            q = q != null ? q : new SerialQueue(k);
+            q.tasks.add(task);
+            if (!q.scheduled) {
+                q.scheduled = true;
+                schedule[0] = true;
+            }
+            return q;
+        });
+        if (schedule[0]) {
+            submit(queue);
+        }
+    }
+
+    /**
+     * 有待执行任务的键数量
+     */
+    public int size() {
+        return queues.size();
+    }
+
+    private void submit(SerialQueue queue) {
+        ThingsLaneExecutor lane = executor.get();
+        if (lane.offer(queue)) {
+            return;
+        }
+        ThingsRejectPolicy rejectPolicy = lane.getRejectPolicy();
+        if (rejectPolicy == ThingsRejectPolicy.CALLER_RUNS) {
+            queue.run();
+            return;
+        }
+        // 队列未被调度，移除整个队列，丢弃其中所有任务；之后的提交创建新的队列重新调度
+        int[] discarded = new int[1];
+        queues.computeIfPresent(queue.key, (k, q) -> {
+            if (q != queue) {
+                return q;
+            }
+            discarded[0] = q.tasks.size();
+            q.tasks.clear();
+            return null;
+        });
+        if (rejectPolicy == ThingsRejectPolicy.ABORT) {
+            throw new RejectedExecutionException("Things keyed executor " + lane.getName() + " rejected " + discarded[0] + " tasks of " + queue.key);
+        }
+        log.warn("Things keyed executor {} discard {} tasks of {}", lane.getName(), discarded[0], queue.key);
+    }
+
+    private final class SerialQueue implements Runnable {
+        private final K key;
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        /**
+         * 是否已经提交或正在执行，只在 compute 中读写
+         */
+        private boolean scheduled;
+
+        private SerialQueue(K key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                for (int i = 0; i < MAX_BATCH; i++) {
+                    Runnable task = next();
+                    if (task == null) {
+                        return;
+                    }
+                    try {
+                        task.run();
+                    } catch (Throwable e) {
+                        log.error("Things keyed task {} exception", key, e);
+                    }
+                }
+                // 让出线程；通道已满时在当前线程继续执行，不丢弃也不递归
+                if (executor.get().offer(this)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * 取出下一个任务，队列为空时移除队列
+         */
+        private Runnable next() {
+            Runnable[] task = new Runnable[1];
+            queues.computeIfPresent(key, (k, q) -> {
+                task[0] = q.tasks.poll();
+                return task[0] == null ? null : q;
+            });
+            return task[0];
+        }
+    }
+}
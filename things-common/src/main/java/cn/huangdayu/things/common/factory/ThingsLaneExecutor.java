@@ -0,0 +1,271 @@
+package cn.huangdayu.things.common.factory;
+
+import cn.huangdayu.things.common.enums.ThingsExecutorMode;
+import cn.huangdayu.things.common.enums.ThingsExecutorType;
+import cn.huangdayu.things.common.enums.ThingsRejectPolicy;
+import cn.huangdayu.things.common.properties.ThingsExecutorProperties;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 执行通道，队列有界，提供队列深度、活跃任务数和拒绝次数指标
+ *
+ * @author huangdayu
+ */
+@Slf4j
+public abstract class ThingsLaneExecutor implements Executor {
+
+    @Getter
+    protected final String name;
+    @Getter
+    protected final ThingsRejectPolicy rejectPolicy;
+    protected final LongAdder rejectedCount = new LongAdder();
+
+    protected ThingsLaneExecutor(String name, ThingsRejectPolicy rejectPolicy) {
+        this.name = name;
+        this.rejectPolicy = rejectPolicy == null ? ThingsRejectPolicy.CALLER_RUNS : rejectPolicy;
+    }
+
+    static ThingsLaneExecutor create(ThingsExecutorType type, ThingsExecutorProperties properties) {
+        String name = "things-" + type.name().toLowerCase();
+        boolean virtual = properties.getMode() == ThingsExecutorMode.VIRTUAL;
+        if (type == ThingsExecutorType.SCHEDULED) {
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(Math.max(1, properties.getCoreSize()),
+                    ThreadPoolFactory.newThreadFactory(name, virtual));
+            scheduler.setRemoveOnCancelPolicy(true);
+            return new PlatformLaneExecutor(name, properties.getRejectPolicy(), scheduler);
+        } else if (virtual) {
+            return new VirtualLaneExecutor(name, properties);
+        }
+        int maxSize = Math.max(1, properties.getMaxSize());
+        BlockingQueue<Runnable> queue = properties.getQueueCapacity() > 0 ? new LinkedBlockingQueue<>(properties.getQueueCapacity()) : new SynchronousQueue<>();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(Math.min(Math.max(0, properties.getCoreSize()), maxSize), maxSize,
+                properties.getKeepAlive(), TimeUnit.MILLISECONDS, queue, ThreadPoolFactory.newThreadFactory(name, false));
+        return new PlatformLaneExecutor(name, properties.getRejectPolicy(), executor);
+    }
+
+    /**
+     * 提交任务，不执行拒绝策略，通道已满或已关闭时返回 false，由调用方决定如何处理
+     *
+     * @return 是否已接收
+     */
+    public abstract boolean offer(Runnable task);
+
+    /**
+     * 等待执行的任务数
+     */
+    public abstract int getQueueSize();
+
+    /**
+     * 正在执行的任务数
+     */
+    public abstract int getActiveCount();
+
+    /**
+     * 被拒绝的任务数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * 不再接收新任务，已提交的任务继续执行
+     */
+    public abstract void shutdown();
+
+    /**
+     * 有界的平台线程池
+     */
+    static final class PlatformLaneExecutor extends ThingsLaneExecutor {
+
+        @Getter
+        private final ThreadPoolExecutor executor;
+
+        private PlatformLaneExecutor(String name, ThingsRejectPolicy rejectPolicy, ThreadPoolExecutor executor) {
+            super(name, rejectPolicy);
+            RejectedExecutionHandler handler = switch (this.rejectPolicy) {
+                case ABORT -> new ThreadPoolExecutor.AbortPolicy();
+                case CALLER_RUNS -> new ThreadPoolExecutor.CallerRunsPolicy();
+                case DISCARD -> new ThreadPoolExecutor.DiscardPolicy();
+                case DISCARD_OLDEST -> (task, pool) -> {
+                    if (!pool.isShutdown()) {
+                        Runnable oldest = pool.getQueue().poll();
+                        pool.execute(task);
+                        runOffered(oldest);
+                    }
+                };
+            };
+            executor.setRejectedExecutionHandler((task, pool) -> {
+                rejectedCount.increment();
+                if (task instanceof OfferedTask) {
+                    throw new RejectedExecutionException("Things executor " + name + " rejected offered task");
+                }
+                handler.rejectedExecution(task, pool);
+            });
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            executor.execute(task);
+        }
+
+        @Override
+        public boolean offer(Runnable task) {
+            try {
+                executor.execute(new OfferedTask(task));
+                return true;
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public int getQueueSize() {
+            return executor.getQueue().size();
+        }
+
+        @Override
+        public int getActiveCount() {
+            return executor.getActiveCount();
+        }
+
+        @Override
+        public void shutdown() {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 每个任务一个虚拟线程，用许可数限制最大并发，超出的任务进入有界队列
+     */
+    static final class VirtualLaneExecutor extends ThingsLaneExecutor {
+
+        private final ThreadFactory threadFactory;
+        private final BlockingQueue<Runnable> queue;
+        private final Semaphore permits;
+        private final AtomicInteger activeCount = new AtomicInteger();
+        private volatile boolean shutdown;
+
+        private VirtualLaneExecutor(String name, ThingsExecutorProperties properties) {
+            super(name, properties.getRejectPolicy());
+            this.threadFactory = ThreadPoolFactory.newThreadFactory(name, true);
+            this.queue = new LinkedBlockingQueue<>(Math.max(1, properties.getQueueCapacity()));
+            this.permits = new Semaphore(Math.max(1, properties.getMaxSize()));
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            if (!enqueue(task)) {
+                reject(task);
+            }
+        }
+
+        @Override
+        public boolean offer(Runnable task) {
+            return enqueue(new OfferedTask(task));
+        }
+
+        private boolean enqueue(Runnable task) {
+            if (shutdown || !queue.offer(task)) {
+                rejectedCount.increment();
+                return false;
+            }
+            schedule();
+            return true;
+        }
+
+        /**
+         * 有许可且队列不为空时启动虚拟线程，释放许可后再检查一次队列，避免任务滞留
+         */
+        private void schedule() {
+            while (permits.tryAcquire()) {
+                Runnable task = queue.poll();
+                if (task == null) {
+                    permits.release();
+                    if (queue.isEmpty()) {
+                        return;
+                    }
+                    continue;
+                }
+                try {
+                    threadFactory.newThread(() -> run(task)).start();
+                } catch (Throwable e) {
+                    permits.release();
+                    throw e;
+                }
+            }
+        }
+
+        private void run(Runnable task) {
+            activeCount.incrementAndGet();
+            try {
+                task.run();
+            } catch (Throwable e) {
+                log.error("Things executor {} task exception", name, e);
+            } finally {
+                activeCount.decrementAndGet();
+                permits.release();
+            }
+            schedule();
+        }
+
+        private void reject(Runnable task) {
+            switch (rejectPolicy) {
+                case ABORT -> throw new RejectedExecutionException("Things executor " + name + " rejected task, queue size " + queue.size());
+                case CALLER_RUNS -> {
+                    if (!shutdown) {
+                        task.run();
+                    }
+                }
+                case DISCARD -> {
+                }
+                case DISCARD_OLDEST -> {
+                    if (!shutdown) {
+                        Runnable oldest = queue.poll();
+                        execute(task);
+                        runOffered(oldest);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public int getQueueSize() {
+            return queue.size();
+        }
+
+        @Override
+        public int getActiveCount() {
+            return activeCount.get();
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+    }
+
+    /**
+     * 丢弃最早的任务时，通过 {@link #offer(Runnable)} 提交的任务不能丢弃（调用方认为已经接收），由当前线程执行
+     */
+    private static void runOffered(Runnable oldest) {
+        if (oldest instanceof OfferedTask) {
+            oldest.run();
+        }
+    }
+
+    /**
+     * 通过 {@link #offer(Runnable)} 提交的任务，被拒绝时不执行拒绝策略
+     */
+    private record OfferedTask(Runnable task) implements Runnable {
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+}
@@ -1,43 +1,83 @@
 package cn.huangdayu.things.common.factory;
 
-import cn.hutool.core.thread.ExecutorBuilder;
+import cn.huangdayu.things.common.enums.ThingsExecutorType;
+import cn.huangdayu.things.common.factory.ThingsLaneExecutor.PlatformLaneExecutor;
+import cn.huangdayu.things.common.properties.ThingsExecutorsProperties;
+import lombok.extern.slf4j.Slf4j;
 
-import java.lang.reflect.Method;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
+
+import static cn.huangdayu.things.common.enums.ThingsExecutorType.SCHEDULED;
 
 /**
  * @author huangdayu
  */
+@Slf4j
 public class ThreadPoolFactory {
 
-    public static final ExecutorService THINGS_EXECUTOR = ThreadPoolFactory.newExecutor(3);
+    /**
+     * 执行通道，按 things.executors.* 配置创建，未配置时使用默认配置
+     */
+    private static final Map<ThingsExecutorType, ThingsLaneExecutor> THINGS_EXECUTORS = new ConcurrentHashMap<>();
 
-    public static ThreadPoolExecutor newExecutor(int corePoolSize) {
-        ExecutorBuilder builder = ExecutorBuilder.create();
-        if (corePoolSize > 0) {
-            builder.setCorePoolSize(corePoolSize);
-        }
-        builder.setThreadFactory(tryGetVirtualThreadFactory());
-        return builder.build();
+    private static volatile ThingsExecutorsProperties executorsProperties = new ThingsExecutorsProperties();
+
+    /**
+     * 获取执行通道
+     */
+    public static ThingsLaneExecutor getExecutor(ThingsExecutorType type) {
+        return THINGS_EXECUTORS.computeIfAbsent(type, t -> ThingsLaneExecutor.create(t, executorsProperties.get(t)));
     }
 
     /**
-     * 尝试用反射获取虚拟线程工程，如果失败则用默认线程工厂
-     *
-     * @return
+     * 获取定时任务通道
      */
-    public static ThreadFactory tryGetVirtualThreadFactory() {
-        try {
-            Method ofVirtualMethod = Thread.class.getMethod("ofVirtual");
-            Object threadBuilderOfVirtual = ofVirtualMethod.invoke(null);
-            Method factoryMethod = threadBuilderOfVirtual.getClass().getMethod("factory");
-            return (ThreadFactory) factoryMethod.invoke(threadBuilderOfVirtual);
-        } catch (Exception e) {
-            return Executors.defaultThreadFactory();
+    public static ScheduledExecutorService getScheduler() {
+        return (ScheduledExecutorService) ((PlatformLaneExecutor) getExecutor(SCHEDULED)).getExecutor();
+    }
+
+    /**
+     * 所有已创建的执行通道，用于查看队列深度和活跃任务数
+     */
+    public static Map<ThingsExecutorType, ThingsLaneExecutor> getExecutors() {
+        Map<ThingsExecutorType, ThingsLaneExecutor> executors = new EnumMap<>(ThingsExecutorType.class);
+        executors.putAll(THINGS_EXECUTORS);
+        return Collections.unmodifiableMap(executors);
+    }
+
+    /**
+     * 更新执行通道配置，已创建的通道替换为新通道，旧通道执行完已提交的任务后关闭；
+     * 定时通道上已经注册了周期任务，创建后不再替换
+     */
+    public static synchronized void configure(ThingsExecutorsProperties properties) {
+        if (properties == null || properties == executorsProperties) {
+            return;
+        }
+        executorsProperties = properties;
+        for (ThingsExecutorType type : ThingsExecutorType.values()) {
+            if (type == SCHEDULED) {
+                if (THINGS_EXECUTORS.containsKey(SCHEDULED)) {
+                    log.warn("Things executor {} already started, configuration will not take effect.", type);
+                }
+                continue;
+            }
+            ThingsLaneExecutor previous = THINGS_EXECUTORS.get(type);
+            if (previous != null) {
+                THINGS_EXECUTORS.put(type, ThingsLaneExecutor.create(type, properties.get(type)));
+                previous.shutdown();
+            }
         }
     }
 
+    /**
+     * 创建带名称的线程工厂
+     */
+    public static ThreadFactory newThreadFactory(String name, boolean virtual) {
+        return virtual ? Thread.ofVirtual().name(name + "-", 0).factory() : Thread.ofPlatform().name(name + "-", 0).daemon(true).factory();
+    }
 }
@@ -1,11 +1,11 @@
 package cn.huangdayu.things.common.message;
 
 import cn.huangdayu.things.common.constants.ThingsConstants;
+import cn.huangdayu.things.common.utils.ThingsUtils;
 import lombok.Data;
 
 import java.io.Serializable;
 import java.util.Objects;
-import java.util.UUID;
 
 /**
  * @author huangdayu
@@ -57,11 +57,23 @@ public abstract class AbstractThingsMessage<M extends Serializable, P extends Se
     private String method;
 
     public AbstractThingsMessage() {
-        setId(UUID.randomUUID().toString().replaceAll("-", ""));
+        setId(ThingsUtils.nextId());
         setVersion("1");
         setTime(System.currentTimeMillis());
     }
 
+    /**
+     * 复制消息标识字段（id、version、time、qos、timeout、method），元数据和消息体由子类处理
+     */
+    protected AbstractThingsMessage(AbstractThingsMessage<M, P> source) {
+        setId(source.getId());
+        setVersion(source.getVersion());
+        setTime(source.getTime());
+        setQos(source.getQos());
+        setTimeout(source.getTimeout());
+        setMethod(source.getMethod());
+    }
+
 
     @Override
     public boolean equals(Object o) {
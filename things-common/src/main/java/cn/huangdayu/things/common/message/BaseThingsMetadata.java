@@ -2,16 +2,38 @@ package cn.huangdayu.things.common.message;
 
 import cn.huangdayu.things.common.constants.ThingsConstants;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * @author huangdayu
  */
 @Data
+@NoArgsConstructor
 public class BaseThingsMetadata implements Serializable {
 
+    /**
+     * 复制元数据，分组集合复制为新的集合
+     *
+     * @param source
+     */
+    public BaseThingsMetadata(BaseThingsMetadata source) {
+        this.secretKey = source.secretKey;
+        this.productCode = source.productCode;
+        this.deviceCode = source.deviceCode;
+        this.groupCode = source.groupCode == null ? null : new LinkedHashSet<>(source.groupCode);
+        this.sourceCode = source.sourceCode;
+        this.targetCode = source.targetCode;
+        this.deadline = source.deadline;
+        this.errorCode = source.errorCode;
+        this.errorMessage = source.errorMessage;
+        this.errorTraceCode = source.errorTraceCode;
+    }
 
     /**
      * 密钥
@@ -45,6 +67,11 @@ public class BaseThingsMetadata implements Serializable {
     private String targetCode;
 
 
+    /**
+     * 截止时间（毫秒时间戳），由上游请求传递，超过后不再处理
+     */
+    private Long deadline;
+
     /**
      * 错误码
      *
@@ -61,4 +88,32 @@ public class BaseThingsMetadata implements Serializable {
      * 错误追踪id
      */
     private String errorTraceCode;
-}
\ No newline at end of file
+
+    /**
+     * 把字段写回元数据，空字段从元数据中移除，等价于 JSON.toJSON(this, IgnoreEmpty) 替换这些字段，但不经过序列化
+     *
+     * @param metadata
+     */
+    public void writeTo(Map<String, Object> metadata) {
+        putOrRemove(metadata, "secretKey", secretKey);
+        putOrRemove(metadata, "productCode", productCode);
+        putOrRemove(metadata, "deviceCode", deviceCode);
+        putOrRemove(metadata, "groupCode", groupCode);
+        putOrRemove(metadata, "sourceCode", sourceCode);
+        putOrRemove(metadata, "targetCode", targetCode);
+        putOrRemove(metadata, "deadline", deadline);
+        putOrRemove(metadata, "errorCode", errorCode);
+        putOrRemove(metadata, "errorMessage", errorMessage);
+        putOrRemove(metadata, "errorTraceCode", errorTraceCode);
+    }
+
+    private static void putOrRemove(Map<String, Object> metadata, String key, Object value) {
+        if (value == null || (value instanceof CharSequence cs && cs.isEmpty()) || (value instanceof Collection<?> c && c.isEmpty())) {
+            if (metadata.containsKey(key)) {
+                metadata.remove(key);
+            }
+            return;
+        }
+        metadata.put(key, value);
+    }
+}
@@ -0,0 +1,444 @@
+package cn.huangdayu.things.common.message;
+
+import cn.huangdayu.things.common.exception.ThingsException;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONB;
+import com.alibaba.fastjson2.JSONObject;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static cn.huangdayu.things.common.constants.ThingsConstants.ErrorCodes.BAD_REQUEST;
+import static cn.huangdayu.things.common.constants.ThingsConstants.ErrorCodes.UNSUPPORTED_MEDIA_TYPE;
+
+/**
+ * 二进制物模型消息编解码
+ * <p>
+ * 协议结构： [帧头(2B)][协议版本(1B)][分段id(2B)][消息id(4B)][序列化方式(1B)][加密方式(1B)][消息负载数(1B(N))]
+ * [[消息字段类别(1B)][消息字段值类型(1B)][消息字段值长度(2B(M))][消息字段值(M*B)]*N][加密校验位(2B)][帧尾(2B)]
+ * <p>
+ * 分段id最高位表示最后一个分段，低15位为分段序号；超过 65535 字节的字段拆成多个相同类别的连续字段，解码时合并；
+ * 校验位为协议版本到最后一个字段的 CRC-16/MODBUS
+ *
+ * @author huangdayu
+ */
+public final class HexThingsCodec {
+
+    public static final int FRAME_HEADER = 0xA55A;
+    public static final int FRAME_TAIL = 0x5AA5;
+    public static final byte PROTOCOL_VERSION = 1;
+
+    public static final byte SERIALIZER_JSON = 0;
+    public static final byte SERIALIZER_JSONB = 1;
+    public static final byte ENCRYPTION_NONE = 0;
+
+    public static final byte FIELD_ID = 1;
+    public static final byte FIELD_VERSION = 2;
+    public static final byte FIELD_TIME = 3;
+    public static final byte FIELD_QOS = 4;
+    public static final byte FIELD_TIMEOUT = 5;
+    public static final byte FIELD_METHOD = 6;
+    public static final byte FIELD_METADATA = 7;
+    public static final byte FIELD_PAYLOAD = 8;
+
+    public static final byte TYPE_STRING = 1;
+    public static final byte TYPE_INT32 = 2;
+    public static final byte TYPE_INT64 = 3;
+    public static final byte TYPE_OBJECT = 4;
+
+    public static final int LAST_SEGMENT = 0x8000;
+    public static final int MAX_SEGMENTS = 0x7FFF;
+    public static final int MAX_FIELD_LENGTH = 0xFFFF;
+    public static final int MAX_FIELDS = 0xFF;
+
+    /**
+     * 帧头 + 协议版本 + 分段id + 消息id + 序列化方式 + 加密方式 + 消息负载数
+     */
+    public static final int HEAD_LENGTH = 12;
+    /**
+     * 加密校验位 + 帧尾
+     */
+    public static final int TAIL_LENGTH = 4;
+    public static final int FIELD_HEAD_LENGTH = 4;
+
+    private HexThingsCodec() {
+    }
+
+    /**
+     * 编码为单个完整帧
+     */
+    public static byte[] encode(JsonThingsMessage jtm, byte serializer) {
+        List<Field> fields = singleFrame(jtm, serializer);
+        ByteBuffer frame = ByteBuffer.allocate(frameLength(fields));
+        writeFrame(frame, messageId(jtm), LAST_SEGMENT, serializer, fields);
+        return frame.array();
+    }
+
+    /**
+     * 编码为单个完整帧，直接写入调用方提供的缓冲区，不再分配帧数组，返回写入的字节数
+     */
+    public static int encode(JsonThingsMessage jtm, byte serializer, ByteBuffer target) {
+        List<Field> fields = singleFrame(jtm, serializer);
+        int length = frameLength(fields);
+        if (target.remaining() < length) {
+            throw new ThingsException(jtm, BAD_REQUEST, "Things hex message buffer overflow, required " + length + " bytes.");
+        }
+        writeFrame(target, messageId(jtm), LAST_SEGMENT, serializer, fields);
+        return length;
+    }
+
+    /**
+     * 按最大帧长分段编码，每个分段都是独立可校验的帧
+     */
+    public static List<byte[]> encode(JsonThingsMessage jtm, byte serializer, int maxFrameLength) {
+        int budget = maxFrameLength - HEAD_LENGTH - TAIL_LENGTH;
+        if (budget <= FIELD_HEAD_LENGTH) {
+            throw new ThingsException(jtm, BAD_REQUEST, "Things hex message frame length too small: " + maxFrameLength);
+        }
+        List<List<Field>> segments = new ArrayList<>();
+        List<Field> current = new ArrayList<>();
+        int remaining = budget;
+        for (Field field : fields(jtm, serializer)) {
+            Field rest = field;
+            while (rest != null) {
+                if (current.size() == MAX_FIELDS || remaining <= FIELD_HEAD_LENGTH) {
+                    segments.add(current);
+                    current = new ArrayList<>();
+                    remaining = budget;
+                }
+                int length = Math.min(Math.min(rest.length, MAX_FIELD_LENGTH), remaining - FIELD_HEAD_LENGTH);
+                current.add(rest.slice(0, length));
+                remaining -= FIELD_HEAD_LENGTH + length;
+                rest = length == rest.length ? null : rest.slice(length, rest.length - length);
+            }
+        }
+        segments.add(current);
+        if (segments.size() > MAX_SEGMENTS) {
+            throw new ThingsException(jtm, BAD_REQUEST, "Things hex message too many segments: " + segments.size());
+        }
+        int messageId = messageId(jtm);
+        List<byte[]> frames = new ArrayList<>(segments.size());
+        for (int i = 0; i < segments.size(); i++) {
+            List<Field> segment = segments.get(i);
+            ByteBuffer frame = ByteBuffer.allocate(frameLength(segment));
+            writeFrame(frame, messageId, i == segments.size() - 1 ? i | LAST_SEGMENT : i, serializer, segment);
+            frames.add(frame.array());
+        }
+        return frames;
+    }
+
+    /**
+     * 解码单个完整帧
+     */
+    public static JsonThingsMessage decode(ByteBuffer frame) {
+        return decode(List.of(readSegment(frame)), new JsonThingsMessage());
+    }
+
+    /**
+     * 合并所有分段并解码到目标消息，分段顺序无要求，但每个序号必须恰好出现一次
+     */
+    public static <T extends JsonThingsMessage> T decode(List<Segment> segments, T target) {
+        if (segments.isEmpty()) {
+            throw new ThingsException(target, BAD_REQUEST, "Things hex message segments incomplete.");
+        }
+        List<Segment> ordered = new ArrayList<>(segments);
+        ordered.sort(Comparator.comparingInt(Segment::index));
+        for (int i = 0; i < ordered.size(); i++) {
+            Segment segment = ordered.get(i);
+            if (segment.index() != i || segment.last() != (i == ordered.size() - 1)) {
+                throw new ThingsException(target, BAD_REQUEST, "Things hex message segments incomplete.");
+            }
+        }
+        Segment last = ordered.get(ordered.size() - 1);
+        List<Entry> entries = new ArrayList<>();
+        for (Segment segment : ordered) {
+            entries.addAll(segment.entries());
+        }
+        int i = 0;
+        while (i < entries.size()) {
+            Entry entry = entries.get(i);
+            int j = i + 1;
+            while (j < entries.size() && entries.get(j).category() == entry.category()) {
+                j++;
+            }
+            ByteBuffer value = j == i + 1 ? entry.value() : join(entries.subList(i, j));
+            apply(target, entry.category(), entry.valueType(), value, last.serializer());
+            i = j;
+        }
+        return target;
+    }
+
+    /**
+     * 读取并校验一个帧，字段值为原缓冲区的切片，不复制数据
+     */
+    public static Segment readSegment(ByteBuffer frame) {
+        ByteBuffer buffer = frame.slice();
+        if (buffer.remaining() < HEAD_LENGTH + TAIL_LENGTH) {
+            throw new ThingsException(BAD_REQUEST, "Things hex message frame too short.");
+        }
+        if ((buffer.getShort(0) & 0xFFFF) != FRAME_HEADER) {
+            throw new ThingsException(BAD_REQUEST, "Things hex message frame header mismatch.");
+        }
+        byte version = buffer.get(2);
+        if (version != PROTOCOL_VERSION) {
+            throw new ThingsException(UNSUPPORTED_MEDIA_TYPE, "Things hex message protocol version unsupported: " + version);
+        }
+        int segmentId = buffer.getShort(3) & 0xFFFF;
+        int messageId = buffer.getInt(5);
+        byte serializer = buffer.get(9);
+        byte encryption = buffer.get(10);
+        if (encryption != ENCRYPTION_NONE) {
+            throw new ThingsException(UNSUPPORTED_MEDIA_TYPE, "Things hex message encryption unsupported: " + encryption);
+        }
+        int count = buffer.get(11) & 0xFF;
+        List<Entry> entries = new ArrayList<>(count);
+        int position = HEAD_LENGTH;
+        for (int i = 0; i < count; i++) {
+            if (position + FIELD_HEAD_LENGTH > buffer.limit() - TAIL_LENGTH) {
+                throw new ThingsException(BAD_REQUEST, "Things hex message field overflow.");
+            }
+            byte category = buffer.get(position);
+            byte valueType = buffer.get(position + 1);
+            int length = buffer.getShort(position + 2) & 0xFFFF;
+            position += FIELD_HEAD_LENGTH;
+            if (position + length > buffer.limit() - TAIL_LENGTH) {
+                throw new ThingsException(BAD_REQUEST, "Things hex message field overflow.");
+            }
+            entries.add(new Entry(category, valueType, buffer.slice(position, length)));
+            position += length;
+        }
+        if (position + TAIL_LENGTH != buffer.limit()) {
+            throw new ThingsException(BAD_REQUEST, "Things hex message frame length mismatch.");
+        }
+        if ((buffer.getShort(position) & 0xFFFF) != crc16(buffer, 2, position)) {
+            throw new ThingsException(BAD_REQUEST, "Things hex message checksum mismatch.");
+        }
+        if ((buffer.getShort(position + 2) & 0xFFFF) != FRAME_TAIL) {
+            throw new ThingsException(BAD_REQUEST, "Things hex message frame tail mismatch.");
+        }
+        return new Segment(messageId, segmentId & MAX_SEGMENTS, (segmentId & LAST_SEGMENT) != 0, serializer, entries);
+    }
+
+    /**
+     * 单帧字段，超长字段按最大字段长度拆分
+     */
+    private static List<Field> singleFrame(JsonThingsMessage jtm, byte serializer) {
+        List<Field> fields = new ArrayList<>(8);
+        for (Field field : fields(jtm, serializer)) {
+            int offset = 0;
+            do {
+                int length = Math.min(MAX_FIELD_LENGTH, field.length - offset);
+                fields.add(field.slice(offset, length));
+                offset += length;
+            } while (offset < field.length);
+        }
+        if (fields.size() > MAX_FIELDS) {
+            throw new ThingsException(jtm, BAD_REQUEST, "Things hex message too large for a single frame, please use segments.");
+        }
+        return fields;
+    }
+
+    private static int frameLength(List<Field> fields) {
+        int length = HEAD_LENGTH + TAIL_LENGTH;
+        for (Field field : fields) {
+            length += FIELD_HEAD_LENGTH + field.length;
+        }
+        return length;
+    }
+
+    private static void writeFrame(ByteBuffer target, int messageId, int segmentId, byte serializer, List<Field> fields) {
+        int start = target.position();
+        target.putShort((short) FRAME_HEADER);
+        target.put(PROTOCOL_VERSION);
+        target.putShort((short) segmentId);
+        target.putInt(messageId);
+        target.put(serializer);
+        target.put(ENCRYPTION_NONE);
+        target.put((byte) fields.size());
+        for (Field field : fields) {
+            target.put(field.category);
+            target.put(field.valueType);
+            target.putShort((short) field.length);
+            target.put(field.bytes, field.offset, field.length);
+        }
+        target.putShort((short) crc16(target, start + 2, target.position()));
+        target.putShort((short) FRAME_TAIL);
+    }
+
+    private static List<Field> fields(JsonThingsMessage jtm, byte serializer) {
+        List<Field> fields = new ArrayList<>(8);
+        addString(fields, FIELD_ID, jtm.getId());
+        addString(fields, FIELD_VERSION, jtm.getVersion());
+        if (jtm.getTime() != null) {
+            fields.add(new Field(FIELD_TIME, TYPE_INT64, ByteBuffer.allocate(8).putLong(jtm.getTime()).array()));
+        }
+        fields.add(new Field(FIELD_QOS, TYPE_INT32, ByteBuffer.allocate(4).putInt(jtm.getQos()).array()));
+        fields.add(new Field(FIELD_TIMEOUT, TYPE_INT64, ByteBuffer.allocate(8).putLong(jtm.getTimeout()).array()));
+        addString(fields, FIELD_METHOD, jtm.getMethod());
+        addObject(fields, FIELD_METADATA, jtm.getMetadata(), serializer, jtm);
+        addObject(fields, FIELD_PAYLOAD, jtm.getPayload(), serializer, jtm);
+        return fields;
+    }
+
+    private static void addString(List<Field> fields, byte category, String value) {
+        if (value != null) {
+            fields.add(new Field(category, TYPE_STRING, value.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    private static void addObject(List<Field> fields, byte category, JSONObject value, byte serializer, JsonThingsMessage jtm) {
+        if (value == null) {
+            return;
+        }
+        byte[] bytes = switch (serializer) {
+            case SERIALIZER_JSON -> JSON.toJSONBytes(value);
+            case SERIALIZER_JSONB -> JSONB.toBytes(value);
+            default -> throw new ThingsException(jtm, UNSUPPORTED_MEDIA_TYPE, "Things hex message serializer unsupported: " + serializer);
+        };
+        fields.add(new Field(category, TYPE_OBJECT, bytes));
+    }
+
+    private static void apply(JsonThingsMessage jtm, byte category, byte valueType, ByteBuffer value, byte serializer) {
+        switch (category) {
+            case FIELD_ID -> jtm.setId(string(value));
+            case FIELD_VERSION -> jtm.setVersion(string(value));
+            case FIELD_TIME -> jtm.setTime(int64(jtm, category, valueType, value));
+            case FIELD_QOS -> jtm.setQos(int32(jtm, category, valueType, value));
+            case FIELD_TIMEOUT -> jtm.setTimeout(int64(jtm, category, valueType, value));
+            case FIELD_METHOD -> jtm.setMethod(string(value));
+            case FIELD_METADATA -> jtm.setMetadata(object(value, serializer));
+            case FIELD_PAYLOAD -> jtm.setPayload(object(value, serializer));
+            default -> {
+                // 未知字段类别，向前兼容忽略
+            }
+        }
+    }
+
+    /**
+     * 读取 4 字节整数，值类型或长度不符时拒绝
+     */
+    private static int int32(JsonThingsMessage jtm, byte category, byte valueType, ByteBuffer value) {
+        if (valueType != TYPE_INT32 || value.remaining() != 4) {
+            throw new ThingsException(jtm, BAD_REQUEST, "Things hex message field " + category + " invalid, type " + valueType + " length " + value.remaining());
+        }
+        return value.getInt(value.position());
+    }
+
+    /**
+     * 读取整数，兼容 4 字节和 8 字节，值类型或长度不符时拒绝
+     */
+    private static long int64(JsonThingsMessage jtm, byte category, byte valueType, ByteBuffer value) {
+        if (valueType == TYPE_INT32) {
+            return int32(jtm, category, valueType, value);
+        }
+        if (valueType != TYPE_INT64 || value.remaining() != 8) {
+            throw new ThingsException(jtm, BAD_REQUEST, "Things hex message field " + category + " invalid, type " + valueType + " length " + value.remaining());
+        }
+        return value.getLong(value.position());
+    }
+
+    private static String string(ByteBuffer value) {
+        if (value.hasArray()) {
+            return new String(value.array(), value.arrayOffset() + value.position(), value.remaining(), StandardCharsets.UTF_8);
+        }
+        return new String(bytes(value), StandardCharsets.UTF_8);
+    }
+
+    private static JSONObject object(ByteBuffer value, byte serializer) {
+        if (serializer == SERIALIZER_JSONB) {
+            return JSONB.parseObject(bytes(value));
+        }
+        if (serializer != SERIALIZER_JSON) {
+            throw new ThingsException(UNSUPPORTED_MEDIA_TYPE, "Things hex message serializer unsupported: " + serializer);
+        }
+        if (value.hasArray()) {
+            return JSON.parseObject(value.array(), value.arrayOffset() + value.position(), value.remaining(), StandardCharsets.UTF_8);
+        }
+        return JSON.parseObject(bytes(value));
+    }
+
+    private static byte[] bytes(ByteBuffer value) {
+        byte[] bytes = new byte[value.remaining()];
+        value.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static ByteBuffer join(List<Entry> entries) {
+        int length = 0;
+        for (Entry entry : entries) {
+            length += entry.value().remaining();
+        }
+        ByteBuffer joined = ByteBuffer.allocate(length);
+        for (Entry entry : entries) {
+            joined.put(entry.value().duplicate());
+        }
+        return joined.flip();
+    }
+
+    private static int messageId(JsonThingsMessage jtm) {
+        return jtm.getId() == null ? 0 : jtm.getId().hashCode();
+    }
+
+    /**
+     * CRC-16/MODBUS，按绝对位置读取不改变缓冲区位置
+     */
+    private static int crc16(ByteBuffer buffer, int from, int to) {
+        int crc = 0xFFFF;
+        for (int i = from; i < to; i++) {
+            crc ^= buffer.get(i) & 0xFF;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0xA001 : crc >>> 1;
+            }
+        }
+        return crc;
+    }
+
+    /**
+     * 一个已校验的帧
+     *
+     * @param messageId  消息id，同一消息的所有分段相同
+     * @param index      分段序号
+     * @param last       是否最后一个分段
+     * @param serializer 序列化方式
+     * @param entries    字段列表
+     */
+    public record Segment(int messageId, int index, boolean last, byte serializer, List<Entry> entries) {
+
+        public boolean single() {
+            return last && index == 0;
+        }
+    }
+
+    /**
+     * 帧中的一个字段，值为帧缓冲区的只读切片
+     */
+    public record Entry(byte category, byte valueType, ByteBuffer value) {
+    }
+
+    private static final class Field {
+        private final byte category;
+        private final byte valueType;
+        private final byte[] bytes;
+        private final int offset;
+        private final int length;
+
+        private Field(byte category, byte valueType, byte[] bytes) {
+            this(category, valueType, bytes, 0, bytes.length);
+        }
+
+        private Field(byte category, byte valueType, byte[] bytes, int offset, int length) {
+            this.category = category;
+            this.valueType = valueType;
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        private Field slice(int from, int length) {
+            return new Field(category, valueType, bytes, offset + from, length);
+        }
+    }
+}
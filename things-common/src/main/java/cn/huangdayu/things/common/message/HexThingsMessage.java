@@ -1,13 +1,21 @@
 package cn.huangdayu.things.common.message;
 
+import cn.hutool.core.util.HexUtil;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.extern.slf4j.Slf4j;
 
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static cn.huangdayu.things.common.message.HexThingsCodec.SERIALIZER_JSON;
+
 /**
  * 协议结构： [帧头(2B)][协议版本(1B)][分段id(2B)][消息id(4B)][序列化方式(1B)][加密方式(1B)][消息负载数(1B(N))]
  * [[消息字段类别(1B)][消息字段值类型(1B)][消息字段值长度(2B(M))][消息字段值(M*B)]*N][加密校验位(2B)][帧尾(2B)]
+ *
  * @author huangdayu
+ * @see HexThingsCodec
  */
 @Slf4j
 @EqualsAndHashCode(callSuper = true)
@@ -15,20 +23,30 @@ import lombok.extern.slf4j.Slf4j;
 public class HexThingsMessage extends JsonThingsMessage {
 
     public HexThingsMessage(byte[] thingsMessageBytes) {
-
+        HexThingsCodec.decode(List.of(HexThingsCodec.readSegment(ByteBuffer.wrap(thingsMessageBytes))), this);
     }
 
     public HexThingsMessage(String thingsMessageHex) {
-
+        this(HexUtil.decodeHex(thingsMessageHex));
     }
 
     public String hexMessage() {
-        return null;
+        return HexUtil.encodeHexStr(bytesMessage(), false);
     }
 
 
     public byte[] bytesMessage() {
-        return null;
+        return HexThingsCodec.encode(this, SERIALIZER_JSON);
+    }
+
+    /**
+     * 按最大帧长分段编码
+     *
+     * @param maxFrameLength 最大帧长
+     * @return 分段帧
+     */
+    public List<byte[]> bytesMessages(int maxFrameLength) {
+        return HexThingsCodec.encode(this, SERIALIZER_JSON, maxFrameLength);
     }
 
 }
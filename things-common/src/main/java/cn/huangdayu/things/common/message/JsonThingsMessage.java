@@ -3,21 +3,26 @@ package cn.huangdayu.things.common.message;
 import cn.huangdayu.things.common.exception.ThingsException;
 import com.alibaba.fastjson2.JSON;
 import com.alibaba.fastjson2.JSONObject;
-import com.alibaba.fastjson2.JSONWriter;
 import com.alibaba.fastjson2.annotation.JSONField;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static cn.huangdayu.things.common.constants.ThingsConstants.ErrorCodes.*;
 import static cn.huangdayu.things.common.constants.ThingsConstants.Methods.THINGS_IDENTIFIER;
 import static cn.huangdayu.things.common.constants.ThingsConstants.Methods.THINGS_SERVICE_RESPONSE;
-import static cn.huangdayu.things.common.utils.ThingsUtils.isServiceRequest;
-import static cn.huangdayu.things.common.utils.ThingsUtils.subIdentifies;
 
 
 /**
@@ -28,6 +33,19 @@ import static cn.huangdayu.things.common.utils.ThingsUtils.subIdentifies;
 @Data
 public class JsonThingsMessage extends AbstractThingsMessage<JSONObject, JSONObject> implements Serializable {
 
+    /**
+     * 解析后的元数据视图，元数据变更后失效重新解析
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient volatile MetadataView metadataView;
+
+    /**
+     * 解析后的消息方法，设置方法时解析，反序列化等绕过 setter 的场景在读取时补充解析
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient ThingsMethod thingsMethod;
 
     public JsonThingsMessage() {
         super();
@@ -35,26 +53,101 @@ public class JsonThingsMessage extends AbstractThingsMessage<JSONObject, JSONObj
         setPayload(new JSONObject());
     }
 
+    /**
+     * 基于请求创建响应，只复制标识字段和元数据头（复制一次），消息体由调用方设置
+     */
+    protected JsonThingsMessage(JsonThingsMessage request) {
+        super(request);
+        JSONObject metadata = request.getMetadata();
+        setMetadata(metadata == null ? new JSONObject() : new MetadataObject(metadata));
+    }
+
+    @Override
+    public void setMetadata(JSONObject metadata) {
+        super.setMetadata(metadata == null || metadata instanceof MetadataObject ? metadata : new MetadataObject(metadata));
+        this.metadataView = null;
+    }
+
+    @Override
+    public void setMethod(String method) {
+        super.setMethod(method);
+        this.thingsMethod = ThingsMethod.of(method);
+    }
+
+    @JsonIgnore
+    @JSONField(serialize = false, deserialize = false)
+    public ThingsMethod getThingsMethod() {
+        ThingsMethod parsed = thingsMethod;
+        String method = getMethod();
+        if (parsed == null || !parsed.getMethod().equals(method)) {
+            parsed = ThingsMethod.of(method);
+            thingsMethod = parsed;
+        }
+        return parsed;
+    }
+
+    /**
+     * 获取元数据视图，每个消息只解析一次；视图是只读的，调用 setter 会抛出 {@link UnsupportedOperationException}，
+     * 修改请使用 {@link #setBaseMetadata(Consumer)}
+     *
+     * @return
+     */
     @JsonIgnore
     @JSONField(serialize = false, deserialize = false)
     public BaseThingsMetadata getBaseMetadata() {
-        return getMetadata().toJavaObject(BaseThingsMetadata.class);
+        MetadataObject metadata = (MetadataObject) getMetadata();
+        MetadataView view = metadataView;
+        if (view == null || view.version() != metadata.version) {
+            view = new MetadataView(metadata.version, new ReadOnlyMetadata(metadata.toJavaObject(BaseThingsMetadata.class)));
+            metadataView = view;
+        }
+        return view.baseMetadata();
     }
 
     @JsonIgnore
     @JSONField(serialize = false, deserialize = false)
     public void setBaseMetadata(Consumer<BaseThingsMetadata> consumer) {
-        BaseThingsMetadata baseThingsMetadata = getBaseMetadata();
+        BaseThingsMetadata baseThingsMetadata = new BaseThingsMetadata(getBaseMetadata());
         consumer.accept(baseThingsMetadata);
-        getMetadata().putAll((JSONObject) JSON.toJSON(baseThingsMetadata, JSONWriter.Feature.IgnoreEmpty));
+        MetadataObject metadata = (MetadataObject) getMetadata();
+        baseThingsMetadata.writeTo(metadata);
+        // 写回后元数据与视图一致（空字段已移除），不需要重新解析
+        metadataView = new MetadataView(metadata.version, new ReadOnlyMetadata(baseThingsMetadata));
     }
 
-
     @Override
     public String toString() {
         return JSON.toJSONString(this);
     }
 
+    /**
+     * 截止时间，只认发送方在元数据中明确写入的截止时间；没有截止时间返回 {@link Long#MAX_VALUE}
+     * <p>
+     * 不用消息时间加超时时间推算，节点间的时钟偏差和默认超时会让正常的消息被当作过期
+     */
+    @JsonIgnore
+    @JSONField(serialize = false, deserialize = false)
+    public long deadline() {
+        Long deadline = getBaseMetadata().getDeadline();
+        return deadline != null ? deadline : Long.MAX_VALUE;
+    }
+
+    /**
+     * 剩余的时间预算（毫秒），已过期返回 0
+     */
+    @JsonIgnore
+    @JSONField(serialize = false, deserialize = false)
+    public long remaining() {
+        long deadline = deadline();
+        return deadline == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(0, deadline - System.currentTimeMillis());
+    }
+
+    @JsonIgnore
+    @JSONField(serialize = false, deserialize = false)
+    public boolean expired() {
+        return remaining() == 0;
+    }
+
     @JsonIgnore
     @JSONField(serialize = false, deserialize = false)
     public JsonThingsMessage clientError(String errorTraceCode) {
@@ -104,20 +197,31 @@ public class JsonThingsMessage extends AbstractThingsMessage<JSONObject, JSONObj
         return response(GATEWAY_TIMEOUT, "Async timeout", null, null);
     }
 
+    /**
+     * 基于请求创建沿用请求消息体的响应，消息体共享引用；延迟解析的消息共享原始字节，不在这里解析消息体
+     */
+    protected JsonThingsMessage newResponse() {
+        JsonThingsMessage response = new JsonThingsMessage(this);
+        response.setPayload(getPayload());
+        return response;
+    }
+
     @JsonIgnore
     @JSONField(serialize = false, deserialize = false)
     private JsonThingsMessage response(String errorCode, String errorMessage, String errorTraceCode, Object payload) {
-        JsonThingsMessage response = cloneMessage();
+        // 有新消息体时不需要读取请求消息体
+        JsonThingsMessage response = payload != null ? new JsonThingsMessage(this) : newResponse();
         response.setBaseMetadata(thingsMetadata -> {
             thingsMetadata.setErrorCode(errorCode);
             thingsMetadata.setErrorMessage(errorMessage);
             thingsMetadata.setErrorTraceCode(errorTraceCode);
         });
         if (payload != null) {
-            response.setPayload((JSONObject) JSON.toJSON(payload));
+            response.setPayload(payload instanceof JSONObject jsonObject ? jsonObject : (JSONObject) JSON.toJSON(payload));
         }
-        if (isServiceRequest(response)) {
-            response.setMethod(THINGS_SERVICE_RESPONSE.replace(THINGS_IDENTIFIER, subIdentifies(response.getMethod())));
+        ThingsMethod thingsMethod = response.getThingsMethod();
+        if (thingsMethod != null && thingsMethod.isServiceRequest()) {
+            response.setMethod(THINGS_SERVICE_RESPONSE.replace(THINGS_IDENTIFIER, thingsMethod.getIdentifier()));
         }
         return response;
     }
@@ -133,4 +237,163 @@ public class JsonThingsMessage extends AbstractThingsMessage<JSONObject, JSONObj
     public JSONObject toJson() {
         return JSON.parseObject(JSON.toJSONString(this));
     }
+
+    /**
+     * 元数据修改次数，元数据为空时返回 -1
+     */
+    int metadataVersion() {
+        return getMetadata() instanceof MetadataObject metadata ? metadata.version : -1;
+    }
+
+    private record MetadataView(int version, BaseThingsMetadata baseMetadata) {
+    }
+
+    /**
+     * 只读的元数据视图，多个线程共享同一个视图
+     */
+    private static final class ReadOnlyMetadata extends BaseThingsMetadata {
+
+        ReadOnlyMetadata(BaseThingsMetadata source) {
+            super(source);
+            super.setGroupCode(source.getGroupCode() == null ? null : Collections.unmodifiableSet(super.getGroupCode()));
+        }
+
+        @Override
+        public void setSecretKey(String secretKey) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setProductCode(String productCode) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setDeviceCode(String deviceCode) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setGroupCode(Set<String> groupCode) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setSourceCode(String sourceCode) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setTargetCode(String targetCode) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setDeadline(Long deadline) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setErrorCode(String errorCode) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setErrorMessage(String errorMessage) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setErrorTraceCode(String errorTraceCode) {
+            throw readOnly();
+        }
+
+        private static UnsupportedOperationException readOnly() {
+            return new UnsupportedOperationException("Base metadata view is read-only, use JsonThingsMessage#setBaseMetadata");
+        }
+    }
+
+    /**
+     * 记录修改次数的元数据对象，用于判断元数据视图是否过期
+     */
+    private static class MetadataObject extends JSONObject {
+
+        private volatile int version;
+
+        MetadataObject(Map<String, Object> map) {
+            super(map);
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            version++;
+            return super.put(key, value);
+        }
+
+        @Override
+        public void putAll(Map<? extends String, ?> m) {
+            version++;
+            super.putAll(m);
+        }
+
+        @Override
+        public Object putIfAbsent(String key, Object value) {
+            version++;
+            return super.putIfAbsent(key, value);
+        }
+
+        @Override
+        public Object replace(String key, Object value) {
+            version++;
+            return super.replace(key, value);
+        }
+
+        @Override
+        public boolean replace(String key, Object oldValue, Object newValue) {
+            version++;
+            return super.replace(key, oldValue, newValue);
+        }
+
+        @Override
+        public Object compute(String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+            version++;
+            return super.compute(key, remappingFunction);
+        }
+
+        @Override
+        public Object computeIfAbsent(String key, Function<? super String, ?> mappingFunction) {
+            version++;
+            return super.computeIfAbsent(key, mappingFunction);
+        }
+
+        @Override
+        public Object computeIfPresent(String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+            version++;
+            return super.computeIfPresent(key, remappingFunction);
+        }
+
+        @Override
+        public Object merge(String key, Object value, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+            version++;
+            return super.merge(key, value, remappingFunction);
+        }
+
+        @Override
+        public Object remove(Object key) {
+            version++;
+            return super.remove(key);
+        }
+
+        @Override
+        public boolean remove(Object key, Object value) {
+            version++;
+            return super.remove(key, value);
+        }
+
+        @Override
+        public void clear() {
+            version++;
+            super.clear();
+        }
+    }
 }
@@ -0,0 +1,272 @@
+package cn.huangdayu.things.common.message;
+
+import cn.huangdayu.things.common.exception.ThingsException;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.alibaba.fastjson2.JSONReader;
+import com.alibaba.fastjson2.annotation.JSONField;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static cn.huangdayu.things.common.constants.ThingsConstants.ErrorCodes.BAD_REQUEST;
+
+/**
+ * 延迟解析的物模型消息，保留原始 UTF-8 字节，只解析头部字段（id、version、time、qos、timeout、method、metadata），
+ * 消息体在第一次访问时才解析；未修改的消息输出时直接使用原始字节，适用于只路由不处理的转发场景
+ * <p>
+ * 访问消息体后无法判断其内部是否被修改，视为已修改
+ *
+ * @author huangdayu
+ */
+public class LazyJsonThingsMessage extends JsonThingsMessage {
+
+    private static final String PAYLOAD = "payload";
+
+    /**
+     * 原始消息，用于延迟解析消息体和转发未修改的消息，设置消息体后置空
+     */
+    private transient volatile byte[] source;
+
+    /**
+     * 头部字段是否被修改
+     */
+    private transient volatile boolean headersModified;
+
+    /**
+     * 消息体是否已加载，消息体写入后才置为 true，其他线程看到 true 时一定能看到消息体
+     */
+    private transient volatile boolean payloadLoaded;
+
+    /**
+     * 解析时的元数据修改次数
+     */
+    private transient int sourceMetadataVersion;
+
+    public LazyJsonThingsMessage(byte[] source) {
+        super();
+        try (JSONReader reader = JSONReader.of(source)) {
+            if (!reader.nextIfObjectStart()) {
+                throw new ThingsException(BAD_REQUEST, "Things message must be a json object.");
+            }
+            while (!reader.nextIfObjectEnd()) {
+                switch (reader.readFieldName()) {
+                    case "id" -> super.setId(reader.readString());
+                    case "version" -> super.setVersion(reader.readString());
+                    case "time" -> super.setTime(reader.readInt64());
+                    case "qos" -> super.setQos(reader.readInt32Value());
+                    case "timeout" -> super.setTimeout(reader.readInt64Value());
+                    case "method" -> super.setMethod(reader.readString());
+                    case "metadata" -> super.setMetadata(readObject(reader));
+                    default -> reader.skipValue();
+                }
+            }
+        }
+        super.setPayload(null);
+        this.source = source;
+        this.payloadLoaded = false;
+        this.headersModified = false;
+        this.sourceMetadataVersion = metadataVersion();
+    }
+
+    /**
+     * 基于请求创建响应，消息体未加载时共享请求的原始字节，仍然在第一次访问时才解析
+     */
+    private LazyJsonThingsMessage(LazyJsonThingsMessage request) {
+        super(request);
+        synchronized (request) {
+            if (request.payloadLoaded) {
+                super.setPayload(request.getPayload());
+                this.payloadLoaded = true;
+            } else {
+                super.setPayload(null);
+                this.source = request.source;
+                this.payloadLoaded = false;
+            }
+        }
+        this.headersModified = true;
+    }
+
+    public LazyJsonThingsMessage(String source) {
+        this(source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    protected JsonThingsMessage newResponse() {
+        return new LazyJsonThingsMessage(this);
+    }
+
+    /**
+     * 消息会在监听、观察者等多个线程间传递，第一次访问时加锁解析，解析完成后再发布
+     */
+    @Override
+    public JSONObject getPayload() {
+        if (!payloadLoaded) {
+            synchronized (this) {
+                if (!payloadLoaded) {
+                    byte[] current = source;
+                    if (current != null) {
+                        super.setPayload(readPayload(current));
+                    }
+                    payloadLoaded = true;
+                }
+            }
+        }
+        return super.getPayload();
+    }
+
+    @Override
+    public synchronized void setPayload(JSONObject payload) {
+        source = null;
+        super.setPayload(payload);
+        payloadLoaded = true;
+    }
+
+    @Override
+    public void setMetadata(JSONObject metadata) {
+        headersModified = true;
+        super.setMetadata(metadata);
+    }
+
+    @Override
+    public void setId(String id) {
+        headersModified = true;
+        super.setId(id);
+    }
+
+    @Override
+    public void setVersion(String version) {
+        headersModified = true;
+        super.setVersion(version);
+    }
+
+    @Override
+    public void setTime(Long time) {
+        headersModified = true;
+        super.setTime(time);
+    }
+
+    @Override
+    public void setQos(int qos) {
+        headersModified = true;
+        super.setQos(qos);
+    }
+
+    @Override
+    public void setTimeout(long timeout) {
+        headersModified = true;
+        super.setTimeout(timeout);
+    }
+
+    @Override
+    public void setMethod(String method) {
+        headersModified = true;
+        super.setMethod(method);
+    }
+
+    /**
+     * 消息是否被修改，未修改的消息可以直接转发原始字节
+     */
+    @JsonIgnore
+    @JSONField(serialize = false, deserialize = false)
+    public boolean isModified() {
+        return source == null || headersModified || payloadLoaded || sourceMetadataVersion != metadataVersion();
+    }
+
+    /**
+     * 消息的 UTF-8 字节，未修改时返回原始字节（只读），否则重新序列化
+     */
+    @JsonIgnore
+    @JSONField(serialize = false, deserialize = false)
+    public byte[] toBytes() {
+        return isModified() ? JSON.toJSONBytes(this) : source;
+    }
+
+    @Override
+    public String toString() {
+        return isModified() ? super.toString() : new String(source, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public JsonThingsMessage cloneMessage() {
+        return JSON.copyTo(this, JsonThingsMessage.class);
+    }
+
+    /**
+     * 解析消息体，批量发送的消息体是 JSON 数组，只扫描一遍字节按顶层元素切分，每条消息仍然延迟解析
+     */
+    public static List<JsonThingsMessage> parse(byte[] source) {
+        int start = skipWhitespace(source, 0);
+        if (start >= source.length || source[start] != '[') {
+            return List.of(new LazyJsonThingsMessage(source));
+        }
+        List<JsonThingsMessage> messages = new ArrayList<>();
+        int depth = 0;
+        int elementStart = -1;
+        boolean inString = false;
+        boolean escaped = false;
+        for (int i = start + 1; i < source.length; i++) {
+            byte b = source[i];
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (b == '\\') {
+                    escaped = true;
+                } else if (b == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            if (b == '"') {
+                inString = true;
+            } else if (b == '{' || b == '[') {
+                if (depth++ == 0) {
+                    elementStart = i;
+                }
+            } else if (b == '}' || b == ']') {
+                if (depth == 0) {
+                    return messages;
+                }
+                if (--depth == 0) {
+                    messages.add(new LazyJsonThingsMessage(Arrays.copyOfRange(source, elementStart, i + 1)));
+                }
+            } else if (depth == 0 && b != ',' && !Character.isWhitespace(b)) {
+                throw new ThingsException(BAD_REQUEST, "Things message must be a json object.");
+            }
+        }
+        throw new ThingsException(BAD_REQUEST, "Things message array is not closed.");
+    }
+
+    private static int skipWhitespace(byte[] source, int from) {
+        int i = from;
+        while (i < source.length && Character.isWhitespace(source[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    private static JSONObject readPayload(byte[] source) {
+        try (JSONReader reader = JSONReader.of(source)) {
+            reader.nextIfObjectStart();
+            while (!reader.nextIfObjectEnd()) {
+                if (PAYLOAD.equals(reader.readFieldName())) {
+                    return readObject(reader);
+                }
+                reader.skipValue();
+            }
+        }
+        return null;
+    }
+
+    private static JSONObject readObject(JSONReader reader) {
+        if (reader.nextIfNull()) {
+            return null;
+        }
+        Map<String, Object> object = reader.readObject();
+        return object instanceof JSONObject jsonObject ? jsonObject : new JSONObject(object);
+    }
+}
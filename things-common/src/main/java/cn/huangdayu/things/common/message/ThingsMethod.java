@@ -0,0 +1,129 @@
+package cn.huangdayu.things.common.message;
+
+import cn.huangdayu.things.common.constants.ThingsConstants;
+import cn.huangdayu.things.common.enums.ThingsMethodAction;
+import cn.huangdayu.things.common.enums.ThingsMethodType;
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static cn.huangdayu.things.common.constants.ThingsConstants.Methods.THINGS_PROPERTIES_GET;
+import static cn.huangdayu.things.common.constants.ThingsConstants.Methods.THINGS_PROPERTIES_SET;
+
+/**
+ * 解析后的消息方法，不可变，按方法字符串驻留复用
+ * thing.${methodType}.${identifier}.${methodAction}
+ *
+ * @author huangdayu
+ * @see ThingsConstants.Methods
+ */
+@Getter
+public final class ThingsMethod {
+
+    private static final String THINGS_METHOD_PREFIX = "thing";
+    private static final String THINGS_SERVICE = "service";
+    private static final String THINGS_EVENT = "event";
+
+    /**
+     * 驻留表上限，超过后不再缓存，避免异常方法撑爆内存
+     */
+    private static final int MAX_INTERNED = 8192;
+    private static final Map<String, ThingsMethod> INTERNED = new ConcurrentHashMap<>();
+
+    /**
+     * 原始方法
+     */
+    private final String method;
+
+    /**
+     * 方法类型，如 service、event、properties
+     */
+    private final String type;
+
+    /**
+     * 方法类型枚举
+     */
+    private final ThingsMethodType methodType;
+
+    /**
+     * 标识符
+     */
+    private final String identifier;
+
+    /**
+     * 方法动作
+     */
+    private final ThingsMethodAction methodAction;
+
+    private final boolean serviceRequest;
+    private final boolean eventPost;
+    private final boolean propertiesSetOrGet;
+
+    private ThingsMethod(String method) {
+        this.method = method;
+        String[] parts = split(method);
+        boolean things = THINGS_METHOD_PREFIX.equals(parts[0]) && parts[4] == null;
+        this.type = parts[1];
+        this.methodType = ThingsMethodType.getMethodType(parts[1]);
+        this.identifier = parts[2];
+        this.methodAction = ThingsMethodAction.getMethodAction(parts[3]);
+        this.serviceRequest = things && THINGS_SERVICE.equals(type) && methodAction == ThingsMethodAction.REQUEST;
+        this.eventPost = things && THINGS_EVENT.equals(type) && methodAction == ThingsMethodAction.POST;
+        this.propertiesSetOrGet = THINGS_PROPERTIES_SET.equals(method) || THINGS_PROPERTIES_GET.equals(method);
+    }
+
+    public static ThingsMethod of(String method) {
+        if (method == null) {
+            return null;
+        }
+        ThingsMethod thingsMethod = INTERNED.get(method);
+        if (thingsMethod == null) {
+            thingsMethod = new ThingsMethod(method);
+            if (INTERNED.size() < MAX_INTERNED) {
+                ThingsMethod exists = INTERNED.putIfAbsent(method, thingsMethod);
+                if (exists != null) {
+                    thingsMethod = exists;
+                }
+            }
+        }
+        return thingsMethod;
+    }
+
+    /**
+     * 按 . 切分成四段，第五个元素非空表示段数超过四段
+     */
+    private static String[] split(String method) {
+        String[] parts = new String[5];
+        int start = 0;
+        for (int i = 0; i < parts.length; i++) {
+            int end = method.indexOf('.', start);
+            if (end < 0 || i == parts.length - 1) {
+                parts[i] = method.substring(start);
+                return parts;
+            }
+            parts[i] = method.substring(start, end);
+            start = end + 1;
+        }
+        return parts;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ThingsMethod that = (ThingsMethod) o;
+        return Objects.equals(method, that.method);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(method);
+    }
+
+    @Override
+    public String toString() {
+        return method;
+    }
+}
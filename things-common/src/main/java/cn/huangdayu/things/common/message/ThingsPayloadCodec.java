@@ -0,0 +1,19 @@
+package cn.huangdayu.things.common.message;
+
+import com.alibaba.fastjson2.JSONObject;
+
+/**
+ * 消息体编解码器，由物模型代码生成器为每个生成的实体生成，直接读写字段，不经过反射
+ * <p>
+ * 通过 META-INF/services 注册，见 {@link ThingsPayloadCodecs}
+ *
+ * @author huangdayu
+ */
+public interface ThingsPayloadCodec<T> {
+
+    Class<T> type();
+
+    JSONObject encode(T value);
+
+    T decode(JSONObject payload);
+}
@@ -0,0 +1,106 @@
+package cn.huangdayu.things.common.message;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Type;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 消息体编解码器注册表，有生成的编解码器的类型直接读写字段，其他类型回退到 fastjson2 的反射转换
+ * <p>
+ * 第一次使用时加载框架所在类加载器可见的编解码器；热部署的容器在注册时加载自己类加载器中的编解码器，
+ * 注销时一并移除，不再持有已卸载模块的类加载器
+ *
+ * @author huangdayu
+ */
+@Slf4j
+public final class ThingsPayloadCodecs {
+
+    private static final Map<Class<?>, ThingsPayloadCodec<?>> CODECS = new ConcurrentHashMap<>();
+
+    /**
+     * 注册者（容器名称）vs 注册的类型
+     */
+    private static final Map<String, Set<Class<?>>> OWNERS = new ConcurrentHashMap<>();
+
+    private static volatile boolean defaultsLoaded;
+
+    private ThingsPayloadCodecs() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> ThingsPayloadCodec<T> getCodec(Class<T> type) {
+        return (ThingsPayloadCodec<T>) getCodecs().get(type);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static JSONObject encode(Object value) {
+        ThingsPayloadCodec<Object> codec = (ThingsPayloadCodec<Object>) getCodecs().get(value.getClass());
+        return codec != null ? codec.encode(value) : (JSONObject) JSON.toJSON(value);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> T decode(JSONObject payload, Type type) {
+        if (type instanceof Class<?> clazz) {
+            ThingsPayloadCodec<?> codec = getCodecs().get(clazz);
+            if (codec != null) {
+                return (T) codec.decode(payload);
+            }
+        }
+        return payload.toJavaObject(type);
+    }
+
+    /**
+     * 注册类加载器中的编解码器，只注册由该类加载器本身加载的编解码器，父加载器中的编解码器不归属于该注册者；
+     * 同一注册者重复注册时先移除之前注册的编解码器
+     *
+     * @param owner       注册者，通常是容器名称
+     * @param classLoader 容器的类加载器
+     */
+    public static synchronized void register(String owner, ClassLoader classLoader) {
+        getCodecs();
+        unregister(owner);
+        Set<Class<?>> types = new HashSet<>();
+        for (ThingsPayloadCodec<?> codec : ServiceLoader.load(ThingsPayloadCodec.class, classLoader)) {
+            if (codec.getClass().getClassLoader() == classLoader && CODECS.putIfAbsent(codec.type(), codec) == null) {
+                types.add(codec.type());
+            }
+        }
+        if (!types.isEmpty()) {
+            OWNERS.put(owner, types);
+            log.debug("Things payload codecs registered by {} : {}", owner, types);
+        }
+    }
+
+    /**
+     * 移除注册者注册的编解码器
+     */
+    public static synchronized void unregister(String owner) {
+        Set<Class<?>> types = OWNERS.remove(owner);
+        if (types != null) {
+            types.forEach(CODECS::remove);
+            log.debug("Things payload codecs unregistered by {} : {}", owner, types);
+        }
+    }
+
+    private static Map<Class<?>, ThingsPayloadCodec<?>> getCodecs() {
+        if (!defaultsLoaded) {
+            synchronized (ThingsPayloadCodecs.class) {
+                if (!defaultsLoaded) {
+                    for (ThingsPayloadCodec<?> codec : ServiceLoader.load(ThingsPayloadCodec.class, ThingsPayloadCodecs.class.getClassLoader())) {
+                        CODECS.putIfAbsent(codec.type(), codec);
+                    }
+                    log.debug("Things payload codecs loaded : {}", CODECS.keySet());
+                    defaultsLoaded = true;
+                }
+            }
+        }
+        return CODECS;
+    }
+}
@@ -1,35 +1,92 @@
 package cn.huangdayu.things.common.observer;
 
 import cn.huangdayu.things.common.annotation.ThingsBean;
+import cn.huangdayu.things.common.enums.ThingsDeliveryMode;
+import cn.huangdayu.things.common.factory.ThingsKeyedExecutor;
+import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import static cn.huangdayu.things.common.factory.ThreadPoolFactory.THINGS_EXECUTOR;
+import static cn.huangdayu.things.common.enums.ThingsExecutorType.OBSERVER;
+import static cn.huangdayu.things.common.factory.ThreadPoolFactory.getExecutor;
 
 
 /**
+ * 引擎事件通知
+ * <p>
+ * 订阅表写时复制，通知时无锁读取；每个具体事件类型第一次通知时解析出匹配的订阅（包括订阅父类型的），之后直接查表
+ *
  * @author huangdayu
  */
+@Slf4j
 @ThingsBean
 public class ThingsEventObserver {
-    private final List<ThingsEventSubscriber> consumers = new ArrayList<>();
 
-    public <T extends ThingsBaseEvent> ThingsEventSubscriber<T>   registerObserver(Class<T> tClass, ThingsEventConsumer<T> consumer) {
-        ThingsEventSubscriber<T> eventSubscriber = new ThingsEventSubscriber<>(tClass, consumer);
-        consumers.add(eventSubscriber);
+    private volatile Registry registry = new Registry(List.of());
+
+    /**
+     * 按订阅串行执行 ASYNC_ORDERED 的通知
+     */
+    private final ThingsKeyedExecutor<ThingsEventSubscriber<?>> orderedExecutor = new ThingsKeyedExecutor<>(() -> getExecutor(OBSERVER));
+
+    public <T extends ThingsBaseEvent> ThingsEventSubscriber<T> registerObserver(Class<T> tClass, ThingsEventConsumer<T> consumer) {
+        return registerObserver(tClass, consumer, ThingsDeliveryMode.ASYNC_UNORDERED);
+    }
+
+    public synchronized <T extends ThingsBaseEvent> ThingsEventSubscriber<T> registerObserver(Class<T> tClass, ThingsEventConsumer<T> consumer, ThingsDeliveryMode mode) {
+        ThingsEventSubscriber<T> eventSubscriber = new ThingsEventSubscriber<>(tClass, consumer, mode);
+        List<ThingsEventSubscriber<?>> subscribers = new ArrayList<>(registry.subscribers);
+        subscribers.add(eventSubscriber);
+        registry = new Registry(subscribers);
         return eventSubscriber;
     }
 
-    public <T extends ThingsBaseEvent> void removeObserver(ThingsEventSubscriber<T> eventSubscriber) {
-        consumers.remove(eventSubscriber);
+    public synchronized <T extends ThingsBaseEvent> void removeObserver(ThingsEventSubscriber<T> eventSubscriber) {
+        List<ThingsEventSubscriber<?>> subscribers = new ArrayList<>(registry.subscribers);
+        // 按引用移除，相同类型和消费者的订阅可能注册了多次
+        if (subscribers.removeIf(subscriber -> subscriber == eventSubscriber)) {
+            registry = new Registry(subscribers);
+        }
     }
 
+    @SuppressWarnings("unchecked")
     public <T extends ThingsBaseEvent> void notifyObservers(T engineEvent) {
-        for (ThingsEventSubscriber consumer : consumers) {
-            if (consumer.getType().isAssignableFrom(engineEvent.getClass())) {
-                THINGS_EXECUTOR.execute(() -> consumer.getSubscriber().accept(engineEvent));
+        for (ThingsEventSubscriber<?> subscriber : registry.resolve(engineEvent.getClass())) {
+            ThingsEventSubscriber<T> eventSubscriber = (ThingsEventSubscriber<T>) subscriber;
+            switch (eventSubscriber.getMode()) {
+                case SYNC -> accept(eventSubscriber, engineEvent);
+                case ASYNC_ORDERED -> orderedExecutor.execute(eventSubscriber, () -> accept(eventSubscriber, engineEvent));
+                case null, default -> getExecutor(OBSERVER).execute(() -> accept(eventSubscriber, engineEvent));
             }
         }
     }
+
+    private <T extends ThingsBaseEvent> void accept(ThingsEventSubscriber<T> eventSubscriber, T engineEvent) {
+        try {
+            eventSubscriber.getSubscriber().accept(engineEvent);
+        } catch (Exception e) {
+            log.error("Things event {} observer exception", engineEvent.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * 不可变的订阅表快照，事件类型解析结果随快照一起替换
+     */
+    private static final class Registry {
+        private final List<ThingsEventSubscriber<?>> subscribers;
+        private final Map<Class<?>, ThingsEventSubscriber<?>[]> resolved = new ConcurrentHashMap<>();
+
+        private Registry(List<ThingsEventSubscriber<?>> subscribers) {
+            this.subscribers = List.copyOf(subscribers);
+        }
+
+        private ThingsEventSubscriber<?>[] resolve(Class<?> eventType) {
+            return resolved.computeIfAbsent(eventType, type -> subscribers.stream()
+                    .filter(subscriber -> subscriber.getType().isAssignableFrom(type))
+                    .toArray(ThingsEventSubscriber<?>[]::new));
+        }
+    }
 }
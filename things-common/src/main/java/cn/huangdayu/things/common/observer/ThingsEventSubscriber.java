@@ -1,5 +1,6 @@
 package cn.huangdayu.things.common.observer;
 
+import cn.huangdayu.things.common.enums.ThingsDeliveryMode;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
@@ -12,5 +13,10 @@ public class ThingsEventSubscriber<T extends ThingsBaseEvent> {
 
     private Class<T> type;
     private ThingsEventConsumer<T> subscriber;
+    private ThingsDeliveryMode mode;
+
+    public ThingsEventSubscriber(Class<T> type, ThingsEventConsumer<T> subscriber) {
+        this(type, subscriber, ThingsDeliveryMode.ASYNC_UNORDERED);
+    }
 
 }
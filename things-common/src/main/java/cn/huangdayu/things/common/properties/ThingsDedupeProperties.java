@@ -0,0 +1,29 @@
+package cn.huangdayu.things.common.properties;
+
+import lombok.Data;
+
+/**
+ * 重复消息过滤配置
+ *
+ * @author huangdayu
+ */
+@Data
+public class ThingsDedupeProperties {
+
+    /**
+     * 去重窗口（毫秒），窗口内重复的消息 id 会被过滤；
+     * 时间片记录的 id 达到容量上限后，该时间片内新出现的 id 不再记录，它们的重复消息不会被过滤，
+     * 可通过 {@link cn.huangdayu.things.common.utils.ThingsDeduplicator#getOverflowCount()} 观察
+     */
+    private long window = 300000;
+
+    /**
+     * 窗口切分的时间片数量，过期的时间片整体丢弃
+     */
+    private int slices = 10;
+
+    /**
+     * 窗口内最多记录的消息 id 数量，平均分配到每个时间片，时间片记录满后新的 id 放行但不记录，不再参与去重
+     */
+    private int capacity = 1000000;
+}
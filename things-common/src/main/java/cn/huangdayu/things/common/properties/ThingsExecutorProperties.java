@@ -0,0 +1,58 @@
+package cn.huangdayu.things.common.properties;
+
+import cn.huangdayu.things.common.enums.ThingsExecutorMode;
+import cn.huangdayu.things.common.enums.ThingsRejectPolicy;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 执行通道配置
+ *
+ * @author huangdayu
+ */
+@Data
+@NoArgsConstructor
+public class ThingsExecutorProperties {
+
+    public ThingsExecutorProperties(ThingsExecutorMode mode, int coreSize, int maxSize, int queueCapacity) {
+        this.mode = mode;
+        this.coreSize = coreSize;
+        this.maxSize = maxSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    public ThingsExecutorProperties(ThingsExecutorMode mode, int coreSize, int maxSize, int queueCapacity, ThingsRejectPolicy rejectPolicy) {
+        this(mode, coreSize, maxSize, queueCapacity);
+        this.rejectPolicy = rejectPolicy;
+    }
+
+    /**
+     * 线程模式
+     */
+    private ThingsExecutorMode mode = ThingsExecutorMode.VIRTUAL;
+
+    /**
+     * 核心线程数（平台线程池）
+     */
+    private int coreSize = 2;
+
+    /**
+     * 最大线程数（平台线程池）或最大并发任务数（虚拟线程）
+     */
+    private int maxSize = 64;
+
+    /**
+     * 等待队列容量
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 空闲线程存活时间（毫秒）
+     */
+    private long keepAlive = 60000;
+
+    /**
+     * 队列已满时的拒绝策略
+     */
+    private ThingsRejectPolicy rejectPolicy = ThingsRejectPolicy.CALLER_RUNS;
+}
@@ -0,0 +1,46 @@
+package cn.huangdayu.things.common.properties;
+
+import cn.huangdayu.things.common.enums.ThingsExecutorType;
+import lombok.Data;
+
+import static cn.huangdayu.things.common.enums.ThingsExecutorMode.PLATFORM;
+import static cn.huangdayu.things.common.enums.ThingsExecutorMode.VIRTUAL;
+import static cn.huangdayu.things.common.enums.ThingsRejectPolicy.ABORT;
+
+/**
+ * 各执行通道配置，对应 things.executors.*
+ * <p>
+ * 入站通道（监听、调用）队列满时默认拒绝，由处理链返回错误响应，不在传输层的线程上执行业务代码；
+ * 出站等通道默认由提交线程执行，形成背压
+ *
+ * @author huangdayu
+ */
+@Data
+public class ThingsExecutorsProperties {
+
+    private ThingsExecutorProperties listener = new ThingsExecutorProperties(VIRTUAL, 0, 256, 10000, ABORT);
+
+    private ThingsExecutorProperties invoker = new ThingsExecutorProperties(VIRTUAL, 0, 256, 10000, ABORT);
+
+    private ThingsExecutorProperties observer = new ThingsExecutorProperties(VIRTUAL, 0, 16, 1000);
+
+    private ThingsExecutorProperties outbound = new ThingsExecutorProperties(VIRTUAL, 0, 64, 10000);
+
+    private ThingsExecutorProperties timeout = new ThingsExecutorProperties(VIRTUAL, 0, 16, 10000);
+
+    /**
+     * 定时通道只使用 coreSize
+     */
+    private ThingsExecutorProperties scheduled = new ThingsExecutorProperties(PLATFORM, 2, 2, 0);
+
+    public ThingsExecutorProperties get(ThingsExecutorType type) {
+        return switch (type) {
+            case LISTENER -> listener;
+            case INVOKER -> invoker;
+            case OBSERVER -> observer;
+            case OUTBOUND -> outbound;
+            case TIMEOUT -> timeout;
+            case SCHEDULED -> scheduled;
+        };
+    }
+}
@@ -15,6 +15,9 @@ public class ThingsInstanceProperties {
     public ThingsInstanceProperties() {
         this.servers = new ConcurrentHashSet<>();
         this.instance = new ThingsInstance();
+        this.report = new ThingsReportProperties();
+        this.executors = new ThingsExecutorsProperties();
+        this.dedupe = new ThingsDedupeProperties();
     }
 
     /**
@@ -32,4 +35,19 @@ public class ThingsInstanceProperties {
      * 本实例信息
      */
     private volatile ThingsInstance instance;
+
+    /**
+     * 属性上报配置
+     */
+    private ThingsReportProperties report;
+
+    /**
+     * 执行通道配置
+     */
+    private ThingsExecutorsProperties executors;
+
+    /**
+     * 重复消息过滤配置
+     */
+    private ThingsDedupeProperties dedupe;
 }
@@ -0,0 +1,43 @@
+package cn.huangdayu.things.common.properties;
+
+import lombok.Data;
+
+/**
+ * 属性上报配置
+ *
+ * @author huangdayu
+ */
+@Data
+public class ThingsReportProperties {
+
+    /**
+     * 合并窗口（毫秒），窗口内变更的属性合并为一条上报消息，小于等于 0 时立即上报
+     */
+    private long window = 1000;
+
+    /**
+     * 每批上报的消息数量
+     */
+    private int batchSize = 100;
+
+    /**
+     * 是否启用死区过滤，变化量小于属性步长的数值不上报
+     */
+    private boolean deadband = true;
+
+    /**
+     * 最长上报间隔（毫秒），被死区过滤的值超过该时间仍未上报时强制上报，小于等于 0 时不强制上报
+     */
+    private long heartbeat = 60 * 1000;
+
+    /**
+     * 死区过滤记录上次上报值的设备数量上限，超出时淘汰最久未使用的设备，被淘汰的设备下次变更时完整上报变更的属性
+     */
+    private int maxDevices = 100000;
+
+    /**
+     * 离线设备的属性保留时间（毫秒），设备下线超过该时间仍未上线时回收设备的属性槽位，之后重新上线的设备从产品属性实体的值开始；
+     * 小于等于 0 时不按离线时长回收，只在注销设备时回收
+     */
+    private long offlineRetention = 24 * 60 * 60 * 1000;
+}
@@ -32,6 +32,11 @@ public class ThingsSofaBusProperties {
 
     private Map<String, String> properties;
 
+    /**
+     * 同一主题的消息合并为 JSON 数组批量发送，旧版本的订阅方无法解析数组消息体，所有订阅方升级后再开启
+     */
+    private boolean batchOutput = false;
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,163 @@
+package cn.huangdayu.things.common.utils;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按时间片轮转的消息去重表
+ * <p>
+ * 窗口切分为 slices 个时间片，环形保留 slices + 1 个时间片，覆盖的时长不小于窗口，窗口内已记录的重复 id 都能识别；
+ * 每个时间片按 id 哈希分片为多个并发集合，过期的时间片整体替换，不逐条清理；
+ * 每个时间片最多记录 capacity / slices 个 id，记录满后新的 id 放行但不记录，计入 overflow，这些 id 的重复消息不会被识别
+ *
+ * @author huangdayu
+ */
+public final class ThingsDeduplicator {
+
+    private static final int SHARDS = 16;
+
+    private final long sliceMillis;
+    private final int sliceCapacity;
+    private final AtomicReferenceArray<Slice> slices;
+    private final LongAdder checkedCount = new LongAdder();
+    private final LongAdder duplicateCount = new LongAdder();
+    private final LongAdder overflowCount = new LongAdder();
+
+    public ThingsDeduplicator(long windowMillis, int slices, int capacity) {
+        int sliceCount = Math.max(1, slices);
+        this.sliceMillis = Math.max(1, windowMillis / sliceCount);
+        this.sliceCapacity = Math.max(1, capacity / sliceCount);
+        this.slices = new AtomicReferenceArray<>(sliceCount + 1);
+    }
+
+    /**
+     * 记录消息 id
+     *
+     * @return 窗口内第一次出现返回 true，重复返回 false
+     */
+    public boolean add(String id) {
+        checkedCount.increment();
+        long epoch = System.currentTimeMillis() / sliceMillis;
+        int length = slices.length();
+        for (int i = 1; i < length; i++) {
+            Slice slice = slices.get((int) ((epoch - i) % length));
+            if (slice != null && slice.epoch == epoch - i && slice.contains(id)) {
+                duplicateCount.increment();
+                return false;
+            }
+        }
+        Slice current = current(epoch);
+        if (current.contains(id)) {
+            duplicateCount.increment();
+            return false;
+        }
+        if (current.size.get() >= sliceCapacity) {
+            overflowCount.increment();
+            return true;
+        }
+        if (!current.add(id)) {
+            duplicateCount.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private Slice current(long epoch) {
+        int index = (int) (epoch % slices.length());
+        while (true) {
+            Slice slice = slices.get(index);
+            if (slice != null && slice.epoch == epoch) {
+                return slice;
+            }
+            Slice next = new Slice(epoch);
+            if (slices.compareAndSet(index, slice, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * 检查的消息数
+     */
+    public long getCheckedCount() {
+        return checkedCount.sum();
+    }
+
+    /**
+     * 识别出的重复消息数
+     */
+    public long getDuplicateCount() {
+        return duplicateCount.sum();
+    }
+
+    /**
+     * 超出容量未记录的消息数
+     */
+    public long getOverflowCount() {
+        return overflowCount.sum();
+    }
+
+    /**
+     * 重复消息占比
+     */
+    public double getHitRate() {
+        long checked = checkedCount.sum();
+        return checked == 0 ? 0 : (double) duplicateCount.sum() / checked;
+    }
+
+    /**
+     * 超出容量未记录的消息占比，大于 0 时说明容量不足，部分重复消息没有被过滤
+     */
+    public double getOverflowRate() {
+        long checked = checkedCount.sum();
+        return checked == 0 ? 0 : (double) overflowCount.sum() / checked;
+    }
+
+    /**
+     * 当前记录的消息 id 数量，包括已过期但尚未被替换的时间片
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < slices.length(); i++) {
+            Slice slice = slices.get(i);
+            if (slice != null) {
+                size += slice.size.get();
+            }
+        }
+        return size;
+    }
+
+    private static final class Slice {
+        private final long epoch;
+        private final AtomicInteger size = new AtomicInteger();
+        private final Set<String>[] shards;
+
+        @SuppressWarnings("unchecked")
+        private Slice(long epoch) {
+            this.epoch = epoch;
+            this.shards = new Set[SHARDS];
+            for (int i = 0; i < SHARDS; i++) {
+                shards[i] = ConcurrentHashMap.newKeySet();
+            }
+        }
+
+        private Set<String> shard(String id) {
+            return shards[(id.hashCode() & 0x7fffffff) % SHARDS];
+        }
+
+        private boolean contains(String id) {
+            return shard(id).contains(id);
+        }
+
+        private boolean add(String id) {
+            if (shard(id).add(id)) {
+                size.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+}
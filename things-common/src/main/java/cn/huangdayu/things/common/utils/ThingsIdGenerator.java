@@ -0,0 +1,17 @@
+package cn.huangdayu.things.common.utils;
+
+/**
+ * 消息id生成器，可通过 {@link ThingsUtils#setIdGenerator(ThingsIdGenerator)} 替换
+ *
+ * @author huangdayu
+ */
+@FunctionalInterface
+public interface ThingsIdGenerator {
+
+    /**
+     * 生成全局唯一的id
+     *
+     * @return id
+     */
+    String nextId();
+}
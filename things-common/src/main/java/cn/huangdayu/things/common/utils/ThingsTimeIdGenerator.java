@@ -0,0 +1,124 @@
+package cn.huangdayu.things.common.utils;
+
+import cn.hutool.core.util.StrUtil;
+
+import java.net.NetworkInterface;
+import java.security.SecureRandom;
+import java.util.Enumeration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按时间排序的128位id，编码为32位小写十六进制（与去掉横线的UUID长度一致）
+ * <p>
+ * [毫秒时间戳(48bit)][节点(48bit)][序列号(32bit)]
+ * <p>
+ * 时间戳单调不回退，序列号从随机值开始自增，同一节点内唯一，不同节点按毫秒大致有序
+ * <p>
+ * 节点优先取配置（系统属性 things.id.node 或环境变量 THINGS_ID_NODE，十进制或 0x 开头的十六进制），
+ * 否则由网卡 MAC 地址和进程号计算，都取不到时使用随机数；默认节点在生成第一个 id 时才计算，不做 DNS 查询
+ *
+ * @author huangdayu
+ */
+public class ThingsTimeIdGenerator implements ThingsIdGenerator {
+
+    public static final String NODE_PROPERTY = "things.id.node";
+    public static final String NODE_ENV = "THINGS_ID_NODE";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final long NODE_MASK = 0xFFFF_FFFF_FFFFL;
+
+    /**
+     * 指定的节点，为 null 时使用默认节点
+     */
+    private final Long node;
+    private final AtomicLong lastMillis = new AtomicLong();
+    private final AtomicLong sequence = new AtomicLong(ThreadLocalRandom.current().nextLong());
+
+    public ThingsTimeIdGenerator() {
+        this.node = null;
+    }
+
+    public ThingsTimeIdGenerator(long node) {
+        this.node = node & NODE_MASK;
+    }
+
+    @Override
+    public String nextId() {
+        long millis = lastMillis.accumulateAndGet(System.currentTimeMillis(), Math::max);
+        long nodeId = node != null ? node : DefaultNode.NODE;
+        long high = (millis << 16) | (nodeId >>> 32);
+        long low = (nodeId << 32) | (sequence.getAndIncrement() & 0xFFFF_FFFFL);
+        char[] chars = new char[32];
+        writeHex(chars, 0, high);
+        writeHex(chars, 16, low);
+        return new String(chars);
+    }
+
+    private static void writeHex(char[] chars, int offset, long value) {
+        for (int i = offset + 15; i >= offset; i--) {
+            chars[i] = HEX_DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    /**
+     * 默认节点，第一次使用时计算
+     */
+    private static final class DefaultNode {
+        private static final long NODE = defaultNode();
+
+        private static long defaultNode() {
+            String configured = System.getProperty(NODE_PROPERTY, System.getenv(NODE_ENV));
+            if (StrUtil.isNotBlank(configured)) {
+                try {
+                    return Long.decode(configured.trim()) & NODE_MASK;
+                } catch (NumberFormatException e) {
+                    // 配置错误时按默认方式计算
+                }
+            }
+            long mac = macAddress();
+            if (mac == 0) {
+                return new SecureRandom().nextLong() & NODE_MASK;
+            }
+            return mix(mac * 31 + ProcessHandle.current().pid()) & NODE_MASK;
+        }
+
+        /**
+         * 第一个非回环网卡的 MAC 地址，取不到返回 0
+         */
+        private static long macAddress() {
+            try {
+                Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+                while (interfaces != null && interfaces.hasMoreElements()) {
+                    NetworkInterface networkInterface = interfaces.nextElement();
+                    if (networkInterface.isLoopback() || networkInterface.isVirtual()) {
+                        continue;
+                    }
+                    byte[] address = networkInterface.getHardwareAddress();
+                    if (address != null && address.length > 0) {
+                        long mac = 0;
+                        for (byte b : address) {
+                            mac = (mac << 8) | (b & 0xFF);
+                        }
+                        if (mac != 0) {
+                            return mac;
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                // 没有权限或者没有网卡时使用随机节点
+            }
+            return 0;
+        }
+
+        /**
+         * 64位混合函数（SplitMix64），让 MAC 地址和进程号的每一位都影响节点的低48位
+         */
+        private static long mix(long value) {
+            value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+            value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+            return value ^ (value >>> 31);
+        }
+    }
+}
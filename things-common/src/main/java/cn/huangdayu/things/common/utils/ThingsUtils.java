@@ -3,12 +3,16 @@ package cn.huangdayu.things.common.utils;
 import cn.huangdayu.things.common.annotation.ThingsEventEntity;
 import cn.huangdayu.things.common.exception.ThingsException;
 import cn.huangdayu.things.common.message.JsonThingsMessage;
+import cn.huangdayu.things.common.message.ThingsPayloadCodecs;
+import cn.huangdayu.things.common.message.ThingsMethod;
 import cn.huangdayu.things.common.message.ThingsEventMessage;
 import cn.hutool.core.map.multi.Table;
+import cn.hutool.core.util.HexUtil;
 import com.alibaba.fastjson2.JSON;
 import com.alibaba.fastjson2.JSONObject;
 import com.alibaba.fastjson2.JSONWriter;
 import com.alibaba.fastjson2.TypeReference;
+import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.aop.support.AopUtils;
 import org.springframework.core.MethodParameter;
@@ -19,10 +23,9 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
-import java.util.Date;
-import java.util.Map;
-import java.util.Set;
-import java.util.UUID;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.*;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -36,6 +39,8 @@ import static cn.huangdayu.things.common.constants.ThingsConstants.Methods.*;
 @Slf4j
 public class ThingsUtils {
 
+    private static volatile ThingsIdGenerator THINGS_ID_GENERATOR = new ThingsTimeIdGenerator();
+
     public static <R, C, V> void deleteTable(Table<R, C, V> table, Function<V, Boolean> function) {
         Set<Table.Cell<R, C, V>> collect = table.cellSet().parallelStream().filter(cell -> function.apply(cell.getValue())).collect(Collectors.toSet());
         for (Table.Cell<R, C, V> cell : collect) {
@@ -175,12 +180,50 @@ public class ThingsUtils {
     }
 
     public static String getUUID() {
-        return UUID.randomUUID().toString().replaceAll("-", "");
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+
+    public static String nextId() {
+        return THINGS_ID_GENERATOR.nextId();
+    }
+
+    public static void setIdGenerator(ThingsIdGenerator thingsIdGenerator) {
+        THINGS_ID_GENERATOR = thingsIdGenerator == null ? new ThingsTimeIdGenerator() : thingsIdGenerator;
+    }
+
+
+    /**
+     * 内容摘要，JSON 对象按键排序、数组按元素排序（DSL 中的集合都是无序的），内容相同摘要就相同，用于判断 DSL 是否变化
+     */
+    public static String contentHash(Object value) {
+        return HexUtil.encodeHexStr(sha256(canonicalJson(JSON.toJSON(value)).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String canonicalJson(Object json) {
+        if (json instanceof Map<?, ?> map) {
+            Map<String, String> sorted = new TreeMap<>();
+            map.forEach((key, value) -> {
+                if (value != null) {
+                    sorted.put(String.valueOf(key), canonicalJson(value));
+                }
+            });
+            return sorted.entrySet().stream().map(entry -> JSON.toJSONString(entry.getKey()) + ":" + entry.getValue())
+                    .collect(Collectors.joining(",", "{", "}"));
+        }
+        if (json instanceof Collection<?> collection) {
+            return collection.stream().map(ThingsUtils::canonicalJson).sorted().collect(Collectors.joining(",", "[", "]"));
+        }
+        return JSON.toJSONString(json);
+    }
+
+    @SneakyThrows
+    private static byte[] sha256(byte[] bytes) {
+        return MessageDigest.getInstance("SHA-256").digest(bytes);
     }
 
 
     public static String subIdentifies(String method) {
-        return method.split("\\.")[2];
+        return ThingsMethod.of(method).getIdentifier();
     }
 
 
@@ -195,7 +238,9 @@ public class ThingsUtils {
             baseThingsMetadata.setDeviceCode(tem.getDeviceCode());
         });
         jtm.setQos(thingsEventEntity.qos());
-        jtm.setPayload((JSONObject) JSON.toJSON(tem, JSONWriter.Feature.WriteNulls));
+        // 生成的事件类有编解码器，直接读取字段
+        jtm.setPayload(ThingsPayloadCodecs.getCodec(tem.getClass()) != null ? ThingsPayloadCodecs.encode(tem)
+                : (JSONObject) JSON.toJSON(tem, JSONWriter.Feature.WriteNulls));
         jtm.setMethod(THINGS_EVENT_POST.replace(THINGS_IDENTIFIER, thingsEventEntity.identifier()));
         return jtm;
     }
@@ -256,14 +301,14 @@ public class ThingsUtils {
     }
 
     public static boolean isServiceRequest(JsonThingsMessage jtm) {
-        return THINGS_SERVICE_REQUEST.equals(jtm.getMethod().replace(subIdentifies(jtm.getMethod()), THINGS_IDENTIFIER));
+        return jtm.getThingsMethod().isServiceRequest();
     }
 
     public static boolean isPropertiesSetOrGet(JsonThingsMessage jtm) {
-        return THINGS_PROPERTIES_SET.equals(jtm.getMethod()) || THINGS_PROPERTIES_GET.equals(jtm.getMethod());
+        return jtm.getThingsMethod().isPropertiesSetOrGet();
     }
 
     public static boolean isEventPost(JsonThingsMessage jtm) {
-        return THINGS_EVENT_POST.equals(jtm.getMethod().replace(subIdentifies(jtm.getMethod()), THINGS_IDENTIFIER));
+        return jtm.getThingsMethod().isEventPost();
     }
 }
@@ -0,0 +1,47 @@
+package cn.huangdayu.things.common.async;
+
+import cn.huangdayu.things.common.message.JsonThingsMessage;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 消息截止时间测试
+ *
+ * @author huangdayu
+ */
+public class ThingsDeadlineTest {
+
+    private static JsonThingsMessage message(long time) {
+        JsonThingsMessage jtm = new JsonThingsMessage();
+        jtm.setTime(time);
+        jtm.setQos(0);
+        return jtm;
+    }
+
+    @Test
+    public void oldMessageWithoutDeadlineIsKept() {
+        // 时钟偏差或排队导致消息时间早于超时时间，没有明确的截止时间时仍然处理
+        JsonThingsMessage jtm = message(System.currentTimeMillis() - 60000);
+        assertFalse(jtm.expired());
+        assertFalse(ThingsDeadline.drop(jtm));
+    }
+
+    @Test
+    public void explicitDeadlineIsHonoured() {
+        JsonThingsMessage jtm = message(System.currentTimeMillis());
+        jtm.setBaseMetadata(baseThingsMetadata -> baseThingsMetadata.setDeadline(System.currentTimeMillis() - 1));
+        assertTrue(jtm.expired());
+        assertTrue(ThingsDeadline.drop(jtm));
+        jtm.setQos(1);
+        assertFalse(ThingsDeadline.drop(jtm));
+    }
+
+    @Test
+    public void propagateWithoutDeadlineLeavesMessageUntouched() {
+        JsonThingsMessage jtm = message(System.currentTimeMillis() - 60000);
+        ThingsDeadline.propagate(jtm);
+        assertNull(jtm.getBaseMetadata().getDeadline());
+        assertEquals(1000, jtm.getTimeout());
+    }
+}
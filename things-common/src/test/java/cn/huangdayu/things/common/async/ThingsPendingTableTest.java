@@ -0,0 +1,128 @@
+package cn.huangdayu.things.common.async;
+
+import cn.huangdayu.things.common.wrapper.ThingsAsync;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.*;
+
+/**
+ * 异步请求等待表测试
+ *
+ * @author huangdayu
+ */
+public class ThingsPendingTableTest {
+
+    private static ThingsAsync async(String asyncId, long timeout) {
+        return new ThingsAsync(asyncId, timeout, false, null, null);
+    }
+
+    @Test
+    public void expiredRequestsAreDeliveredOnce() throws Exception {
+        Set<String> expired = ConcurrentHashMap.newKeySet();
+        AtomicInteger deliveries = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1000);
+        ThingsPendingTable table = new ThingsPendingTable(10, 64, batch -> batch.forEach(thingsAsync -> {
+            deliveries.incrementAndGet();
+            expired.add(thingsAsync.getAsyncId());
+            done.countDown();
+        }));
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(table.register(async("a" + i, 30)));
+        }
+        assertFalse(table.register(async("a0", 30)));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(1000, deliveries.get());
+        assertEquals(1000, expired.size());
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void completedRequestNeverExpires() throws Exception {
+        AtomicInteger deliveries = new AtomicInteger();
+        ThingsPendingTable table = new ThingsPendingTable(10, 4, batch -> deliveries.addAndGet(batch.size()));
+        ThingsAsync thingsAsync = async("a", 20);
+        assertTrue(table.register(thingsAsync));
+        assertSame(thingsAsync, table.complete("a"));
+        assertNull(table.complete("a"));
+        // 同一个 id 可以重新登记，旧条目不会影响新条目
+        ThingsAsync again = async("a", 10000);
+        assertTrue(table.register(again));
+        Thread.sleep(200);
+        assertEquals(0, deliveries.get());
+        assertSame(again, table.get("a"));
+        assertSame(again, table.complete("a"));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void completionRacingTimeoutWinsExactlyOnce() throws Exception {
+        int count = 20000;
+        AtomicInteger expired = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+        ThingsPendingTable table = new ThingsPendingTable(1, 64, batch -> expired.addAndGet(batch.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = offset; i < count; i += 8) {
+                        table.register(async("a" + i, i % 5));
+                        if (i % 2 == 0 && table.complete("a" + i) != null) {
+                            completed.incrementAndGet();
+                        }
+                    }
+                    for (int i = offset; i < count; i += 8) {
+                        if (table.complete("a" + i) != null) {
+                            completed.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        long until = System.currentTimeMillis() + 10000;
+        while (completed.get() + expired.get() < count && System.currentTimeMillis() < until) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        assertEquals(count, completed.get() + expired.get());
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void registrationRacingTickerIsNotDelayedByARotation() throws Exception {
+        int count = 5000;
+        CountDownLatch done = new CountDownLatch(count);
+        // 5 毫秒一个刻度，一圈约 5 秒，落进刚处理过的槽的请求要等一圈才到期
+        ThingsPendingTable table = new ThingsPendingTable(5, 1024, batch -> batch.forEach(thingsAsync -> done.countDown()));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int t = 0; t < 4; t++) {
+                int offset = t;
+                executor.execute(() -> {
+                    for (int i = offset; i < count; i += 4) {
+                        table.register(async("a" + i, 0));
+                        if (i % 64 == 0) {
+                            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                        }
+                    }
+                });
+            }
+            assertTrue(done.await(2, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, table.size());
+    }
+}
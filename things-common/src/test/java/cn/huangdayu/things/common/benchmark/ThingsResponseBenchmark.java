@@ -0,0 +1,84 @@
+package cn.huangdayu.things.common.benchmark;
+
+import cn.huangdayu.things.common.message.JsonThingsMessage;
+import cn.huangdayu.things.common.message.LazyJsonThingsMessage;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import static cn.huangdayu.things.common.constants.ThingsConstants.ErrorCodes.SUCCESS;
+
+/**
+ * 响应创建的耗时和分配对比：深拷贝请求后替换（原实现）与只复制标识字段、共享消息体（现实现）
+ * <p>
+ * 运行 main 方法，GC 分析器输出 gc.alloc.rate.norm 即每次操作的分配字节数
+ *
+ * @author huangdayu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThingsResponseBenchmark {
+
+    private JsonThingsMessage request;
+    private byte[] requestBytes;
+    private JSONObject result;
+
+    @Setup
+    public void setup() {
+        request = new JsonThingsMessage();
+        request.setMethod("thing.service.reboot");
+        request.getMetadata().put("productCode", "p1");
+        request.getMetadata().put("deviceCode", "d1");
+        for (int i = 0; i < 50; i++) {
+            request.getPayload().put("field" + i, "value" + i);
+        }
+        requestBytes = JSON.toJSONBytes(request);
+        result = new JSONObject();
+        result.put("rebooted", true);
+    }
+
+    /**
+     * 原实现：深拷贝整个请求后替换消息体
+     */
+    @Benchmark
+    public JsonThingsMessage copyResponse() {
+        JsonThingsMessage response = request.cloneMessage();
+        response.setBaseMetadata(metadata -> metadata.setErrorCode(SUCCESS));
+        response.setPayload(result);
+        return response;
+    }
+
+    @Benchmark
+    public JsonThingsMessage sharedResponse() {
+        return request.success(result);
+    }
+
+    /**
+     * 原实现：延迟解析的请求在复制时解析整个消息体
+     */
+    @Benchmark
+    public JsonThingsMessage copyLazyErrorResponse() {
+        JsonThingsMessage response = new LazyJsonThingsMessage(requestBytes).cloneMessage();
+        response.setBaseMetadata(metadata -> metadata.setErrorTraceCode("trace"));
+        return response;
+    }
+
+    @Benchmark
+    public JsonThingsMessage sharedLazyErrorResponse() {
+        return new LazyJsonThingsMessage(requestBytes).serverError("trace");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ThingsResponseBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -0,0 +1,162 @@
+package cn.huangdayu.things.common.factory;
+
+import cn.huangdayu.things.common.enums.ThingsExecutorType;
+import cn.huangdayu.things.common.enums.ThingsRejectPolicy;
+import cn.huangdayu.things.common.properties.ThingsExecutorProperties;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static cn.huangdayu.things.common.enums.ThingsExecutorMode.VIRTUAL;
+import static org.junit.Assert.*;
+
+/**
+ * 按键串行执行器测试
+ *
+ * @author huangdayu
+ */
+public class ThingsKeyedExecutorTest {
+
+    private static ThingsLaneExecutor lane(int maxSize, int queueCapacity, ThingsRejectPolicy rejectPolicy) {
+        return ThingsLaneExecutor.create(ThingsExecutorType.LISTENER, new ThingsExecutorProperties(VIRTUAL, 0, maxSize, queueCapacity, rejectPolicy));
+    }
+
+    /**
+     * 占满通道：一个任务正在执行，队列已满
+     */
+    private static CountDownLatch fill(ThingsLaneExecutor lane) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        lane.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        lane.execute(() -> {
+        });
+        return release;
+    }
+
+    @Test
+    public void tasksOfOneKeyRunInOrder() throws Exception {
+        ThingsLaneExecutor lane = lane(8, 1000, ThingsRejectPolicy.ABORT);
+        ThingsKeyedExecutor<String> keyedExecutor = new ThingsKeyedExecutor<>(() -> lane);
+        List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(500);
+        for (int i = 0; i < 500; i++) {
+            int value = i;
+            keyedExecutor.execute("k", () -> {
+                results.add(value);
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 500; i++) {
+            assertEquals(Integer.valueOf(i), results.get(i));
+        }
+    }
+
+    @Test
+    public void rejectedSubmissionIsRolledBack() throws Exception {
+        ThingsLaneExecutor lane = lane(1, 1, ThingsRejectPolicy.ABORT);
+        ThingsKeyedExecutor<String> keyedExecutor = new ThingsKeyedExecutor<>(() -> lane);
+        CountDownLatch release = fill(lane);
+        try {
+            keyedExecutor.execute("k", () -> {
+            });
+            fail("Expected rejection");
+        } catch (RejectedExecutionException e) {
+            assertEquals(0, keyedExecutor.size());
+        } finally {
+            release.countDown();
+        }
+        // 通道恢复后同一个键可以继续提交
+        CountDownLatch done = new CountDownLatch(1);
+        keyedExecutor.execute("k", done::countDown);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void rejectionDiscardsTasksAppendedByOtherThreads() throws Exception {
+        AtomicInteger count = new AtomicInteger();
+        AtomicReference<ThingsKeyedExecutor<String>> keyedExecutor = new AtomicReference<>();
+        // 提交被拒绝前，其他线程向同一个键追加任务
+        ThingsLaneExecutor rejecting = new ThingsLaneExecutor("things-rejecting", ThingsRejectPolicy.DISCARD) {
+            @Override
+            public boolean offer(Runnable task) {
+                Thread other = new Thread(() -> keyedExecutor.get().execute("k", count::incrementAndGet));
+                other.start();
+                try {
+                    other.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return false;
+            }
+
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+
+            @Override
+            public int getQueueSize() {
+                return 0;
+            }
+
+            @Override
+            public int getActiveCount() {
+                return 0;
+            }
+
+            @Override
+            public void shutdown() {
+            }
+        };
+        ThingsLaneExecutor lane = lane(1, 10, ThingsRejectPolicy.ABORT);
+        AtomicReference<ThingsLaneExecutor> current = new AtomicReference<>(rejecting);
+        keyedExecutor.set(new ThingsKeyedExecutor<>(current::get));
+        keyedExecutor.get().execute("k", count::incrementAndGet);
+        // 追加的任务与本次任务一起丢弃，不会滞留在队列中
+        assertEquals(0, keyedExecutor.get().size());
+        assertEquals(0, count.get());
+
+        // 通道恢复后同一个键重新调度
+        current.set(lane);
+        CountDownLatch done = new CountDownLatch(1);
+        keyedExecutor.get().execute("k", done::countDown);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(0, count.get());
+    }
+
+    @Test
+    public void callerRunsDrainsWithoutRecursion() throws Exception {
+        ThingsLaneExecutor lane = lane(1, 1, ThingsRejectPolicy.CALLER_RUNS);
+        ThingsKeyedExecutor<String> keyedExecutor = new ThingsKeyedExecutor<>(() -> lane);
+        CountDownLatch release = fill(lane);
+        AtomicInteger count = new AtomicInteger();
+        try {
+            keyedExecutor.execute("k", () -> {
+                count.incrementAndGet();
+                for (int i = 0; i < 10000; i++) {
+                    keyedExecutor.execute("k", count::incrementAndGet);
+                }
+            });
+        } finally {
+            release.countDown();
+        }
+        assertEquals(10001, count.get());
+        assertEquals(0, keyedExecutor.size());
+    }
+}
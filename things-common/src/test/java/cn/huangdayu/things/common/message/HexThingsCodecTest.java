@@ -0,0 +1,169 @@
+package cn.huangdayu.things.common.message;
+
+import cn.huangdayu.things.common.exception.ThingsException;
+import com.alibaba.fastjson2.JSONObject;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static cn.huangdayu.things.common.message.HexThingsCodec.*;
+import static org.junit.Assert.*;
+
+/**
+ * 二进制帧协议一致性和编解码往返测试
+ *
+ * @author huangdayu
+ */
+public class HexThingsCodecTest {
+
+    private static JsonThingsMessage message(String payloadText) {
+        JsonThingsMessage jtm = new JsonThingsMessage();
+        jtm.setMethod("thing.service.reboot");
+        jtm.setQos(1);
+        jtm.setTimeout(3000);
+        jtm.getMetadata().put("productCode", "p1");
+        jtm.getMetadata().put("deviceCode", "d1");
+        jtm.getPayload().put("text", payloadText);
+        return jtm;
+    }
+
+    private static void assertSameMessage(JsonThingsMessage expected, JsonThingsMessage actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertEquals(expected.getTime(), actual.getTime());
+        assertEquals(expected.getQos(), actual.getQos());
+        assertEquals(expected.getTimeout(), actual.getTimeout());
+        assertEquals(expected.getMethod(), actual.getMethod());
+        assertEquals(expected.getMetadata(), actual.getMetadata());
+        assertEquals(expected.getPayload(), actual.getPayload());
+    }
+
+    @Test
+    public void frameLayout() {
+        byte[] frame = HexThingsCodec.encode(message("hello"), SERIALIZER_JSON);
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        assertEquals(FRAME_HEADER, buffer.getShort(0) & 0xFFFF);
+        assertEquals(PROTOCOL_VERSION, buffer.get(2));
+        assertEquals(LAST_SEGMENT, buffer.getShort(3) & 0xFFFF);
+        assertEquals(SERIALIZER_JSON, buffer.get(9));
+        assertEquals(ENCRYPTION_NONE, buffer.get(10));
+        assertEquals(8, buffer.get(11) & 0xFF);
+        assertEquals(FRAME_TAIL, buffer.getShort(frame.length - 2) & 0xFFFF);
+    }
+
+    @Test
+    public void singleFrameRoundTrip() {
+        for (byte serializer : new byte[]{SERIALIZER_JSON, SERIALIZER_JSONB}) {
+            JsonThingsMessage jtm = message("hello");
+            assertSameMessage(jtm, HexThingsCodec.decode(ByteBuffer.wrap(HexThingsCodec.encode(jtm, serializer))));
+        }
+    }
+
+    @Test
+    public void encodeIntoBuffer() {
+        JsonThingsMessage jtm = message("hello");
+        byte[] expected = HexThingsCodec.encode(jtm, SERIALIZER_JSON);
+        ByteBuffer target = ByteBuffer.allocateDirect(expected.length + 16);
+        assertEquals(expected.length, HexThingsCodec.encode(jtm, SERIALIZER_JSON, target));
+        target.flip();
+        byte[] written = new byte[target.remaining()];
+        target.get(written);
+        assertArrayEquals(expected, written);
+    }
+
+    @Test
+    public void oversizedFieldSplitAndJoined() {
+        JsonThingsMessage jtm = message("x".repeat(MAX_FIELD_LENGTH * 2));
+        assertSameMessage(jtm, HexThingsCodec.decode(ByteBuffer.wrap(HexThingsCodec.encode(jtm, SERIALIZER_JSON))));
+    }
+
+    @Test
+    public void segmentsRoundTripInAnyOrder() {
+        JsonThingsMessage jtm = message("x".repeat(2000));
+        List<byte[]> frames = HexThingsCodec.encode(jtm, SERIALIZER_JSON, 256);
+        assertTrue(frames.size() > 2);
+        List<Segment> segments = new ArrayList<>();
+        for (byte[] frame : frames) {
+            assertTrue(frame.length <= 256);
+            segments.add(HexThingsCodec.readSegment(ByteBuffer.wrap(frame)));
+        }
+        Collections.reverse(segments);
+        assertSameMessage(jtm, HexThingsCodec.decode(segments, new JsonThingsMessage()));
+    }
+
+    @Test(expected = ThingsException.class)
+    public void missingSegmentRejectedEvenWithDuplicates() {
+        List<byte[]> frames = HexThingsCodec.encode(message("x".repeat(2000)), SERIALIZER_JSON, 256);
+        List<Segment> segments = new ArrayList<>();
+        for (byte[] frame : frames) {
+            segments.add(HexThingsCodec.readSegment(ByteBuffer.wrap(frame)));
+        }
+        // 用重复的第一个分段顶替缺失的第二个分段，数量相同也不能通过
+        segments.set(1, segments.get(0));
+        HexThingsCodec.decode(segments, new JsonThingsMessage());
+    }
+
+    @Test(expected = ThingsException.class)
+    public void checksumMismatchRejected() {
+        byte[] frame = HexThingsCodec.encode(message("hello"), SERIALIZER_JSON);
+        frame[HEAD_LENGTH + FIELD_HEAD_LENGTH] ^= 0x01;
+        HexThingsCodec.readSegment(ByteBuffer.wrap(frame));
+    }
+
+    @Test(expected = ThingsException.class)
+    public void lengthMismatchRejected() {
+        byte[] frame = HexThingsCodec.encode(message("hello"), SERIALIZER_JSON);
+        HexThingsCodec.readSegment(ByteBuffer.wrap(frame, 0, frame.length - 1));
+    }
+
+    /**
+     * 只有一个字段的单帧，校验位按协议计算
+     */
+    private static byte[] frame(byte category, byte valueType, byte[] value) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEAD_LENGTH + FIELD_HEAD_LENGTH + value.length + TAIL_LENGTH);
+        buffer.putShort((short) FRAME_HEADER).put(PROTOCOL_VERSION).putShort((short) LAST_SEGMENT).putInt(1)
+                .put(SERIALIZER_JSON).put(ENCRYPTION_NONE).put((byte) 1);
+        buffer.put(category).put(valueType).putShort((short) value.length).put(value);
+        int crc = 0xFFFF;
+        for (int i = 2; i < buffer.position(); i++) {
+            crc ^= buffer.get(i) & 0xFF;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0xA001 : crc >>> 1;
+            }
+        }
+        buffer.putShort((short) crc).putShort((short) FRAME_TAIL);
+        return buffer.array();
+    }
+
+    @Test
+    public void numericFieldLengthChecked() {
+        byte[][] invalid = {
+                frame(FIELD_TIME, TYPE_INT64, new byte[2]),
+                frame(FIELD_TIME, TYPE_STRING, new byte[8]),
+                frame(FIELD_QOS, TYPE_INT32, new byte[0]),
+                frame(FIELD_QOS, TYPE_INT64, new byte[8]),
+                frame(FIELD_TIMEOUT, TYPE_INT32, new byte[8]),
+        };
+        for (byte[] frame : invalid) {
+            try {
+                HexThingsCodec.decode(ByteBuffer.wrap(frame));
+                fail("Expected invalid numeric field rejected");
+            } catch (ThingsException e) {
+                // 期望拒绝
+            }
+        }
+        // 超时兼容 4 字节整数
+        byte[] timeout = ByteBuffer.allocate(4).putInt(3000).array();
+        assertEquals(3000L, HexThingsCodec.decode(ByteBuffer.wrap(frame(FIELD_TIMEOUT, TYPE_INT32, timeout))).getTimeout());
+    }
+
+    @Test
+    public void hexMessageRoundTrip() {
+        JsonThingsMessage jtm = message("hello");
+        HexThingsMessage hex = new HexThingsMessage(HexThingsCodec.encode(jtm, SERIALIZER_JSON));
+        assertSameMessage(jtm, new HexThingsMessage(hex.hexMessage()));
+    }
+}
@@ -0,0 +1,89 @@
+package cn.huangdayu.things.common.message;
+
+import cn.huangdayu.things.common.exception.ThingsException;
+import com.alibaba.fastjson2.JSONObject;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 延迟解析消息测试
+ *
+ * @author huangdayu
+ */
+public class LazyJsonThingsMessageTest {
+
+    private static final byte[] SOURCE = ("{\"id\":\"m1\",\"method\":\"thing.event.alarm.post\",\"metadata\":{\"productCode\":\"p1\"},"
+            + "\"payload\":{\"value\":42,\"text\":\"" + "x".repeat(4096) + "\"}}").getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void unmodifiedMessageKeepsSource() {
+        LazyJsonThingsMessage jtm = new LazyJsonThingsMessage(SOURCE);
+        assertEquals("m1", jtm.getId());
+        assertEquals("p1", jtm.getBaseMetadata().getProductCode());
+        assertFalse(jtm.isModified());
+        assertSame(SOURCE, jtm.toBytes());
+        assertNotNull(jtm.getPayload());
+        assertTrue(jtm.isModified());
+    }
+
+    @Test
+    public void concurrentPayloadReads() throws Exception {
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 200; round++) {
+                LazyJsonThingsMessage jtm = new LazyJsonThingsMessage(SOURCE);
+                CyclicBarrier barrier = new CyclicBarrier(threads);
+                List<Future<JSONObject>> futures = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    futures.add(executor.submit(() -> {
+                        barrier.await();
+                        return jtm.getPayload();
+                    }));
+                }
+                JSONObject first = futures.get(0).get(10, TimeUnit.SECONDS);
+                assertNotNull(first);
+                assertEquals(4096, first.getString("text").length());
+                for (Future<JSONObject> future : futures) {
+                    // 所有线程都看到同一个已解析完成的消息体
+                    assertSame(first, future.get(10, TimeUnit.SECONDS));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void parseSplitsArrayWithoutParsingPayloads() {
+        String second = "{\"id\":\"m2\",\"payload\":{\"text\":\"a],}[{\\\"b\"}}";
+        byte[] batch = (" [" + new String(SOURCE, StandardCharsets.UTF_8) + " ,\n" + second + "] ").getBytes(StandardCharsets.UTF_8);
+        List<JsonThingsMessage> messages = LazyJsonThingsMessage.parse(batch);
+        assertEquals(2, messages.size());
+        LazyJsonThingsMessage first = (LazyJsonThingsMessage) messages.get(0);
+        assertEquals("m1", first.getId());
+        assertFalse(first.isModified());
+        assertArrayEquals(SOURCE, first.toBytes());
+        assertEquals("m2", messages.get(1).getId());
+        assertEquals("a],}[{\"b", messages.get(1).getPayload().getString("text"));
+    }
+
+    @Test
+    public void parseSingleMessage() {
+        List<JsonThingsMessage> messages = LazyJsonThingsMessage.parse(SOURCE);
+        assertEquals(1, messages.size());
+        assertSame(SOURCE, ((LazyJsonThingsMessage) messages.get(0)).toBytes());
+        assertEquals(0, LazyJsonThingsMessage.parse("[]".getBytes(StandardCharsets.UTF_8)).size());
+    }
+
+    @Test(expected = ThingsException.class)
+    public void parseRejectsUnclosedArray() {
+        LazyJsonThingsMessage.parse(("[" + new String(SOURCE, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8));
+    }
+}
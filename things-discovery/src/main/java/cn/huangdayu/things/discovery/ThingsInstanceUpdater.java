@@ -18,6 +18,7 @@ import lombok.RequiredArgsConstructor;
 import java.util.Map;
 import java.util.Set;
 
+import static cn.huangdayu.things.common.enums.ThingsDeliveryMode.ASYNC_ORDERED;
 import static cn.hutool.core.text.CharSequenceUtil.firstNonBlank;
 
 /**
@@ -36,7 +37,7 @@ public class ThingsInstanceUpdater {
     @PostConstruct
     public void init() {
         updateThingsInstance();
-        thingsEventObserver.registerObserver(ThingsInstancesUpdatedEvent.class, engineEvent -> updateThingsInstance());
+        thingsEventObserver.registerObserver(ThingsInstancesUpdatedEvent.class, engineEvent -> updateThingsInstance(), ASYNC_ORDERED);
     }
 
     private void updateThingsInstance() {
@@ -12,11 +12,11 @@ import cn.huangdayu.things.common.dsl.ThingsInfo;
 import cn.huangdayu.things.common.message.JsonThingsMessage;
 import cn.huangdayu.things.common.wrapper.ThingsInstance;
 import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.collection.ConcurrentHashSet;
 import cn.hutool.core.util.StrUtil;
 import lombok.RequiredArgsConstructor;
 
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static cn.huangdayu.things.common.constants.ThingsConstants.THINGS_WILDCARD;
@@ -29,27 +29,89 @@ import static cn.huangdayu.things.common.utils.ThingsUtils.subIdentifies;
 @RequiredArgsConstructor
 public class ThingsInstancesDslExecutor implements ThingsInstancesDslManager, ThingsInstancesSubscriber, ThingsInstancesProvider {
 
-    public static final Set<DslInfo> DSL_INFO_SET = new ConcurrentHashSet<>();
-    public static final Set<ThingsInfo> THINGS_INFO_SET = new ConcurrentHashSet<>();
-    public static final Set<DomainInfo> DOMAIN_INFO_SET = new ConcurrentHashSet<>();
+    /**
+     * ThingsInstance vs 合并后的完整 DSL
+     */
+    public static final Map<ThingsInstance, DslInfo> DSL_INFO_MAP = new ConcurrentHashMap<>();
     private final ThingsConfigService thingsConfigService;
 
+    /**
+     * 所有实例的物模型和领域汇总，DSL 变化时重新汇总后整体替换
+     */
+    private volatile Set<ThingsInfo> thingsInfoSet = Set.of();
+    private volatile Set<DomainInfo> domainInfoSet = Set.of();
+
     @Override
-    public void addAllDsl(DslInfo dslInfo) {
-        if (dslInfo != null) {
-            if (CollUtil.isNotEmpty(dslInfo.getThingsDsl())) {
-                THINGS_INFO_SET.addAll(dslInfo.getThingsDsl());
-            }
-            if (CollUtil.isNotEmpty(dslInfo.getDomainDsl())) {
-                DOMAIN_INFO_SET.addAll(dslInfo.getDomainDsl());
-            }
-            DSL_INFO_SET.add(dslInfo);
+    public synchronized void addAllDsl(DslInfo dslInfo) {
+        if (dslInfo == null || dslInfo.getInstance() == null) {
+            return;
         }
+        DslInfo previous = DSL_INFO_MAP.get(dslInfo.getInstance());
+        if (previous != null && dslInfo.getVersion() != null && dslInfo.getVersion().equals(previous.getVersion())) {
+            return;
+        }
+        DSL_INFO_MAP.put(dslInfo.getInstance(), merge(previous, dslInfo));
+        summarize();
+    }
+
+    @Override
+    public synchronized void retainAllDsl(Set<ThingsInstance> thingsInstances) {
+        if (DSL_INFO_MAP.keySet().retainAll(thingsInstances != null ? thingsInstances : Set.of())) {
+            summarize();
+        }
+    }
+
+    @Override
+    public DslInfo getDsl(ThingsInstance thingsInstance) {
+        return thingsInstance != null ? DSL_INFO_MAP.get(thingsInstance) : null;
     }
 
     @Override
     public DslInfo getDsl() {
-        return new DslInfo(thingsConfigService.getProperties().getInstance(), DOMAIN_INFO_SET, THINGS_INFO_SET);
+        return new DslInfo(thingsConfigService.getProperties().getInstance(), domainInfoSet, thingsInfoSet);
+    }
+
+    /**
+     * 把增量 DSL 合并到已持有的 DSL 上，没有物模型版本的 DSL 视为完整 DSL
+     */
+    private DslInfo merge(DslInfo previous, DslInfo dslInfo) {
+        Map<String, String> thingsVersions = dslInfo.getThingsVersions();
+        Map<String, ThingsInfo> things = new HashMap<>();
+        if (previous != null && thingsVersions != null) {
+            previous.getThingsDsl().stream().filter(thingsInfo -> thingsVersions.containsKey(getProductCode(thingsInfo)))
+                    .forEach(thingsInfo -> things.put(getProductCode(thingsInfo), thingsInfo));
+        }
+        if (CollUtil.isNotEmpty(dslInfo.getThingsDsl())) {
+            dslInfo.getThingsDsl().forEach(thingsInfo -> things.put(getProductCode(thingsInfo), thingsInfo));
+        }
+        Set<DomainInfo> domainDsl = dslInfo.getDomainDsl() != null ? dslInfo.getDomainDsl() : previous != null ? previous.getDomainDsl() : null;
+        DslInfo merged = new DslInfo(dslInfo.getInstance(), domainDsl != null ? Set.copyOf(domainDsl) : Set.of(), Set.copyOf(things.values()));
+        if (thingsVersions == null) {
+            merged.setVersion(dslInfo.getVersion());
+            return merged;
+        }
+        // 增量缺少的部分（如已持有的 DSL 在同步过程中被清理）不记录版本，下次同步时重新获取
+        Map<String, String> heldVersions = new HashMap<>(thingsVersions);
+        heldVersions.keySet().retainAll(things.keySet());
+        boolean complete = domainDsl != null && heldVersions.size() == thingsVersions.size();
+        merged.setVersion(complete ? dslInfo.getVersion() : null);
+        merged.setThingsVersions(heldVersions);
+        return merged;
+    }
+
+    private void summarize() {
+        Set<ThingsInfo> things = new HashSet<>();
+        Set<DomainInfo> domains = new HashSet<>();
+        DSL_INFO_MAP.values().forEach(dslInfo -> {
+            things.addAll(dslInfo.getThingsDsl());
+            domains.addAll(dslInfo.getDomainDsl());
+        });
+        thingsInfoSet = Collections.unmodifiableSet(things);
+        domainInfoSet = Collections.unmodifiableSet(domains);
+    }
+
+    private String getProductCode(ThingsInfo thingsInfo) {
+        return thingsInfo.getProfile().getProduct().getCode();
     }
 
     @Override
@@ -58,7 +120,7 @@ public class ThingsInstancesDslExecutor implements ThingsInstancesDslManager, Th
     }
 
     private Set<ThingsInstance> getSubscribeInstances(String productCode, String method) {
-        return DSL_INFO_SET.parallelStream().filter(dslInfo -> isSubscribed(dslInfo.getDomainDsl(), productCode, method)).map(DslInfo::getInstance).collect(Collectors.toSet());
+        return DSL_INFO_MAP.values().parallelStream().filter(dslInfo -> isSubscribed(dslInfo.getDomainDsl(), productCode, method)).map(DslInfo::getInstance).collect(Collectors.toSet());
     }
 
     private boolean isSubscribed(Set<DomainInfo> domainDsl, String productCode, String method) {
@@ -74,16 +136,13 @@ public class ThingsInstancesDslExecutor implements ThingsInstancesDslManager, Th
 
     @Override
     public Set<ThingsInstance> getProvides(JsonThingsMessage jtm) {
-        if (CollUtil.isNotEmpty(DSL_INFO_SET)) {
-            return DSL_INFO_SET.parallelStream().filter(dslInfo -> isProvided(dslInfo.getThingsDsl(), jtm)).map(DslInfo::getInstance).collect(Collectors.toSet());
+        if (!DSL_INFO_MAP.isEmpty()) {
+            return DSL_INFO_MAP.values().parallelStream().filter(dslInfo -> isProvided(dslInfo.getThingsDsl(), jtm)).map(DslInfo::getInstance).collect(Collectors.toSet());
         }
         return Set.of();
     }
 
     private boolean isProvided(Set<ThingsInfo> thingsDsl, JsonThingsMessage jtm) {
-        return thingsDsl.parallelStream().anyMatch(thingsInfo -> {
-            String code = thingsInfo.getProfile().getProduct().getCode();
-            return jtm.getBaseMetadata().getProductCode().equals(code);
-        });
+        return thingsDsl.parallelStream().anyMatch(thingsInfo -> jtm.getBaseMetadata().getProductCode().equals(getProductCode(thingsInfo)));
     }
 }
@@ -12,7 +12,13 @@ import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static cn.huangdayu.things.common.enums.ThingsDeliveryMode.ASYNC_ORDERED;
 
 /**
  * @author huangdayu
@@ -33,7 +39,7 @@ public class ThingsInstancesExecutor implements ThingsInstancesManager {
             addInstances(engineEvent.getAddedInstances());
             removeInstancesByCodes(engineEvent.getRemovedInstanceCodes());
             thingsEventObserver.notifyObservers(new ThingsInstancesUpdatedEvent(this));
-        });
+        }, ASYNC_ORDERED);
     }
 
 
@@ -45,16 +51,36 @@ public class ThingsInstancesExecutor implements ThingsInstancesManager {
         return THINGS_INSTANCES;
     }
 
+    /**
+     * 只移除消失的实例，添加新的实例和替换信息有变化的实例，不先清空，同步过程中不会出现实例列表为空的窗口；
+     * 实例没有变化时不发布更新事件
+     */
     @Override
-    public Set<ThingsInstance> addAllInstances(Set<ThingsInstance> thingsInstances) {
-        THINGS_INSTANCES.clear();
-        if (CollUtil.isNotEmpty(thingsInstances)) {
-            THINGS_INSTANCES.addAll(thingsInstances);
+    public synchronized Set<ThingsInstance> addAllInstances(Set<ThingsInstance> thingsInstances) {
+        Set<ThingsInstance> latestInstances = CollUtil.isNotEmpty(thingsInstances) ? thingsInstances : Set.of();
+        Map<ThingsInstance, ThingsInstance> currentInstances = THINGS_INSTANCES.stream().collect(Collectors.toMap(Function.identity(), Function.identity()));
+        boolean changed = THINGS_INSTANCES.removeIf(instance -> !latestInstances.contains(instance));
+        for (ThingsInstance thingsInstance : latestInstances) {
+            ThingsInstance currentInstance = currentInstances.get(thingsInstance);
+            if (currentInstance == null || isChanged(currentInstance, thingsInstance)) {
+                // 实例按标识判等，信息变化时需要先移除旧的实例
+                THINGS_INSTANCES.remove(thingsInstance);
+                THINGS_INSTANCES.add(thingsInstance);
+                changed = true;
+            }
+        }
+        if (changed) {
+            thingsEventObserver.notifyObservers(new ThingsInstancesUpdatedEvent(this));
         }
-        thingsEventObserver.notifyObservers(new ThingsInstancesUpdatedEvent(this));
         return THINGS_INSTANCES;
     }
 
+    private boolean isChanged(ThingsInstance currentInstance, ThingsInstance thingsInstance) {
+        return !Objects.equals(currentInstance.getTypes(), thingsInstance.getTypes())
+                || !Objects.equals(currentInstance.getUpstreamUri(), thingsInstance.getUpstreamUri())
+                || currentInstance.getSessions() != thingsInstance.getSessions();
+    }
+
     @Override
     public Set<ThingsInstance> removeInstances(Set<ThingsInstance> thingsInstances) {
         if (CollUtil.isNotEmpty(thingsInstances)) {
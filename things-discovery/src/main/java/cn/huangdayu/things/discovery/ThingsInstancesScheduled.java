@@ -1,6 +1,7 @@
 package cn.huangdayu.things.discovery;
 
 import cn.huangdayu.things.api.instances.ThingsInstancesDiscoverer;
+import cn.huangdayu.things.api.instances.ThingsInstancesDslManager;
 import cn.huangdayu.things.api.instances.ThingsInstancesManager;
 import cn.huangdayu.things.common.annotation.ThingsBean;
 import cn.huangdayu.things.common.wrapper.ThingsInstance;
@@ -25,6 +26,7 @@ public class ThingsInstancesScheduled {
 
     private final Map<String, ThingsInstancesDiscoverer> thingsInstancesGetterMap;
     private final ThingsInstancesManager thingsInstancesManager;
+    private final ThingsInstancesDslManager thingsInstancesDslManager;
 
 
     @PostConstruct
@@ -49,6 +51,8 @@ public class ThingsInstancesScheduled {
             }
         }
         thingsInstancesManager.addAllInstances(allInstances);
+        // 发现过程中只增量更新 DSL，已经下线的实例在这里清理
+        thingsInstancesDslManager.retainAllDsl(allInstances);
     }
 
 
@@ -2,14 +2,18 @@ package cn.huangdayu.things.engine.chaining;
 
 import cn.huangdayu.things.api.message.ThingsHandling;
 import cn.huangdayu.things.common.annotation.ThingsHandler;
+import cn.huangdayu.things.common.dsl.DslInfo;
 import cn.huangdayu.things.common.message.JsonThingsMessage;
 import cn.huangdayu.things.common.wrapper.ThingsRequest;
 import cn.huangdayu.things.common.wrapper.ThingsResponse;
 import cn.huangdayu.things.engine.core.ThingsDescriber;
 import com.alibaba.fastjson2.JSON;
 import com.alibaba.fastjson2.JSONObject;
+import com.alibaba.fastjson2.TypeReference;
 import lombok.RequiredArgsConstructor;
 
+import java.util.Map;
+
 import static cn.huangdayu.things.common.constants.ThingsConstants.SystemMethod.SYSTEM_METHOD_DSL;
 import static cn.huangdayu.things.common.enums.ThingsMethodType.SYSTEM;
 import static cn.huangdayu.things.common.enums.ThingsStreamingType.INPUTTING;
@@ -26,7 +30,13 @@ public class ThingsDescriberHandling implements ThingsHandling {
     @Override
     public void doHandle(ThingsRequest thingsRequest, ThingsResponse thingsResponse) {
         JsonThingsMessage jtm = thingsRequest.getJtm().cloneMessage();
-        jtm.setPayload((JSONObject) JSON.toJSON(thingsDescriber.getDsl()));
+        JSONObject payload = thingsRequest.getJtm().getPayload();
+        // 请求带上已持有的版本时只返回变化的部分
+        String version = payload != null ? payload.getString("version") : null;
+        Map<String, String> thingsVersions = payload != null ? payload.getObject("thingsVersions", new TypeReference<Map<String, String>>() {
+        }) : null;
+        DslInfo dslInfo = thingsDescriber.getDsl(version, thingsVersions);
+        jtm.setPayload((JSONObject) JSON.toJSON(dslInfo));
         thingsResponse.setJtm(jtm);
     }
 }
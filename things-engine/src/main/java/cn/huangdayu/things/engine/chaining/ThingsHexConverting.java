@@ -0,0 +1,125 @@
+package cn.huangdayu.things.engine.chaining;
+
+import cn.huangdayu.things.api.message.ThingsConverting;
+import cn.huangdayu.things.common.annotation.ThingsConverter;
+import cn.huangdayu.things.common.message.HexThingsCodec;
+import cn.huangdayu.things.common.message.HexThingsCodec.Segment;
+import cn.huangdayu.things.common.message.JsonThingsMessage;
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.TimedCache;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static cn.huangdayu.things.common.message.HexThingsCodec.SERIALIZER_JSON;
+
+/**
+ * 二进制帧与物模型消息互转，分段帧在收齐所有分段后才返回消息
+ *
+ * @author huangdayu
+ */
+@Slf4j
+@ThingsConverter
+public class ThingsHexConverting implements ThingsConverting {
+
+    private static final long SEGMENT_TIMEOUT = 20 * 1000;
+
+    /**
+     * 同时重组的消息数量上限，超出时丢弃新消息的分段，避免只发部分分段的发送方占满内存
+     */
+    private static final int MAX_REASSEMBLIES = 10000;
+
+    /**
+     * 未收齐的分段，按发送方和消息id区分，超时丢弃，定时清理过期的分段
+     */
+    private final TimedCache<SegmentKey, Reassembly> segmentsCache = CacheUtil.<SegmentKey, Reassembly>newTimedCache(SEGMENT_TIMEOUT)
+            .schedulePrune(SEGMENT_TIMEOUT / 4);
+
+    @PreDestroy
+    public void destroy() {
+        segmentsCache.cancelPruneSchedule();
+    }
+
+    @Override
+    public JsonThingsMessage input(byte[] bytes) {
+        return input(null, bytes);
+    }
+
+    @Override
+    public JsonThingsMessage input(String sender, byte[] bytes) {
+        Segment segment = HexThingsCodec.readSegment(ByteBuffer.wrap(bytes));
+        if (segment.single()) {
+            return HexThingsCodec.decode(List.of(segment), new JsonThingsMessage());
+        }
+        SegmentKey key = new SegmentKey(sender, segment.messageId());
+        List<Segment> segments;
+        synchronized (segmentsCache) {
+            Reassembly reassembly = segmentsCache.get(key, false);
+            if (reassembly == null) {
+                if (segmentsCache.size() >= MAX_REASSEMBLIES && (segmentsCache.prune() == 0 || segmentsCache.size() >= MAX_REASSEMBLIES)) {
+                    log.warn("Things hex message {} from {} segment {} dropped, too many incomplete messages.", segment.messageId(), sender, segment.index());
+                    return null;
+                }
+                reassembly = new Reassembly();
+                segmentsCache.put(key, reassembly);
+            }
+            if (!reassembly.add(segment)) {
+                log.warn("Things hex message {} from {} segment {} dropped, out of range.", segment.messageId(), sender, segment.index());
+                return null;
+            }
+            if (!reassembly.isComplete()) {
+                return null;
+            }
+            segmentsCache.remove(key);
+            segments = reassembly.segments();
+        }
+        return HexThingsCodec.decode(segments, new JsonThingsMessage());
+    }
+
+    @Override
+    public byte[] output(JsonThingsMessage jtm) {
+        return HexThingsCodec.encode(jtm, SERIALIZER_JSON);
+    }
+
+    private record SegmentKey(String sender, int messageId) {
+    }
+
+    /**
+     * 一个消息已收到的分段，按序号保存，重复投递的分段覆盖之前的分段
+     */
+    private static final class Reassembly {
+        private final Map<Integer, Segment> segments = new HashMap<>();
+        private int lastIndex = -1;
+
+        /**
+         * @return 序号超出最后一个分段时返回 false
+         */
+        private boolean add(Segment segment) {
+            if (lastIndex >= 0 && segment.index() > lastIndex) {
+                return false;
+            }
+            if (segment.last()) {
+                lastIndex = segment.index();
+                segments.keySet().removeIf(index -> index > lastIndex);
+            }
+            segments.put(segment.index(), segment);
+            return true;
+        }
+
+        /**
+         * 收到最后一个分段，并且 0 到最后序号的每个分段都已收到
+         */
+        private boolean isComplete() {
+            return lastIndex >= 0 && segments.size() == lastIndex + 1;
+        }
+
+        private List<Segment> segments() {
+            return new ArrayList<>(segments.values());
+        }
+    }
+}
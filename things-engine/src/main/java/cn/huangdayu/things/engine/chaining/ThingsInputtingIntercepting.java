@@ -1,20 +1,20 @@
 package cn.huangdayu.things.engine.chaining;
 
+import cn.huangdayu.things.api.infrastructure.ThingsConfigService;
 import cn.huangdayu.things.api.message.ThingsIntercepting;
 import cn.huangdayu.things.common.annotation.ThingsInterceptor;
 import cn.huangdayu.things.common.async.ThingsAsyncManager;
+import cn.huangdayu.things.common.async.ThingsDeadline;
 import cn.huangdayu.things.common.exception.ThingsException;
+import cn.huangdayu.things.common.properties.ThingsDedupeProperties;
+import cn.huangdayu.things.common.utils.ThingsDeduplicator;
 import cn.huangdayu.things.common.wrapper.ThingsRequest;
 import cn.huangdayu.things.common.wrapper.ThingsResponse;
-import cn.hutool.cache.Cache;
-import cn.hutool.cache.impl.FIFOCache;
 import cn.hutool.core.util.StrUtil;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.concurrent.TimeUnit;
-
 import static cn.huangdayu.things.common.constants.ThingsConstants.ErrorCodes.BAD_REQUEST;
-import static cn.huangdayu.things.common.constants.ThingsConstants.THINGS_SEPARATOR;
 import static cn.huangdayu.things.common.enums.ThingsStreamingType.INPUTTING;
 
 /**
@@ -26,25 +26,40 @@ public class ThingsInputtingIntercepting implements ThingsIntercepting {
 
 
     /**
-     * 先进先出缓存，防止重复处理消息
+     * 按时间片轮转的去重表，防止重复处理消息
      */
-    private static final Cache<String, String> HANDLED_MESSAGES_CACHE = new FIFOCache<>(1000);
+    @Getter
+    private final ThingsDeduplicator deduplicator;
+
+    public ThingsInputtingIntercepting(ThingsConfigService thingsConfigService) {
+        ThingsDedupeProperties dedupe = thingsConfigService.getProperties().getDedupe();
+        dedupe = dedupe != null ? dedupe : new ThingsDedupeProperties();
+        this.deduplicator = new ThingsDeduplicator(dedupe.getWindow(), dedupe.getSlices(), dedupe.getCapacity());
+    }
 
     @Override
     public boolean preHandle(ThingsRequest thingsRequest, ThingsResponse thingsResponse) {
         if (StrUtil.isBlank(thingsRequest.getJtm().getBaseMetadata().getProductCode())) {
             throw new ThingsException(thingsRequest.getJtm(), BAD_REQUEST, "Things message not has productCode.");
         }
-        if (HANDLED_MESSAGES_CACHE.containsKey(thingsRequest.getJtm().getId())) {
+        if (ThingsDeadline.drop(thingsRequest.getJtm())) {
+            log.warn("Things inputting expired message : {}", thingsRequest.getJtm());
+            return false;
+        }
+        if (!deduplicator.add(thingsRequest.getJtm().getId())) {
             log.warn("Things inputting repeat message : {}", thingsRequest.getJtm());
             return false;
         }
-        HANDLED_MESSAGES_CACHE.put(thingsRequest.getJtm().getId(), THINGS_SEPARATOR, TimeUnit.MINUTES.toMillis(5));
         return true;
     }
 
     @Override
     public void postHandle(ThingsRequest thingsRequest, ThingsResponse thingsResponse) {
+        // 请求方已经超时，不再回复
+        if (thingsRequest.getJtm().expired()) {
+            log.debug("Things inputting skip expired reply : {}", thingsRequest.getJtm());
+            return;
+        }
         ThingsAsyncManager.asAsyncResponse(thingsResponse);
     }
 
@@ -3,7 +3,7 @@ package cn.huangdayu.things.engine.core;
 import cn.huangdayu.things.common.dsl.DslInfo;
 import cn.huangdayu.things.common.dsl.ThingsInfo;
 
-import java.util.Set;
+import java.util.Map;
 
 /**
  * 物模型DSL文档（领域特定语言）引擎
@@ -19,4 +19,15 @@ public interface ThingsDescriber {
      */
     DslInfo getDsl();
 
+    /**
+     * 按版本获取 DSL
+     * 版本没有变化时只返回实例和版本；否则只返回版本与调用方不同的物模型，
+     * {@link DslInfo#getThingsVersions()} 包括所有物模型，调用方据此判断哪些物模型已被移除
+     *
+     * @param version        调用方持有的 DSL 版本，为 null 时返回完整 DSL
+     * @param thingsVersions 调用方持有的 productCode vs 物模型版本，为 null 时返回全部物模型
+     * @return
+     */
+    DslInfo getDsl(String version, Map<String, String> thingsVersions);
+
 }
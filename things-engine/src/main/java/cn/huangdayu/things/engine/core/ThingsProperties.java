@@ -1,5 +1,9 @@
 package cn.huangdayu.things.engine.core;
 
+import com.alibaba.fastjson2.JSONObject;
+
+import java.util.Map;
+
 /**
  * @author huangdayu
  */
@@ -17,14 +21,41 @@ public interface ThingsProperties {
 
     /**
      * 获取设备配置信息对象
+     * <p>
+     * 设备属性保存在属性存储中，返回的是按当前属性值实例化的副本，修改副本不会改变设备属性，
+     * 需要调用 {@link #updatePropertyEntity(String, String, Object)} 写回；
+     * 可能与其他调用并发修改同一设备时使用 {@link #getPropertyEntity(String, String, Map)} 记录实例化时的值，只写回修改过的属性
      *
      * @param productCode
      * @param deviceCode
      * @param <T>
-     * @return
+     * @return 设备属性实体的副本，产品没有设备属性时返回产品公共的属性实体
      */
     <T> T getPropertyEntity(String productCode, String deviceCode);
 
+    /**
+     * 获取设备配置信息对象，同时记录实例化时的属性值
+     * <p>
+     * 与 {@link #getPropertyEntity(String, String)} 一样返回副本，修改后调用 {@link #updatePropertyEntity(String, String, Object, Map)} 写回
+     *
+     * @param productCode
+     * @param deviceCode
+     * @param base        接收实例化时的属性值，写回时传给 {@link #updatePropertyEntity(String, String, Object, Map)}
+     * @param <T>
+     * @return
+     */
+    <T> T getPropertyEntity(String productCode, String deviceCode, Map<String, Object> base);
+
+
+    /**
+     * 获取设备全部属性值，不实例化属性实体
+     *
+     * @param productCode
+     * @param deviceCode
+     * @return 属性实体不存在时返回 null
+     */
+    JSONObject getProperties(String productCode, String deviceCode);
+
 
     /**
      * 获取配置值
@@ -50,13 +81,22 @@ public interface ThingsProperties {
 
 
     /**
-     * 更新配置对象信息
+     * 更新配置对象信息，把属性实体的全部属性写回属性存储
      * @param productCode
      * @param deviceCode
      * @param properties
      */
     void updatePropertyEntity(String productCode, String deviceCode, Object properties);
 
+    /**
+     * 更新配置对象信息，只写回与实例化时的值不同的属性，不覆盖期间其他调用写入的属性
+     * @param productCode
+     * @param deviceCode
+     * @param properties
+     * @param base 实例化时的属性值
+     */
+    void updatePropertyEntity(String productCode, String deviceCode, Object properties, Map<String, Object> base);
+
 
     /**
      * 上报设备属性
@@ -65,4 +105,11 @@ public interface ThingsProperties {
      */
     void postProperty(String productCode, String deviceCode);
 
+    /**
+     * 注销设备，回收设备的属性槽位和上报状态，设备下线不会回收属性
+     * @param productCode
+     * @param deviceCode
+     */
+    void removeDevice(String productCode, String deviceCode);
+
 }
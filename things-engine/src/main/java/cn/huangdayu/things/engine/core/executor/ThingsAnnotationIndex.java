@@ -0,0 +1,181 @@
+package cn.huangdayu.things.engine.core.executor;
+
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.ClassUtil;
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static cn.huangdayu.things.common.constants.ThingsConstants.THINGS_ANNOTATION_INDEX;
+
+/**
+ * 编译期生成的注解索引（见 things-codegen 的 ThingsIndexProcessor），合并类路径上所有模块的索引文件
+ * <p>
+ * 只有索引中的类才使用索引，其他类或索引与类不一致（方法数或方法签名哈希不同，如编译后修改了类而没有重新生成索引）时返回 null，
+ * 由调用方回退到反射扫描
+ *
+ * @author huangdayu
+ */
+@Slf4j
+final class ThingsAnnotationIndex {
+
+    private static volatile ThingsAnnotationIndex instance;
+
+    /**
+     * 类名 vs 类的校验信息和标注了服务/监听注解的方法
+     */
+    private final Map<String, IndexedClass> functions;
+
+    private ThingsAnnotationIndex(Map<String, IndexedClass> functions) {
+        this.functions = functions;
+    }
+
+    /**
+     * 获取类中需要检查注解的方法
+     *
+     * @return 类不在索引中时返回 null
+     */
+    static Method[] getMethods(Class<?> beanClass) {
+        ThingsAnnotationIndex index = getInstance();
+        if (index.functions.isEmpty()) {
+            return null;
+        }
+        Class<?> type = beanClass;
+        // 代理类使用被代理的类
+        while (type != null && type.getName().contains("$$")) {
+            type = type.getSuperclass();
+        }
+        IndexedClass indexedClass = type == null ? null : index.functions.get(type.getName());
+        if (indexedClass == null || indexedClass.signature == null) {
+            return null;
+        }
+        if (!indexedClass.signature.equals(signature(type))) {
+            log.warn("Things annotation index is stale for {}, fallback to reflection.", type.getName());
+            return null;
+        }
+        List<IndexedMethod> indexedMethods = indexedClass.methods;
+        Method[] methods = new Method[indexedMethods.size()];
+        for (int i = 0; i < methods.length; i++) {
+            methods[i] = indexedMethods.get(i).resolve(type);
+            if (methods[i] == null) {
+                log.warn("Things annotation index is stale for {}, fallback to reflection.", type.getName());
+                return null;
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * 类及其父类（不含 java.* 中的类）声明的方法数和方法签名哈希，与 ThingsIndexProcessor 的计算规则一致，
+     * 编译器生成的桥接方法和合成方法（如 lambda）不计入
+     */
+    private static String signature(Class<?> type) {
+        List<String> signatures = new ArrayList<>();
+        for (Class<?> current = type; current != null && !current.getName().startsWith("java."); current = current.getSuperclass()) {
+            for (Method method : current.getDeclaredMethods()) {
+                if (method.isBridge() || method.isSynthetic()) {
+                    continue;
+                }
+                StringJoiner parameters = new StringJoiner(",");
+                for (Class<?> parameterType : method.getParameterTypes()) {
+                    parameters.add(parameterType.getCanonicalName() != null ? parameterType.getCanonicalName() : parameterType.getName());
+                }
+                signatures.add(method.getName() + "(" + parameters + ")");
+            }
+        }
+        Collections.sort(signatures);
+        return signatures.size() + "\t" + Integer.toHexString(String.join("\n", signatures).hashCode());
+    }
+
+    private static ThingsAnnotationIndex getInstance() {
+        ThingsAnnotationIndex index = instance;
+        if (index == null) {
+            synchronized (ThingsAnnotationIndex.class) {
+                index = instance;
+                if (index == null) {
+                    index = load(ClassUtil.getClassLoader());
+                    instance = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    private static ThingsAnnotationIndex load(ClassLoader classLoader) {
+        Map<String, IndexedClass> functions = new HashMap<>();
+        try {
+            Enumeration<URL> resources = classLoader.getResources(THINGS_ANNOTATION_INDEX);
+            while (resources.hasMoreElements()) {
+                URL url = resources.nextElement();
+                try (InputStream in = url.openStream()) {
+                    for (String line : StrUtil.splitTrim(IoUtil.read(in, StandardCharsets.UTF_8), '\n')) {
+                        parse(line, functions);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Things annotation index load failed, fallback to reflection : {}", e.getMessage());
+            return new ThingsAnnotationIndex(Map.of());
+        }
+        log.debug("Things annotation index loaded {} classes.", functions.size());
+        return new ThingsAnnotationIndex(functions);
+    }
+
+    /**
+     * 没有 C 行的类（旧版本生成的索引）无法校验，不使用索引
+     */
+    private static void parse(String line, Map<String, IndexedClass> functions) {
+        String[] fields = line.split("\t", -1);
+        if ("C".equals(fields[0]) && fields.length == 4) {
+            functions.computeIfAbsent(fields[1], k -> new IndexedClass()).signature = fields[2] + "\t" + fields[3];
+        } else if ("M".equals(fields[0]) && fields.length == 5) {
+            String[] parameterTypes = fields[4].isEmpty() ? new String[0] : fields[4].split(",");
+            functions.computeIfAbsent(fields[1], k -> new IndexedClass()).methods.add(new IndexedMethod(fields[2], fields[3], parameterTypes));
+        }
+    }
+
+    private static final class IndexedClass {
+        /**
+         * 方法数和方法签名哈希，以制表符分隔
+         */
+        private String signature;
+        private final List<IndexedMethod> methods = new ArrayList<>();
+    }
+
+    private record IndexedMethod(String declaringClass, String name, String[] parameterTypes) {
+
+        /**
+         * 在类及其父类中找到声明方法的类，按方法名和参数类型匹配
+         */
+        Method resolve(Class<?> type) {
+            for (Class<?> declaring = type; declaring != null; declaring = declaring.getSuperclass()) {
+                if (declaring.getName().equals(declaringClass)) {
+                    for (Method method : declaring.getDeclaredMethods()) {
+                        if (method.getName().equals(name) && matches(method.getParameterTypes())) {
+                            return method;
+                        }
+                    }
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        private boolean matches(Class<?>[] types) {
+            if (types.length != parameterTypes.length) {
+                return false;
+            }
+            for (int i = 0; i < types.length; i++) {
+                if (!parameterTypes[i].equals(types[i].getCanonicalName())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -4,19 +4,21 @@ import cn.huangdayu.things.common.annotation.*;
 import cn.huangdayu.things.common.message.AbstractThingsMessage;
 import cn.huangdayu.things.common.message.BaseThingsMessage;
 import cn.huangdayu.things.common.message.JsonThingsMessage;
+import cn.huangdayu.things.common.message.ThingsPayloadCodecs;
 import cn.huangdayu.things.engine.core.ThingsProperties;
 import cn.huangdayu.things.engine.wrapper.ThingsFunction;
 import cn.huangdayu.things.engine.wrapper.ThingsParameter;
+import cn.huangdayu.things.engine.wrapper.ThingsParameterBinder;
 import cn.hutool.core.convert.Convert;
 import cn.hutool.core.util.ReflectUtil;
 import com.alibaba.fastjson2.JSON;
-import lombok.AllArgsConstructor;
-import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
 
 import static cn.huangdayu.things.common.utils.ThingsUtils.typeConvert;
 import static cn.huangdayu.things.engine.core.executor.ThingsBaseExecutor.getThingsBean;
@@ -31,90 +33,138 @@ public class ThingsArgsConverter {
     private final ThingsProperties thingsProperties;
 
 
-    private final Map<String, Function<ThingsArgsConverter.War, Object>> functionMap = Map.of(
-            ThingsParam.class.getName(), this::argForThingsParam,
-            ThingsMessage.class.getName(), this::argForThingsMessage,
-            ThingsPayload.class.getName(), this::argForThingsPayload,
-            ThingsMetadata.class.getName(), this::argForThingsMetadata,
-            ThingsInject.class.getName(), this::argForThingsInject
-    );
-
-
-    public Object[] args(JsonThingsMessage jtm, ThingsFunction thingsFunction) {
+    /**
+     * 绑定调用参数
+     *
+     * @param bases 按参数下标接收注入的设备属性实体实例化时的属性值，调用结束后传给 {@link #release}；
+     *              没有参数注入设备属性实体（{@link ThingsFunction#isDevicePropertyEntity()}）时可以为 null
+     */
+    public Object[] args(JsonThingsMessage jtm, ThingsFunction thingsFunction, Object[] bases) {
         ThingsParameter[] thingsParameters = thingsFunction.getThingsParameters();
         Object[] args = new Object[thingsParameters.length];
         for (int i = 0; i < thingsParameters.length; i++) {
-            ThingsParameter thingsParameter = thingsParameters[i];
-            War war = new War(jtm, thingsParameter, thingsFunction, i);
-            if (thingsParameter.getAnnotation() != null) {
-                Function<War, Object> function = functionMap.get(thingsParameter.getAnnotation().annotationType().getName());
-                args[i] = function.apply(war);
+            if (thingsParameters[i].isDevicePropertyEntity()) {
+                Map<String, Object> base = new HashMap<>();
+                args[i] = injectPropertyEntity(jtm, thingsParameters[i], base);
+                bases[i] = base;
             } else {
-                log.error("Things method args {} convert failed", thingsParameter.getName());
+                args[i] = thingsParameters[i].getBinder().bind(jtm);
             }
         }
         return args;
     }
 
-    private Object argForThingsPayload(War war) {
-        return war.getJtm().getPayload().toJavaObject(war.getThingsParameter().getType());
+    /**
+     * 调用结束后把注入的设备属性实体写回属性存储，设备属性实体是按需实例化的副本，只写回调用期间修改的属性
+     */
+    @SuppressWarnings("unchecked")
+    public void release(JsonThingsMessage jtm, ThingsFunction thingsFunction, Object[] args, Object[] bases) {
+        if (bases == null) {
+            return;
+        }
+        ThingsParameter[] thingsParameters = thingsFunction.getThingsParameters();
+        for (int i = 0; i < thingsParameters.length; i++) {
+            if (args[i] != null && bases[i] != null) {
+                thingsProperties.updatePropertyEntity(jtm.getBaseMetadata().getProductCode(), jtm.getBaseMetadata().getDeviceCode(),
+                        args[i], (Map<String, Object>) bases[i]);
+            }
+        }
     }
 
-    private Object argForThingsMetadata(War war) {
-        return war.getJtm().getMetadata().toJavaObject(war.getThingsParameter().getType());
+    /**
+     * 参数是否注入设备属性实体，只在扫描时调用一次，结果保存在 {@link ThingsParameter#isDevicePropertyEntity()}
+     */
+    boolean isDevicePropertyEntity(ThingsParameter thingsParameter) {
+        if (!(thingsParameter.getAnnotation() instanceof ThingsInject)) {
+            return false;
+        }
+        ThingsPropertyEntity annotation = thingsParameter.getType().getAnnotation(ThingsPropertyEntity.class);
+        return annotation != null && !annotation.productPublic();
     }
 
-    private Object argForThingsInject(War war) {
-        ThingsParameter thingsParameter = war.getThingsParameter();
-        JsonThingsMessage jtm = war.getJtm();
-        ThingsFunction thingsFunction = war.getThingsFunction();
+    /**
+     * 根据参数注解生成参数绑定器，只在扫描时调用一次
+     *
+     * @param method         参数所属方法
+     * @param thingsParameter 参数
+     * @return 参数绑定器
+     */
+    public ThingsParameterBinder binder(Method method, ThingsParameter thingsParameter) {
+        return switch (thingsParameter.getAnnotation()) {
+            case ThingsParam thingsParam -> binderForThingsParam(thingsParam, thingsParameter);
+            case ThingsMessage ignored -> binderForThingsMessage(method, thingsParameter);
+            case ThingsPayload ignored -> binderForThingsPayload(thingsParameter);
+            case ThingsMetadata ignored -> binderForThingsMetadata(thingsParameter);
+            case ThingsInject ignored -> binderForThingsInject(thingsParameter);
+            case null, default -> {
+                log.error("Things method args {} convert failed", thingsParameter.getName());
+                yield jtm -> null;
+            }
+        };
+    }
+
+    private ThingsParameterBinder binderForThingsPayload(ThingsParameter thingsParameter) {
+        Class<?> type = thingsParameter.getType();
+        return jtm -> ThingsPayloadCodecs.decode(jtm.getPayload(), type);
+    }
+
+    private ThingsParameterBinder binderForThingsMetadata(ThingsParameter thingsParameter) {
+        Class<?> type = thingsParameter.getType();
+        return jtm -> jtm.getMetadata().toJavaObject(type);
+    }
+
+    private ThingsParameterBinder binderForThingsInject(ThingsParameter thingsParameter) {
+        Class<?> type = thingsParameter.getType();
+        ThingsPropertyEntity annotation = type.getAnnotation(ThingsPropertyEntity.class);
+        if (annotation == null) {
+            return jtm -> getThingsBean(type);
+        }
+        return jtm -> injectPropertyEntity(jtm, thingsParameter, null);
+    }
+
+    private Object injectPropertyEntity(JsonThingsMessage jtm, ThingsParameter thingsParameter, Map<String, Object> base) {
         ThingsPropertyEntity annotation = thingsParameter.getType().getAnnotation(ThingsPropertyEntity.class);
-        if (annotation != null) {
-            String productCode = jtm.getBaseMetadata().getProductCode();
-            if (annotation.productCode().equals(productCode)) {
-                if (annotation.productPublic()) {
-                    return thingsProperties.getPropertyEntity(productCode);
-                } else {
-                    return thingsProperties.getPropertyEntity(productCode, jtm.getBaseMetadata().getDeviceCode());
-                }
+        String productCode = annotation.productCode();
+        String messageProductCode = jtm.getBaseMetadata().getProductCode();
+        if (productCode.equals(messageProductCode)) {
+            if (annotation.productPublic()) {
+                return thingsProperties.getPropertyEntity(productCode);
             }
-            log.error("物模型方法调用需要注入的配置对象与产品标识不一致（{}），方法：{}，参数：{}", productCode, thingsFunction.getMethod().getName(), thingsParameter.getName());
-            return null;
+            return thingsProperties.getPropertyEntity(productCode, jtm.getBaseMetadata().getDeviceCode(), base);
         }
-        return getThingsBean(thingsParameter.getType());
+        log.error("物模型方法调用需要注入的配置对象与产品标识不一致（{}），方法：{}，参数：{}", messageProductCode,
+                thingsParameter.getParameter().getDeclaringExecutable().getName(), thingsParameter.getName());
+        return null;
     }
 
-    private Object argForThingsMessage(War war) {
-        ThingsParameter thingsParameter = war.getThingsParameter();
-        JsonThingsMessage jtm = war.getJtm();
-        ThingsFunction thingsFunction = war.getThingsFunction();
-        if (thingsParameter.getType().isAssignableFrom(JsonThingsMessage.class)) {
-            return jtm;
+    private ThingsParameterBinder binderForThingsMessage(Method method, ThingsParameter thingsParameter) {
+        Class<?> type = thingsParameter.getType();
+        if (type.isAssignableFrom(JsonThingsMessage.class)) {
+            return jtm -> jtm;
         }
-        if (thingsParameter.getType().isAssignableFrom(BaseThingsMessage.class) || thingsParameter.getType().isAssignableFrom(AbstractThingsMessage.class)) {
-            return typeConvert(jtm, thingsParameter.getType(), thingsFunction.getMethod(), war.getIndex());
+        if (type.isAssignableFrom(BaseThingsMessage.class) || type.isAssignableFrom(AbstractThingsMessage.class)) {
+            int index = thingsParameter.getIndex();
+            return jtm -> typeConvert(jtm, type, method, index);
         }
-        return JSON.to(thingsParameter.getType(), jtm);
+        return jtm -> JSON.to(type, jtm);
     }
 
-    private Object argForThingsParam(War war) {
-        ThingsParameter thingsParameter = war.getThingsParameter();
-        JsonThingsMessage jtm = war.getJtm();
-        ThingsParam.BodyType object = ((ThingsParam) thingsParameter.getAnnotation()).bodyType();
-        if (ThingsParam.BodyType.PAYLOAD.equals(object)) {
-            return jtm.getPayload().getObject(thingsParameter.getName(), thingsParameter.getType());
-        } else if (ThingsParam.BodyType.METADATA.equals(object)) {
-            return jtm.getMetadata().getObject(thingsParameter.getName(), thingsParameter.getType());
+    private ThingsParameterBinder binderForThingsParam(ThingsParam thingsParam, ThingsParameter thingsParameter) {
+        Class<?> type = thingsParameter.getType();
+        String name = thingsParameter.getName();
+        ThingsParam.BodyType bodyType = thingsParam.bodyType();
+        if (ThingsParam.BodyType.PAYLOAD.equals(bodyType)) {
+            return jtm -> jtm.getPayload().getObject(name, type);
+        } else if (ThingsParam.BodyType.METADATA.equals(bodyType)) {
+            return jtm -> jtm.getMetadata().getObject(name, type);
         }
-        return Convert.convert(thingsParameter.getType(), ReflectUtil.getFieldValue(jtm, thingsParameter.getName()));
+        Field field = ReflectUtil.getField(JsonThingsMessage.class, name);
+        if (field == null) {
+            log.error("Things method args {} not found in message", name);
+            return jtm -> null;
+        }
+        field.trySetAccessible();
+        return jtm -> Convert.convert(type, ReflectUtil.getFieldValue(jtm, field));
     }
 
-    @Data
-    @AllArgsConstructor
-    private static class War {
-        private JsonThingsMessage jtm;
-        private ThingsParameter thingsParameter;
-        private ThingsFunction thingsFunction;
-        private int index;
-    }
 }
@@ -1,14 +1,19 @@
 package cn.huangdayu.things.engine.core.executor;
 
 import cn.huangdayu.things.api.container.ThingsContainer;
-import cn.huangdayu.things.engine.wrapper.*;
-import cn.hutool.core.map.multi.RowKeyTable;
-import cn.hutool.core.map.multi.Table;
+import cn.huangdayu.things.common.enums.ThingsExecutorType;
+import cn.huangdayu.things.common.factory.ThingsLaneExecutor;
+import cn.huangdayu.things.engine.wrapper.ThingsPropertyAccessor;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.Map;
-import java.util.Set;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static cn.huangdayu.things.common.factory.ThreadPoolFactory.getExecutor;
 
 /**
  * @author huangdayu
@@ -16,79 +21,116 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 public abstract class ThingsBaseExecutor {
     /**
-     * containerName vs ThingsContainer
+     * 引擎注册表快照，注册和注销时整体替换
      */
-    protected static final Map<String, ThingsContainer> THINGS_CONTAINERS = new ConcurrentHashMap<>();
-
+    private static volatile ThingsEngineSnapshot THINGS_ENGINE_SNAPSHOT = ThingsEngineSnapshot.EMPTY;
 
     /**
-     * productCode vs ThingsBeanClass vs ThingsEntity
+     * 当前线程正在处理的消息固定使用的快照，处理链和调用器看到同一个快照
      */
-    protected static final Table<String, Class<?>, ThingsEntity> THINGS_ENTITY_TABLE = new RowKeyTable<>(new ConcurrentHashMap<>(), ConcurrentHashMap::new);
-
+    private static final ThreadLocal<ThingsEngineSnapshot> PINNED_SNAPSHOT = new ThreadLocal<>();
 
     /**
-     * identifier vs productCode vs ThingsFunction
+     * ThingsPropertyEntityClass vs ThingsPropertyAccessor
      */
-    protected static final Table<String, String, ThingsFunction> THINGS_SERVICES_TABLE = new RowKeyTable<>(new ConcurrentHashMap<>(), ConcurrentHashMap::new);
+    protected static final Map<Class<?>, ThingsPropertyAccessor> THINGS_PROPERTY_ACCESSORS = new ConcurrentHashMap<>();
 
     /**
-     * productCode vs ThingsProperties
+     * 执行通道对应的 reactor 调度器，通道重新配置后按新通道重建
      */
-    protected static final Map<String, ThingsProperty> PRODUCT_PROPERTY_MAP = new ConcurrentHashMap<>();
-
-    /**
-     * deviceCode vs productCode vs ThingsProperties
-     */
-    protected static final Table<String, String, ThingsProperty> DEVICE_PROPERTY_MAP = new RowKeyTable<>(new ConcurrentHashMap<>(), ConcurrentHashMap::new);
-
+    private static final Map<ThingsExecutorType, LaneScheduler> THINGS_SCHEDULERS = new ConcurrentHashMap<>();
 
     /**
-     * identifier vs productCode vs ThingsEvents
+     * 当前的注册表快照，当前线程固定了快照时返回固定的快照
      */
-    protected static final Table<String, String, ThingsEvents> THINGS_EVENTS_TABLE = new RowKeyTable<>(new ConcurrentHashMap<>(), ConcurrentHashMap::new);
-
+    protected static ThingsEngineSnapshot snapshot() {
+        ThingsEngineSnapshot pinned = PINNED_SNAPSHOT.get();
+        return pinned != null ? pinned : THINGS_ENGINE_SNAPSHOT;
+    }
 
     /**
-     * identifier vs productCode vs ThingsEventListener
+     * 为当前线程固定快照，直到 {@link #unpinSnapshot(ThingsEngineSnapshot)}；已经固定时（嵌套处理）沿用外层的快照
+     *
+     * @return 外层固定的快照，没有时为 null，传给 {@link #unpinSnapshot(ThingsEngineSnapshot)}
      */
-    protected static final Table<String, String, Set<ThingsFunction>> THINGS_EVENTS_LISTENER_TABLE = new RowKeyTable<>(new ConcurrentHashMap<>(), ConcurrentHashMap::new);
+    protected static ThingsEngineSnapshot pinSnapshot() {
+        ThingsEngineSnapshot outer = PINNED_SNAPSHOT.get();
+        if (outer == null) {
+            PINNED_SNAPSHOT.set(THINGS_ENGINE_SNAPSHOT);
+        }
+        return outer;
+    }
 
+    protected static void unpinSnapshot(ThingsEngineSnapshot outer) {
+        if (outer == null) {
+            PINNED_SNAPSHOT.remove();
+        }
+    }
 
     /**
-     * identifier vs productCode vs ThingsPropertyListener
+     * 在当前快照的副本上修改并发布新快照，加锁保证并发注册和注销不会丢失修改
      */
-    protected static final Table<String, String, Set<ThingsFunction>> THINGS_PROPERTY_LISTENER_TABLE = new RowKeyTable<>(new ConcurrentHashMap<>(), ConcurrentHashMap::new);
-
+    protected static synchronized ThingsEngineSnapshot updateSnapshot(Consumer<ThingsEngineSnapshot.Builder> updater) {
+        ThingsEngineSnapshot.Builder builder = THINGS_ENGINE_SNAPSHOT.toBuilder();
+        updater.accept(builder);
+        ThingsEngineSnapshot snapshot = builder.build();
+        THINGS_ENGINE_SNAPSHOT = snapshot;
+        return snapshot;
+    }
 
     /**
-     * identifier vs productCode vs ThingsFilters
+     * 获取执行通道的 reactor 调度器，每个通道只创建一次
      */
-    protected static final Table<String, String, Set<ThingsFilters>> THINGS_FILTERS_TABLE = new RowKeyTable<>(new ConcurrentHashMap<>(), ConcurrentHashMap::new);
+    protected static Scheduler getScheduler(ThingsExecutorType type) {
+        ThingsLaneExecutor lane = getExecutor(type);
+        LaneScheduler laneScheduler = THINGS_SCHEDULERS.get(type);
+        if (laneScheduler == null || laneScheduler.lane() != lane) {
+            laneScheduler = THINGS_SCHEDULERS.compute(type, (t, current) ->
+                    current != null && current.lane() == lane ? current : new LaneScheduler(lane, Schedulers.fromExecutor(lane)));
+        }
+        return laneScheduler.scheduler();
+    }
 
     /**
-     * identifier vs productCode vs ThingsInterceptors
+     * 获取属性实体访问表，注册时已生成，未注册的类按需生成
      */
-    protected static final Table<String, String, Set<ThingsInterceptors>> THINGS_INTERCEPTORS_TABLE = new RowKeyTable<>(new ConcurrentHashMap<>(), ConcurrentHashMap::new);
-
+    protected static ThingsPropertyAccessor getPropertyAccessor(Class<?> beanClass) {
+        return THINGS_PROPERTY_ACCESSORS.computeIfAbsent(beanClass, ThingsPropertyAccessor::new);
+    }
 
     /**
-     * identifier vs productCode vs ThingsHandlers
+     * 按类型查找容器中的 bean，提供该类型的容器（包括找不到的结果）缓存在当前快照中，
+     * 之后只向命中的容器取 bean，不再逐个容器查找并吞掉异常；只缓存容器不缓存 bean，保留 bean 的作用域
      */
-    protected static final Table<String, String, Set<ThingsHandlers>> THINGS_HANDLERS_TABLE = new RowKeyTable<>(new ConcurrentHashMap<>(), ConcurrentHashMap::new);
-
     public static <T> T getThingsBean(Class<T> requiredType) {
-        for (Map.Entry<String, ThingsContainer> entry : THINGS_CONTAINERS.entrySet()) {
-            try {
-                T bean = entry.getValue().getBean(requiredType);
-                if (bean != null) {
-                    return bean;
-                }
-            } catch (Exception ignored) {
+        ThingsEngineSnapshot snapshot = snapshot();
+        Optional<ThingsContainer> resolved = snapshot.getBeanContainers().get(requiredType);
+        if (resolved != null) {
+            T bean = resolved.map(thingsContainer -> getBean(thingsContainer, requiredType)).orElse(null);
+            if (bean != null || resolved.isEmpty()) {
+                return bean;
             }
         }
+        for (ThingsContainer thingsContainer : snapshot.getContainers().values()) {
+            T bean = getBean(thingsContainer, requiredType);
+            if (bean != null) {
+                snapshot.getBeanContainers().put(requiredType, Optional.of(thingsContainer));
+                return bean;
+            }
+        }
+        snapshot.getBeanContainers().put(requiredType, Optional.empty());
         log.error("Not found Things Bean : [{}]", requiredType);
         return null;
     }
 
+    private static <T> T getBean(ThingsContainer thingsContainer, Class<T> requiredType) {
+        try {
+            return thingsContainer.getBean(requiredType);
+        } catch (Exception ignored) {
+            return null;
+        }
+    }
+
+    private record LaneScheduler(ThingsLaneExecutor lane, Scheduler scheduler) {
+    }
 }
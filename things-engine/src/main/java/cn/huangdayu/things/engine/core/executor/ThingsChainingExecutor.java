@@ -1,41 +1,30 @@
 package cn.huangdayu.things.engine.core.executor;
 
+import cn.huangdayu.things.api.message.ThingsBatchHandling;
 import cn.huangdayu.things.api.message.ThingsChaining;
 import cn.huangdayu.things.api.message.ThingsFiltering;
 import cn.huangdayu.things.common.annotation.ThingsBean;
-import cn.huangdayu.things.common.enums.ThingsMethodType;
 import cn.huangdayu.things.common.enums.ThingsStreamingType;
 import cn.huangdayu.things.common.exception.ThingsException;
-import cn.huangdayu.things.common.message.BaseThingsMetadata;
 import cn.huangdayu.things.common.message.JsonThingsMessage;
+import cn.huangdayu.things.common.message.ThingsMethod;
 import cn.huangdayu.things.common.wrapper.ThingsRequest;
 import cn.huangdayu.things.common.wrapper.ThingsResponse;
-import cn.huangdayu.things.engine.wrapper.ThingsFilters;
+import cn.huangdayu.things.engine.core.executor.ThingsChainingIndex.Chaining;
 import cn.huangdayu.things.engine.wrapper.ThingsHandlers;
 import cn.huangdayu.things.engine.wrapper.ThingsInterceptors;
-import cn.hutool.cache.Cache;
-import cn.hutool.cache.impl.LRUCache;
-import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.map.multi.Table;
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Comparator;
-import java.util.HashSet;
-import java.util.LinkedHashSet;
-import java.util.Set;
-import java.util.concurrent.TimeUnit;
-import java.util.function.Function;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+import static cn.huangdayu.things.common.constants.ThingsConstants.ErrorCodes.FORBIDDEN;
 import static cn.huangdayu.things.common.constants.ThingsConstants.ErrorCodes.SERVICE_UNAVAILABLE;
-import static cn.huangdayu.things.common.constants.ThingsConstants.THINGS_SEPARATOR;
-import static cn.huangdayu.things.common.constants.ThingsConstants.THINGS_WILDCARD;
 import static cn.huangdayu.things.common.enums.ThingsStreamingType.INPUTTING;
 import static cn.huangdayu.things.common.enums.ThingsStreamingType.OUTPUTTING;
-import static cn.huangdayu.things.common.utils.ThingsUtils.subIdentifies;
 import static cn.huangdayu.things.engine.core.executor.ThingsBaseExecutor.*;
 
 /**
@@ -46,43 +35,73 @@ import static cn.huangdayu.things.engine.core.executor.ThingsBaseExecutor.*;
 public class ThingsChainingExecutor implements ThingsChaining {
 
     /**
-     * LRU (least recently used) 最近最久未使用缓存
-     * 根据使用时间来判定对象是否被持续缓存
+     * 处理期间固定快照，处理链和处理器（如调用器）使用同一个快照，不会在处理中途看到新注册的内容
      */
-    private static final Cache<String, ChainingValues> CHAINING_VALUES_CACHE = new LRUCache<>(1000, TimeUnit.MINUTES.toMillis(10));
-
     @Override
     public void input(ThingsRequest thingsRequest, ThingsResponse thingsResponse) {
-        doChain(thingsRequest, thingsResponse, INPUTTING);
+        ThingsEngineSnapshot outer = pinSnapshot();
+        try {
+            doChain(thingsRequest, thingsResponse, INPUTTING);
+        } finally {
+            unpinSnapshot(outer);
+        }
     }
 
     @Override
     public void output(ThingsRequest thingsRequest, ThingsResponse thingsResponse) {
-        doChain(thingsRequest, thingsResponse, OUTPUTTING);
+        ThingsEngineSnapshot outer = pinSnapshot();
+        try {
+            doChain(thingsRequest, thingsResponse, OUTPUTTING);
+        } finally {
+            unpinSnapshot(outer);
+        }
+    }
+
+    /**
+     * 批量输出，相同处理链的消息分为一组：过滤器和拦截器逐条执行，
+     * 实现了 {@link ThingsBatchHandling} 的处理器一次处理整组，其他处理器逐条处理
+     */
+    @Override
+    public void output(List<ThingsRequest> thingsRequests, List<ThingsResponse> thingsResponses) {
+        ThingsEngineSnapshot outer = pinSnapshot();
+        try {
+            Map<Chaining, List<Exchange>> groups = new LinkedHashMap<>();
+            for (int i = 0; i < thingsRequests.size(); i++) {
+                ThingsRequest thingsRequest = thingsRequests.get(i);
+                Chaining chaining = getChaining(thingsRequest.getJtm(), OUTPUTTING);
+                groups.computeIfAbsent(chaining, k -> new ArrayList<>()).add(new Exchange(thingsRequest, thingsResponses.get(i)));
+            }
+            groups.forEach(this::doBatchChain);
+        } finally {
+            unpinSnapshot(outer);
+        }
     }
 
     /**
      * 输入和输出的消息都经过【过滤，拦截，处理，拦截】
      */
     private void doChain(ThingsRequest thingsRequest, ThingsResponse thingsResponse, ThingsStreamingType sourceType) {
-        ChainingValues chainingValues = getChainingValues(thingsRequest, thingsResponse, sourceType);
-        // 获取处理器链
-        Set<ThingsHandlers> thingsHandlers = chainingValues.getThingsHandlers();
-        if (CollUtil.isEmpty(thingsHandlers)) {
+        Chaining chaining = getChaining(thingsRequest.getJtm(), sourceType);
+        // 获取处理器链，是否可处理与消息内容相关，需要逐条判断
+        List<ThingsHandlers> thingsHandlers = getHandlers(thingsRequest, thingsResponse, chaining.getThingsHandlers());
+        if (thingsHandlers.isEmpty()) {
             throw new ThingsException(thingsRequest.getJtm(), SERVICE_UNAVAILABLE, "Can not handler this things message");
         }
         // 获取拦截器链
-        Set<ThingsInterceptors> interceptors = chainingValues.getThingsInterceptors();
+        ThingsInterceptors[] interceptors = chaining.getThingsInterceptors();
         // 执行过滤器链
-        doFilterChain(thingsRequest, thingsResponse, chainingValues.getThingsFilters());
+        doFilterChain(thingsRequest, thingsResponse, chaining.getThingsFilterings());
         Exception exception = null;
         try {
             // 前置拦截器
             if (!interceptorPreHandle(thingsRequest, thingsResponse, interceptors)) {
+                rejected(thingsRequest, thingsResponse);
                 return;
             }
             // 遍历执行所有处理器
-            thingsHandlers.forEach(handlers -> handlers.getThingsHandling().doHandle(thingsRequest, thingsResponse));
+            for (ThingsHandlers handlers : thingsHandlers) {
+                handlers.getThingsHandling().doHandle(thingsRequest, thingsResponse);
+            }
             // 后置拦截器
             interceptorPostHandle(thingsRequest, thingsResponse, interceptors);
         } catch (Exception e) {
@@ -94,110 +113,156 @@ public class ThingsChainingExecutor implements ThingsChaining {
         }
     }
 
-    private ChainingValues getChainingValues(ThingsRequest thingsRequest, ThingsResponse thingsResponse, ThingsStreamingType sourceType) {
-        ChainingKeys keys = getKeys(thingsRequest.getJtm(), sourceType);
-        return CHAINING_VALUES_CACHE.get(keys.getKeyFlag(), () -> {
-            Set<ThingsFilters> filter = filter(keys, thingsRequest, sourceType);
-            Set<ThingsInterceptors> interceptors = getInterceptors(keys, thingsRequest, sourceType);
-            Set<ThingsHandlers> handlers = getHandlers(keys, thingsRequest, thingsResponse, sourceType);
-            return new ChainingValues(filter, handlers, interceptors);
-        });
-    }
-
-    private boolean interceptorPreHandle(ThingsRequest thingsRequest, ThingsResponse thingsResponse, Set<ThingsInterceptors> interceptors) {
-        for (ThingsInterceptors interceptor : interceptors) {
-            if (!interceptor.getThingsIntercepting().preHandle(thingsRequest, thingsResponse)) {
-                log.error("Things request preHandle [{}] error, request jtm: {}", interceptor.getClass().getName(), thingsRequest.getJtm());
-                return false;
+    private void doBatchChain(Chaining chaining, List<Exchange> exchanges) {
+        ThingsInterceptors[] interceptors = chaining.getThingsInterceptors();
+        List<Exchange> accepted = new ArrayList<>(exchanges.size());
+        for (Exchange exchange : exchanges) {
+            try {
+                exchange.handlers = getHandlers(exchange.request, exchange.response, chaining.getThingsHandlers());
+                if (exchange.handlers.isEmpty()) {
+                    throw new ThingsException(exchange.request.getJtm(), SERVICE_UNAVAILABLE, "Can not handler this things message");
+                }
+                doFilterChain(exchange.request, exchange.response, chaining.getThingsFilterings());
+            } catch (Exception e) {
+                fail(exchange, e);
+                continue;
+            }
+            // 与单条输出一致，通过过滤器的消息都会执行完成拦截器
+            accepted.add(exchange);
+            try {
+                exchange.handled = interceptorPreHandle(exchange.request, exchange.response, interceptors);
+                if (!exchange.handled) {
+                    rejected(exchange.request, exchange.response);
+                }
+            } catch (Exception e) {
+                exchange.exception = e;
             }
         }
-        return true;
-    }
-
-    private void doFilterChain(ThingsRequest thingsRequest, ThingsResponse thingsResponse, Set<ThingsFilters> filters) {
-        if (CollUtil.isNotEmpty(filters)) {
-            ThingsFiltering.Chain chain = new ThingsFiltering.Chain(filters.stream().map(ThingsFilters::getThingsFiltering).collect(Collectors.toList()));
-            chain.doFilter(thingsRequest, thingsResponse);
+        for (ThingsHandlers handlers : chaining.getThingsHandlers()) {
+            List<Exchange> batch = new ArrayList<>(accepted.size());
+            for (Exchange exchange : accepted) {
+                if (exchange.handled && exchange.exception == null && exchange.handlers.contains(handlers)) {
+                    batch.add(exchange);
+                }
+            }
+            if (!batch.isEmpty()) {
+                doBatchHandle(handlers, batch);
+            }
+        }
+        for (Exchange exchange : accepted) {
+            if (exchange.handled && exchange.exception == null) {
+                try {
+                    interceptorPostHandle(exchange.request, exchange.response, interceptors);
+                } catch (Exception e) {
+                    exchange.exception = e;
+                }
+            }
+            try {
+                interceptorAfterCompletion(exchange.request, exchange.response, exchange.exception, interceptors);
+            } catch (Exception e) {
+                log.error("Things request afterCompletion error, request jtm: {}", exchange.request.getJtm(), e);
+            }
+            if (exchange.exception != null) {
+                fail(exchange, exchange.exception);
+            }
         }
     }
 
-    private void interceptorPostHandle(ThingsRequest thingsRequest, ThingsResponse thingsResponse, Set<ThingsInterceptors> interceptors) {
-        for (ThingsInterceptors interceptor : interceptors) {
-            interceptor.getThingsIntercepting().postHandle(thingsRequest, thingsResponse);
+    private void doBatchHandle(ThingsHandlers handlers, List<Exchange> batch) {
+        if (handlers.getThingsHandling() instanceof ThingsBatchHandling batchHandling) {
+            try {
+                batchHandling.doHandle(batch.stream().map(Exchange::getRequest).toList(), batch.stream().map(Exchange::getResponse).toList());
+            } catch (Exception e) {
+                batch.forEach(exchange -> exchange.exception = e);
+            }
+            return;
+        }
+        for (Exchange exchange : batch) {
+            try {
+                handlers.getThingsHandling().doHandle(exchange.request, exchange.response);
+            } catch (Exception e) {
+                exchange.exception = e;
+            }
         }
     }
 
-
-    private void interceptorAfterCompletion(ThingsRequest thingsRequest, ThingsResponse thingsResponse, Exception exception, Set<ThingsInterceptors> interceptors) {
-        for (ThingsInterceptors interceptor : interceptors) {
-            interceptor.getThingsIntercepting().afterCompletion(thingsRequest, thingsResponse, exception);
+    /**
+     * 前置拦截器拒绝的消息不会有响应，等待响应的 future 立即以异常完成，不必等到超时
+     */
+    private void rejected(ThingsRequest thingsRequest, ThingsResponse thingsResponse) {
+        if (thingsResponse.getFuture() != null) {
+            thingsResponse.getFuture().completeExceptionally(
+                    new ThingsException(thingsRequest.getJtm(), FORBIDDEN, "Things request rejected by interceptor."));
         }
     }
 
-
-    private Set<ThingsHandlers> getHandlers(ChainingKeys chainingKeys, ThingsRequest thingsRequest, ThingsResponse thingsResponse, ThingsStreamingType sourceType) {
-        return getChains(chainingKeys, THINGS_HANDLERS_TABLE, thingsRequest.getJtm(), i -> i.getThingsHandler().order(),
-                v -> v.getSourceType().equals(sourceType) && v.getThingsHandling().canHandle(thingsRequest, thingsResponse));
+    /**
+     * 批量输出不向调用方抛出单条消息的异常，有响应 future 的以异常完成，否则记录日志
+     */
+    private void fail(Exchange exchange, Exception exception) {
+        if (exchange.response.getFuture() != null) {
+            exchange.response.getFuture().completeExceptionally(exception);
+        } else {
+            log.error("Things batch outputting error, request jtm: {}", exchange.request.getJtm(), exception);
+        }
     }
 
-    private Set<ThingsInterceptors> getInterceptors(ChainingKeys chainingKeys, ThingsRequest thingsRequest, ThingsStreamingType sourceType) {
-        return getChains(chainingKeys, THINGS_INTERCEPTORS_TABLE, thingsRequest.getJtm(), i -> i.getThingsInterceptor().order(), v -> v.getSourceType().equals(sourceType));
+    private Chaining getChaining(JsonThingsMessage jtm, ThingsStreamingType sourceType) {
+        ThingsMethod thingsMethod = jtm.getThingsMethod();
+        return snapshot().getChainingIndex().get(sourceType, thingsMethod.getMethodType(), thingsMethod.getIdentifier(), jtm.getBaseMetadata().getProductCode());
     }
 
-    private Set<ThingsFilters> filter(ChainingKeys chainingKeys, ThingsRequest thingsRequest, ThingsStreamingType sourceType) {
-        return getChains(chainingKeys, THINGS_FILTERS_TABLE, thingsRequest.getJtm(), i -> i.getThingsFilter().order(), v -> v.getSourceType().equals(sourceType));
+    private List<ThingsHandlers> getHandlers(ThingsRequest thingsRequest, ThingsResponse thingsResponse, ThingsHandlers[] handlers) {
+        List<ThingsHandlers> thingsHandlers = new ArrayList<>(handlers.length);
+        for (ThingsHandlers handler : handlers) {
+            if (handler.getThingsHandling().canHandle(thingsRequest, thingsResponse)) {
+                thingsHandlers.add(handler);
+            }
+        }
+        return thingsHandlers;
     }
 
-    private <T> Set<T> getChains(ChainingKeys chainingKeys, Table<String, String, Set<T>> table, JsonThingsMessage jtm, Function<T, Integer> comparing, Predicate<T> filtering) {
-        Set<T> linkedHashSet = new LinkedHashSet<>();
-        chainingKeys.getKeys().forEach(key -> {
-            Set<T> values = table.get(key.identifier, key.productCode);
-            if (CollUtil.isNotEmpty(values)) {
-                linkedHashSet.addAll(values);
+    private boolean interceptorPreHandle(ThingsRequest thingsRequest, ThingsResponse thingsResponse, ThingsInterceptors[] interceptors) {
+        for (ThingsInterceptors interceptor : interceptors) {
+            if (!interceptor.getThingsIntercepting().preHandle(thingsRequest, thingsResponse)) {
+                log.error("Things request preHandle [{}] error, request jtm: {}", interceptor.getClass().getName(), thingsRequest.getJtm());
+                return false;
             }
-        });
-        return linkedHashSet.stream().filter(filtering).sorted(Comparator.comparing(comparing)).collect(Collectors.toCollection(LinkedHashSet::new));
+        }
+        return true;
     }
 
-    private ChainingKeys getKeys(JsonThingsMessage jtm, ThingsStreamingType sourceType) {
-        Set<ChainingKey> keys = new HashSet<>();
-        BaseThingsMetadata baseMetadata = jtm.getBaseMetadata();
-        ThingsMethodType thingsMethodType = ThingsMethodType.getMethodType(extractMiddlePart(jtm.getMethod()));
-        String identifies = subIdentifies(jtm.getMethod());
-        keys.add(new ChainingKey(thingsMethodType + THINGS_SEPARATOR + identifies, THINGS_WILDCARD));
-        keys.add(new ChainingKey(thingsMethodType + THINGS_SEPARATOR + identifies, baseMetadata.getProductCode()));
-        keys.add(new ChainingKey(thingsMethodType + THINGS_SEPARATOR + THINGS_WILDCARD, baseMetadata.getProductCode()));
-        keys.add(new ChainingKey(thingsMethodType + THINGS_SEPARATOR + THINGS_WILDCARD, THINGS_WILDCARD));
-        return new ChainingKeys(keys, sourceType + THINGS_SEPARATOR + thingsMethodType + THINGS_SEPARATOR + identifies + THINGS_SEPARATOR + baseMetadata.getProductCode());
+    private void doFilterChain(ThingsRequest thingsRequest, ThingsResponse thingsResponse, List<ThingsFiltering> filters) {
+        if (!filters.isEmpty()) {
+            ThingsFiltering.Chain chain = new ThingsFiltering.Chain(filters);
+            chain.doFilter(thingsRequest, thingsResponse);
+        }
     }
 
-    private static String extractMiddlePart(String input) {
-        String[] parts = input.split("\\.");
-        if (parts.length >= 1) {
-            return parts[1];
+    private void interceptorPostHandle(ThingsRequest thingsRequest, ThingsResponse thingsResponse, ThingsInterceptors[] interceptors) {
+        for (ThingsInterceptors interceptor : interceptors) {
+            interceptor.getThingsIntercepting().postHandle(thingsRequest, thingsResponse);
         }
-        return ThingsMethodType.ALL_METHOD.name();
     }
 
-    @Data
-    @AllArgsConstructor
-    private static class ChainingKey {
-        private final String identifier;
-        private final String productCode;
-    }
 
-    @Data
-    @AllArgsConstructor
-    private static class ChainingValues {
-        private final Set<ThingsFilters> thingsFilters;
-        private final Set<ThingsHandlers> thingsHandlers;
-        private final Set<ThingsInterceptors> thingsInterceptors;
+    private void interceptorAfterCompletion(ThingsRequest thingsRequest, ThingsResponse thingsResponse, Exception exception, ThingsInterceptors[] interceptors) {
+        for (ThingsInterceptors interceptor : interceptors) {
+            interceptor.getThingsIntercepting().afterCompletion(thingsRequest, thingsResponse, exception);
+        }
     }
 
-    @Data
-    @AllArgsConstructor
-    private static class ChainingKeys {
-        private final Set<ChainingKey> keys;
-        private final String keyFlag;
+    @Getter
+    private static final class Exchange {
+        private final ThingsRequest request;
+        private final ThingsResponse response;
+        private List<ThingsHandlers> handlers;
+        private boolean handled;
+        private Exception exception;
+
+        private Exchange(ThingsRequest request, ThingsResponse response) {
+            this.request = request;
+            this.response = response;
+        }
     }
 }
@@ -0,0 +1,201 @@
+package cn.huangdayu.things.engine.core.executor;
+
+import cn.huangdayu.things.api.message.ThingsFiltering;
+import cn.huangdayu.things.common.enums.ThingsMethodType;
+import cn.huangdayu.things.common.enums.ThingsStreamingType;
+import cn.huangdayu.things.engine.wrapper.ThingsFilters;
+import cn.huangdayu.things.engine.wrapper.ThingsHandlers;
+import cn.huangdayu.things.engine.wrapper.ThingsInterceptors;
+import cn.hutool.core.map.multi.Table;
+import lombok.Getter;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+import static cn.huangdayu.things.common.constants.ThingsConstants.THINGS_SEPARATOR;
+import static cn.huangdayu.things.common.constants.ThingsConstants.THINGS_WILDCARD;
+import static cn.huangdayu.things.common.enums.ThingsMethodType.ALL_METHOD;
+
+/**
+ * 消息处理链索引，在注册/注销时预先构建，运行时只读
+ * streamingType vs methodType vs identifier vs productCode vs Chaining
+ * <p>
+ * 每个链路合并了 (identifier, productCode)、(identifier, *)、(*, productCode)、(*, *) 四个维度，
+ * 以及消息方法类型和 {@link ThingsMethodType#ALL_METHOD} 两个方法类型，并按 order 排好序
+ *
+ * @author huangdayu
+ */
+final class ThingsChainingIndex {
+
+    static final ThingsChainingIndex EMPTY = new ThingsChainingIndex(new EnumMap<>(ThingsStreamingType.class));
+
+    private final Map<ThingsStreamingType, Map<ThingsMethodType, Routes>> routes;
+
+    private ThingsChainingIndex(Map<ThingsStreamingType, Map<ThingsMethodType, Routes>> routes) {
+        this.routes = routes;
+    }
+
+    /**
+     * 查找处理链，最多两次哈希查找，不产生对象分配
+     */
+    Chaining get(ThingsStreamingType sourceType, ThingsMethodType methodType, String identifier, String productCode) {
+        Map<ThingsMethodType, Routes> methodRoutes = routes.get(sourceType);
+        if (methodRoutes == null) {
+            return Chaining.EMPTY;
+        }
+        Routes route = methodRoutes.get(methodType);
+        return route == null ? Chaining.EMPTY : route.get(identifier, productCode);
+    }
+
+    static ThingsChainingIndex build(Table<String, String, Set<ThingsFilters>> filtersTable,
+                                     Table<String, String, Set<ThingsInterceptors>> interceptorsTable,
+                                     Table<String, String, Set<ThingsHandlers>> handlersTable) {
+        List<Cell<ThingsFilters>> filters = cells(filtersTable, ThingsFilters::getSourceType);
+        List<Cell<ThingsInterceptors>> interceptors = cells(interceptorsTable, ThingsInterceptors::getSourceType);
+        List<Cell<ThingsHandlers>> handlers = cells(handlersTable, ThingsHandlers::getSourceType);
+        Map<ThingsStreamingType, Map<ThingsMethodType, Routes>> routes = new EnumMap<>(ThingsStreamingType.class);
+        for (ThingsStreamingType sourceType : ThingsStreamingType.values()) {
+            Map<ThingsMethodType, Routes> methodRoutes = new EnumMap<>(ThingsMethodType.class);
+            for (ThingsMethodType methodType : ThingsMethodType.values()) {
+                methodRoutes.put(methodType, buildRoutes(sourceType, methodType, filters, interceptors, handlers));
+            }
+            routes.put(sourceType, methodRoutes);
+        }
+        return new ThingsChainingIndex(routes);
+    }
+
+    private static Routes buildRoutes(ThingsStreamingType sourceType, ThingsMethodType methodType,
+                                      List<Cell<ThingsFilters>> filters, List<Cell<ThingsInterceptors>> interceptors, List<Cell<ThingsHandlers>> handlers) {
+        List<Cell<ThingsFilters>> methodFilters = match(filters, sourceType, methodType);
+        List<Cell<ThingsInterceptors>> methodInterceptors = match(interceptors, sourceType, methodType);
+        List<Cell<ThingsHandlers>> methodHandlers = match(handlers, sourceType, methodType);
+        Set<String> identifiers = new HashSet<>();
+        Set<String> productCodes = new HashSet<>();
+        collectKeys(methodFilters, identifiers, productCodes);
+        collectKeys(methodInterceptors, identifiers, productCodes);
+        collectKeys(methodHandlers, identifiers, productCodes);
+
+        Map<String, Map<String, Chaining>> exact = new HashMap<>();
+        Map<String, Chaining> byIdentifier = new HashMap<>();
+        Map<String, Chaining> byProduct = new HashMap<>();
+        for (String identifier : identifiers) {
+            Map<String, Chaining> products = new HashMap<>();
+            for (String productCode : productCodes) {
+                products.put(productCode, chaining(identifier, productCode, methodFilters, methodInterceptors, methodHandlers));
+            }
+            exact.put(identifier, products);
+            byIdentifier.put(identifier, chaining(identifier, null, methodFilters, methodInterceptors, methodHandlers));
+        }
+        for (String productCode : productCodes) {
+            byProduct.put(productCode, chaining(null, productCode, methodFilters, methodInterceptors, methodHandlers));
+        }
+        return new Routes(exact, byIdentifier, byProduct, chaining(null, null, methodFilters, methodInterceptors, methodHandlers));
+    }
+
+    private static Chaining chaining(String identifier, String productCode, List<Cell<ThingsFilters>> filters,
+                                     List<Cell<ThingsInterceptors>> interceptors, List<Cell<ThingsHandlers>> handlers) {
+        ThingsFilters[] thingsFilters = merge(filters, identifier, productCode, i -> i.getThingsFilter().order(), ThingsFilters[]::new);
+        ThingsInterceptors[] thingsInterceptors = merge(interceptors, identifier, productCode, i -> i.getThingsInterceptor().order(), ThingsInterceptors[]::new);
+        ThingsHandlers[] thingsHandlers = merge(handlers, identifier, productCode, i -> i.getThingsHandler().order(), ThingsHandlers[]::new);
+        if (thingsFilters.length == 0 && thingsInterceptors.length == 0 && thingsHandlers.length == 0) {
+            return Chaining.EMPTY;
+        }
+        return new Chaining(thingsFilters, thingsInterceptors, thingsHandlers);
+    }
+
+    private static <T> T[] merge(List<Cell<T>> cells, String identifier, String productCode, ToIntFunction<T> order, IntFunction<T[]> generator) {
+        Set<T> values = new LinkedHashSet<>();
+        for (Cell<T> cell : cells) {
+            if (cell.covers(identifier, productCode)) {
+                values.add(cell.value);
+            }
+        }
+        return values.stream().sorted(Comparator.comparingInt(order)).toArray(generator);
+    }
+
+    private static <T> List<Cell<T>> match(List<Cell<T>> cells, ThingsStreamingType sourceType, ThingsMethodType methodType) {
+        List<Cell<T>> matched = new ArrayList<>();
+        for (Cell<T> cell : cells) {
+            if (cell.sourceType == sourceType && (cell.methodType == methodType || cell.methodType == ALL_METHOD)) {
+                matched.add(cell);
+            }
+        }
+        return matched;
+    }
+
+    private static <T> void collectKeys(List<Cell<T>> cells, Set<String> identifiers, Set<String> productCodes) {
+        for (Cell<T> cell : cells) {
+            if (!THINGS_WILDCARD.equals(cell.identifier)) {
+                identifiers.add(cell.identifier);
+            }
+            if (!THINGS_WILDCARD.equals(cell.productCode)) {
+                productCodes.add(cell.productCode);
+            }
+        }
+    }
+
+    /**
+     * 展开注册表，行键格式为 methodType#identifier
+     */
+    private static <T> List<Cell<T>> cells(Table<String, String, Set<T>> table, Function<T, ThingsStreamingType> sourceType) {
+        List<Cell<T>> cells = new ArrayList<>();
+        for (Table.Cell<String, String, Set<T>> cell : table.cellSet()) {
+            String rowKey = cell.getRowKey();
+            int index = rowKey.indexOf(THINGS_SEPARATOR);
+            ThingsMethodType methodType = ThingsMethodType.getMethodType(rowKey.substring(0, index));
+            String identifier = rowKey.substring(index + THINGS_SEPARATOR.length());
+            for (T value : cell.getValue()) {
+                cells.add(new Cell<>(sourceType.apply(value), methodType, identifier, cell.getColumnKey(), value));
+            }
+        }
+        return cells;
+    }
+
+    private record Cell<T>(ThingsStreamingType sourceType, ThingsMethodType methodType, String identifier, String productCode, T value) {
+
+        /**
+         * identifier 或 productCode 为 null 表示消息的该维度没有精确注册项，只能命中通配符
+         */
+        boolean covers(String identifier, String productCode) {
+            return (THINGS_WILDCARD.equals(this.identifier) || this.identifier.equals(identifier))
+                    && (THINGS_WILDCARD.equals(this.productCode) || this.productCode.equals(productCode));
+        }
+    }
+
+    private record Routes(Map<String, Map<String, Chaining>> exact, Map<String, Chaining> byIdentifier,
+                          Map<String, Chaining> byProduct, Chaining wildcard) {
+
+        Chaining get(String identifier, String productCode) {
+            Map<String, Chaining> products = exact.get(identifier);
+            if (products != null) {
+                Chaining chaining = products.get(productCode);
+                return chaining != null ? chaining : byIdentifier.get(identifier);
+            }
+            Chaining chaining = byProduct.get(productCode);
+            return chaining != null ? chaining : wildcard;
+        }
+    }
+
+    /**
+     * 冻结的处理链，数组已按 order 排序，不可修改
+     */
+    @Getter
+    static final class Chaining {
+
+        static final Chaining EMPTY = new Chaining(new ThingsFilters[0], new ThingsInterceptors[0], new ThingsHandlers[0]);
+
+        private final ThingsFilters[] thingsFilters;
+        private final ThingsInterceptors[] thingsInterceptors;
+        private final ThingsHandlers[] thingsHandlers;
+        private final List<ThingsFiltering> thingsFilterings;
+
+        private Chaining(ThingsFilters[] thingsFilters, ThingsInterceptors[] thingsInterceptors, ThingsHandlers[] thingsHandlers) {
+            this.thingsFilters = thingsFilters;
+            this.thingsInterceptors = thingsInterceptors;
+            this.thingsHandlers = thingsHandlers;
+            this.thingsFilterings = Arrays.stream(thingsFilters).map(ThingsFilters::getThingsFiltering).toList();
+        }
+    }
+}
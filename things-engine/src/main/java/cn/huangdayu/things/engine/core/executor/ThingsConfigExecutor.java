@@ -2,6 +2,7 @@ package cn.huangdayu.things.engine.core.executor;
 
 import cn.huangdayu.things.api.infrastructure.ThingsConfigService;
 import cn.huangdayu.things.common.annotation.ThingsBean;
+import cn.huangdayu.things.common.factory.ThreadPoolFactory;
 import cn.huangdayu.things.common.properties.ThingsInstanceProperties;
 
 /**
@@ -14,6 +15,7 @@ public class ThingsConfigExecutor implements ThingsConfigService {
 
     public ThingsConfigExecutor(ThingsInstanceProperties thingsInstanceProperties) {
         this.thingsInstanceProperties = thingsInstanceProperties;
+        ThreadPoolFactory.configure(thingsInstanceProperties.getExecutors());
     }
 
     @Override
@@ -24,5 +26,6 @@ public class ThingsConfigExecutor implements ThingsConfigService {
     @Override
     public void updateProperties(ThingsInstanceProperties properties) {
         this.thingsInstanceProperties = properties;
+        ThreadPoolFactory.configure(properties.getExecutors());
     }
 }
@@ -1,18 +1,18 @@
 package cn.huangdayu.things.engine.core.executor;
 
+import cn.huangdayu.things.api.container.ThingsContainer;
 import cn.huangdayu.things.api.infrastructure.ThingsConfigService;
 import cn.huangdayu.things.common.annotation.*;
 import cn.huangdayu.things.common.dsl.*;
 import cn.huangdayu.things.common.message.BaseThingsMessage;
 import cn.huangdayu.things.common.observer.ThingsEventObserver;
 import cn.huangdayu.things.common.observer.event.ThingsContainerUpdatedEvent;
+import cn.huangdayu.things.common.wrapper.ThingsInstance;
 import cn.huangdayu.things.engine.core.ThingsDescriber;
 import cn.huangdayu.things.engine.wrapper.ThingsEvents;
 import cn.huangdayu.things.engine.wrapper.ThingsFunction;
 import cn.huangdayu.things.engine.wrapper.ThingsParameter;
 import cn.huangdayu.things.engine.wrapper.ThingsProperty;
-import cn.hutool.cache.Cache;
-import cn.hutool.cache.CacheUtil;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.collection.ConcurrentHashSet;
 import cn.hutool.core.lang.Filter;
@@ -26,9 +26,9 @@ import lombok.extern.slf4j.Slf4j;
 import java.lang.reflect.Field;
 import java.lang.reflect.Type;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import static cn.huangdayu.things.common.enums.ThingsDeliveryMode.SYNC;
 import static cn.huangdayu.things.common.utils.ThingsUtils.*;
 
 /**
@@ -39,30 +39,122 @@ import static cn.huangdayu.things.common.utils.ThingsUtils.*;
 @ThingsBean
 public class ThingsDescriberExecutor extends ThingsBaseExecutor implements ThingsDescriber {
 
-    private static final String CACHE_KEY = "things_dsl_cache";
     private final ThingsEventObserver thingsEventObserver;
     private final ThingsConfigService thingsConfigService;
-    private final Cache<String, DslInfo> CACHE = CacheUtil.newTimedCache(TimeUnit.MINUTES.toMillis(10L));
+
+    /**
+     * 已生成的 DSL，容器变化时只重新生成涉及的物模型后整体替换
+     */
+    private volatile Descriptions descriptions;
 
     @PostConstruct
     public void init() {
-        thingsEventObserver.registerObserver(ThingsContainerUpdatedEvent.class, engineEvent -> CACHE.remove(CACHE_KEY));
+        thingsEventObserver.registerObserver(ThingsContainerUpdatedEvent.class,
+                engineEvent -> update(engineEvent.getSource() instanceof ThingsContainer thingsContainer ? thingsContainer.name() : null), SYNC);
     }
 
     @Override
     public DslInfo getDsl() {
-        return CACHE.get(CACHE_KEY, this::getDslInfo);
+        return getDsl(null, null);
+    }
+
+    @Override
+    public DslInfo getDsl(String version, Map<String, String> thingsVersions) {
+        Descriptions current = getDescriptions();
+        ThingsInstance instance = thingsConfigService.getProperties().getInstance();
+        String dslVersion = contentHash(Arrays.asList(instance, current.version));
+        DslInfo dslInfo = new DslInfo(instance, null, null);
+        dslInfo.setVersion(dslVersion);
+        dslInfo.setThingsVersions(current.thingsVersions);
+        if (dslVersion.equals(version)) {
+            return dslInfo;
+        }
+        Set<ThingsInfo> thingsDsl = new HashSet<>();
+        current.things.forEach((productCode, thingsInfo) -> {
+            if (thingsVersions == null || !thingsInfo.getVersion().equals(thingsVersions.get(productCode))) {
+                thingsDsl.add(thingsInfo);
+            }
+        });
+        dslInfo.setDomainDsl(current.domains);
+        dslInfo.setThingsDsl(thingsDsl);
+        return dslInfo;
+    }
+
+    private Descriptions getDescriptions() {
+        Descriptions current = descriptions;
+        return current != null ? current : update(null);
+    }
+
+    /**
+     * 重新生成变化的容器涉及的物模型，包括之前由它提供和现在由它提供的，其他物模型沿用已生成的结果
+     *
+     * @param containerName 变化的容器，为 null 时重新生成全部物模型
+     */
+    private synchronized Descriptions update(String containerName) {
+        ThingsEngineSnapshot snapshot = snapshot();
+        Descriptions previous = descriptions;
+        Map<String, Set<String>> providers = getProviders(snapshot);
+        Map<String, ThingsInfo> things = new HashMap<>();
+        providers.forEach((productCode, containerNames) -> {
+            ThingsInfo thingsInfo = previous != null && containerName != null ? previous.things.get(productCode) : null;
+            boolean changed = thingsInfo == null || containerNames.contains(containerName)
+                    || previous.providers.getOrDefault(productCode, Set.of()).contains(containerName);
+            things.put(productCode, changed ? getVersionedThingsInfo(snapshot, productCode) : thingsInfo);
+        });
+        Descriptions updated = new Descriptions(things, providers, getDomainInfo(snapshot));
+        descriptions = updated;
+        return updated;
+    }
+
+    private ThingsInfo getVersionedThingsInfo(ThingsEngineSnapshot snapshot, String productCode) {
+        ThingsInfo thingsInfo = getThingsInfo(snapshot, productCode);
+        thingsInfo.setVersion(contentHash(thingsInfo));
+        return thingsInfo;
     }
 
-    private DslInfo getDslInfo() {
-        return new DslInfo(thingsConfigService.getProperties().getInstance(), getDomainInfo(), getThingsInfo());
+    /**
+     * productCode vs 提供该物模型实体、服务、事件或属性的容器名称
+     */
+    private Map<String, Set<String>> getProviders(ThingsEngineSnapshot snapshot) {
+        Map<String, Set<String>> providers = new HashMap<>();
+        snapshot.getEntities().cellSet().forEach(cell -> addProvider(providers, cell.getRowKey(), cell.getValue().getThingsContainer()));
+        snapshot.getServices().cellSet().forEach(cell -> addProvider(providers, cell.getColumnKey(), cell.getValue().getThingsContainer()));
+        snapshot.getEvents().cellSet().forEach(cell -> addProvider(providers, cell.getColumnKey(), cell.getValue().getThingsContainer()));
+        snapshot.getProductProperties().forEach((productCode, thingsProperty) -> addProvider(providers, productCode, thingsProperty.getThingsContainer()));
+        providers.keySet().retainAll(snapshot.getEntities().rowKeySet());
+        return providers;
+    }
+
+    private void addProvider(Map<String, Set<String>> providers, String productCode, ThingsContainer thingsContainer) {
+        providers.computeIfAbsent(productCode, k -> new HashSet<>()).add(thingsContainer.name());
+    }
+
+    /**
+     * 一次生成的 DSL，version 为领域和所有物模型的内容摘要
+     */
+    private static final class Descriptions {
+        private final Map<String, ThingsInfo> things;
+        private final Map<String, Set<String>> providers;
+        private final Set<DomainInfo> domains;
+        private final Map<String, String> thingsVersions;
+        private final String version;
+
+        private Descriptions(Map<String, ThingsInfo> things, Map<String, Set<String>> providers, Set<DomainInfo> domains) {
+            this.things = things;
+            this.providers = providers;
+            this.domains = domains;
+            Map<String, String> thingsVersions = new HashMap<>();
+            things.forEach((productCode, thingsInfo) -> thingsVersions.put(productCode, thingsInfo.getVersion()));
+            this.thingsVersions = Collections.unmodifiableMap(thingsVersions);
+            this.version = contentHash(List.of(domains, thingsVersions));
+        }
     }
 
-    private Set<DomainInfo> getDomainInfo() {
+    private Set<DomainInfo> getDomainInfo(ThingsEngineSnapshot snapshot) {
         Set<DomainInfo> domainDsl = new HashSet<>();
         DomainInfo domainInfo = new DomainInfo();
-        domainInfo.setSubscribes(getSubscribes());
-        domainInfo.setConsumes(getConsumes());
+        domainInfo.setSubscribes(getSubscribes(snapshot));
+        domainInfo.setConsumes(getConsumes(snapshot));
         domainInfo.setProfile(getDomainProfile());
         domainDsl.add(domainInfo);
         return domainDsl;
@@ -77,43 +169,39 @@ public class ThingsDescriberExecutor extends ThingsBaseExecutor implements Thing
         return profile;
     }
 
-    private Set<DomainConsumeInfo> getConsumes() {
-        return ThingsBaseExecutor.THINGS_EVENTS_LISTENER_TABLE.cellSet()
+    private Set<DomainConsumeInfo> getConsumes(ThingsEngineSnapshot snapshot) {
+        return snapshot.getEventListeners().cellSet()
                 .stream().map(cell -> new DomainConsumeInfo(cell.getColumnKey(), cell.getRowKey())).collect(Collectors.toSet());
     }
 
-    private Set<DomainSubscribeInfo> getSubscribes() {
-        return ThingsBaseExecutor.THINGS_EVENTS_LISTENER_TABLE.cellSet()
+    private Set<DomainSubscribeInfo> getSubscribes(ThingsEngineSnapshot snapshot) {
+        return snapshot.getEventListeners().cellSet()
                 .stream().map(cell -> new DomainSubscribeInfo(cell.getColumnKey(), cell.getRowKey())).collect(Collectors.toSet());
     }
 
-    private Set<ThingsInfo> getThingsInfo() {
-        return THINGS_ENTITY_TABLE.rowKeySet().parallelStream().map(this::getThingsInfo).collect(Collectors.toSet());
-    }
-
-    private ThingsInfo getThingsInfo(String productCode) {
-        ThingsInfo thingsInfo = initThingsInfo(productCode);
-        thingsInfo.getServices().addAll(getServices(productCode));
-        thingsInfo.getEvents().addAll(getEvents(productCode));
-        thingsInfo.getProperties().addAll(getProperties(productCode));
+    private ThingsInfo getThingsInfo(ThingsEngineSnapshot snapshot, String productCode) {
+        ThingsInfo thingsInfo = initThingsInfo(snapshot, productCode);
+        thingsInfo.getServices().addAll(getServices(snapshot, productCode));
+        thingsInfo.getEvents().addAll(getEvents(snapshot, productCode));
+        thingsInfo.getProperties().addAll(getProperties(snapshot, productCode));
         return thingsInfo;
     }
 
-    private ThingsInfo initThingsInfo(String productCode) {
+    private ThingsInfo initThingsInfo(ThingsEngineSnapshot snapshot, String productCode) {
         ThingsInfo thingsInfo = new ThingsInfo();
         thingsInfo.setEvents(new ConcurrentHashSet<>());
         thingsInfo.setServices(new ConcurrentHashSet<>());
         thingsInfo.setProperties(new ConcurrentHashSet<>());
-        thingsInfo.setProfile(getThingsProfile(productCode));
+        thingsInfo.setProfile(getThingsProfile(snapshot, productCode));
         return thingsInfo;
     }
 
-    private Things getThings(String productCode) {
-        return THINGS_ENTITY_TABLE.getRow(productCode).values().stream().findFirst().orElseThrow().getThings();
+    private Things getThings(ThingsEngineSnapshot snapshot, String productCode) {
+        return snapshot.getEntities().getRow(productCode).values().stream().findFirst().orElseThrow().getThings();
     }
 
-    private ThingsProfile getThingsProfile(String productCode) {
-        Things things = getThings(productCode);
+    private ThingsProfile getThingsProfile(ThingsEngineSnapshot snapshot, String productCode) {
+        Things things = getThings(snapshot, productCode);
         ThingsProfileInfo productInfo = new ThingsProfileInfo();
         productInfo.setCode(productCode);
         productInfo.setName(things.name());
@@ -123,17 +211,17 @@ public class ThingsDescriberExecutor extends ThingsBaseExecutor implements Thing
         return profile;
     }
 
-    private Set<ThingsParamInfo> getProperties(String productCode) {
+    private Set<ThingsParamInfo> getProperties(ThingsEngineSnapshot snapshot, String productCode) {
         Set<ThingsParamInfo> params = new ConcurrentHashSet<>();
-        ThingsProperty thingsProperty = PRODUCT_PROPERTY_MAP.get(productCode);
+        ThingsProperty thingsProperty = snapshot.getProductProperties().get(productCode);
         if (thingsProperty != null) {
             params.addAll(getParams(thingsProperty.getBean().getClass(), true));
         }
         return params;
     }
 
-    private Set<ThingsEventInfo> getEvents(String productCode) {
-        Map<String, ThingsEvents> map = THINGS_EVENTS_TABLE.getColumn(productCode);
+    private Set<ThingsEventInfo> getEvents(ThingsEngineSnapshot snapshot, String productCode) {
+        Map<String, ThingsEvents> map = snapshot.getEvents().getColumn(productCode);
         return map.values().stream().map(thingsEvents -> {
             ThingsEventInfo events = copyAnnotationValues(thingsEvents.getThingsEventEntity(), new ThingsEventInfo());
             events.setOutputData(getParams(thingsEvents.getBean().getClass()));
@@ -141,8 +229,8 @@ public class ThingsDescriberExecutor extends ThingsBaseExecutor implements Thing
         }).collect(Collectors.toSet());
     }
 
-    private Set<ThingsServiceInfo> getServices(String productCode) {
-        return THINGS_SERVICES_TABLE.getColumn(productCode).entrySet().parallelStream().filter(entry -> entry.getValue().getMethodAnnotation() instanceof ThingsService).map(entry -> getServices(entry.getKey(), entry.getValue(), (ThingsService) entry.getValue().getMethodAnnotation())).collect(Collectors.toSet());
+    private Set<ThingsServiceInfo> getServices(ThingsEngineSnapshot snapshot, String productCode) {
+        return snapshot.getServices().getColumn(productCode).entrySet().stream().filter(entry -> entry.getValue().getMethodAnnotation() instanceof ThingsService).map(entry -> getServices(entry.getKey(), entry.getValue(), (ThingsService) entry.getValue().getMethodAnnotation())).collect(Collectors.toSet());
     }
 
     private ThingsServiceInfo getServices(String identifier, ThingsFunction thingsFunction, ThingsService thingsService) {
@@ -0,0 +1,282 @@
+package cn.huangdayu.things.engine.core.executor;
+
+import cn.huangdayu.things.api.container.ThingsContainer;
+import cn.huangdayu.things.engine.wrapper.*;
+import cn.hutool.core.collection.ConcurrentHashSet;
+import cn.hutool.core.map.multi.RowKeyTable;
+import cn.hutool.core.map.multi.Table;
+import lombok.Getter;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 引擎注册表快照，注册和注销时在副本上修改，构建完成后整体发布
+ * <p>
+ * 快照发布后不再修改，读取方每条消息只取一次快照，处理过程中看到的注册表和处理链是一致的；
+ * 属性存储等有状态的对象在快照之间共享引用，不会随快照复制；过滤器、拦截器、处理器没有变化时沿用上一个快照的处理链索引
+ *
+ * @author huangdayu
+ */
+@Getter
+final class ThingsEngineSnapshot {
+
+    static final ThingsEngineSnapshot EMPTY = new Builder(null).build();
+
+    /**
+     * containerName vs ThingsContainer
+     */
+    private final Map<String, ThingsContainer> containers;
+
+    /**
+     * productCode vs ThingsBeanClass vs ThingsEntity
+     */
+    private final Table<String, Class<?>, ThingsEntity> entities;
+
+    /**
+     * identifier vs productCode vs ThingsFunction
+     */
+    private final Table<String, String, ThingsFunction> services;
+
+    /**
+     * productCode vs ThingsProperties
+     */
+    private final Map<String, ThingsProperty> productProperties;
+
+    /**
+     * productCode vs ThingsPropertyStore
+     * 非产品共用的属性实体，按产品保存所有设备的属性列
+     */
+    private final Map<String, ThingsPropertyStore> propertyStores;
+
+    /**
+     * identifier vs productCode vs ThingsEvents
+     */
+    private final Table<String, String, ThingsEvents> events;
+
+    /**
+     * identifier vs productCode vs ThingsEventListener
+     */
+    private final Table<String, String, Set<ThingsFunction>> eventListeners;
+
+    /**
+     * identifier vs productCode vs ThingsPropertyListener
+     */
+    private final Table<String, String, Set<ThingsFunction>> propertyListeners;
+
+    /**
+     * methodType#identifier vs productCode vs ThingsFilters
+     */
+    private final Table<String, String, Set<ThingsFilters>> filters;
+
+    /**
+     * methodType#identifier vs productCode vs ThingsInterceptors
+     */
+    private final Table<String, String, Set<ThingsInterceptors>> interceptors;
+
+    /**
+     * methodType#identifier vs productCode vs ThingsHandlers
+     */
+    private final Table<String, String, Set<ThingsHandlers>> handlers;
+
+    /**
+     * 由过滤器、拦截器、处理器注册表构建的处理链索引
+     */
+    private final ThingsChainingIndex chainingIndex;
+
+    /**
+     * requiredType vs 提供该类型 bean 的容器，没有容器提供时为 empty
+     * 按需填充，快照替换（即发布 ThingsContainerUpdatedEvent）时随之失效
+     */
+    private final Map<Class<?>, Optional<ThingsContainer>> beanContainers = new ConcurrentHashMap<>();
+
+    private ThingsEngineSnapshot(Builder builder) {
+        this.containers = Collections.unmodifiableMap(new HashMap<>(builder.containers));
+        this.entities = freeze(builder.entities, Function.identity());
+        this.services = freeze(builder.services, Function.identity());
+        this.productProperties = Collections.unmodifiableMap(new HashMap<>(builder.productProperties));
+        this.propertyStores = Collections.unmodifiableMap(new HashMap<>(builder.propertyStores));
+        this.events = freeze(builder.events, Function.identity());
+        this.eventListeners = freeze(builder.eventListeners, ThingsEngineSnapshot::freeze);
+        this.propertyListeners = freeze(builder.propertyListeners, ThingsEngineSnapshot::freeze);
+        if (builder.source != null && !builder.chainingChanged) {
+            this.filters = builder.source.filters;
+            this.interceptors = builder.source.interceptors;
+            this.handlers = builder.source.handlers;
+            this.chainingIndex = builder.source.chainingIndex;
+        } else {
+            this.filters = freeze(builder.filters, ThingsEngineSnapshot::freeze);
+            this.interceptors = freeze(builder.interceptors, ThingsEngineSnapshot::freeze);
+            this.handlers = freeze(builder.handlers, ThingsEngineSnapshot::freeze);
+            this.chainingIndex = ThingsChainingIndex.build(filters, interceptors, handlers);
+        }
+    }
+
+    Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    private static <R, C, V> Table<R, C, V> freeze(Table<R, C, V> table, Function<V, V> value) {
+        Table<R, C, V> frozen = new RowKeyTable<>(new HashMap<>(), HashMap::new);
+        table.cellSet().forEach(cell -> frozen.put(cell.getRowKey(), cell.getColumnKey(), value.apply(cell.getValue())));
+        return frozen;
+    }
+
+    private static <V> Set<V> freeze(Set<V> values) {
+        return Collections.unmodifiableSet(new HashSet<>(values));
+    }
+
+    private static <R, C, V> Table<R, C, V> copy(Table<R, C, V> table, Function<V, V> value) {
+        Table<R, C, V> copy = new RowKeyTable<>(new ConcurrentHashMap<>(), ConcurrentHashMap::new);
+        if (table != null) {
+            table.cellSet().forEach(cell -> copy.put(cell.getRowKey(), cell.getColumnKey(), value.apply(cell.getValue())));
+        }
+        return copy;
+    }
+
+    private static <V> Set<V> copy(Set<V> values) {
+        return new ConcurrentHashSet<>(values);
+    }
+
+    /**
+     * 快照的可修改副本，注册扫描是并行的，副本使用并发容器
+     * <p>
+     * 基于快照的副本只通过 {@link #merge(Builder)} 和 {@link #remove(ThingsContainer)} 修改，
+     * 以便判断处理链是否需要重建；扫描容器时直接写入的是 {@link #empty()} 创建的空副本
+     */
+    static final class Builder {
+        private final ThingsEngineSnapshot source;
+        private boolean chainingChanged;
+        final Map<String, ThingsContainer> containers;
+        final Table<String, Class<?>, ThingsEntity> entities;
+        final Table<String, String, ThingsFunction> services;
+        final Map<String, ThingsProperty> productProperties;
+        final Map<String, ThingsPropertyStore> propertyStores;
+        final Table<String, String, ThingsEvents> events;
+        final Table<String, String, Set<ThingsFunction>> eventListeners;
+        final Table<String, String, Set<ThingsFunction>> propertyListeners;
+        final Table<String, String, Set<ThingsFilters>> filters;
+        final Table<String, String, Set<ThingsInterceptors>> interceptors;
+        final Table<String, String, Set<ThingsHandlers>> handlers;
+
+        private Builder(ThingsEngineSnapshot snapshot) {
+            boolean empty = snapshot == null;
+            this.source = snapshot;
+            this.containers = new ConcurrentHashMap<>(empty ? Map.of() : snapshot.containers);
+            this.entities = copy(empty ? null : snapshot.entities, Function.identity());
+            this.services = copy(empty ? null : snapshot.services, Function.identity());
+            this.productProperties = new ConcurrentHashMap<>(empty ? Map.of() : snapshot.productProperties);
+            this.propertyStores = new ConcurrentHashMap<>(empty ? Map.of() : snapshot.propertyStores);
+            this.events = copy(empty ? null : snapshot.events, Function.identity());
+            this.eventListeners = copy(empty ? null : snapshot.eventListeners, ThingsEngineSnapshot::copy);
+            this.propertyListeners = copy(empty ? null : snapshot.propertyListeners, ThingsEngineSnapshot::copy);
+            this.filters = copy(empty ? null : snapshot.filters, ThingsEngineSnapshot::copy);
+            this.interceptors = copy(empty ? null : snapshot.interceptors, ThingsEngineSnapshot::copy);
+            this.handlers = copy(empty ? null : snapshot.handlers, ThingsEngineSnapshot::copy);
+        }
+
+        /**
+         * 不基于快照的空副本，用于在快照锁之外扫描单个容器
+         */
+        static Builder empty() {
+            return new Builder(null);
+        }
+
+        /**
+         * 并发地向表格中的集合添加元素
+         */
+        static <V> void add(Table<String, String, Set<V>> table, String rowKey, String columnKey, V value) {
+            Set<V> values;
+            synchronized (table) {
+                values = table.get(rowKey, columnKey);
+                if (values == null) {
+                    values = new ConcurrentHashSet<>();
+                    table.put(rowKey, columnKey, values);
+                }
+            }
+            values.add(value);
+        }
+
+        /**
+         * 合并单独扫描的容器副本，同一个 key 以传入的副本为准，重复注册由调用方在合并前检查
+         */
+        Builder merge(Builder scanned) {
+            containers.putAll(scanned.containers);
+            putAll(entities, scanned.entities);
+            putAll(services, scanned.services);
+            productProperties.putAll(scanned.productProperties);
+            propertyStores.putAll(scanned.propertyStores);
+            putAll(events, scanned.events);
+            addAll(eventListeners, scanned.eventListeners);
+            addAll(propertyListeners, scanned.propertyListeners);
+            chainingChanged |= addAll(filters, scanned.filters);
+            chainingChanged |= addAll(interceptors, scanned.interceptors);
+            chainingChanged |= addAll(handlers, scanned.handlers);
+            return this;
+        }
+
+        /**
+         * 移除容器注册的所有内容，属性访问表等按类缓存的对象由调用方清理
+         */
+        Builder remove(ThingsContainer thingsContainer) {
+            containers.values().removeIf(v -> v == thingsContainer);
+            removeValues(entities, v -> v.getThingsContainer() == thingsContainer);
+            removeValues(services, v -> v.getThingsContainer() == thingsContainer);
+            productProperties.values().removeIf(v -> v.getThingsContainer() == thingsContainer);
+            propertyStores.values().removeIf(v -> v.getThingsProperty().getThingsContainer() == thingsContainer);
+            removeValues(events, v -> v.getThingsContainer() == thingsContainer);
+            removeElements(eventListeners, v -> v.getThingsContainer() == thingsContainer);
+            removeElements(propertyListeners, v -> v.getThingsContainer() == thingsContainer);
+            chainingChanged |= removeElements(filters, v -> v.getThingsContainer() == thingsContainer);
+            chainingChanged |= removeElements(interceptors, v -> v.getThingsContainer() == thingsContainer);
+            chainingChanged |= removeElements(handlers, v -> v.getThingsContainer() == thingsContainer);
+            return this;
+        }
+
+        ThingsEngineSnapshot build() {
+            return new ThingsEngineSnapshot(this);
+        }
+
+        private static <R, C, V> void removeValues(Table<R, C, V> table, Predicate<V> predicate) {
+            for (Table.Cell<R, C, V> cell : new ArrayList<>(table.cellSet())) {
+                if (predicate.test(cell.getValue())) {
+                    table.remove(cell.getRowKey(), cell.getColumnKey());
+                }
+            }
+        }
+
+        /**
+         * @return 是否移除了元素
+         */
+        private static <R, C, V> boolean removeElements(Table<R, C, Set<V>> table, Predicate<V> predicate) {
+            boolean removed = false;
+            for (Table.Cell<R, C, Set<V>> cell : new ArrayList<>(table.cellSet())) {
+                removed |= cell.getValue().removeIf(predicate);
+                if (cell.getValue().isEmpty()) {
+                    table.remove(cell.getRowKey(), cell.getColumnKey());
+                }
+            }
+            return removed;
+        }
+
+        private static <R, C, V> void putAll(Table<R, C, V> table, Table<R, C, V> values) {
+            values.cellSet().forEach(cell -> table.put(cell.getRowKey(), cell.getColumnKey(), cell.getValue()));
+        }
+
+        /**
+         * @return 是否添加了元素
+         */
+        private static <V> boolean addAll(Table<String, String, Set<V>> table, Table<String, String, Set<V>> values) {
+            boolean added = false;
+            for (Table.Cell<String, String, Set<V>> cell : values.cellSet()) {
+                for (V value : cell.getValue()) {
+                    add(table, cell.getRowKey(), cell.getColumnKey(), value);
+                    added = true;
+                }
+            }
+            return added;
+        }
+    }
+}
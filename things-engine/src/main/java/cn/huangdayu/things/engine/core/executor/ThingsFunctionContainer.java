@@ -32,4 +32,9 @@ public class ThingsFunctionContainer implements ThingsContainer {
         }
         return null;
     }
+
+    @Override
+    public ClassLoader getClassLoader() {
+        return bean.getClass().getClassLoader();
+    }
 }
@@ -1,33 +1,47 @@
 package cn.huangdayu.things.engine.core.executor;
 
 import cn.huangdayu.things.common.annotation.ThingsBean;
+import cn.huangdayu.things.common.async.ThingsDeadline;
 import cn.huangdayu.things.common.exception.ThingsException;
+import cn.huangdayu.things.common.factory.ThingsKeyedExecutor;
 import cn.huangdayu.things.common.message.BaseThingsMetadata;
 import cn.huangdayu.things.common.message.JsonThingsMessage;
+import cn.huangdayu.things.common.message.ThingsPayloadCodec;
+import cn.huangdayu.things.common.message.ThingsPayloadCodecs;
 import cn.huangdayu.things.engine.core.ThingsInvoker;
 import cn.huangdayu.things.engine.core.ThingsProperties;
 import cn.huangdayu.things.engine.wrapper.ThingsFunction;
+import cn.huangdayu.things.engine.wrapper.ThingsPropertyAccessor;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.collection.ConcurrentHashSet;
-import cn.hutool.core.util.ReflectUtil;
+import cn.hutool.core.map.multi.Table;
 import cn.hutool.core.util.StrUtil;
-import com.alibaba.fastjson2.JSON;
 import com.alibaba.fastjson2.JSONObject;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import static cn.huangdayu.things.common.constants.ThingsConstants.ErrorCodes.BAD_REQUEST;
+import static cn.huangdayu.things.common.constants.ThingsConstants.ErrorCodes.GATEWAY_TIMEOUT;
+import static cn.huangdayu.things.common.constants.ThingsConstants.ErrorCodes.SERVICE_UNAVAILABLE;
 import static cn.huangdayu.things.common.constants.ThingsConstants.Methods.THINGS_PROPERTIES_POST;
 import static cn.huangdayu.things.common.constants.ThingsConstants.Methods.THINGS_PROPERTIES_SET;
+import static cn.huangdayu.things.common.constants.ThingsConstants.THINGS_SEPARATOR;
 import static cn.huangdayu.things.common.constants.ThingsConstants.THINGS_WILDCARD;
-import static cn.huangdayu.things.common.factory.ThreadPoolFactory.THINGS_EXECUTOR;
+import static cn.huangdayu.things.common.enums.ThingsExecutorType.INVOKER;
+import static cn.huangdayu.things.common.enums.ThingsExecutorType.LISTENER;
+import static cn.huangdayu.things.common.factory.ThreadPoolFactory.getExecutor;
 import static cn.huangdayu.things.common.utils.ThingsUtils.*;
 
 /**
@@ -40,48 +54,71 @@ public class ThingsInvokerExecutor extends ThingsBaseExecutor implements ThingsI
 
     private final ThingsProperties thingsProperties;
     private final ThingsArgsConverter thingsArgsConverter;
+    /**
+     * 声明了 ordered 的监听器按设备串行执行
+     */
+    private final ThingsKeyedExecutor<String> orderedExecutor = new ThingsKeyedExecutor<>(() -> getExecutor(LISTENER));
 
     @Override
     public boolean canInvoke(JsonThingsMessage jtm) {
-        if (StrUtil.isNotBlank(jtm.getBaseMetadata().getErrorCode())) {
+        BaseThingsMetadata baseMetadata = jtm.getBaseMetadata();
+        if (StrUtil.isNotBlank(baseMetadata.getErrorCode())) {
             return false;
         }
-        BaseThingsMetadata baseMetadata = jtm.getBaseMetadata();
+        ThingsEngineSnapshot snapshot = snapshot();
         if (isEventPost(jtm)) {
-            return THINGS_EVENTS_LISTENER_TABLE.containsColumn(baseMetadata.getProductCode());
+            return snapshot.getEventListeners().containsColumn(baseMetadata.getProductCode());
         }
         if (isPropertiesSetOrGet(jtm)) {
-            return PRODUCT_PROPERTY_MAP.containsKey(baseMetadata.getProductCode()) || DEVICE_PROPERTY_MAP.containsColumn(baseMetadata.getDeviceCode());
+            return snapshot.getProductProperties().containsKey(baseMetadata.getProductCode());
         }
         if (isServiceRequest(jtm)) {
-            return THINGS_SERVICES_TABLE.containsColumn(baseMetadata.getProductCode());
+            return snapshot.getServices().containsColumn(baseMetadata.getProductCode());
         }
         return false;
     }
 
-    @SneakyThrows
     @Override
     public JsonThingsMessage syncInvoke(JsonThingsMessage jtm) {
+        return syncInvoke(snapshot(), jtm);
+    }
+
+    @SneakyThrows
+    private JsonThingsMessage syncInvoke(ThingsEngineSnapshot snapshot, JsonThingsMessage jtm) {
         if (isServiceRequest(jtm)) {
-            return invokeService(jtm);
+            return invokeService(snapshot, jtm);
         } else if (isEventPost(jtm)) {
-            return invokeEventListener(jtm);
+            return invokeEventListener(snapshot, jtm);
         } else if (isPropertiesSetOrGet(jtm)) {
-            return invokeUpdateProperty(jtm);
+            return invokeUpdateProperty(snapshot, jtm);
         } else {
             throw new ThingsException(jtm, BAD_REQUEST, "Can't handler this message.");
         }
     }
 
 
+    /**
+     * 服务调用在调用通道上执行，返回 Mono/CompletionStage 的服务直接转换，不阻塞调用方线程；
+     * 事件和属性消息只做分发，延迟到订阅时执行
+     */
     @Override
     public Mono<JsonThingsMessage> reactorInvoke(JsonThingsMessage jtm) {
-        return Mono.just(syncInvoke(jtm));
+        // 在调用线程上取快照，订阅时切换到调用通道后仍使用同一个快照
+        ThingsEngineSnapshot snapshot = snapshot();
+        if (!isServiceRequest(jtm)) {
+            return Mono.fromCallable(() -> syncInvoke(snapshot, jtm));
+        }
+        return Mono.defer(() -> {
+                    ThingsFunction thingsFunction = findServiceFunction(snapshot, jtm);
+                    return toMono(jtm, invokeFunction(jtm, thingsFunction));
+                })
+                .subscribeOn(getScheduler(INVOKER))
+                .timeout(Duration.ofMillis(budget(jtm)));
     }
 
-    private JsonThingsMessage invokeEventListener(JsonThingsMessage jtm) {
-        String method = subIdentifies(jtm.getMethod());
-        Set<ThingsFunction> functions = findEventListenerFunction(method, jtm.getBaseMetadata().getProductCode());
+    private JsonThingsMessage invokeEventListener(ThingsEngineSnapshot snapshot, JsonThingsMessage jtm) {
+        String method = jtm.getThingsMethod().getIdentifier();
+        Set<ThingsFunction> functions = findEventListenerFunction(snapshot.getEventListeners(), method, jtm.getBaseMetadata().getProductCode());
         if (CollUtil.isNotEmpty(functions)) {
             return asyncInvokeFunctions(jtm, functions);
         }
@@ -92,21 +129,22 @@ public class ThingsInvokerExecutor extends ThingsBaseExecutor implements ThingsI
     /**
      * 通配符支持所有产品的同一个事件，一个产品的所有事件，一个产品的某个事件
      *
+     * @param eventListeners
      * @param identifies
      * @param productCode
      * @return
      */
-    private Set<ThingsFunction> findEventListenerFunction(String identifies, String productCode) {
+    private Set<ThingsFunction> findEventListenerFunction(Table<String, String, Set<ThingsFunction>> eventListeners, String identifies, String productCode) {
         Set<ThingsFunction> functions = new ConcurrentHashSet<>();
-        Set<ThingsFunction> thingsFunctions = THINGS_EVENTS_LISTENER_TABLE.get(identifies, productCode);
+        Set<ThingsFunction> thingsFunctions = eventListeners.get(identifies, productCode);
         if (CollUtil.isNotEmpty(thingsFunctions)) {
             functions.addAll(thingsFunctions);
         }
-        Set<ThingsFunction> thingsFunctions1 = THINGS_EVENTS_LISTENER_TABLE.get(identifies, THINGS_WILDCARD);
+        Set<ThingsFunction> thingsFunctions1 = eventListeners.get(identifies, THINGS_WILDCARD);
         if (CollUtil.isNotEmpty(thingsFunctions1)) {
             functions.addAll(thingsFunctions1);
         }
-        Set<ThingsFunction> thingsFunctions2 = THINGS_EVENTS_LISTENER_TABLE.get(THINGS_WILDCARD, productCode);
+        Set<ThingsFunction> thingsFunctions2 = eventListeners.get(THINGS_WILDCARD, productCode);
         if (CollUtil.isNotEmpty(thingsFunctions2)) {
             functions.addAll(thingsFunctions2);
         }
@@ -114,70 +152,169 @@ public class ThingsInvokerExecutor extends ThingsBaseExecutor implements ThingsI
     }
 
 
-    private JsonThingsMessage invokeUpdateProperty(JsonThingsMessage jtm) {
+    private JsonThingsMessage invokeUpdateProperty(ThingsEngineSnapshot snapshot, JsonThingsMessage jtm) {
         BaseThingsMetadata baseThingsMetadata = jtm.getBaseMetadata();
-        Object propertyBean = thingsProperties.getPropertyEntity(baseThingsMetadata.getProductCode(), baseThingsMetadata.getDeviceCode());
-        if (propertyBean != null) {
-            return invokeUpdateProperty(propertyBean, jtm, baseThingsMetadata);
+        String productCode = baseThingsMetadata.getProductCode();
+        String deviceCode = baseThingsMetadata.getDeviceCode();
+        if (!snapshot.getProductProperties().containsKey(productCode)) {
+            throw new ThingsException(jtm, BAD_REQUEST, "Things ont found Property entry.");
         }
-        throw new ThingsException(jtm, BAD_REQUEST, "Things ont found Property entry.");
-    }
-
-    private JsonThingsMessage invokeUpdateProperty(Object propertyBean, JsonThingsMessage jtm, BaseThingsMetadata baseThingsMetadata) {
-        String method = jtm.getMethod();
-        if (method.equals(THINGS_PROPERTIES_SET)) {
-            JSONObject payload = jtm.getPayload();
+        if (jtm.getMethod().equals(THINGS_PROPERTIES_SET)) {
+            Map<String, Object> payload = decodeProperties(snapshot.getProductProperties().get(productCode).getBean(), jtm.getPayload());
             for (Map.Entry<String, Object> entry : payload.entrySet()) {
-                ReflectUtil.setFieldValue(propertyBean, entry.getKey(), entry.getValue());
-                asyncInvokeFunctions(jtm, THINGS_PROPERTY_LISTENER_TABLE.get(entry.getKey(), baseThingsMetadata.getProductCode()));
+                thingsProperties.setProperty(productCode, deviceCode, entry.getKey(), entry.getValue());
+                asyncInvokeFunctions(jtm, snapshot.getPropertyListeners().get(entry.getKey(), productCode));
             }
-            asyncInvokeFunctions(jtm, THINGS_PROPERTY_LISTENER_TABLE.get(THINGS_WILDCARD, baseThingsMetadata.getProductCode()));
+            asyncInvokeFunctions(jtm, snapshot.getPropertyListeners().get(THINGS_WILDCARD, productCode));
         }
-        jtm.setPayload((JSONObject) JSON.toJSON(propertyBean));
+        jtm.setPayload(thingsProperties.getProperties(productCode, deviceCode));
         jtm.setMethod(THINGS_PROPERTIES_POST);
         return jtm;
     }
 
-    @SneakyThrows
-    private JsonThingsMessage invokeService(JsonThingsMessage jtm) {
-        ThingsFunction thingsFunction = THINGS_SERVICES_TABLE.get(subIdentifies(jtm.getMethod()), jtm.getBaseMetadata().getProductCode());
+    /**
+     * 属性实体有生成的编解码器时整体解码一次，按字段类型取出消息中的属性值，不再逐个属性转换
+     */
+    private Map<String, Object> decodeProperties(Object template, JSONObject payload) {
+        ThingsPayloadCodec<?> codec = ThingsPayloadCodecs.getCodec(template.getClass());
+        if (codec == null) {
+            return payload;
+        }
+        Object decoded = codec.decode(payload);
+        ThingsPropertyAccessor accessor = getPropertyAccessor(template.getClass());
+        Map<String, Object> values = new LinkedHashMap<>(payload.size());
+        payload.forEach((name, value) -> values.put(name, accessor.contains(name) ? accessor.get(decoded, name) : value));
+        return values;
+    }
+
+    private JsonThingsMessage invokeService(ThingsEngineSnapshot snapshot, JsonThingsMessage jtm) {
+        return syncInvokeFunction(jtm, findServiceFunction(snapshot, jtm));
+    }
+
+    private ThingsFunction findServiceFunction(ThingsEngineSnapshot snapshot, JsonThingsMessage jtm) {
+        ThingsFunction thingsFunction = snapshot.getServices().get(jtm.getThingsMethod().getIdentifier(), jtm.getBaseMetadata().getProductCode());
         if (thingsFunction == null) {
             throw new ThingsException(jtm, BAD_REQUEST, "Things not found this service.");
         }
-        return syncInvokeFunction(jtm, thingsFunction);
+        return thingsFunction;
     }
 
+    /**
+     * 监听通道已满、一个监听器都没有提交时拒绝，返回服务不可用，由发送方重试；
+     * 已经提交了部分监听器时视为已接收，重试会让已提交的监听器重复执行，被拒绝的监听器只记录日志
+     */
     private JsonThingsMessage asyncInvokeFunctions(JsonThingsMessage jtm, Set<ThingsFunction> thingsFunctions) {
-        if (CollUtil.isNotEmpty(thingsFunctions)) {
-            for (ThingsFunction function : thingsFunctions) {
-                THINGS_EXECUTOR.execute(() -> syncInvokeFunction(jtm, function));
+        if (CollUtil.isEmpty(thingsFunctions)) {
+            return jtm.success();
+        }
+        boolean dispatched = false;
+        for (ThingsFunction function : thingsFunctions) {
+            try {
+                if (function.isOrdered()) {
+                    orderedExecutor.execute(jtm.getBaseMetadata().getProductCode() + THINGS_SEPARATOR + jtm.getBaseMetadata().getDeviceCode(),
+                            () -> invokeListener(jtm, function));
+                } else {
+                    getExecutor(LISTENER).execute(() -> invokeListener(jtm, function));
+                }
+                dispatched = true;
+            } catch (RejectedExecutionException e) {
+                if (!dispatched) {
+                    throw new ThingsException(jtm, SERVICE_UNAVAILABLE, "Things listener executor is busy.");
+                }
+                log.warn("Things listener executor is busy, discard listener {} of message {}", function.getMethod().getName(), jtm.getId());
             }
         }
         return jtm.success();
     }
 
+    /**
+     * 同步处理链上的服务调用，需要在预算内拿到结果：Mono 和 CompletionStage 转换为 future 等待，
+     * 不使用 {@link Mono#block}，在 reactor 的非阻塞线程上调用也不会抛出异常
+     */
     @SneakyThrows
     private JsonThingsMessage syncInvokeFunction(JsonThingsMessage jtm, ThingsFunction thingsFunction) {
-        Object result = thingsFunction.getMethod().invoke(thingsFunction.getBean(), thingsArgsConverter.args(jtm, thingsFunction));
-        if (result != null) {
-            if (result instanceof JsonThingsMessage) {
-                return (JsonThingsMessage) result;
-            } else if (result instanceof Future future) {
-                return getFuture(future, jtm);
-            } else {
-                return jtm.success(result);
+        Object result = invokeFunction(jtm, thingsFunction);
+        if (result instanceof Mono<?> || result instanceof CompletionStage<?>) {
+            try {
+                return toMono(jtm, result).toFuture().get(budget(jtm), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause();
             }
+        } else if (result instanceof Future<?> future) {
+            return toResponse(jtm, future.get(budget(jtm), TimeUnit.MILLISECONDS));
+        }
+        return toResponse(jtm, result);
+    }
+
+    /**
+     * 监听器的结果不需要返回给发送方：Mono 订阅后立即释放监听通道，异步结果的异常记录日志；
+     * 声明了 ordered 的监听器只保证调用按顺序开始，返回的异步结果不阻塞同一设备的下一条消息
+     */
+    private void invokeListener(JsonThingsMessage jtm, ThingsFunction thingsFunction) {
+        Object result = invokeFunction(jtm, thingsFunction);
+        if (result instanceof Mono<?> mono) {
+            mono.timeout(Duration.ofMillis(budget(jtm)))
+                    .subscribe(null, e -> log.error("Things listener {} async result exception", thingsFunction.getMethod().getName(), e));
+        } else if (result instanceof CompletionStage<?> completionStage) {
+            completionStage.whenComplete((value, e) -> {
+                if (e != null) {
+                    log.error("Things listener {} async result exception", thingsFunction.getMethod().getName(), e);
+                }
+            });
         }
-        return jtm.success();
     }
 
+    /**
+     * 排队期间过期的消息不再执行；执行期间绑定消息的截止时间，函数内发出的请求继承剩余预算
+     */
     @SneakyThrows
-    private JsonThingsMessage getFuture(Future future, JsonThingsMessage request) {
-        Object result = future.get(request.getTimeout(), TimeUnit.MILLISECONDS);
-        if (result instanceof JsonThingsMessage) {
-            return (JsonThingsMessage) result;
+    private Object invokeFunction(JsonThingsMessage jtm, ThingsFunction thingsFunction) {
+        if (ThingsDeadline.drop(jtm)) {
+            throw new ThingsException(jtm, GATEWAY_TIMEOUT, "Things message expired before invoke.");
+        }
+        Object[] bases = thingsFunction.isDevicePropertyEntity() ? new Object[thingsFunction.getThingsParameters().length] : null;
+        Object[] args = thingsArgsConverter.args(jtm, thingsFunction, bases);
+        Long previous = ThingsDeadline.bind(jtm.deadline());
+        try {
+            return thingsFunction.getInvoker().invoke(args);
+        } finally {
+            ThingsDeadline.restore(previous);
+            thingsArgsConverter.release(jtm, thingsFunction, args, bases);
+        }
+    }
+
+    /**
+     * 把服务返回值转换为响应式结果，CompletableFuture 同时是 Future，需要先按 CompletionStage 处理；
+     * 普通 Future 只能阻塞等待，放到调用通道上等待
+     */
+    private Mono<JsonThingsMessage> toMono(JsonThingsMessage jtm, Object result) {
+        Mono<?> mono;
+        if (result instanceof Mono<?> resultMono) {
+            mono = resultMono;
+        } else if (result instanceof CompletionStage<?> completionStage) {
+            mono = Mono.fromCompletionStage(completionStage);
+        } else if (result instanceof Future<?> future) {
+            mono = Mono.fromCallable(() -> future.get(budget(jtm), TimeUnit.MILLISECONDS)).subscribeOn(getScheduler(INVOKER));
+        } else {
+            return Mono.just(toResponse(jtm, result));
+        }
+        return mono.map(value -> toResponse(jtm, value)).switchIfEmpty(Mono.fromSupplier(jtm::success));
+    }
+
+    /**
+     * 等待结果的时间，不超过消息剩余的时间预算
+     */
+    private long budget(JsonThingsMessage jtm) {
+        return Math.max(1, Math.min(jtm.getTimeout(), jtm.remaining()));
+    }
+
+    private JsonThingsMessage toResponse(JsonThingsMessage jtm, Object result) {
+        if (result == null) {
+            return jtm.success();
+        } else if (result instanceof JsonThingsMessage response) {
+            return response;
         }
-        return request.success(result);
+        return jtm.success(result);
     }
 
 }
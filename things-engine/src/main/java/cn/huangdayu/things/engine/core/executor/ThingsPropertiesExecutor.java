@@ -1,82 +1,439 @@
 package cn.huangdayu.things.engine.core.executor;
 
+import cn.huangdayu.things.api.infrastructure.ThingsConfigService;
+import cn.huangdayu.things.api.message.ThingsPublisher;
 import cn.huangdayu.things.common.annotation.ThingsBean;
-import cn.huangdayu.things.common.annotation.ThingsPropertyEntity;
+import cn.huangdayu.things.common.factory.ThreadPoolFactory;
+import cn.huangdayu.things.common.message.JsonThingsMessage;
+import cn.huangdayu.things.common.observer.ThingsEventObserver;
+import cn.huangdayu.things.common.observer.event.ThingsSessionUpdatedEvent;
+import cn.huangdayu.things.common.properties.ThingsReportProperties;
+import cn.huangdayu.things.common.wrapper.ThingsSession;
 import cn.huangdayu.things.engine.core.ThingsProperties;
 import cn.huangdayu.things.engine.wrapper.ThingsProperty;
-import cn.hutool.core.util.ObjectUtil;
-import cn.hutool.core.util.ReflectUtil;
+import cn.huangdayu.things.engine.wrapper.ThingsPropertyAccessor;
+import cn.huangdayu.things.engine.wrapper.ThingsPropertyStore;
+import cn.hutool.cache.Cache;
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.core.collection.ListUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson2.JSONObject;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
-import static cn.huangdayu.things.engine.core.executor.ThingsRegisterExecutor.DEVICE_PROPERTY_MAP;
-import static cn.huangdayu.things.engine.core.executor.ThingsRegisterExecutor.PRODUCT_PROPERTY_MAP;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static cn.huangdayu.things.common.constants.ThingsConstants.Methods.THINGS_PROPERTIES_POST;
+import static cn.huangdayu.things.common.constants.ThingsConstants.THINGS_SEPARATOR;
+import static cn.huangdayu.things.common.enums.ThingsDeliveryMode.ASYNC_ORDERED;
+import static cn.huangdayu.things.common.enums.ThingsExecutorType.OUTBOUND;
+import static cn.huangdayu.things.engine.core.executor.ThingsBaseExecutor.getPropertyAccessor;
+import static cn.huangdayu.things.engine.core.executor.ThingsBaseExecutor.snapshot;
 
 /**
+ * 属性读写与上报
+ * <p>
+ * 变更的属性按设备标记为脏，在合并窗口结束时每个设备生成一条 {@code thing.properties.all.post} 增量消息，
+ * 按产品（同一产品的上报走同一条处理链）分组分批发送，数值属性按 {@link cn.huangdayu.things.common.annotation.ThingsParam#step()} 做死区过滤；
+ * 被死区过滤的值超过 {@link ThingsReportProperties#getHeartbeat()} 仍未上报时强制上报；
+ * 设备下线不回收属性，离线超过 {@link ThingsReportProperties#getOfflineRetention()} 或注销时才回收属性槽位
+ *
  * @author huangdayu
  */
+@Slf4j
+@RequiredArgsConstructor
 @ThingsBean
 public class ThingsPropertiesExecutor implements ThingsProperties {
 
+    private final ThingsConfigService thingsConfigService;
+    private final ThingsPublisher thingsPublisher;
+    private final ThingsEventObserver thingsEventObserver;
+
+    /**
+     * productCode#deviceCode vs 待上报的属性
+     */
+    private final Map<String, DirtyProperties> dirtyProperties = new ConcurrentHashMap<>();
+
+    /**
+     * productCode#deviceCode vs 被死区过滤、尚未上报的属性
+     */
+    private final Map<String, DirtyProperties> suppressedProperties = new ConcurrentHashMap<>();
+
+    /**
+     * productCode#deviceCode vs 上次上报的属性值和时间，用于死区过滤，按设备数量上限淘汰
+     */
+    private Cache<String, Map<String, Reported>> reportedProperties;
+
+    /**
+     * productCode#deviceCode vs 下线的设备和下线时间，重新上线时移除
+     */
+    private final Map<String, Offline> offlineDevices = new ConcurrentHashMap<>();
+
+    private ScheduledFuture<?> flushFuture;
+    private ScheduledFuture<?> heartbeatFuture;
+    private ScheduledFuture<?> retentionFuture;
+
+    @PostConstruct
+    public void init() {
+        ThingsReportProperties report = getReportProperties();
+        reportedProperties = CacheUtil.newLRUCache(Math.max(1, report.getMaxDevices()));
+        long window = report.getWindow();
+        if (window > 0) {
+            flushFuture = ThreadPoolFactory.getScheduler().scheduleWithFixedDelay(this::flushProperties, window, window, TimeUnit.MILLISECONDS);
+        }
+        long heartbeat = report.getHeartbeat();
+        if (heartbeat > 0 && report.isDeadband()) {
+            long period = Math.max(1, heartbeat / 2);
+            heartbeatFuture = ThreadPoolFactory.getScheduler().scheduleWithFixedDelay(this::flushSuppressed, period, period, TimeUnit.MILLISECONDS);
+        }
+        long retention = report.getOfflineRetention();
+        if (retention > 0) {
+            long period = Math.max(1000, Math.min(retention, 60 * 1000));
+            retentionFuture = ThreadPoolFactory.getScheduler().scheduleWithFixedDelay(this::removeOfflineDevices, period, period, TimeUnit.MILLISECONDS);
+            thingsEventObserver.registerObserver(ThingsSessionUpdatedEvent.class, event -> updateOffline(event.getSession()), ASYNC_ORDERED);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (flushFuture != null) {
+            flushFuture.cancel(false);
+        }
+        if (heartbeatFuture != null) {
+            heartbeatFuture.cancel(false);
+        }
+        if (retentionFuture != null) {
+            retentionFuture.cancel(false);
+        }
+        flushProperties();
+    }
 
     @Override
     public <T> T getPropertyEntity(String productCode) {
-        ThingsProperty thingsProperty = PRODUCT_PROPERTY_MAP.get(productCode);
-        if (thingsProperty != null) {
-            ThingsPropertyEntity thingsPropertyEntity = thingsProperty.getThingsPropertyEntity();
-            if (thingsPropertyEntity.productPublic()) {
-                return (T) thingsProperty.getBean();
-            }
+        ThingsProperty thingsProperty = snapshot().getProductProperties().get(productCode);
+        if (thingsProperty != null && thingsProperty.getThingsPropertyEntity().productPublic()) {
+            return (T) thingsProperty.getBean();
         }
         return null;
     }
 
     @Override
     public <T> T getPropertyEntity(String productCode, String deviceCode) {
-        ThingsProperty thingsPropertyForDevice = DEVICE_PROPERTY_MAP.get(deviceCode, productCode);
-        if (thingsPropertyForDevice == null) {
-            ThingsProperty thingsPropertyForProduct = PRODUCT_PROPERTY_MAP.get(productCode);
-            if (thingsPropertyForProduct == null) {
-                return null;
-            }
-            if (thingsPropertyForProduct.getThingsPropertyEntity().productPublic()) {
-                return (T) thingsPropertyForProduct.getBean();
-            }
-            thingsPropertyForDevice = new ThingsProperty(thingsPropertyForProduct.getThingsContainer(), thingsPropertyForProduct.getThingsPropertyEntity(), ObjectUtil.clone(thingsPropertyForProduct.getBean()));
-            DEVICE_PROPERTY_MAP.put(deviceCode, productCode, thingsPropertyForDevice);
+        return getPropertyEntity(productCode, deviceCode, null);
+    }
+
+    @Override
+    public <T> T getPropertyEntity(String productCode, String deviceCode, Map<String, Object> base) {
+        ThingsPropertyStore thingsPropertyStore = snapshot().getPropertyStores().get(productCode);
+        if (thingsPropertyStore != null) {
+            return (T) thingsPropertyStore.materialize(deviceCode, base);
         }
-        return (T) thingsPropertyForDevice.getBean();
+        return getPropertyEntity(productCode);
     }
 
+    @Override
+    public JSONObject getProperties(String productCode, String deviceCode) {
+        ThingsPropertyStore thingsPropertyStore = snapshot().getPropertyStores().get(productCode);
+        if (thingsPropertyStore != null) {
+            return thingsPropertyStore.toJson(deviceCode);
+        }
+        Object bean = getPropertyEntity(productCode);
+        return bean != null ? getPropertyAccessor(bean.getClass()).toJson(bean) : null;
+    }
 
     @Override
     public <T> T getProperty(String productCode, String deviceCode, String propertyName) {
-        Object bean = getPropertyEntity(productCode, deviceCode);
-        if (bean != null) {
-            return (T) ReflectUtil.getFieldValue(bean, propertyName);
+        ThingsPropertyStore thingsPropertyStore = snapshot().getPropertyStores().get(productCode);
+        if (thingsPropertyStore != null) {
+            return thingsPropertyStore.get(deviceCode, propertyName);
         }
-        return null;
+        Object bean = getPropertyEntity(productCode);
+        return bean != null ? getPropertyAccessor(bean.getClass()).get(bean, propertyName) : null;
     }
 
     @Override
     public void setProperty(String productCode, String deviceCode, String propertyName, Object value) {
-        Object bean = getPropertyEntity(productCode, deviceCode);
-        if (bean != null) {
-            ReflectUtil.setFieldValue(bean, propertyName, value);
-            postProperties(productCode, deviceCode, bean);
+        ThingsPropertyStore thingsPropertyStore = snapshot().getPropertyStores().get(productCode);
+        if (thingsPropertyStore != null) {
+            String identifier = thingsPropertyStore.getAccessor().identifier(propertyName);
+            if (identifier == null) {
+                log.warn("Things property {} of product {} not found, ignore the value : {}", propertyName, productCode, value);
+            } else if (thingsPropertyStore.set(deviceCode, identifier, value)) {
+                postProperties(productCode, deviceCode, Set.of(identifier));
+            }
+            return;
+        }
+        Object bean = getPropertyEntity(productCode);
+        if (bean == null) {
+            return;
+        }
+        ThingsPropertyAccessor accessor = getPropertyAccessor(bean.getClass());
+        String identifier = accessor.identifier(propertyName);
+        if (identifier == null) {
+            log.warn("Things property {} of product {} not found, ignore the value : {}", propertyName, productCode, value);
+        } else if (accessor.set(bean, identifier, value)) {
+            postProperties(productCode, deviceCode, Set.of(identifier));
         }
     }
 
     @Override
     public void updatePropertyEntity(String productCode, String deviceCode, Object properties) {
-        postProperties(productCode, deviceCode, properties);
+        updatePropertyEntity(productCode, deviceCode, properties, null);
+    }
+
+    @Override
+    public void updatePropertyEntity(String productCode, String deviceCode, Object properties, Map<String, Object> base) {
+        ThingsPropertyStore thingsPropertyStore = snapshot().getPropertyStores().get(productCode);
+        if (thingsPropertyStore != null) {
+            Set<String> changed = thingsPropertyStore.update(deviceCode, properties, base);
+            if (!changed.isEmpty()) {
+                postProperties(productCode, deviceCode, changed);
+            }
+            return;
+        }
+        if (properties != null) {
+            postProperties(productCode, deviceCode, getPropertyAccessor(properties.getClass()).identifiers());
+        }
     }
 
     @Override
     public void postProperty(String productCode, String deviceCode) {
+        JSONObject properties = getProperties(productCode, deviceCode);
+        if (properties == null || properties.isEmpty()) {
+            return;
+        }
+        String deviceKey = productCode + THINGS_SEPARATOR + deviceCode;
+        dirtyProperties.remove(deviceKey);
+        suppressedProperties.remove(deviceKey);
+        Map<String, Reported> reported = new ConcurrentHashMap<>();
+        long now = System.currentTimeMillis();
+        properties.forEach((key, value) -> reported.put(key, new Reported(value, now)));
+        reportedProperties.put(deviceKey, reported);
+        publishProperties(List.of(buildMessage(productCode, deviceCode, properties)));
+    }
 
+    @Override
+    public void removeDevice(String productCode, String deviceCode) {
+        if (StrUtil.isBlank(productCode) || StrUtil.isBlank(deviceCode)) {
+            return;
+        }
+        String deviceKey = productCode + THINGS_SEPARATOR + deviceCode;
+        offlineDevices.remove(deviceKey);
+        dirtyProperties.remove(deviceKey);
+        suppressedProperties.remove(deviceKey);
+        reportedProperties.remove(deviceKey);
+        ThingsPropertyStore thingsPropertyStore = snapshot().getPropertyStores().get(productCode);
+        if (thingsPropertyStore != null) {
+            thingsPropertyStore.remove(deviceCode);
+        }
     }
 
+    /**
+     * 记录设备的下线时间，设备重新上线时清除，下线期间属性保持不变
+     */
+    private void updateOffline(ThingsSession session) {
+        if (session == null || StrUtil.isBlank(session.getProductCode()) || StrUtil.isBlank(session.getDeviceCode())) {
+            return;
+        }
+        String deviceKey = session.getProductCode() + THINGS_SEPARATOR + session.getDeviceCode();
+        if (session.isOnline()) {
+            offlineDevices.remove(deviceKey);
+        } else {
+            offlineDevices.putIfAbsent(deviceKey, new Offline(session.getProductCode(), session.getDeviceCode(), System.currentTimeMillis()));
+        }
+    }
 
-    private void postProperties(String productCode, String deviceCode, Object properties) {
-        // TODO 上报属性（不使用AOP或者动态字节码的形式监听对象字段的额更新，而是使用主动调用或者定时上报的形式）
+    /**
+     * 回收离线超过保留时间的设备的属性槽位
+     */
+    private void removeOfflineDevices() {
+        if (offlineDevices.isEmpty()) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() - getReportProperties().getOfflineRetention();
+        for (Map.Entry<String, Offline> entry : offlineDevices.entrySet()) {
+            Offline offline = entry.getValue();
+            // 只回收仍是这次下线记录的设备，期间重新上线又下线的设备重新计时
+            if (offline.since() <= deadline && offlineDevices.remove(entry.getKey(), offline)) {
+                removeDevice(offline.productCode(), offline.deviceCode());
+            }
+        }
+    }
+
+    /**
+     * 标记变更的属性，合并窗口为 0 时立即上报
+     */
+    private void postProperties(String productCode, String deviceCode, Set<String> identifiers) {
+        String deviceKey = productCode + THINGS_SEPARATOR + deviceCode;
+        // compute 与 flush 中的 remove 互斥，不会把属性加到已取出的对象上
+        dirtyProperties.compute(deviceKey, (k, dirty) -> {
+            dirty = dirty != null ? dirty : new DirtyProperties(productCode, deviceCode);
+            dirty.identifiers.addAll(identifiers);
+            return dirty;
+        });
+        if (flushFuture == null) {
+            flushProperties();
+        }
+    }
+
+    /**
+     * 取出所有脏设备，每个设备生成一条增量上报消息
+     */
+    private void flushProperties() {
+        if (dirtyProperties.isEmpty()) {
+            return;
+        }
+        List<JsonThingsMessage> messages = new ArrayList<>();
+        boolean deadband = getReportProperties().isDeadband();
+        for (String deviceKey : dirtyProperties.keySet()) {
+            DirtyProperties dirty = dirtyProperties.remove(deviceKey);
+            if (dirty == null) {
+                continue;
+            }
+            try {
+                JSONObject delta = getDelta(deviceKey, dirty, deadband);
+                if (!delta.isEmpty()) {
+                    messages.add(buildMessage(dirty.productCode, dirty.deviceCode, delta));
+                }
+            } catch (Exception e) {
+                log.error("Things properties {} build report message exception", deviceKey, e);
+            }
+        }
+        publishProperties(messages);
+    }
+
+    /**
+     * 死区过滤，超过最长上报间隔的属性即使变化量小于步长也上报；被过滤的属性记录下来，由 {@link #flushSuppressed()} 到期后重新上报
+     */
+    private JSONObject getDelta(String deviceKey, DirtyProperties dirty, boolean deadband) {
+        JSONObject values = getProperties(dirty.productCode, dirty.deviceCode, dirty.identifiers);
+        if (values == null || values.isEmpty()) {
+            return new JSONObject();
+        }
+        long now = System.currentTimeMillis();
+        Map<String, Reported> reported = reportedProperties.get(deviceKey, true, ConcurrentHashMap::new);
+        if (!deadband) {
+            values.forEach((key, value) -> reported.put(key, new Reported(value, now)));
+            return values;
+        }
+        ThingsPropertyAccessor accessor = getAccessor(dirty.productCode);
+        long heartbeat = getReportProperties().getHeartbeat();
+        JSONObject delta = new JSONObject(values.size());
+        Set<String> suppressed = new HashSet<>();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            Reported last = reported.get(entry.getKey());
+            Object lastValue = last != null ? last.value() : null;
+            boolean expired = last != null && heartbeat > 0 && now - last.time() >= heartbeat;
+            if (accessor == null || expired || accessor.reportable(entry.getKey(), entry.getValue(), lastValue)) {
+                delta.put(entry.getKey(), entry.getValue());
+                reported.put(entry.getKey(), new Reported(entry.getValue(), now));
+            } else if (!Objects.equals(entry.getValue(), lastValue)) {
+                suppressed.add(accessor.identifier(entry.getKey()));
+            }
+        }
+        if (!suppressed.isEmpty() && heartbeat > 0) {
+            suppressedProperties.compute(deviceKey, (k, pending) -> {
+                pending = pending != null ? pending : new DirtyProperties(dirty.productCode, dirty.deviceCode);
+                pending.identifiers.addAll(suppressed);
+                return pending;
+            });
+        }
+        return delta;
+    }
+
+    /**
+     * 被死区过滤超过最长上报间隔的属性重新标记为脏，下次合并时强制上报
+     */
+    private void flushSuppressed() {
+        if (suppressedProperties.isEmpty()) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() - getReportProperties().getHeartbeat();
+        for (Map.Entry<String, DirtyProperties> entry : suppressedProperties.entrySet()) {
+            DirtyProperties pending = entry.getValue();
+            if (pending.since <= deadline && suppressedProperties.remove(entry.getKey(), pending)) {
+                postProperties(pending.productCode, pending.deviceCode, pending.identifiers);
+            }
+        }
+    }
+
+    private JSONObject getProperties(String productCode, String deviceCode, Collection<String> identifiers) {
+        ThingsPropertyStore thingsPropertyStore = snapshot().getPropertyStores().get(productCode);
+        if (thingsPropertyStore != null) {
+            return thingsPropertyStore.toJson(deviceCode, identifiers);
+        }
+        Object bean = getPropertyEntity(productCode);
+        return bean != null ? getPropertyAccessor(bean.getClass()).toJson(bean, identifiers) : null;
+    }
+
+    private ThingsPropertyAccessor getAccessor(String productCode) {
+        ThingsProperty thingsProperty = snapshot().getProductProperties().get(productCode);
+        return thingsProperty != null ? getPropertyAccessor(thingsProperty.getBean().getClass()) : null;
+    }
+
+    private JsonThingsMessage buildMessage(String productCode, String deviceCode, JSONObject properties) {
+        JsonThingsMessage jtm = new JsonThingsMessage();
+        jtm.setBaseMetadata(baseThingsMetadata -> {
+            baseThingsMetadata.setProductCode(productCode);
+            baseThingsMetadata.setDeviceCode(deviceCode);
+        });
+        jtm.setMethod(THINGS_PROPERTIES_POST);
+        jtm.setPayload(properties);
+        return jtm;
+    }
+
+    /**
+     * 按产品分组，每组按批次大小分批发送；输出处理链按方法和产品选择，同一批消息经过同一条处理链发往同一个上游
+     */
+    private void publishProperties(List<JsonThingsMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        Map<String, List<JsonThingsMessage>> products = new HashMap<>();
+        for (JsonThingsMessage jtm : messages) {
+            products.computeIfAbsent(StrUtil.nullToEmpty(jtm.getBaseMetadata().getProductCode()), k -> new ArrayList<>()).add(jtm);
+        }
+        int batchSize = Math.max(1, getReportProperties().getBatchSize());
+        for (List<JsonThingsMessage> product : products.values()) {
+            for (List<JsonThingsMessage> batch : ListUtil.partition(product, batchSize)) {
+                ThreadPoolFactory.getExecutor(OUTBOUND).execute(() -> publishBatch(batch));
+            }
+        }
+    }
+
+    private void publishBatch(List<JsonThingsMessage> batch) {
+        try {
+            thingsPublisher.publishEvents(batch);
+        } catch (Exception e) {
+            log.error("Things properties report exception, batch size : {}", batch.size(), e);
+        }
+    }
+
+    private ThingsReportProperties getReportProperties() {
+        ThingsReportProperties report = thingsConfigService.getProperties().getReport();
+        return report != null ? report : new ThingsReportProperties();
+    }
+
+    private record Reported(Object value, long time) {
+    }
+
+    private record Offline(String productCode, String deviceCode, long since) {
+    }
+
+    private static final class DirtyProperties {
+        private final String productCode;
+        private final String deviceCode;
+        private final Set<String> identifiers = new HashSet<>();
+        private final long since = System.currentTimeMillis();
+
+        private DirtyProperties(String productCode, String deviceCode) {
+            this.productCode = productCode;
+            this.deviceCode = deviceCode;
+        }
     }
 }
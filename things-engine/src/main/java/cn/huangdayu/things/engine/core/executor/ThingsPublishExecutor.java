@@ -3,6 +3,8 @@ package cn.huangdayu.things.engine.core.executor;
 import cn.huangdayu.things.api.message.ThingsChaining;
 import cn.huangdayu.things.api.message.ThingsPublisher;
 import cn.huangdayu.things.common.annotation.ThingsBean;
+import cn.huangdayu.things.common.async.ThingsDeadline;
+import cn.huangdayu.things.common.exception.ThingsException;
 import cn.huangdayu.things.common.message.JsonThingsMessage;
 import cn.huangdayu.things.common.message.ThingsEventMessage;
 import cn.huangdayu.things.common.utils.ThingsUtils;
@@ -12,10 +14,17 @@ import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
+import static cn.huangdayu.things.common.enums.ThingsExecutorType.OUTBOUND;
+import static cn.huangdayu.things.engine.core.executor.ThingsBaseExecutor.getScheduler;
+
 /**
  * @author huangdayu
  */
@@ -32,8 +41,29 @@ public class ThingsPublishExecutor implements ThingsPublisher {
         thingsChaining.output(new ThingsRequest(jtm), new ThingsResponse());
     }
 
+    /**
+     * 整批经过一次处理链，不登记等待响应，发出后立即返回，与 {@link #publishEvent(JsonThingsMessage)} 一致；
+     * {@link #publishEvent(ThingsEventMessage)} 则同步等待上游响应，需要确认送达时逐条使用
+     */
+    @Override
+    public void publishEvents(Collection<ThingsEventMessage> tems) {
+        publishEvents(tems.stream().map(ThingsUtils::covertEventMessage).toList());
+    }
+
+    @Override
+    public void publishEvents(List<JsonThingsMessage> jtms) {
+        List<ThingsRequest> thingsRequests = new ArrayList<>(jtms.size());
+        List<ThingsResponse> thingsResponses = new ArrayList<>(jtms.size());
+        for (JsonThingsMessage jtm : jtms) {
+            thingsRequests.add(new ThingsRequest(jtm));
+            thingsResponses.add(new ThingsResponse());
+        }
+        thingsChaining.output(thingsRequests, thingsResponses);
+    }
+
     @SneakyThrows
     public JsonThingsMessage syncSendMessage(JsonThingsMessage jtm) {
+        ThingsDeadline.propagate(jtm);
         ThingsResponse thingsResponse = new ThingsResponse();
         CompletableFuture<ThingsResponse> future = new CompletableFuture<>();
         thingsResponse.setFuture(future);
@@ -43,14 +73,71 @@ public class ThingsPublishExecutor implements ThingsPublisher {
 
     @Override
     public void asyncSendMessage(JsonThingsMessage jtm, Consumer<JsonThingsMessage> consumer) {
+        ThingsDeadline.propagate(jtm);
         ThingsResponse thingsResponse = new ThingsResponse();
         thingsResponse.setConsumer(response -> consumer.accept(response.getJtm()));
         thingsChaining.output(new ThingsRequest(jtm), thingsResponse);
     }
 
-    @SneakyThrows
+    /**
+     * 整批经过一次处理链，每条消息的 future 在收到响应、超时或发送失败时完成
+     */
+    @Override
+    public List<CompletableFuture<JsonThingsMessage>> sendMessages(List<JsonThingsMessage> jtms) {
+        List<ThingsRequest> thingsRequests = new ArrayList<>(jtms.size());
+        List<ThingsResponse> thingsResponses = new ArrayList<>(jtms.size());
+        List<CompletableFuture<JsonThingsMessage>> futures = new ArrayList<>(jtms.size());
+        for (JsonThingsMessage jtm : jtms) {
+            ThingsResponse thingsResponse = new ThingsResponse();
+            CompletableFuture<ThingsResponse> future = new CompletableFuture<>();
+            thingsResponse.setFuture(future);
+            futures.add(future.thenApply(ThingsResponse::getJtm));
+            try {
+                ThingsDeadline.propagate(jtm);
+            } catch (ThingsException e) {
+                // 预算已经用完的消息不再发送
+                future.completeExceptionally(e);
+                continue;
+            }
+            thingsRequests.add(new ThingsRequest(jtm));
+            thingsResponses.add(thingsResponse);
+        }
+        thingsChaining.output(thingsRequests, thingsResponses);
+        return futures;
+    }
+
+    /**
+     * 订阅时在发送通道上发出消息，由响应 future 完成 Mono，不阻塞订阅线程；
+     * 处理链抛出异常或拦截器拒绝发送时立即以异常结束，不等到超时；
+     * 截止时间在组装时从调用线程取得，订阅时才写入消息，预算用完时以 Mono.error 结束，不在组装时抛出
+     */
     public Mono<JsonThingsMessage> reactorSendMessage(JsonThingsMessage jtm) {
-        return Mono.just(syncSendMessage(jtm));
+        long inherited = ThingsDeadline.current();
+        return Mono.defer(() -> {
+                    try {
+                        ThingsDeadline.propagate(jtm, inherited);
+                    } catch (ThingsException e) {
+                        return Mono.error(e);
+                    }
+                    return Mono.<JsonThingsMessage>create(sink -> {
+                        ThingsResponse thingsResponse = new ThingsResponse();
+                        CompletableFuture<ThingsResponse> future = new CompletableFuture<>();
+                        thingsResponse.setFuture(future);
+                        future.whenComplete((response, e) -> {
+                            if (e != null) {
+                                sink.error(e);
+                            } else {
+                                sink.success(response.getJtm());
+                            }
+                        });
+                        try {
+                            thingsChaining.output(new ThingsRequest(jtm), thingsResponse);
+                        } catch (Exception e) {
+                            future.completeExceptionally(e);
+                        }
+                    }).timeout(Duration.ofMillis(jtm.getTimeout()));
+                })
+                .subscribeOn(getScheduler(OUTBOUND));
     }
 
 }
@@ -7,13 +7,12 @@ import cn.huangdayu.things.api.message.ThingsHandling;
 import cn.huangdayu.things.api.message.ThingsIntercepting;
 import cn.huangdayu.things.common.annotation.*;
 import cn.huangdayu.things.common.exception.ThingsException;
+import cn.huangdayu.things.common.message.ThingsPayloadCodecs;
 import cn.huangdayu.things.common.observer.ThingsEventObserver;
 import cn.huangdayu.things.common.observer.event.ThingsContainerUpdatedEvent;
 import cn.huangdayu.things.engine.wrapper.*;
 import cn.hutool.core.annotation.AnnotationUtil;
 import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.collection.ConcurrentHashSet;
-import cn.hutool.core.map.multi.Table;
 import cn.hutool.core.util.ReflectUtil;
 import cn.hutool.core.util.StrUtil;
 import lombok.RequiredArgsConstructor;
@@ -22,10 +21,8 @@ import lombok.extern.slf4j.Slf4j;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
-import java.util.Arrays;
-import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static cn.huangdayu.things.common.constants.ThingsConstants.ErrorCodes.ERROR;
 import static cn.huangdayu.things.common.constants.ThingsConstants.THINGS_SEPARATOR;
@@ -40,34 +37,107 @@ import static cn.huangdayu.things.common.utils.ThingsUtils.*;
 public class ThingsRegisterExecutor extends ThingsBaseExecutor implements ThingsRegister {
 
     private final ThingsEventObserver thingsEventObserver;
+    private final ThingsArgsConverter thingsArgsConverter;
+    /**
+     * productCode vs 已注销容器的属性存储，同一产品重新注册（热替换）时新存储接管其中的设备属性
+     */
+    private final Map<String, ThingsPropertyStore> retiredPropertyStores = new ConcurrentHashMap<>();
 
+    /**
+     * 在快照锁之外把容器扫描到单独的副本，锁内只检查冲突并合并，整体发布后处理中的消息不会看到注册了一半的状态
+     */
     @Override
     public void register(ThingsContainer thingsContainer) {
-        if (THINGS_CONTAINERS.get(thingsContainer.name()) != null) {
+        long start = System.currentTimeMillis();
+        if (snapshot().getContainers().containsKey(thingsContainer.name())) {
             throw new ThingsException(ERROR, "Container name already exists.");
         }
-        long start = System.currentTimeMillis();
-        findBeans(thingsContainer, Things.class, this::findThingsFunctions);
-        findBeans(thingsContainer, ThingsPropertyEntity.class, this::findThingsProperties);
-        findBeans(thingsContainer, ThingsEventEntity.class, this::findThingsEvents);
-        findBeans(thingsContainer, ThingsListener.class, this::findThingsListener);
-        findBeans(thingsContainer, ThingsFilter.class, this::findThingsFilters);
-        findBeans(thingsContainer, ThingsInterceptor.class, this::findThingsInterceptors);
-        findBeans(thingsContainer, ThingsHandler.class, this::findThingsThingsHandlers);
+        ThingsEngineSnapshot.Builder scanned = ThingsEngineSnapshot.Builder.empty();
+        findBeans(thingsContainer, Things.class, (c, a, b) -> findThingsFunctions(scanned, c, a, b));
+        findBeans(thingsContainer, ThingsPropertyEntity.class, (c, a, b) -> findThingsProperties(scanned, c, a, b));
+        findBeans(thingsContainer, ThingsEventEntity.class, (c, a, b) -> findThingsEvents(scanned, c, a, b));
+        findBeans(thingsContainer, ThingsListener.class, (c, a, b) -> findThingsListener(scanned, c, a, b));
+        findBeans(thingsContainer, ThingsFilter.class, (c, a, b) -> findThingsFilters(scanned, c, a, b));
+        findBeans(thingsContainer, ThingsInterceptor.class, (c, a, b) -> findThingsInterceptors(scanned, c, a, b));
+        findBeans(thingsContainer, ThingsHandler.class, (c, a, b) -> findThingsThingsHandlers(scanned, c, a, b));
+        scanned.containers.put(thingsContainer.name(), thingsContainer);
+        Map<String, ThingsPropertyStore> migrated = migratePropertyStores(scanned);
+        // 编解码器先于快照发布注册，新注册的服务收到的第一条消息就能使用
+        ThingsPayloadCodecs.register(thingsContainer.name(), thingsContainer.getClassLoader());
+        try {
+            updateSnapshot(builder -> {
+                if (builder.containers.get(thingsContainer.name()) != null) {
+                    throw new ThingsException(ERROR, "Container name already exists.");
+                }
+                for (ThingsProperty thingsProperty : new ArrayList<>(scanned.productProperties.values())) {
+                    String productCode = thingsProperty.getThingsPropertyEntity().productCode();
+                    ThingsProperty exists = builder.productProperties.get(productCode);
+                    if (exists != null) {
+                        log.error("Duplicate registration ThingsProperty ({}), only effective once, effective ThingsProperty {} , invalid ThingsProperty : {}",
+                                productCode, exists.getBean().getClass(), thingsProperty.getBean().getClass());
+                        scanned.productProperties.remove(productCode);
+                        scanned.propertyStores.remove(productCode);
+                        restorePropertyStore(productCode, migrated.remove(productCode));
+                    }
+                }
+                builder.merge(scanned);
+            });
+        } catch (RuntimeException e) {
+            migrated.forEach(this::restorePropertyStore);
+            ThingsPayloadCodecs.unregister(thingsContainer.name());
+            throw e;
+        }
         thingsEventObserver.notifyObservers(new ThingsContainerUpdatedEvent(thingsContainer));
         log.info("Started ThingsEngine in {} milliseconds with context {}.", System.currentTimeMillis() - start, thingsContainer.name());
-        THINGS_CONTAINERS.put(thingsContainer.name(), thingsContainer);
     }
 
+    /**
+     * 按容器名称找到注册时的容器，移除它注册的服务、属性、事件、监听器、过滤器、拦截器、处理器和实体；
+     * 移除的属性存储保留到同一产品重新注册
+     */
     @Override
     public void cancel(ThingsContainer thingsContainer) {
-        deleteTable(THINGS_SERVICES_TABLE, v -> v.getThingsContainer() == thingsContainer);
-        deleteTable(DEVICE_PROPERTY_MAP, v -> v.getThingsContainer() == thingsContainer);
-        deleteTable(THINGS_EVENTS_TABLE, v -> v.getThingsContainer() == thingsContainer);
-        cancelEventListener(thingsContainer);
-        deleteMap(PRODUCT_PROPERTY_MAP, v -> v.getThingsContainer() == thingsContainer);
+        Set<Class<?>> propertyClasses = new HashSet<>();
+        Map<String, ThingsPropertyStore> removedStores = new HashMap<>();
+        updateSnapshot(builder -> {
+            ThingsContainer registered = builder.containers.getOrDefault(thingsContainer.name(), thingsContainer);
+            builder.productProperties.values().stream().filter(v -> v.getThingsContainer() == registered)
+                    .forEach(v -> propertyClasses.add(v.getBean().getClass()));
+            builder.propertyStores.forEach((productCode, store) -> {
+                if (store.getThingsProperty().getThingsContainer() == registered) {
+                    removedStores.put(productCode, store);
+                }
+            });
+            builder.remove(registered);
+        });
+        retiredPropertyStores.putAll(removedStores);
+        propertyClasses.forEach(THINGS_PROPERTY_ACCESSORS::remove);
+        ThingsPayloadCodecs.unregister(thingsContainer.name());
         thingsEventObserver.notifyObservers(new ThingsContainerUpdatedEvent(thingsContainer));
-        THINGS_CONTAINERS.remove(thingsContainer.name());
+    }
+
+    /**
+     * 新扫描的属性存储接管同一产品已注销的属性存储中的设备属性，在快照锁之外迁移
+     *
+     * @return productCode vs 被接管的属性存储，注册失败时放回
+     */
+    private Map<String, ThingsPropertyStore> migratePropertyStores(ThingsEngineSnapshot.Builder scanned) {
+        Map<String, ThingsPropertyStore> migrated = new HashMap<>();
+        scanned.propertyStores.forEach((productCode, store) -> {
+            ThingsPropertyStore previous = retiredPropertyStores.remove(productCode);
+            if (previous != null) {
+                int devices = store.migrate(previous);
+                migrated.put(productCode, previous);
+                log.info("Things property store ({}) migrated {} devices.", productCode, devices);
+            }
+        });
+        return migrated;
+    }
+
+    private void restorePropertyStore(String productCode, ThingsPropertyStore previous) {
+        if (previous != null) {
+            retiredPropertyStores.putIfAbsent(productCode, previous);
+        }
     }
 
     @Override
@@ -80,18 +150,6 @@ public class ThingsRegisterExecutor extends ThingsBaseExecutor implements Things
         cancel(new ThingsFunctionContainer(containerName, bean));
     }
 
-    private void cancelEventListener(ThingsContainer thingsContainer) {
-        for (Table.Cell<String, String, Set<ThingsFunction>> cell : THINGS_EVENTS_LISTENER_TABLE.cellSet()) {
-            Set<ThingsFunction> collect = cell.getValue().stream().filter(v -> v.getThingsContainer() == thingsContainer).collect(Collectors.toSet());
-            if (CollUtil.isNotEmpty(collect)) {
-                cell.getValue().removeAll(collect);
-            }
-            if (cell.getValue().isEmpty()) {
-                THINGS_EVENTS_LISTENER_TABLE.remove(cell.getRowKey(), cell.getColumnKey());
-            }
-        }
-    }
-
 
     /**
      * 查找bean
@@ -124,64 +182,69 @@ public class ThingsRegisterExecutor extends ThingsBaseExecutor implements Things
         }
     }
 
-    private void findThingsProperties(ThingsContainer thingsContainer, ThingsPropertyEntity thingsPropertyEntity, Object bean) {
+    private void findThingsProperties(ThingsEngineSnapshot.Builder builder, ThingsContainer thingsContainer, ThingsPropertyEntity thingsPropertyEntity, Object bean) {
         if (!thingsPropertyEntity.enabled()) {
             return;
         }
-        if (PRODUCT_PROPERTY_MAP.get(thingsPropertyEntity.productCode()) == null) {
-            PRODUCT_PROPERTY_MAP.put(thingsPropertyEntity.productCode(), new ThingsProperty(thingsContainer, thingsPropertyEntity, bean));
+        ThingsProperty thingsProperty = new ThingsProperty(thingsContainer, thingsPropertyEntity, bean);
+        ThingsProperty exists = builder.productProperties.putIfAbsent(thingsPropertyEntity.productCode(), thingsProperty);
+        if (exists == null) {
+            ThingsPropertyAccessor propertyAccessor = getPropertyAccessor(bean.getClass());
+            if (!thingsPropertyEntity.productPublic()) {
+                builder.propertyStores.put(thingsPropertyEntity.productCode(), new ThingsPropertyStore(thingsProperty, propertyAccessor));
+            }
         } else {
             log.error("Duplicate registration ThingsProperty ({}), only effective once, effective ThingsProperty {} , invalid ThingsProperty : {}",
-                    thingsPropertyEntity.productCode(), PRODUCT_PROPERTY_MAP.get(thingsPropertyEntity.productCode()).getBean().getClass(), bean.getClass());
+                    thingsPropertyEntity.productCode(), exists.getBean().getClass(), bean.getClass());
         }
     }
 
-    private void findThingsEvents(ThingsContainer thingsContainer, ThingsEventEntity thingsEventEntity, Object bean) {
+    private void findThingsEvents(ThingsEngineSnapshot.Builder builder, ThingsContainer thingsContainer, ThingsEventEntity thingsEventEntity, Object bean) {
         if (!thingsEventEntity.enabled()) {
             return;
         }
-        THINGS_EVENTS_TABLE.put(thingsEventEntity.identifier(), thingsEventEntity.productCode(), new ThingsEvents(thingsContainer, thingsEventEntity, bean));
+        builder.events.put(thingsEventEntity.identifier(), thingsEventEntity.productCode(), new ThingsEvents(thingsContainer, thingsEventEntity, bean));
     }
 
-    private void findThingsFunctions(ThingsContainer thingsContainer, Things things, Object bean) {
+    private void findThingsFunctions(ThingsEngineSnapshot.Builder builder, ThingsContainer thingsContainer, Things things, Object bean) {
         if (!things.enabled()) {
             return;
         }
-        Method[] methods = ReflectUtil.getMethods(bean.getClass());
+        Method[] methods = getMethods(bean.getClass());
         Arrays.asList(methods).parallelStream().forEach(method -> {
             try {
-                findFirst(() -> findThingsService(thingsContainer, things, bean, method),
-                        () -> findThingsEventListener(thingsContainer, things, bean, method),
-                        () -> findThingsPropertyListener(thingsContainer, things, things.productCode(), bean, method));
+                findFirst(() -> findThingsService(builder, thingsContainer, things, bean, method),
+                        () -> findThingsEventListener(builder, thingsContainer, things, bean, method),
+                        () -> findThingsPropertyListener(builder, thingsContainer, things, things.productCode(), bean, method));
             } catch (Exception e) {
                 log.error("Things engine scan service {}.{} exception : {}", bean.getClass().getSimpleName(), method.getName(), e.getMessage());
             }
         });
-        THINGS_ENTITY_TABLE.put(things.productCode(), bean.getClass(), new ThingsEntity(things.productCode(), bean, things));
+        builder.entities.put(things.productCode(), bean.getClass(), new ThingsEntity(thingsContainer, things.productCode(), bean, things));
     }
 
 
-    private boolean findThingsService(ThingsContainer thingsContainer, Things things, Object bean, Method method) {
+    private boolean findThingsService(ThingsEngineSnapshot.Builder builder, ThingsContainer thingsContainer, Things things, Object bean, Method method) {
         ThingsService thingsService = AnnotationUtil.getAnnotation(method, ThingsService.class);
         if (thingsService != null) {
             String identifier = StrUtil.isNotBlank(thingsService.identifier()) ? thingsService.identifier() : method.getName();
             method.trySetAccessible();
             ThingsFunction thingsFunction = new ThingsFunction(thingsContainer, things, bean, method, thingsService.async(), thingsService, scanParameter(method));
-            THINGS_SERVICES_TABLE.put(identifier, things.productCode(), thingsFunction);
+            builder.services.put(identifier, things.productCode(), thingsFunction);
             return true;
         }
         return false;
     }
 
-    private void findThingsListener(ThingsContainer thingsContainer, ThingsListener thingsListener, Object bean) {
+    private void findThingsListener(ThingsEngineSnapshot.Builder builder, ThingsContainer thingsContainer, ThingsListener thingsListener, Object bean) {
         if (!thingsListener.enabled()) {
             return;
         }
-        Method[] methods = ReflectUtil.getMethods(bean.getClass());
+        Method[] methods = getMethods(bean.getClass());
         Arrays.asList(methods).parallelStream().forEach(method -> {
             try {
-                findFirst(() -> findThingsEventListener(thingsContainer, thingsListener, bean, method),
-                        () -> findThingsPropertyListener(thingsContainer, thingsListener, null, bean, method));
+                findFirst(() -> findThingsEventListener(builder, thingsContainer, thingsListener, bean, method),
+                        () -> findThingsPropertyListener(builder, thingsContainer, thingsListener, null, bean, method));
             } catch (Exception e) {
                 log.error("Things engine scan event listener {}.{} exception : {}", bean.getClass().getSimpleName(), method.getName(), e.getMessage());
             }
@@ -189,23 +252,19 @@ public class ThingsRegisterExecutor extends ThingsBaseExecutor implements Things
     }
 
 
-    private boolean findThingsEventListener(ThingsContainer thingsContainer, Annotation beanAnnotation, Object bean, Method method) {
+    private boolean findThingsEventListener(ThingsEngineSnapshot.Builder builder, ThingsContainer thingsContainer, Annotation beanAnnotation, Object bean, Method method) {
         ThingsEventListener thingsEventListener = AnnotationUtil.getAnnotation(method, ThingsEventListener.class);
         if (thingsEventListener != null) {
             method.trySetAccessible();
             ThingsFunction thingsServices = new ThingsFunction(thingsContainer, beanAnnotation, bean, method, true, thingsEventListener, scanParameter(method));
-            Set<ThingsFunction> thingsFunctions = THINGS_EVENTS_LISTENER_TABLE.get(thingsEventListener.identifier(), thingsEventListener.productCode());
-            if (thingsFunctions == null) {
-                thingsFunctions = new ConcurrentHashSet<>();
-            }
-            thingsFunctions.add(thingsServices);
-            THINGS_EVENTS_LISTENER_TABLE.put(thingsEventListener.identifier(), thingsEventListener.productCode(), thingsFunctions);
+            thingsServices.setOrdered(thingsEventListener.ordered());
+            ThingsEngineSnapshot.Builder.add(builder.eventListeners, thingsEventListener.identifier(), thingsEventListener.productCode(), thingsServices);
             return true;
         }
         return false;
     }
 
-    private boolean findThingsPropertyListener(ThingsContainer thingsContainer, Annotation things, String productCode, Object bean, Method method) {
+    private boolean findThingsPropertyListener(ThingsEngineSnapshot.Builder builder, ThingsContainer thingsContainer, Annotation things, String productCode, Object bean, Method method) {
         ThingsPropertyListener thingsPropertyListener = AnnotationUtil.getAnnotation(method, ThingsPropertyListener.class);
         if (thingsPropertyListener != null) {
             String identifier = thingsPropertyListener.identifier();
@@ -215,19 +274,15 @@ public class ThingsRegisterExecutor extends ThingsBaseExecutor implements Things
             }
             method.trySetAccessible();
             ThingsFunction thingsServices = new ThingsFunction(thingsContainer, things, bean, method, true, thingsPropertyListener, scanParameter(method));
-            Set<ThingsFunction> thingsFunctions = THINGS_PROPERTY_LISTENER_TABLE.get(identifier, productCode);
-            if (thingsFunctions == null) {
-                thingsFunctions = new ConcurrentHashSet<>();
-            }
-            thingsFunctions.add(thingsServices);
-            THINGS_PROPERTY_LISTENER_TABLE.put(identifier, productCode, thingsFunctions);
+            thingsServices.setOrdered(thingsPropertyListener.ordered());
+            ThingsEngineSnapshot.Builder.add(builder.propertyListeners, identifier, productCode, thingsServices);
             return true;
         }
         return false;
     }
 
 
-    private void findThingsFilters(ThingsContainer thingsContainer, ThingsFilter thingsFilter, Object bean) {
+    private void findThingsFilters(ThingsEngineSnapshot.Builder builder, ThingsContainer thingsContainer, ThingsFilter thingsFilter, Object bean) {
         if (!thingsFilter.enabled()) {
             return;
         }
@@ -237,15 +292,10 @@ public class ThingsRegisterExecutor extends ThingsBaseExecutor implements Things
         }
         String identifier = thingsFilter.method() + THINGS_SEPARATOR + thingsFilter.identifier();
         String productCode = thingsFilter.productCode();
-        Set<ThingsFilters> filters = THINGS_FILTERS_TABLE.get(identifier, productCode);
-        if (filters == null) {
-            filters = new ConcurrentHashSet<>();
-        }
-        filters.add(new ThingsFilters(thingsFilter, (ThingsFiltering) bean, thingsFilter.source()));
-        THINGS_FILTERS_TABLE.put(identifier, productCode, filters);
+        ThingsEngineSnapshot.Builder.add(builder.filters, identifier, productCode, new ThingsFilters(thingsContainer, thingsFilter, (ThingsFiltering) bean, thingsFilter.source()));
     }
 
-    private void findThingsInterceptors(ThingsContainer thingsContainer, ThingsInterceptor thingsInterceptor, Object bean) {
+    private void findThingsInterceptors(ThingsEngineSnapshot.Builder builder, ThingsContainer thingsContainer, ThingsInterceptor thingsInterceptor, Object bean) {
         if (!thingsInterceptor.enabled()) {
             return;
         }
@@ -255,16 +305,11 @@ public class ThingsRegisterExecutor extends ThingsBaseExecutor implements Things
         }
         String identifier = thingsInterceptor.method() + THINGS_SEPARATOR + thingsInterceptor.identifier();
         String productCode = thingsInterceptor.productCode();
-        Set<ThingsInterceptors> interceptors = THINGS_INTERCEPTORS_TABLE.get(identifier, productCode);
-        if (interceptors == null) {
-            interceptors = new ConcurrentHashSet<>();
-        }
-        interceptors.add(new ThingsInterceptors(thingsInterceptor, (ThingsIntercepting) bean, thingsInterceptor.source()));
-        THINGS_INTERCEPTORS_TABLE.put(identifier, productCode, interceptors);
+        ThingsEngineSnapshot.Builder.add(builder.interceptors, identifier, productCode, new ThingsInterceptors(thingsContainer, thingsInterceptor, (ThingsIntercepting) bean, thingsInterceptor.source()));
     }
 
 
-    private void findThingsThingsHandlers(ThingsContainer thingsContainer, ThingsHandler thingsHandler, Object bean) {
+    private void findThingsThingsHandlers(ThingsEngineSnapshot.Builder builder, ThingsContainer thingsContainer, ThingsHandler thingsHandler, Object bean) {
         if (!thingsHandler.enabled()) {
             return;
         }
@@ -274,12 +319,15 @@ public class ThingsRegisterExecutor extends ThingsBaseExecutor implements Things
         }
         String identifier = thingsHandler.method() + THINGS_SEPARATOR + thingsHandler.identifier();
         String productCode = thingsHandler.productCode();
-        Set<ThingsHandlers> thingsHandlers = THINGS_HANDLERS_TABLE.get(identifier, productCode);
-        if (thingsHandlers == null) {
-            thingsHandlers = new ConcurrentHashSet<>();
-        }
-        thingsHandlers.add(new ThingsHandlers(thingsHandler, (ThingsHandling) bean, thingsHandler.source()));
-        THINGS_HANDLERS_TABLE.put(identifier, productCode, thingsHandlers);
+        ThingsEngineSnapshot.Builder.add(builder.handlers, identifier, productCode, new ThingsHandlers(thingsContainer, thingsHandler, (ThingsHandling) bean, thingsHandler.source()));
+    }
+
+    /**
+     * 优先使用编译期生成的注解索引，只检查索引中的方法；不在索引中的类回退到反射扫描全部方法
+     */
+    private Method[] getMethods(Class<?> beanClass) {
+        Method[] methods = ThingsAnnotationIndex.getMethods(beanClass);
+        return methods != null ? methods : ReflectUtil.getMethods(beanClass);
     }
 
     private ThingsParameter[] scanParameter(Method method) {
@@ -292,7 +340,9 @@ public class ThingsRegisterExecutor extends ThingsBaseExecutor implements Things
                     () -> scanAnnotation(parameter, finalI, ThingsPayload.class),
                     () -> scanAnnotation(parameter, finalI, ThingsMetadata.class),
                     () -> scanAnnotation(parameter, finalI, ThingsInject.class),
-                    () -> new ThingsParameter(parameter, finalI, parameter.getType(), parameter.getName(), null));
+                    () -> new ThingsParameter(parameter, finalI, parameter.getType(), parameter.getName(), null, null, false));
+            thingsParameters[i].setBinder(thingsArgsConverter.binder(method, thingsParameters[i]));
+            thingsParameters[i].setDevicePropertyEntity(thingsArgsConverter.isDevicePropertyEntity(thingsParameters[i]));
         }
         return thingsParameters;
     }
@@ -301,7 +351,7 @@ public class ThingsRegisterExecutor extends ThingsBaseExecutor implements Things
     private ThingsParameter scanAnnotation(Parameter parameter, int index, Class<? extends Annotation> annotationClass) {
         Annotation annotation = parameter.getAnnotation(annotationClass);
         if (annotation != null) {
-            return new ThingsParameter(parameter, index, parameter.getType(), parameter.getName(), annotation);
+            return new ThingsParameter(parameter, index, parameter.getType(), parameter.getName(), annotation, null, false);
         }
         return null;
     }
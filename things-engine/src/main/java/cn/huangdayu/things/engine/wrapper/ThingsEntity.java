@@ -1,5 +1,6 @@
 package cn.huangdayu.things.engine.wrapper;
 
+import cn.huangdayu.things.api.container.ThingsContainer;
 import cn.huangdayu.things.common.annotation.Things;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -13,6 +14,7 @@ import lombok.NoArgsConstructor;
 @Data
 public class ThingsEntity {
 
+    private ThingsContainer thingsContainer;
     private String productCode;
     private Object bean;
     private Things things;
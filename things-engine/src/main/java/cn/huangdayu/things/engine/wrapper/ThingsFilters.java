@@ -1,5 +1,6 @@
 package cn.huangdayu.things.engine.wrapper;
 
+import cn.huangdayu.things.api.container.ThingsContainer;
 import cn.huangdayu.things.api.message.ThingsFiltering;
 import cn.huangdayu.things.common.annotation.ThingsFilter;
 import cn.huangdayu.things.common.enums.ThingsStreamingType;
@@ -15,6 +16,7 @@ import lombok.NoArgsConstructor;
 @Data
 public class ThingsFilters {
 
+    private ThingsContainer thingsContainer;
     private ThingsFilter thingsFilter;
     private ThingsFiltering thingsFiltering;
     private ThingsStreamingType sourceType;
@@ -7,6 +7,7 @@ import lombok.NoArgsConstructor;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
@@ -24,6 +25,21 @@ public class ThingsFunction {
     private boolean async;
     private Annotation methodAnnotation;
     private ThingsParameter[] thingsParameters;
+    private ThingsFunctionInvoker invoker;
+    /**
+     * 是否按设备顺序执行，只对异步执行的监听器有效
+     */
+    private boolean ordered;
+    /**
+     * 是否有参数注入设备属性实体
+     */
+    private boolean devicePropertyEntity;
+
+    public ThingsFunction(ThingsContainer thingsContainer, Annotation beanAnnotation, Object bean, Method method, boolean async,
+                          Annotation methodAnnotation, ThingsParameter[] thingsParameters) {
+        this(thingsContainer, beanAnnotation, bean, method, async, methodAnnotation, thingsParameters, new ThingsFunctionInvoker(bean, method), false,
+                Arrays.stream(thingsParameters).anyMatch(ThingsParameter::isDevicePropertyEntity));
+    }
 
     @Override
     public boolean equals(Object o) {
@@ -0,0 +1,170 @@
+package cn.huangdayu.things.engine.wrapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * 物模型方法调用器，注册时用 LambdaMetafactory 生成直接调用目标方法的实现类，调用与普通接口调用一样可以被内联；
+ * 参数超过 {@link #MAX_LAMBDA_PARAMETERS} 个、静态方法或无法生成时回退到 MethodHandle，再回退到反射
+ *
+ * @author huangdayu
+ */
+@Slf4j
+public final class ThingsFunctionInvoker {
+
+    public static final int MAX_LAMBDA_PARAMETERS = 4;
+
+    private static final Class<?>[] CALLS = {Call0.class, Call1.class, Call2.class, Call3.class, Call4.class};
+    private static final Class<?>[] RUNS = {Run0.class, Run1.class, Run2.class, Run3.class, Run4.class};
+
+    private final Object bean;
+    private final Method method;
+    private final int arity;
+    private final boolean returnsVoid;
+    private final Object lambda;
+    private final MethodHandle methodHandle;
+
+    public ThingsFunctionInvoker(Object bean, Method method) {
+        this.bean = bean;
+        this.method = method;
+        this.arity = method.getParameterCount();
+        this.returnsVoid = method.getReturnType() == void.class;
+        this.lambda = lambda(method, arity, returnsVoid);
+        this.methodHandle = lambda == null ? methodHandle(bean, method) : null;
+    }
+
+    /**
+     * 调用目标方法，目标方法抛出的异常原样抛出
+     */
+    public Object invoke(Object[] args) throws Throwable {
+        if (lambda != null) {
+            return returnsVoid ? run(args) : call(args);
+        }
+        if (methodHandle != null) {
+            return methodHandle.invokeExact(args);
+        }
+        try {
+            return method.invoke(bean, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private Object call(Object[] args) throws Throwable {
+        return switch (arity) {
+            case 0 -> ((Call0) lambda).call(bean);
+            case 1 -> ((Call1) lambda).call(bean, args[0]);
+            case 2 -> ((Call2) lambda).call(bean, args[0], args[1]);
+            case 3 -> ((Call3) lambda).call(bean, args[0], args[1], args[2]);
+            default -> ((Call4) lambda).call(bean, args[0], args[1], args[2], args[3]);
+        };
+    }
+
+    private Object run(Object[] args) throws Throwable {
+        switch (arity) {
+            case 0 -> ((Run0) lambda).run(bean);
+            case 1 -> ((Run1) lambda).run(bean, args[0]);
+            case 2 -> ((Run2) lambda).run(bean, args[0], args[1]);
+            case 3 -> ((Run3) lambda).run(bean, args[0], args[1], args[2]);
+            default -> ((Run4) lambda).run(bean, args[0], args[1], args[2], args[3]);
+        }
+        return null;
+    }
+
+    /**
+     * 在目标类中生成实现 CallN/RunN 的类，参数拆箱和返回值装箱由生成的类完成
+     */
+    private static Object lambda(Method method, int arity, boolean returnsVoid) {
+        if (Modifier.isStatic(method.getModifiers()) || arity > MAX_LAMBDA_PARAMETERS) {
+            return null;
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(method.getDeclaringClass(), MethodHandles.lookup());
+            MethodHandle target = lookup.unreflect(method);
+            Class<?> functionType = returnsVoid ? RUNS[arity] : CALLS[arity];
+            Method functionMethod = functionType.getMethods()[0];
+            MethodType functionMethodType = MethodType.methodType(functionMethod.getReturnType(), functionMethod.getParameterTypes());
+            MethodType instantiatedType = target.type().wrap().changeReturnType(returnsVoid ? void.class : target.type().wrap().returnType());
+            CallSite callSite = LambdaMetafactory.metafactory(lookup, functionMethod.getName(), MethodType.methodType(functionType),
+                    functionMethodType, target, instantiatedType);
+            return callSite.getTarget().invoke();
+        } catch (Throwable e) {
+            log.debug("Things function {}.{} can not be invoked by generated class, fallback to method handle : {}",
+                    method.getDeclaringClass().getSimpleName(), method.getName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private static MethodHandle methodHandle(Object bean, Method method) {
+        try {
+            MethodHandle methodHandle = MethodHandles.lookup().unreflect(method);
+            if (!Modifier.isStatic(method.getModifiers())) {
+                methodHandle = methodHandle.bindTo(bean);
+            }
+            return methodHandle.asSpreader(Object[].class, method.getParameterCount())
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (IllegalAccessException | IllegalArgumentException e) {
+            log.warn("Things function {}.{} can not be accessed by method handle, fallback to reflection : {}",
+                    method.getDeclaringClass().getSimpleName(), method.getName(), e.getMessage());
+            return null;
+        }
+    }
+
+    /*
+     * 生成类实现的接口，按参数个数和有无返回值区分；需要对目标类的类加载器可见，因此是公开的
+     */
+
+    @FunctionalInterface
+    public interface Call0 {
+        Object call(Object bean) throws Throwable;
+    }
+
+    @FunctionalInterface
+    public interface Call1 {
+        Object call(Object bean, Object arg0) throws Throwable;
+    }
+
+    @FunctionalInterface
+    public interface Call2 {
+        Object call(Object bean, Object arg0, Object arg1) throws Throwable;
+    }
+
+    @FunctionalInterface
+    public interface Call3 {
+        Object call(Object bean, Object arg0, Object arg1, Object arg2) throws Throwable;
+    }
+
+    @FunctionalInterface
+    public interface Call4 {
+        Object call(Object bean, Object arg0, Object arg1, Object arg2, Object arg3) throws Throwable;
+    }
+
+    @FunctionalInterface
+    public interface Run0 {
+        void run(Object bean) throws Throwable;
+    }
+
+    @FunctionalInterface
+    public interface Run1 {
+        void run(Object bean, Object arg0) throws Throwable;
+    }
+
+    @FunctionalInterface
+    public interface Run2 {
+        void run(Object bean, Object arg0, Object arg1) throws Throwable;
+    }
+
+    @FunctionalInterface
+    public interface Run3 {
+        void run(Object bean, Object arg0, Object arg1, Object arg2) throws Throwable;
+    }
+
+    @FunctionalInterface
+    public interface Run4 {
+        void run(Object bean, Object arg0, Object arg1, Object arg2, Object arg3) throws Throwable;
+    }
+}
@@ -22,5 +22,10 @@ public class ThingsParameter {
     private Class<?> type;
     private String name;
     private Annotation annotation;
+    private ThingsParameterBinder binder;
+    /**
+     * 是否注入设备属性实体，扫描时计算，调用结束后需要把属性实体写回属性存储
+     */
+    private boolean devicePropertyEntity;
 
 }
@@ -0,0 +1,15 @@
+package cn.huangdayu.things.engine.wrapper;
+
+import cn.huangdayu.things.common.message.JsonThingsMessage;
+
+/**
+ * 参数绑定器，扫描时按参数注解生成，调用时从消息中取出参数值
+ *
+ * @author huangdayu
+ */
+@FunctionalInterface
+public interface ThingsParameterBinder {
+
+    Object bind(JsonThingsMessage jtm);
+
+}
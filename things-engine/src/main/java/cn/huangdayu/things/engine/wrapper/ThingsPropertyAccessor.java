@@ -0,0 +1,289 @@
+package cn.huangdayu.things.engine.wrapper;
+
+import cn.huangdayu.things.common.annotation.ThingsParam;
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.util.NumberUtil;
+import cn.hutool.core.util.ClassUtil;
+import cn.hutool.core.util.ReflectUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.alibaba.fastjson2.JSONWriter;
+import com.alibaba.fastjson2.annotation.JSONField;
+import lombok.Getter;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 属性实体访问表，每个 {@link cn.huangdayu.things.common.annotation.ThingsPropertyEntity} 类注册时生成一次，
+ * 按属性标识（字段名）读写，不再逐次反射查找字段
+ * <p>
+ * 序列化遵循字段上的 {@link JSONField}：name 作为 JSON 属性名（读写时也可以用它查找属性），
+ * serialize = false 的字段不输出，指定了 format 或 serializeFeatures 的字段用 fastjson2 序列化该字段的值
+ *
+ * @author huangdayu
+ */
+@Slf4j
+public final class ThingsPropertyAccessor {
+
+    @Getter
+    private final Class<?> beanClass;
+    private final Map<String, Accessor> accessors;
+    /**
+     * JSON 属性名 vs 属性标识，只记录与字段名不同的名称
+     */
+    private final Map<String, String> aliases;
+
+    public ThingsPropertyAccessor(Class<?> beanClass) {
+        this.beanClass = beanClass;
+        Map<String, Accessor> accessors = new LinkedHashMap<>();
+        Map<String, String> aliases = new HashMap<>();
+        for (Field field : ReflectUtil.getFields(beanClass)) {
+            if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic() || accessors.containsKey(field.getName())) {
+                continue;
+            }
+            Accessor accessor = new Accessor(field);
+            accessors.put(field.getName(), accessor);
+            if (!accessor.name.equals(field.getName())) {
+                aliases.putIfAbsent(accessor.name, field.getName());
+            }
+        }
+        this.accessors = Collections.unmodifiableMap(accessors);
+        this.aliases = Collections.unmodifiableMap(aliases);
+    }
+
+    /**
+     * 属性标识集合
+     */
+    public Set<String> identifiers() {
+        return accessors.keySet();
+    }
+
+    public boolean contains(String identifier) {
+        return find(identifier) != null;
+    }
+
+    /**
+     * 字段名或 JSON 属性名对应的属性标识，属性不存在时返回 null
+     */
+    public String identifier(String name) {
+        Accessor accessor = find(name);
+        return accessor == null ? null : accessor.field.getName();
+    }
+
+    /**
+     * 属性的 JSON 属性名，属性不存在时原样返回
+     */
+    public String jsonName(String identifier) {
+        Accessor accessor = find(identifier);
+        return accessor == null ? identifier : accessor.name;
+    }
+
+    public Class<?> getType(String identifier) {
+        Accessor accessor = find(identifier);
+        return accessor == null ? null : accessor.type;
+    }
+
+    /**
+     * 读取属性，属性不存在时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object bean, String identifier) {
+        Accessor accessor = find(identifier);
+        return accessor == null ? null : (T) accessor.get(bean);
+    }
+
+    /**
+     * 写入属性，类型不一致时转换为字段类型
+     *
+     * @return 属性是否存在
+     */
+    public boolean set(Object bean, String identifier, Object value) {
+        Accessor accessor = find(identifier);
+        if (accessor == null) {
+            return false;
+        }
+        accessor.set(bean, value);
+        return true;
+    }
+
+    /**
+     * 转换为属性字段类型，基本类型的 null 转换为默认值
+     */
+    public Object convert(String identifier, Object value) {
+        Accessor accessor = find(identifier);
+        return accessor == null ? value : accessor.convert(value);
+    }
+
+    /**
+     * 转换为 JSON 值，非简单类型转换为 JSON 结构
+     */
+    public Object toJsonValue(String identifier, Object value) {
+        Accessor accessor = find(identifier);
+        return accessor == null || value == null ? value : accessor.toJsonValue(value);
+    }
+
+    /**
+     * 死区判断，数值属性与上次上报值的差小于步长（{@link ThingsParam#step()}）时不需要上报，
+     * 超出 {@link ThingsParam#min()} / {@link ThingsParam#max()} 范围的值总是上报
+     *
+     * @param value    当前值
+     * @param reported 上次上报的值，没有上报过为 null
+     * @return 是否需要上报
+     */
+    public boolean reportable(String identifier, Object value, Object reported) {
+        Accessor accessor = find(identifier);
+        if (accessor == null || Double.isNaN(accessor.step) || !(value instanceof Number number) || !(reported instanceof Number last)) {
+            return !Objects.equals(value, reported);
+        }
+        double current = number.doubleValue();
+        if (current < accessor.min || current > accessor.max) {
+            return true;
+        }
+        return Math.abs(current - last.doubleValue()) >= accessor.step;
+    }
+
+    /**
+     * 序列化全部属性
+     */
+    public JSONObject toJson(Object bean) {
+        return toJson(bean, accessors.keySet());
+    }
+
+    /**
+     * 只序列化指定的属性，用于上报变更的属性
+     */
+    public JSONObject toJson(Object bean, Collection<String> identifiers) {
+        JSONObject json = new JSONObject(identifiers.size());
+        for (String identifier : identifiers) {
+            Accessor accessor = find(identifier);
+            if (accessor != null && accessor.serialize) {
+                Object value = accessor.get(bean);
+                if (value != null) {
+                    json.put(accessor.name, accessor.toJsonValue(value));
+                }
+            }
+        }
+        return json;
+    }
+
+    /**
+     * 是否输出到 JSON，{@code @JSONField(serialize = false)} 的属性不输出
+     */
+    public boolean serializable(String identifier) {
+        Accessor accessor = find(identifier);
+        return accessor != null && accessor.serialize;
+    }
+
+    private Accessor find(String name) {
+        Accessor accessor = accessors.get(name);
+        if (accessor == null && name != null) {
+            String identifier = aliases.get(name);
+            accessor = identifier != null ? accessors.get(identifier) : null;
+        }
+        return accessor;
+    }
+
+    private static final class Accessor {
+        private final Field field;
+        private final Class<?> type;
+        private final boolean simple;
+        private final String name;
+        private final boolean serialize;
+        private final String format;
+        private final JSONWriter.Feature[] features;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        private final double step;
+        private final double min;
+        private final double max;
+
+        private Accessor(Field field) {
+            this.field = field;
+            this.type = field.getType();
+            this.simple = ClassUtil.isSimpleValueType(type) && !type.isEnum();
+            JSONField jsonField = field.getAnnotation(JSONField.class);
+            this.name = jsonField != null && StrUtil.isNotBlank(jsonField.name()) ? jsonField.name() : field.getName();
+            this.serialize = jsonField == null || jsonField.serialize();
+            this.format = jsonField != null && StrUtil.isNotBlank(jsonField.format()) ? jsonField.format() : null;
+            this.features = jsonField != null ? jsonField.serializeFeatures() : new JSONWriter.Feature[0];
+            ThingsParam thingsParam = field.getAnnotation(ThingsParam.class);
+            this.step = thingsParam != null ? spec(thingsParam.step(), Double.NaN) : Double.NaN;
+            this.min = thingsParam != null ? spec(thingsParam.min(), Double.NEGATIVE_INFINITY) : Double.NEGATIVE_INFINITY;
+            this.max = thingsParam != null ? spec(thingsParam.max(), Double.POSITIVE_INFINITY) : Double.POSITIVE_INFINITY;
+            field.trySetAccessible();
+            this.getter = getter(field);
+            this.setter = setter(field);
+        }
+
+        private Object toJsonValue(Object value) {
+            if (format != null || features.length > 0) {
+                // 按字段的格式和特性序列化后再解析成 JSON 值，与整体序列化属性实体的结果一致
+                return JSON.parse(format != null ? JSON.toJSONString(value, format, features) : JSON.toJSONString(value, features));
+            }
+            if (simple) {
+                return value;
+            }
+            return value instanceof Enum<?> enumValue ? enumValue.name() : JSON.toJSON(value);
+        }
+
+        @SneakyThrows
+        private Object get(Object bean) {
+            return getter != null ? getter.invokeExact(bean) : field.get(bean);
+        }
+
+        private Object convert(Object value) {
+            if (value == null && type.isPrimitive()) {
+                return ClassUtil.getDefaultValue(type);
+            } else if (value != null && !ClassUtil.isAssignable(type, value.getClass())) {
+                return Convert.convert(type, value);
+            }
+            return value;
+        }
+
+        @SneakyThrows
+        private void set(Object bean, Object value) {
+            value = convert(value);
+            if (setter != null) {
+                setter.invokeExact(bean, value);
+            } else {
+                field.set(bean, value);
+            }
+        }
+
+        private static double spec(String value, double defaultValue) {
+            return StrUtil.isNotBlank(value) && NumberUtil.isNumber(value) ? NumberUtil.parseDouble(value) : defaultValue;
+        }
+
+        private static MethodHandle getter(Field field) {
+            try {
+                return MethodHandles.lookup().unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class));
+            } catch (IllegalAccessException e) {
+                log.warn("Things property {} getter fallback to reflection : {}", field.getName(), e.getMessage());
+                return null;
+            }
+        }
+
+        private static MethodHandle setter(Field field) {
+            try {
+                return MethodHandles.lookup().unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, Object.class));
+            } catch (IllegalAccessException e) {
+                log.warn("Things property {} setter fallback to reflection : {}", field.getName(), e.getMessage());
+                return null;
+            }
+        }
+    }
+}
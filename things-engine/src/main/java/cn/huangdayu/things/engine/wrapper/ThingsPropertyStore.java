@@ -0,0 +1,674 @@
+package cn.huangdayu.things.engine.wrapper;
+
+import cn.hutool.core.util.ClassUtil;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.ReflectUtil;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import lombok.Getter;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 按产品属性结构组织的设备属性列存储，每个属性一列，按设备槽位下标存取
+ * <p>
+ * int/long/double/boolean 使用基本类型数组，字符串使用字典编码，其他类型使用对象数组；
+ * 新设备以产品属性实体的值初始化，只有注入属性实体时才实例化对象
+ * <p>
+ * 同一设备的读写由按槽位分段的锁互斥，不同设备之间互不阻塞；分配、回收槽位和扩容持有写锁，
+ * 访问设备时持有读锁；字符串列的字典在列上加锁。对象列保存的是副本，读写都复制，不与属性实体或调用方共享可变对象
+ *
+ * @author huangdayu
+ */
+public final class ThingsPropertyStore {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int STRIPES = 64;
+
+    @Getter
+    private final ThingsProperty thingsProperty;
+    @Getter
+    private final ThingsPropertyAccessor accessor;
+    private final Map<String, Column> columns;
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock resizeLock = new ReentrantReadWriteLock();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    /**
+     * 回收的槽位，分配时优先使用，由写锁保护
+     */
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private int nextSlot;
+    private int capacity = INITIAL_CAPACITY;
+
+    public ThingsPropertyStore(ThingsProperty thingsProperty, ThingsPropertyAccessor accessor) {
+        this.thingsProperty = thingsProperty;
+        this.accessor = accessor;
+        Map<String, Column> columns = new LinkedHashMap<>();
+        for (String identifier : accessor.identifiers()) {
+            columns.put(identifier, Column.of(accessor.getType(identifier), INITIAL_CAPACITY));
+        }
+        this.columns = Collections.unmodifiableMap(columns);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public boolean contains(String deviceCode) {
+        return slots.containsKey(deviceCode);
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * 读取设备属性，属性不存在时返回 null；对象属性返回副本
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String deviceCode, String identifier) {
+        Column column = column(identifier);
+        if (column == null) {
+            return null;
+        }
+        int slot = lock(deviceCode);
+        try {
+            Object value = column.get(slot);
+            return (T) (column.mutable() ? copy(value) : value);
+        } finally {
+            unlock(slot);
+        }
+    }
+
+    public int getInt(String deviceCode, String identifier) {
+        IntColumn column = (IntColumn) column(identifier);
+        int slot = lock(deviceCode);
+        try {
+            return column.values[slot];
+        } finally {
+            unlock(slot);
+        }
+    }
+
+    public long getLong(String deviceCode, String identifier) {
+        LongColumn column = (LongColumn) column(identifier);
+        int slot = lock(deviceCode);
+        try {
+            return column.values[slot];
+        } finally {
+            unlock(slot);
+        }
+    }
+
+    public double getDouble(String deviceCode, String identifier) {
+        DoubleColumn column = (DoubleColumn) column(identifier);
+        int slot = lock(deviceCode);
+        try {
+            return column.values[slot];
+        } finally {
+            unlock(slot);
+        }
+    }
+
+    public boolean getBoolean(String deviceCode, String identifier) {
+        BooleanColumn column = (BooleanColumn) column(identifier);
+        int slot = lock(deviceCode);
+        try {
+            return column.values[slot];
+        } finally {
+            unlock(slot);
+        }
+    }
+
+    /**
+     * 写入设备属性，类型不一致时转换为属性类型
+     *
+     * @return 属性值是否发生变化
+     */
+    public boolean set(String deviceCode, String identifier, Object value) {
+        Column column = column(identifier);
+        if (column == null) {
+            return false;
+        }
+        Object converted = accessor.convert(identifier, value);
+        Object stored = column.mutable() ? copy(converted) : converted;
+        int slot = lock(deviceCode);
+        try {
+            return column.set(slot, stored);
+        } finally {
+            unlock(slot);
+        }
+    }
+
+    /**
+     * 从属性实体写回所有属性
+     *
+     * @return 发生变化的属性标识
+     */
+    public Set<String> update(String deviceCode, Object bean) {
+        return update(deviceCode, bean, null);
+    }
+
+    /**
+     * 从属性实体写回属性，只写回与实例化时（{@link #materialize(String, Map)}）的值不同的属性，
+     * 不覆盖实体使用期间其他线程写入的属性
+     *
+     * @param base 实例化时的属性值，为 null 时写回所有属性
+     * @return 发生变化的属性标识
+     */
+    public Set<String> update(String deviceCode, Object bean, Map<String, Object> base) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Map.Entry<String, Column> entry : columns.entrySet()) {
+            String identifier = entry.getKey();
+            Object value = accessor.get(bean, identifier);
+            if (base == null || !base.containsKey(identifier) || !Objects.equals(value, base.get(identifier))) {
+                values.put(identifier, entry.getValue().mutable() ? copy(value) : value);
+            }
+        }
+        Set<String> changed = new LinkedHashSet<>();
+        if (values.isEmpty()) {
+            return changed;
+        }
+        int slot = lock(deviceCode);
+        try {
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                if (columns.get(entry.getKey()).set(slot, entry.getValue())) {
+                    changed.add(entry.getKey());
+                }
+            }
+        } finally {
+            unlock(slot);
+        }
+        return changed;
+    }
+
+    /**
+     * 实例化设备的属性实体，实体是副本，修改后需要通过 {@link #update(String, Object)} 写回
+     */
+    public Object materialize(String deviceCode) {
+        return materialize(deviceCode, null);
+    }
+
+    /**
+     * 实例化设备的属性实体，同时记录实例化时的属性值
+     *
+     * @param base 用于接收实例化时的属性值，写回时传给 {@link #update(String, Object, Map)}
+     */
+    public Object materialize(String deviceCode, Map<String, Object> base) {
+        Object template = thingsProperty.getBean();
+        Object bean = ReflectUtil.newInstanceIfPossible(template.getClass());
+        if (bean == null) {
+            bean = ObjectUtil.clone(template);
+        }
+        Map<String, Object> values = new LinkedHashMap<>();
+        int slot = lock(deviceCode);
+        try {
+            for (Map.Entry<String, Column> entry : columns.entrySet()) {
+                values.put(entry.getKey(), entry.getValue().get(slot));
+            }
+        } finally {
+            unlock(slot);
+        }
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            Object value = accessor.convert(entry.getKey(), entry.getValue());
+            if (base != null) {
+                base.put(entry.getKey(), value);
+            }
+            accessor.set(bean, entry.getKey(), columns.get(entry.getKey()).mutable() ? copy(value) : value);
+        }
+        return bean;
+    }
+
+    /**
+     * 序列化设备的全部属性
+     */
+    public JSONObject toJson(String deviceCode) {
+        return toJson(deviceCode, columns.keySet());
+    }
+
+    /**
+     * 只序列化指定的属性
+     */
+    public JSONObject toJson(String deviceCode, Collection<String> identifiers) {
+        JSONObject json = new JSONObject(identifiers.size());
+        int slot = lock(deviceCode);
+        try {
+            for (String identifier : identifiers) {
+                Column column = column(identifier);
+                if (column != null && accessor.serializable(identifier)) {
+                    Object value = column.get(slot);
+                    if (value != null) {
+                        json.put(accessor.jsonName(identifier), accessor.toJsonValue(identifier, value));
+                    }
+                }
+            }
+        } finally {
+            unlock(slot);
+        }
+        return json;
+    }
+
+    /**
+     * 回收设备槽位，设备下线或注销时调用；槽位清空后分配给新设备，设备再次访问时重新以产品属性实体的值初始化
+     *
+     * @return 设备是否存在
+     */
+    public boolean remove(String deviceCode) {
+        resizeLock.writeLock().lock();
+        try {
+            Integer slot = slots.remove(deviceCode);
+            if (slot == null) {
+                return false;
+            }
+            for (Column column : columns.values()) {
+                column.set(slot, null);
+            }
+            freeSlots.push(slot);
+            return true;
+        } finally {
+            resizeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 接管同一产品旧存储（热替换前注册的属性实体）中的设备属性：只迁移两边都有的属性，
+     * 类型变化时按新类型转换，无法转换的属性保留产品属性实体的值
+     *
+     * @return 迁移的设备数量
+     */
+    public int migrate(ThingsPropertyStore previous) {
+        int devices = 0;
+        for (String deviceCode : previous.slots.keySet()) {
+            for (String identifier : previous.columns.keySet()) {
+                if (columns.containsKey(identifier)) {
+                    try {
+                        set(deviceCode, identifier, previous.get(deviceCode, identifier));
+                    } catch (RuntimeException ignored) {
+                        // 类型不兼容的属性不迁移
+                    }
+                }
+            }
+            devices++;
+        }
+        return devices;
+    }
+
+    /**
+     * 按字段名或 JSON 属性名查找列
+     */
+    private Column column(String name) {
+        Column column = columns.get(name);
+        if (column == null) {
+            String identifier = accessor.identifier(name);
+            column = identifier != null ? columns.get(identifier) : null;
+        }
+        return column;
+    }
+
+    /**
+     * 锁定设备槽位：持有读锁防止扩容和回收，再持有槽位所在分段的锁；槽位在加锁前被回收时重新分配
+     */
+    private int lock(String deviceCode) {
+        while (true) {
+            int slot = slot(deviceCode);
+            resizeLock.readLock().lock();
+            Integer current = slots.get(deviceCode);
+            if (current != null && current == slot) {
+                stripes[slot % STRIPES].lock();
+                return slot;
+            }
+            resizeLock.readLock().unlock();
+        }
+    }
+
+    private void unlock(int slot) {
+        stripes[slot % STRIPES].unlock();
+        resizeLock.readLock().unlock();
+    }
+
+    /**
+     * 获取设备槽位，第一次访问的设备分配新槽位（优先使用回收的槽位）并以产品属性实体的值初始化
+     */
+    private int slot(String deviceCode) {
+        Integer slot = slots.get(deviceCode);
+        if (slot != null) {
+            return slot;
+        }
+        resizeLock.writeLock().lock();
+        try {
+            slot = slots.get(deviceCode);
+            if (slot == null) {
+                slot = freeSlots.isEmpty() ? nextSlot++ : freeSlots.pop();
+                if (slot >= capacity) {
+                    capacity = capacity << 1;
+                    for (Column column : columns.values()) {
+                        column.grow(capacity);
+                    }
+                }
+                Object template = thingsProperty.getBean();
+                for (Map.Entry<String, Column> entry : columns.entrySet()) {
+                    Object value = accessor.get(template, entry.getKey());
+                    entry.getValue().set(slot, entry.getValue().mutable() ? copy(value) : value);
+                }
+                slots.put(deviceCode, slot);
+            }
+            return slot;
+        } finally {
+            resizeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 可变对象的副本：优先 clone，不支持 clone 时经 JSON 复制，都失败时只能共享引用
+     */
+    private static Object copy(Object value) {
+        if (value == null || value instanceof Enum || ClassUtil.isSimpleValueType(value.getClass())) {
+            return value;
+        }
+        try {
+            Object copy = ObjectUtil.clone(value);
+            return copy != null ? copy : JSON.parseObject(JSON.toJSONString(value), value.getClass());
+        } catch (Exception e) {
+            return value;
+        }
+    }
+
+    private abstract static class Column {
+
+        static Column of(Class<?> type, int capacity) {
+            if (type == int.class || type == Integer.class) {
+                return new IntColumn(capacity);
+            } else if (type == long.class || type == Long.class) {
+                return new LongColumn(capacity);
+            } else if (type == double.class || type == Double.class) {
+                return new DoubleColumn(capacity);
+            } else if (type == boolean.class || type == Boolean.class) {
+                return new BooleanColumn(capacity);
+            } else if (type == String.class) {
+                return new StringColumn(capacity);
+            }
+            return new ObjectColumn(capacity);
+        }
+
+        abstract void grow(int capacity);
+
+        abstract Object get(int slot);
+
+        /**
+         * @return 值是否发生变化
+         */
+        abstract boolean set(int slot, Object value);
+
+        /**
+         * 是否保存可变对象，可变对象读写时需要复制
+         */
+        boolean mutable() {
+            return false;
+        }
+    }
+
+    /**
+     * 基本类型列，包装类型的 null 按槽位单独记录；不使用 BitSet，不同槽位的写入不会修改同一个字
+     */
+    private abstract static class PrimitiveColumn extends Column {
+        protected boolean[] nulls;
+
+        PrimitiveColumn(int capacity) {
+            this.nulls = new boolean[capacity];
+        }
+
+        protected void growNulls(int capacity) {
+            nulls = Arrays.copyOf(nulls, capacity);
+        }
+
+        protected boolean setNull(int slot) {
+            boolean changed = !nulls[slot];
+            nulls[slot] = true;
+            return changed;
+        }
+
+        protected boolean clearNull(int slot) {
+            boolean changed = nulls[slot];
+            nulls[slot] = false;
+            return changed;
+        }
+    }
+
+    private static final class IntColumn extends PrimitiveColumn {
+        private int[] values;
+
+        IntColumn(int capacity) {
+            super(capacity);
+            this.values = new int[capacity];
+        }
+
+        @Override
+        void grow(int capacity) {
+            growNulls(capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        Object get(int slot) {
+            return nulls[slot] ? null : values[slot];
+        }
+
+        @Override
+        boolean set(int slot, Object value) {
+            if (value == null) {
+                return setNull(slot);
+            }
+            int v = ((Number) value).intValue();
+            boolean changed = clearNull(slot) | values[slot] != v;
+            values[slot] = v;
+            return changed;
+        }
+    }
+
+    private static final class LongColumn extends PrimitiveColumn {
+        private long[] values;
+
+        LongColumn(int capacity) {
+            super(capacity);
+            this.values = new long[capacity];
+        }
+
+        @Override
+        void grow(int capacity) {
+            growNulls(capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        Object get(int slot) {
+            return nulls[slot] ? null : values[slot];
+        }
+
+        @Override
+        boolean set(int slot, Object value) {
+            if (value == null) {
+                return setNull(slot);
+            }
+            long v = ((Number) value).longValue();
+            boolean changed = clearNull(slot) | values[slot] != v;
+            values[slot] = v;
+            return changed;
+        }
+    }
+
+    private static final class DoubleColumn extends PrimitiveColumn {
+        private double[] values;
+
+        DoubleColumn(int capacity) {
+            super(capacity);
+            this.values = new double[capacity];
+        }
+
+        @Override
+        void grow(int capacity) {
+            growNulls(capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        Object get(int slot) {
+            return nulls[slot] ? null : values[slot];
+        }
+
+        @Override
+        boolean set(int slot, Object value) {
+            if (value == null) {
+                return setNull(slot);
+            }
+            double v = ((Number) value).doubleValue();
+            boolean changed = clearNull(slot) | Double.compare(values[slot], v) != 0;
+            values[slot] = v;
+            return changed;
+        }
+    }
+
+    private static final class BooleanColumn extends PrimitiveColumn {
+        private boolean[] values;
+
+        BooleanColumn(int capacity) {
+            super(capacity);
+            this.values = new boolean[capacity];
+        }
+
+        @Override
+        void grow(int capacity) {
+            growNulls(capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        Object get(int slot) {
+            return nulls[slot] ? null : values[slot];
+        }
+
+        @Override
+        boolean set(int slot, Object value) {
+            if (value == null) {
+                return setNull(slot);
+            }
+            boolean v = (Boolean) value;
+            boolean changed = clearNull(slot) | values[slot] != v;
+            values[slot] = v;
+            return changed;
+        }
+    }
+
+    /**
+     * 字典编码的字符串列，字典超过上限后退化为字符串数组，避免高基数字符串撑大字典；
+     * 字典由所有槽位共享，读写在列上加锁
+     */
+    private static final class StringColumn extends Column {
+        private static final int MAX_DICTIONARY_SIZE = 4096;
+
+        private int[] codes;
+        private String[] plain;
+        private final List<String> dictionary = new ArrayList<>();
+        private final Map<String, Integer> dictionaryIndex = new HashMap<>();
+
+        StringColumn(int capacity) {
+            this.codes = new int[capacity];
+            Arrays.fill(codes, -1);
+        }
+
+        @Override
+        synchronized void grow(int capacity) {
+            if (plain != null) {
+                plain = Arrays.copyOf(plain, capacity);
+                return;
+            }
+            int size = codes.length;
+            int[] grown = Arrays.copyOf(codes, capacity);
+            Arrays.fill(grown, size, capacity, -1);
+            codes = grown;
+        }
+
+        @Override
+        synchronized Object get(int slot) {
+            String[] strings = plain;
+            if (strings != null) {
+                return strings[slot];
+            }
+            int code = codes[slot];
+            return code < 0 ? null : dictionary.get(code);
+        }
+
+        @Override
+        synchronized boolean set(int slot, Object value) {
+            String v = (String) value;
+            if (plain != null) {
+                boolean changed = !Objects.equals(plain[slot], v);
+                plain[slot] = v;
+                return changed;
+            }
+            int code = v == null ? -1 : encode(v);
+            if (code == -2) {
+                toPlain();
+                return set(slot, value);
+            }
+            boolean changed = codes[slot] != code;
+            codes[slot] = code;
+            return changed;
+        }
+
+        private int encode(String value) {
+            Integer code = dictionaryIndex.get(value);
+            if (code != null) {
+                return code;
+            }
+            if (dictionary.size() >= MAX_DICTIONARY_SIZE) {
+                return -2;
+            }
+            dictionary.add(value);
+            dictionaryIndex.put(value, dictionary.size() - 1);
+            return dictionary.size() - 1;
+        }
+
+        private void toPlain() {
+            int[] current = codes;
+            String[] strings = new String[current.length];
+            for (int i = 0; i < current.length; i++) {
+                strings[i] = current[i] < 0 ? null : dictionary.get(current[i]);
+            }
+            plain = strings;
+            dictionary.clear();
+            dictionaryIndex.clear();
+        }
+    }
+
+    private static final class ObjectColumn extends Column {
+        private Object[] values;
+
+        ObjectColumn(int capacity) {
+            this.values = new Object[capacity];
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        Object get(int slot) {
+            return values[slot];
+        }
+
+        @Override
+        boolean set(int slot, Object value) {
+            boolean changed = !Objects.equals(values[slot], value);
+            values[slot] = value;
+            return changed;
+        }
+
+        @Override
+        boolean mutable() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package cn.huangdayu.things.engine.benchmark;
+
+import cn.huangdayu.things.engine.wrapper.ThingsFunctionInvoker;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 物模型方法每次调用的开销：反射、非常量 MethodHandle、生成类调用器
+ *
+ * @author huangdayu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThingsFunctionInvokerBenchmark {
+
+    public static class Service {
+        private long total;
+
+        public long report(long value, String unit) {
+            total += value;
+            return total;
+        }
+
+        public void onEvent(String event) {
+            total += event.length();
+        }
+    }
+
+    private Service bean;
+    private Method reportMethod;
+    private MethodHandle reportHandle;
+    private ThingsFunctionInvoker reportInvoker;
+    private ThingsFunctionInvoker eventInvoker;
+    private Object[] reportArgs;
+    private Object[] eventArgs;
+
+    @Setup
+    public void setup() throws Exception {
+        bean = new Service();
+        reportMethod = Service.class.getMethod("report", long.class, String.class);
+        reportHandle = MethodHandles.lookup().unreflect(reportMethod).bindTo(bean)
+                .asSpreader(Object[].class, 2).asType(MethodType.methodType(Object.class, Object[].class));
+        reportInvoker = new ThingsFunctionInvoker(bean, reportMethod);
+        eventInvoker = new ThingsFunctionInvoker(bean, Service.class.getMethod("onEvent", String.class));
+        reportArgs = new Object[]{1L, "kWh"};
+        eventArgs = new Object[]{"alarm"};
+    }
+
+    @Benchmark
+    public Object reflection() throws Exception {
+        return reportMethod.invoke(bean, reportArgs);
+    }
+
+    @Benchmark
+    public Object methodHandle() throws Throwable {
+        return (Object) reportHandle.invokeExact(reportArgs);
+    }
+
+    @Benchmark
+    public Object invoker() throws Throwable {
+        return reportInvoker.invoke(reportArgs);
+    }
+
+    @Benchmark
+    public void voidInvoker(Blackhole blackhole) throws Throwable {
+        blackhole.consume(eventInvoker.invoke(eventArgs));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ThingsFunctionInvokerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,56 @@
+package cn.huangdayu.things.engine.chaining;
+
+import cn.huangdayu.things.common.message.HexThingsCodec;
+import cn.huangdayu.things.common.message.JsonThingsMessage;
+import org.junit.Test;
+
+import java.util.List;
+
+import static cn.huangdayu.things.common.message.HexThingsCodec.SERIALIZER_JSON;
+import static org.junit.Assert.*;
+
+/**
+ * 分段重组测试
+ *
+ * @author huangdayu
+ */
+public class ThingsHexConvertingTest {
+
+    private static List<byte[]> frames(String id) {
+        JsonThingsMessage jtm = new JsonThingsMessage();
+        jtm.setId(id);
+        jtm.setMethod("thing.event.alarm.post");
+        jtm.getPayload().put("text", "x".repeat(1000));
+        return HexThingsCodec.encode(jtm, SERIALIZER_JSON, 200);
+    }
+
+    @Test
+    public void duplicateSegmentsDoNotComplete() {
+        ThingsHexConverting converting = new ThingsHexConverting();
+        List<byte[]> frames = frames("m1");
+        assertTrue(frames.size() > 3);
+        // 重复投递第一个分段和最后一个分段，缺少中间分段时不能完成
+        assertNull(converting.input("d1", frames.get(0)));
+        assertNull(converting.input("d1", frames.get(0)));
+        for (int i = 2; i < frames.size(); i++) {
+            assertNull(converting.input("d1", frames.get(i)));
+        }
+        assertNull(converting.input("d1", frames.get(frames.size() - 1)));
+        JsonThingsMessage jtm = converting.input("d1", frames.get(1));
+        assertNotNull(jtm);
+        assertEquals("m1", jtm.getId());
+        assertEquals(1000, jtm.getPayload().getString("text").length());
+    }
+
+    @Test
+    public void sendersAreReassembledSeparately() {
+        ThingsHexConverting converting = new ThingsHexConverting();
+        List<byte[]> frames = frames("m2");
+        for (int i = 0; i < frames.size() - 1; i++) {
+            assertNull(converting.input("d1", frames.get(i)));
+        }
+        // 另一个发送方的相同消息id不能拼到 d1 的分段上
+        assertNull(converting.input("d2", frames.get(frames.size() - 1)));
+        assertNotNull(converting.input("d1", frames.get(frames.size() - 1)));
+    }
+}
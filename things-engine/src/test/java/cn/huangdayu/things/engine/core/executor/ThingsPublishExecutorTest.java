@@ -0,0 +1,92 @@
+package cn.huangdayu.things.engine.core.executor;
+
+import cn.huangdayu.things.api.message.ThingsChaining;
+import cn.huangdayu.things.common.annotation.ThingsEventEntity;
+import cn.huangdayu.things.common.exception.ThingsException;
+import cn.huangdayu.things.common.message.JsonThingsMessage;
+import cn.huangdayu.things.common.message.ThingsEventMessage;
+import cn.huangdayu.things.common.wrapper.ThingsRequest;
+import cn.huangdayu.things.common.wrapper.ThingsResponse;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static cn.huangdayu.things.common.constants.ThingsConstants.ErrorCodes.GATEWAY_TIMEOUT;
+import static org.junit.Assert.*;
+
+/**
+ * 消息发布测试
+ *
+ * @author huangdayu
+ */
+public class ThingsPublishExecutorTest {
+
+    @ThingsEventEntity(productCode = "p1", identifier = "alarm")
+    public static class Alarm implements ThingsEventMessage {
+        private final String deviceCode;
+
+        public Alarm(String deviceCode) {
+            this.deviceCode = deviceCode;
+        }
+
+        @Override
+        public String getDeviceCode() {
+            return deviceCode;
+        }
+    }
+
+    private static class RecordingChaining implements ThingsChaining {
+        private final List<List<ThingsRequest>> batches = new ArrayList<>();
+        private final List<ThingsResponse> responses = new ArrayList<>();
+
+        @Override
+        public void input(ThingsRequest thingsRequest, ThingsResponse thingsResponse) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void output(ThingsRequest thingsRequest, ThingsResponse thingsResponse) {
+            output(List.of(thingsRequest), List.of(thingsResponse));
+        }
+
+        @Override
+        public void output(List<ThingsRequest> thingsRequests, List<ThingsResponse> thingsResponses) {
+            batches.add(thingsRequests);
+            responses.addAll(thingsResponses);
+        }
+    }
+
+    @Test
+    public void eventsAreOutputOnceWithoutWaitingForReplies() {
+        RecordingChaining chaining = new RecordingChaining();
+        new ThingsPublishExecutor(chaining).publishEvents(List.of(new Alarm("d1"), new Alarm("d2")));
+        assertEquals(1, chaining.batches.size());
+        assertEquals(2, chaining.batches.get(0).size());
+        assertEquals("d2", chaining.batches.get(0).get(1).getJtm().getBaseMetadata().getDeviceCode());
+        for (ThingsResponse thingsResponse : chaining.responses) {
+            // 没有 future 和 consumer 的响应不会登记到等待表
+            assertNull(thingsResponse.getFuture());
+            assertNull(thingsResponse.getConsumer());
+        }
+    }
+
+    @Test
+    public void expiredReactiveSendFailsOnSubscribe() {
+        RecordingChaining chaining = new RecordingChaining();
+        JsonThingsMessage jtm = new JsonThingsMessage();
+        jtm.setBaseMetadata(baseThingsMetadata -> baseThingsMetadata.setDeadline(System.currentTimeMillis() - 1));
+        // 组装时不抛出异常，也不修改消息
+        Mono<JsonThingsMessage> mono = new ThingsPublishExecutor(chaining).reactorSendMessage(jtm);
+        assertEquals(1000, jtm.getTimeout());
+        try {
+            mono.block(Duration.ofSeconds(10));
+            fail("Expected deadline exceeded");
+        } catch (ThingsException e) {
+            assertEquals(GATEWAY_TIMEOUT, e.getErrorCode());
+        }
+        assertTrue(chaining.batches.isEmpty());
+    }
+}
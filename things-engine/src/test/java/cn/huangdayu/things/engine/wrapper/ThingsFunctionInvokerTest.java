@@ -0,0 +1,63 @@
+package cn.huangdayu.things.engine.wrapper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 物模型方法调用器测试
+ *
+ * @author huangdayu
+ */
+public class ThingsFunctionInvokerTest {
+
+    public static class Service {
+        private int count;
+
+        public int add(int a, Integer b) {
+            return a + b;
+        }
+
+        public void increase() {
+            count++;
+        }
+
+        public String join(String a, String b, String c, String d, String e) {
+            return a + b + c + d + e;
+        }
+
+        public void fail(String message) {
+            throw new IllegalStateException(message);
+        }
+
+        String packagePrivate(String value) {
+            return value;
+        }
+    }
+
+    @Test
+    public void invokeWithPrimitivesAndVoid() throws Throwable {
+        Service service = new Service();
+        assertEquals(3, new ThingsFunctionInvoker(service, Service.class.getMethod("add", int.class, Integer.class)).invoke(new Object[]{1, 2}));
+        assertNull(new ThingsFunctionInvoker(service, Service.class.getMethod("increase")).invoke(new Object[0]));
+        assertEquals(1, service.count);
+    }
+
+    @Test
+    public void invokeBeyondGeneratedArity() throws Throwable {
+        ThingsFunctionInvoker invoker = new ThingsFunctionInvoker(new Service(),
+                Service.class.getMethod("join", String.class, String.class, String.class, String.class, String.class));
+        assertEquals("abcde", invoker.invoke(new Object[]{"a", "b", "c", "d", "e"}));
+    }
+
+    @Test
+    public void invokeNonPublicMethod() throws Throwable {
+        ThingsFunctionInvoker invoker = new ThingsFunctionInvoker(new Service(), Service.class.getDeclaredMethod("packagePrivate", String.class));
+        assertEquals("v", invoker.invoke(new Object[]{"v"}));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void targetExceptionIsNotWrapped() throws Throwable {
+        new ThingsFunctionInvoker(new Service(), Service.class.getMethod("fail", String.class)).invoke(new Object[]{"boom"});
+    }
+}
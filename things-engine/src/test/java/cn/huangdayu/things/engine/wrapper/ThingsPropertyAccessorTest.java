@@ -0,0 +1,66 @@
+package cn.huangdayu.things.engine.wrapper;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.alibaba.fastjson2.annotation.JSONField;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * 属性实体访问表测试，序列化结果与 fastjson2 序列化整个属性实体一致
+ *
+ * @author huangdayu
+ */
+public class ThingsPropertyAccessorTest {
+
+    public static class Properties {
+        @JSONField(name = "temp")
+        private Double temperature = 21.5;
+        @JSONField(format = "yyyy-MM-dd")
+        private Date updateTime = new Date(0);
+        @JSONField(serialize = false)
+        private String secret = "secret";
+        private Integer humidity = 40;
+
+        public Double getTemperature() {
+            return temperature;
+        }
+
+        public Date getUpdateTime() {
+            return updateTime;
+        }
+
+        public String getSecret() {
+            return secret;
+        }
+
+        public Integer getHumidity() {
+            return humidity;
+        }
+    }
+
+    @Test
+    public void toJsonHonoursJsonField() {
+        Properties bean = new Properties();
+        ThingsPropertyAccessor accessor = new ThingsPropertyAccessor(Properties.class);
+        JSONObject json = accessor.toJson(bean);
+        assertEquals(JSON.toJSON(bean), json);
+        assertFalse(json.containsKey("secret"));
+        assertEquals(21.5, (Double) json.get("temp"), 0);
+    }
+
+    @Test
+    public void setByJsonName() {
+        Properties bean = new Properties();
+        ThingsPropertyAccessor accessor = new ThingsPropertyAccessor(Properties.class);
+        assertEquals("temperature", accessor.identifier("temp"));
+        assertEquals("temp", accessor.jsonName("temperature"));
+        assertTrue(accessor.set(bean, "temp", 30));
+        assertEquals(30.0, bean.getTemperature(), 0);
+        assertNull(accessor.identifier("unknown"));
+        assertFalse(accessor.set(bean, "unknown", 1));
+    }
+}
@@ -0,0 +1,120 @@
+package cn.huangdayu.things.engine.wrapper;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 设备属性列存储测试
+ *
+ * @author huangdayu
+ */
+public class ThingsPropertyStoreTest {
+
+    public static class Properties {
+        private Integer power = 0;
+        private String mode = "auto";
+        private List<String> tags = new ArrayList<>();
+    }
+
+    public static class UpgradedProperties {
+        private Long power = 0L;
+        private Integer level = 3;
+        private List<String> tags = new ArrayList<>();
+    }
+
+    private static ThingsPropertyStore newStore() {
+        return new ThingsPropertyStore(new ThingsProperty(null, null, new Properties()), new ThingsPropertyAccessor(Properties.class));
+    }
+
+    @Test
+    public void updateWritesBackOnlyChangedProperties() {
+        ThingsPropertyStore store = newStore();
+        Map<String, Object> base = new HashMap<>();
+        Properties entity = (Properties) store.materialize("d1", base);
+        // 实体使用期间其他调用修改了 mode
+        assertTrue(store.set("d1", "mode", "manual"));
+        entity.power = 5;
+        assertEquals(Set.of("power"), store.update("d1", entity, base));
+        assertEquals(Integer.valueOf(5), store.get("d1", "power"));
+        assertEquals("manual", store.get("d1", "mode"));
+    }
+
+    @Test
+    public void objectValuesAreNotShared() {
+        ThingsPropertyStore store = newStore();
+        Map<String, Object> base = new HashMap<>();
+        Properties entity = (Properties) store.materialize("d1", base);
+        entity.tags.add("a");
+        assertEquals(List.of(), store.get("d1", "tags"));
+        assertEquals(Set.of("tags"), store.update("d1", entity, base));
+        entity.tags.add("b");
+        assertEquals(List.of("a"), store.get("d1", "tags"));
+        List<String> tags = store.get("d1", "tags");
+        tags.add("c");
+        assertEquals(List.of("a"), store.get("d1", "tags"));
+    }
+
+    @Test
+    public void removedSlotIsReused() {
+        ThingsPropertyStore store = newStore();
+        store.set("d1", "power", 7);
+        assertTrue(store.remove("d1"));
+        assertFalse(store.contains("d1"));
+        assertEquals(Integer.valueOf(0), store.get("d2", "power"));
+        assertEquals(1, store.size());
+        assertFalse(store.remove("d1"));
+    }
+
+    @Test
+    public void migrateKeepsDeviceStateAcrossHotSwap() {
+        ThingsPropertyStore previous = newStore();
+        previous.set("d1", "power", 7);
+        previous.set("d1", "tags", new ArrayList<>(List.of("a")));
+        previous.set("d2", "mode", "manual");
+        ThingsPropertyStore store = new ThingsPropertyStore(new ThingsProperty(null, null, new UpgradedProperties()),
+                new ThingsPropertyAccessor(UpgradedProperties.class));
+        assertEquals(2, store.migrate(previous));
+        // 两边都有的属性按新类型迁移，新增的属性使用新属性实体的值
+        assertEquals(Long.valueOf(7), store.get("d1", "power"));
+        assertEquals(List.of("a"), store.get("d1", "tags"));
+        assertEquals(Integer.valueOf(3), store.get("d1", "level"));
+        assertEquals(Long.valueOf(0), store.get("d2", "power"));
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    public void concurrentDevicesDoNotLoseWrites() throws Exception {
+        ThingsPropertyStore store = newStore();
+        int devices = 64;
+        int writes = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int d = 0; d < devices; d++) {
+                String deviceCode = "d" + d;
+                futures.add(executor.submit(() -> {
+                    for (int i = 1; i <= writes; i++) {
+                        store.set(deviceCode, "power", i);
+                        store.set(deviceCode, "mode", "m" + (i % 8));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        for (int d = 0; d < devices; d++) {
+            assertEquals(writes, store.getInt("d" + d, "power"));
+            assertEquals("m" + (writes % 8), store.get("d" + d, "mode"));
+        }
+    }
+}
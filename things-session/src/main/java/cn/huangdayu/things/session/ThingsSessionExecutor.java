@@ -10,6 +10,8 @@ import cn.huangdayu.things.common.wrapper.ThingsSession;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 
+import static cn.huangdayu.things.common.enums.ThingsDeliveryMode.ASYNC_ORDERED;
+
 /**
  * @author huangdayu
  */
@@ -32,7 +34,7 @@ public class ThingsSessionExecutor implements ThingsSessionService {
                     removeSession(session);
                 }
             }
-        });
+        }, ASYNC_ORDERED);
     }
 
     @Override
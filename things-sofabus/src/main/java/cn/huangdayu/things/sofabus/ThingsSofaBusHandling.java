@@ -1,12 +1,18 @@
 package cn.huangdayu.things.sofabus;
 
-import cn.huangdayu.things.api.message.ThingsHandling;
+import cn.huangdayu.things.api.message.ThingsBatchHandling;
 import cn.huangdayu.things.api.sofabus.ThingsSofaBus;
 import cn.huangdayu.things.common.annotation.ThingsHandler;
+import cn.huangdayu.things.common.async.ThingsDeadline;
 import cn.huangdayu.things.common.wrapper.ThingsRequest;
 import cn.huangdayu.things.common.wrapper.ThingsResponse;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static cn.huangdayu.things.common.enums.ThingsStreamingType.OUTPUTTING;
@@ -14,15 +20,20 @@ import static cn.huangdayu.things.common.enums.ThingsStreamingType.OUTPUTTING;
 /**
  * @author huangdayu
  */
+@Slf4j
 @RequiredArgsConstructor
 @ThingsHandler(order = 1, source = OUTPUTTING)
-public class ThingsSofaBusHandling implements ThingsHandling {
+public class ThingsSofaBusHandling implements ThingsBatchHandling {
 
     private final ThingsSofaBusFactory thingsSofaBusFactory;
     private final ThingsSofaBusTopics thingsSofaBusTopics;
 
     @Override
     public void doHandle(ThingsRequest thingsRequest, ThingsResponse thingsResponse) {
+        if (ThingsDeadline.drop(thingsRequest.getJtm())) {
+            log.warn("Things sofa bus drop expired message : {}", thingsRequest.getJtm());
+            return;
+        }
         Set<ThingsSofaBus> thingsSofaBus = thingsSofaBusFactory.getAllSofaBus();
         for (ThingsSofaBus bus : thingsSofaBus) {
             if (bus.isStarted()) {
@@ -32,4 +43,38 @@ public class ThingsSofaBusHandling implements ThingsHandling {
             }
         }
     }
+
+    /**
+     * 按主题分组，每个主题在每条总线上只发送一次
+     */
+    @Override
+    public void doHandle(List<ThingsRequest> thingsRequests, List<ThingsResponse> thingsResponses) {
+        Map<String, TopicBatch> topics = new LinkedHashMap<>();
+        for (int i = 0; i < thingsRequests.size(); i++) {
+            ThingsRequest thingsRequest = thingsRequests.get(i);
+            // 排队期间过期的消息不再发送
+            if (ThingsDeadline.drop(thingsRequest.getJtm())) {
+                log.warn("Things sofa bus drop expired message : {}", thingsRequest.getJtm());
+                continue;
+            }
+            for (String topicCode : thingsSofaBusTopics.getSubscribeTopics(thingsRequest)) {
+                TopicBatch batch = topics.computeIfAbsent(topicCode, k -> new TopicBatch());
+                batch.thingsRequests.add(thingsRequest);
+                batch.thingsResponses.add(thingsResponses.get(i));
+            }
+        }
+        if (topics.isEmpty()) {
+            return;
+        }
+        for (ThingsSofaBus bus : thingsSofaBusFactory.getAllSofaBus()) {
+            if (bus.isStarted()) {
+                topics.forEach((topicCode, batch) -> bus.output(topicCode, batch.thingsRequests, batch.thingsResponses));
+            }
+        }
+    }
+
+    private static final class TopicBatch {
+        private final List<ThingsRequest> thingsRequests = new ArrayList<>();
+        private final List<ThingsResponse> thingsResponses = new ArrayList<>();
+    }
 }
@@ -43,6 +43,6 @@ public class ThingsSofaBusTopics {
 
 
     public Set<String> getSubscribeTopics(ThingsRequest thingsRequest) {
-        return null;
+        return Set.of();
     }
 }
@@ -5,12 +5,12 @@ import cn.huangdayu.things.camel.CamelSofaBusConstructor;
 import cn.huangdayu.things.common.enums.ThingsSofaBusType;
 import cn.huangdayu.things.common.exception.ThingsException;
 import cn.huangdayu.things.common.message.JsonThingsMessage;
+import cn.huangdayu.things.common.message.LazyJsonThingsMessage;
 import cn.huangdayu.things.common.properties.ThingsSofaBusProperties;
 import cn.huangdayu.things.common.wrapper.ThingsRequest;
 import cn.huangdayu.things.common.wrapper.ThingsResponse;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.collection.ConcurrentHashSet;
-import com.alibaba.fastjson2.JSON;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
@@ -22,8 +22,10 @@ import org.apache.camel.builder.RouteBuilder;
 import org.apache.camel.support.DefaultComponent;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.StringJoiner;
 
 import static cn.huangdayu.things.common.constants.ThingsConstants.ErrorCodes.ERROR;
 import static cn.huangdayu.things.common.enums.ThingsSofaBusType.*;
@@ -73,6 +75,27 @@ public abstract class AbstractCamelSofaBus implements ThingsSofaBus {
         return true;
     }
 
+    /**
+     * 开启 batchOutput 时同一主题的消息合并为一个 JSON 数组消息体，一次发送，否则逐条发送
+     */
+    @Override
+    public boolean output(String topic, List<ThingsRequest> thingsRequests, List<ThingsResponse> thingsResponses) {
+        if (thingsRequests.size() == 1 || !constructor.getProperties().isBatchOutput()) {
+            boolean result = true;
+            for (int i = 0; i < thingsRequests.size(); i++) {
+                result &= output(topic, thingsRequests.get(i), thingsResponses.get(i));
+            }
+            return result;
+        }
+        checkComponentInit();
+        StringJoiner body = new StringJoiner(",", "[", "]");
+        for (ThingsRequest thingsRequest : thingsRequests) {
+            body.add(thingsRequest.getJtm().toString());
+        }
+        constructor.getProducerTemplate().sendBody(getTopic(topic), body.toString());
+        return true;
+    }
+
     private String getTopic(String topicCode) {
         String topicTemplates = TOPIC_TEMPLATES.get(getType());
         return topicTemplates.replace("${componentName}", constructor.getProperties().getName())
@@ -163,24 +186,29 @@ public abstract class AbstractCamelSofaBus implements ThingsSofaBus {
                     .process(new Processor() {
                         @Override
                         public void process(Exchange exchange) throws Exception {
-                            String receivedMessage = exchange.getIn().getBody(String.class);
-                            log.debug("Things Bus topic [{}] received message: {}", topic, receivedMessage);
-                            JsonThingsMessage jtm = JSON.to(JsonThingsMessage.class, receivedMessage);
-                            ThingsRequest thingsRequest = ThingsRequest.builder().source(thingsSofaBus).type(thingsSofaBus.getType().name())
-                                    .endpoint(topic).clientCode(constructor.getProperties().getClientId()).groupCode(constructor.getProperties().getGroupId()).jtm(jtm).build();
-
-                            ThingsResponse thingsResponse = ThingsResponse.builder().source(thingsSofaBus).type(thingsSofaBus.getType().name()).endpoint(topic)
-                                    .clientCode(constructor.getProperties().getClientId()).groupCode(constructor.getProperties().getGroupId())
-                                    .consumer(response -> {
-                                        String replyMessage = response.getJtm().toString();
-                                        log.debug("Things Bus topic [{}] reply message: {}", topic, replyMessage);
-                                        constructor.getProducerTemplate().sendBody(topic, replyMessage);
-                                    }).build();
-                            constructor.getThingsChaining().input(thingsRequest, thingsResponse);
+                            // 批量发送的消息体是 JSON 数组，逐条进入处理链
+                            for (JsonThingsMessage jtm : LazyJsonThingsMessage.parse(exchange.getIn().getBody(byte[].class))) {
+                                input(jtm);
+                            }
                         }
                     });
         }
 
+        private void input(JsonThingsMessage jtm) {
+            log.debug("Things Bus topic [{}] received message: {}", topic, jtm);
+            ThingsRequest thingsRequest = ThingsRequest.builder().source(thingsSofaBus).type(thingsSofaBus.getType().name())
+                    .endpoint(topic).clientCode(constructor.getProperties().getClientId()).groupCode(constructor.getProperties().getGroupId()).jtm(jtm).build();
+
+            ThingsResponse thingsResponse = ThingsResponse.builder().source(thingsSofaBus).type(thingsSofaBus.getType().name()).endpoint(topic)
+                    .clientCode(constructor.getProperties().getClientId()).groupCode(constructor.getProperties().getGroupId())
+                    .consumer(response -> {
+                        String replyMessage = response.getJtm().toString();
+                        log.debug("Things Bus topic [{}] reply message: {}", topic, replyMessage);
+                        constructor.getProducerTemplate().sendBody(topic, replyMessage);
+                    }).build();
+            constructor.getThingsChaining().input(thingsRequest, thingsResponse);
+        }
+
     }
 
 
@@ -0,0 +1,50 @@
+package cn.huangdayu.things.starter.engine;
+
+import cn.huangdayu.things.common.dsl.DslInfo;
+import cn.huangdayu.things.engine.core.ThingsDescriber;
+import cn.huangdayu.things.starter.endpoint.ThingsEndpoint;
+import cn.hutool.core.util.StrUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * 引擎实例的 DSL 接口，只提供 DSL，不接收消息；
+ * 存在 {@link ThingsEndpoint} 时由 ThingsEndpointController 提供相同的接口
+ *
+ * @author huangdayu
+ */
+@ConditionalOnBean(ThingsDescriber.class)
+@ConditionalOnMissingBean(ThingsEndpoint.class)
+@RequiredArgsConstructor
+@RestController
+@RequestMapping
+public class ThingsDslController {
+
+    private final ThingsDescriber thingsDescriber;
+
+    @GetMapping("/things/dsl")
+    public DslInfo getDsl() {
+        return thingsDescriber.getDsl();
+    }
+
+    /**
+     * 按版本获取 DSL，响应头 ETag 为当前 DSL 版本；
+     * 版本没有变化时仍然返回 200 和只有实例、版本的 DSL
+     */
+    @PostMapping("/things/dsl")
+    public ResponseEntity<DslInfo> getDsl(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String version,
+                                          @RequestBody(required = false) Map<String, String> thingsVersions) {
+        DslInfo dslInfo = thingsDescriber.getDsl(StrUtil.strip(version, "\""), thingsVersions);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (dslInfo != null && StrUtil.isNotBlank(dslInfo.getVersion())) {
+            builder.eTag(dslInfo.getVersion());
+        }
+        return builder.body(dslInfo);
+    }
+}
@@ -3,7 +3,6 @@ package cn.huangdayu.things.starter;
 import cn.huangdayu.things.api.container.ThingsRegister;
 import cn.huangdayu.things.starter.endpoint.ThingsEndpoint;
 import cn.huangdayu.things.api.instances.ThingsInstancesProvider;
-import cn.huangdayu.things.common.factory.ThreadPoolFactory;
 import cn.huangdayu.things.common.properties.ThingsInstanceProperties;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
@@ -38,7 +37,7 @@ public class ThingsBootAutoConfiguration {
     public TaskScheduler thingsTaskScheduler() {
         ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
         scheduler.setPoolSize(2);
-        scheduler.setThreadFactory(ThreadPoolFactory.tryGetVirtualThreadFactory());
+        scheduler.setThreadFactory(Thread.ofVirtual().name("things-task-", 0).factory());
         scheduler.initialize();
         return scheduler;
     }
@@ -55,6 +55,11 @@ public class ThingsContainerRegister implements ApplicationContextAware {
         public <T> T getBean(Class<T> requiredType) {
             return context.getBean(requiredType);
         }
+
+        @Override
+        public ClassLoader getClassLoader() {
+            return context.getClassLoader();
+        }
     }
 
 }
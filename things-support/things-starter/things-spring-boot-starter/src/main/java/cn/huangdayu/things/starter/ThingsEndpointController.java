@@ -3,14 +3,20 @@ package cn.huangdayu.things.starter;
 import cn.huangdayu.things.starter.endpoint.ThingsEndpoint;
 import cn.huangdayu.things.common.dsl.DslInfo;
 import cn.huangdayu.things.common.message.JsonThingsMessage;
+import cn.huangdayu.things.common.message.LazyJsonThingsMessage;
 import cn.huangdayu.things.common.wrapper.ThingsConfiguration;
+import cn.hutool.core.util.StrUtil;
 import com.alibaba.fastjson2.JSON;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 
+import java.util.Map;
+
 @Slf4j
 @ConditionalOnBean(ThingsEndpoint.class)
 @RequiredArgsConstructor
@@ -21,13 +27,15 @@ public class ThingsEndpointController {
     private final ThingsEndpoint thingsEndpoint;
 
     @PostMapping("/things/message")
-    public JsonThingsMessage handleMessage(@RequestBody JsonThingsMessage jtm) {
+    public JsonThingsMessage handleMessage(@RequestBody byte[] body) {
+        JsonThingsMessage jtm = new LazyJsonThingsMessage(body);
         log.debug("ThingsEndpoint handleMessage: {}", jtm);
         return thingsEndpoint.handleMessage(jtm);
     }
 
     @PostMapping("/things/event")
-    public void handleEvent(@RequestBody JsonThingsMessage jtm) {
+    public void handleEvent(@RequestBody byte[] body) {
+        JsonThingsMessage jtm = new LazyJsonThingsMessage(body);
         log.debug("ThingsEndpoint handleEvent: {}", jtm);
         thingsEndpoint.handleEvent(jtm);
     }
@@ -39,7 +47,8 @@ public class ThingsEndpointController {
      * @return
      */
     @PostMapping("/things/message/reactor")
-    public Mono<JsonThingsMessage> reactorMessage(@RequestBody JsonThingsMessage jtm) {
+    public Mono<JsonThingsMessage> reactorMessage(@RequestBody byte[] body) {
+        JsonThingsMessage jtm = new LazyJsonThingsMessage(body);
         log.debug("ThingsEndpoint reactorMessage: {}", jtm);
         return thingsEndpoint.reactorMessage(jtm);
     }
@@ -49,6 +58,21 @@ public class ThingsEndpointController {
         return thingsEndpoint.getDsl();
     }
 
+    /**
+     * 按版本获取 DSL，响应头 ETag 为当前 DSL 版本；
+     * 版本没有变化时仍然返回 200 和只有实例、版本的 DSL，调用方据此区分没有变化和请求失败
+     */
+    @PostMapping("/things/dsl")
+    public ResponseEntity<DslInfo> getDsl(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String version,
+                                          @RequestBody(required = false) Map<String, String> thingsVersions) {
+        DslInfo dslInfo = thingsEndpoint.getDsl(StrUtil.strip(version, "\""), thingsVersions);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (dslInfo != null && StrUtil.isNotBlank(dslInfo.getVersion())) {
+            builder.eTag(dslInfo.getVersion());
+        }
+        return builder.body(dslInfo);
+    }
+
     /**
      * 配置实例
      */
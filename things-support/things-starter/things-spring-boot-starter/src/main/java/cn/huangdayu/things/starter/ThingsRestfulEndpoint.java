@@ -5,12 +5,16 @@ import cn.huangdayu.things.starter.endpoint.ThingsEndpoint;
 import cn.huangdayu.things.common.dsl.DslInfo;
 import cn.huangdayu.things.common.message.JsonThingsMessage;
 import cn.huangdayu.things.common.wrapper.ThingsConfiguration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.service.annotation.GetExchange;
 import org.springframework.web.service.annotation.HttpExchange;
 import org.springframework.web.service.annotation.PostExchange;
 import reactor.core.publisher.Mono;
 
+import java.util.Map;
+
 /**
  * 消息点对点发布
  *
@@ -27,6 +31,17 @@ public interface ThingsRestfulEndpoint extends ThingsEndpoint {
     @GetExchange("/things/dsl")
     DslInfo getDsl();
 
+    /**
+     * 按版本获取物模型支持列表，版本通过 If-None-Match 请求头传递
+     *
+     * @param version
+     * @param thingsVersions
+     * @return
+     */
+    @PostExchange("/things/dsl")
+    DslInfo getDsl(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String version,
+                   @RequestBody(required = false) Map<String, String> thingsVersions);
+
     /**
      * 点对点发送消息
      *
@@ -6,8 +6,10 @@ import cn.huangdayu.things.common.annotation.ThingsBean;
 import cn.huangdayu.things.starter.enums.EndpointCreatorType;
 import cn.hutool.cache.CacheUtil;
 import cn.hutool.cache.impl.TimedCache;
+import io.netty.channel.ChannelOption;
 import org.springframework.http.client.ClientHttpResponse;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.client.ResponseErrorHandler;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.client.support.RestTemplateAdapter;
@@ -18,6 +20,8 @@ import org.springframework.web.service.invoker.HttpServiceProxyFactory;
 import org.springframework.web.util.DefaultUriBuilderFactory;
 
 import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
 
 import static cn.huangdayu.things.starter.enums.EndpointCreatorType.RESTFUL;
 
@@ -38,6 +42,16 @@ public class ThingsRestfulEndpointCreator implements ThingsEndpointCreator {
     private static final String HTTPS_PREFIX = "https://";
     private static final String HTTP_PREFIX = "http://";
 
+    /**
+     * 建立连接的超时时间
+     */
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(2);
+
+    /**
+     * 等待响应的超时时间，不是读取间隔，服务端缓慢返回时请求也会按时结束
+     */
+    private static final Duration RESPONSE_TIMEOUT = Duration.ofSeconds(5);
+
 
     @Override
     public EndpointCreatorType type() {
@@ -63,10 +77,9 @@ public class ThingsRestfulEndpointCreator implements ThingsEndpointCreator {
     private static <S> S createRestClient(Class<S> serviceType, String server) {
         RestTemplate restTemplate = new RestTemplate();
         restTemplate.setUriTemplateHandler(new DefaultUriBuilderFactory(server));
-        SimpleClientHttpRequestFactory simpleClientHttpRequestFactory = new SimpleClientHttpRequestFactory();
-        simpleClientHttpRequestFactory.setConnectTimeout(2000);
-        simpleClientHttpRequestFactory.setReadTimeout(5000);
-        restTemplate.setRequestFactory(simpleClientHttpRequestFactory);
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(HttpClient.newBuilder().connectTimeout(CONNECT_TIMEOUT).build());
+        requestFactory.setReadTimeout(RESPONSE_TIMEOUT);
+        restTemplate.setRequestFactory(requestFactory);
         restTemplate.setErrorHandler(new ResponseErrorHandler() {
             @Override
             public boolean hasError(ClientHttpResponse response) throws IOException {
@@ -82,7 +95,10 @@ public class ThingsRestfulEndpointCreator implements ThingsEndpointCreator {
     }
 
     private static <S> S createWebFluxClient(Class<S> serviceType, String server) {
-        WebClient webClient = WebClient.builder().baseUrl(server).build();
+        reactor.netty.http.client.HttpClient httpClient = reactor.netty.http.client.HttpClient.create()
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) CONNECT_TIMEOUT.toMillis())
+                .responseTimeout(RESPONSE_TIMEOUT);
+        WebClient webClient = WebClient.builder().baseUrl(server).clientConnector(new ReactorClientHttpConnector(httpClient)).build();
         WebClientAdapter webClientAdapter = WebClientAdapter.create(webClient);
         return createProxyClient(serviceType, webClientAdapter);
     }
@@ -6,6 +6,8 @@ import cn.huangdayu.things.common.message.JsonThingsMessage;
 import cn.huangdayu.things.common.wrapper.ThingsConfiguration;
 import reactor.core.publisher.Mono;
 
+import java.util.Map;
+
 /**
  * 消息点对点发布
  *
@@ -20,6 +22,18 @@ public interface ThingsEndpoint {
      */
     DslInfo getDsl();
 
+    /**
+     * 按版本获取物模型支持列表
+     * 版本没有变化时只返回实例和版本，否则只返回版本不同的物模型，不支持按版本获取时返回完整 DSL
+     *
+     * @param version        已持有的 DSL 版本，为 null 时返回完整 DSL
+     * @param thingsVersions 已持有的 productCode vs 物模型版本
+     * @return
+     */
+    default DslInfo getDsl(String version, Map<String, String> thingsVersions) {
+        return getDsl();
+    }
+
     /**
      * 点对点发送消息
      *
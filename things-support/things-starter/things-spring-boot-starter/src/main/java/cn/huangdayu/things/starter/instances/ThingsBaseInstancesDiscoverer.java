@@ -4,15 +4,27 @@ import cn.huangdayu.things.api.infrastructure.ThingsConfigService;
 import cn.huangdayu.things.api.instances.ThingsInstancesDslManager;
 import cn.huangdayu.things.common.dsl.DslInfo;
 import cn.huangdayu.things.common.wrapper.ThingsInstance;
+import cn.huangdayu.things.starter.endpoint.ThingsEndpoint;
 import cn.huangdayu.things.starter.endpoint.ThingsEndpointFactory;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.collection.ConcurrentHashSet;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import static cn.huangdayu.things.common.enums.ThingsExecutorType.OUTBOUND;
 import static cn.huangdayu.things.common.enums.ThingsInstanceType.GATEWAY;
+import static cn.huangdayu.things.common.factory.ThreadPoolFactory.getExecutor;
 
 /**
  * @author huangdayu
@@ -21,34 +33,105 @@ import static cn.huangdayu.things.common.enums.ThingsInstanceType.GATEWAY;
 @RequiredArgsConstructor
 public abstract class ThingsBaseInstancesDiscoverer {
 
+    /**
+     * 同时获取 DSL 的最大服务数
+     */
+    private static final int DSL_SYNC_CONCURRENCY = 8;
+
+    /**
+     * 一轮获取所有服务 DSL 的超时时间，超时后本轮只使用已获取到的实例
+     */
+    private static final long DSL_SYNC_ROUND_TIMEOUT = 60 * 1000;
+
     private final ThingsConfigService thingsConfigService;
     private final ThingsEndpointFactory thingsEndpointFactory;
     private final ThingsInstancesDslManager thingsInstancesDslManager;
 
+    /**
+     * server vs 上次获取到的实例，用于带上已持有的 DSL 版本
+     */
+    private final Map<String, ThingsInstance> serverInstances = new ConcurrentHashMap<>();
+
 
+    /**
+     * 并行获取所有服务的 DSL，已持有 DSL 的服务只获取变化的部分
+     */
     protected Set<ThingsInstance> getAllThingsInstance(Set<String> servers) {
         Set<ThingsInstance> thingsInstances = new ConcurrentHashSet<>();
         if (CollUtil.isEmpty(servers)) {
             return thingsInstances;
         }
         ThingsInstance thingsInstance = this.thingsConfigService.getProperties().getInstance();
-        for (String server : servers) {
-            try {
+        Semaphore permits = new Semaphore(DSL_SYNC_CONCURRENCY);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + DSL_SYNC_ROUND_TIMEOUT;
+        try {
+            for (String server : servers) {
                 if (server.equals(thingsInstance.getEndpointUri())) {
                     continue;
                 }
-                DslInfo dsl = thingsEndpointFactory.create(server).getDsl();
-                if (dsl != null) {
-                    thingsInstances.add(dsl.getInstance());
-                    thingsInstancesDslManager.addAllDsl(dsl);
+                if (!permits.tryAcquire(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                    log.warn("Get Things instances timeout, no permit to sync {} server.", server);
+                    break;
+                }
+                CompletableFuture<Void> future = new CompletableFuture<>();
+                futures.add(future);
+                // 许可在任务结束时释放，卡住的请求一直占用许可，同时执行的请求数不会超过上限；请求时长由端点客户端的超时限制
+                Runnable task = () -> {
+                    try {
+                        syncDsl(server, thingsInstances);
+                    } finally {
+                        permits.release();
+                        future.complete(null);
+                    }
+                };
+                // 不使用通道的拒绝策略：DISCARD 丢弃的任务永远不会完成，通道已满时在当前线程获取
+                if (!getExecutor(OUTBOUND).offer(task)) {
+                    task.run();
                 }
-            } catch (Exception e) {
-                log.error("Get Things instances to {} server exception : {}", server, e.getMessage());
             }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            log.warn("Get Things instances not completed in time, {} of {} servers responded.", futures.stream().filter(CompletableFuture::isDone).count(), futures.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        // DSL 已被清理的实例下次重新获取完整 DSL
+        serverInstances.values().removeIf(instance -> thingsInstancesDslManager.getDsl(instance) == null);
         return thingsInstances;
     }
 
+    private void syncDsl(String server, Set<ThingsInstance> thingsInstances) {
+        try {
+            DslInfo held = thingsInstancesDslManager.getDsl(serverInstances.get(server));
+            DslInfo dsl = getDsl(server, thingsEndpointFactory.create(server), held);
+            if (dsl != null && dsl.getInstance() != null) {
+                serverInstances.put(server, dsl.getInstance());
+                thingsInstances.add(dsl.getInstance());
+                thingsInstancesDslManager.addAllDsl(dsl);
+            }
+        } catch (Exception e) {
+            log.error("Get Things instances to {} server exception : {}", server, e.getMessage());
+        }
+    }
+
+    /**
+     * 按版本获取 DSL；未升级的服务不支持 POST /things/dsl，请求失败或错误响应解析出没有实例的 DSL，
+     * 这时回退到 GET /things/dsl 获取完整 DSL，滚动升级期间服务不会从发现结果中消失
+     */
+    private DslInfo getDsl(String server, ThingsEndpoint thingsEndpoint, DslInfo held) {
+        try {
+            DslInfo dsl = thingsEndpoint.getDsl(held != null ? held.getVersion() : null, held != null ? held.getThingsVersions() : null);
+            if (dsl != null && dsl.getInstance() != null) {
+                return dsl;
+            }
+        } catch (Exception e) {
+            log.warn("Get versioned Things dsl to {} server exception, fall back to full dsl : {}", server, e.getMessage());
+        }
+        return thingsEndpoint.getDsl();
+    }
+
     protected ThingsInstance getUpstreamInstance(Set<ThingsInstance> instances) {
         return instances.stream().filter(v -> v.getTypes().contains(GATEWAY)).findFirst().orElseGet(() -> null);
     }
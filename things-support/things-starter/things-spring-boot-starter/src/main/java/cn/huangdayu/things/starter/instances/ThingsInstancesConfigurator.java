@@ -15,6 +15,8 @@ import lombok.RequiredArgsConstructor;
 
 import java.util.Set;
 
+import static cn.huangdayu.things.common.enums.ThingsDeliveryMode.ASYNC_ORDERED;
+
 /**
  * @author huangdayu
  */
@@ -29,7 +31,7 @@ public class ThingsInstancesConfigurator {
 
     @PostConstruct
     public void init() {
-        thingsEventObserver.registerObserver(ThingsInstancesUpdatedEvent.class, engineEvent -> setUpstreamUri());
+        thingsEventObserver.registerObserver(ThingsInstancesUpdatedEvent.class, engineEvent -> setUpstreamUri(), ASYNC_ORDERED);
     }
 
 